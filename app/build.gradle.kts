@@ -31,6 +31,14 @@ android {
         sourceCompatibility = JavaVersion.VERSION_11
         targetCompatibility = JavaVersion.VERSION_11
     }
+    testOptions {
+        // Lets local tests run code that logs through android.util.Log
+        unitTests.isReturnDefaultValues = true
+        unitTests.all {
+            // Small on purpose: the streaming tests must pass without holding their rows in memory
+            it.maxHeapSize = "64m"
+        }
+    }
 }
 
 dependencies {
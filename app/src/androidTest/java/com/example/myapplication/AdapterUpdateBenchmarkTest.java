@@ -0,0 +1,183 @@
+package com.example.myapplication;
+
+import android.app.Instrumentation;
+import android.content.Context;
+import android.util.Log;
+import android.view.ContextThemeWrapper;
+import android.view.View;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Counts the rows rebound, and times the layout pass that rebinds them, when a 5k-expense list shown
+ * in a RecyclerView changes by one row or is re-sorted: ExpenseAdapter diffing the new list against
+ * the current one, against the notifyDataSetChanged() every update used to call. The RecyclerView is
+ * measured and laid out by hand at a phone-sized viewport, so the layout pass stands in for the
+ * frame that shows the change. Filter logcat by "AdapterUpdateBenchmarkTest" for the results.
+ */
+@RunWith(AndroidJUnit4.class)
+public class AdapterUpdateBenchmarkTest {
+    private static final int ROWS = 5_000;
+    private static final int WIDTH_PX = 1080;
+    private static final int HEIGHT_PX = 2400;
+
+    private Instrumentation instrumentation;
+    private RecyclerView recyclerView;
+    private CountingAdapter adapter;
+    private List<DataManager.Expense> expenses;
+
+    @Before
+    public void setUp() {
+        instrumentation = InstrumentationRegistry.getInstrumentation();
+        Context context = new ContextThemeWrapper(instrumentation.getTargetContext(), R.style.Theme_MyApplication);
+        expenses = new ArrayList<>(ROWS);
+        for (int id = ROWS; id > 0; id--) {
+            expenses.add(expense(id, 100 * id));
+        }
+        instrumentation.runOnMainSync(() -> {
+            recyclerView = new RecyclerView(context);
+            recyclerView.setLayoutManager(new LinearLayoutManager(context));
+            // Animations need a window; without one the change shows in the next layout pass
+            recyclerView.setItemAnimator(null);
+            adapter = new CountingAdapter(expenses);
+            recyclerView.setAdapter(adapter);
+            layout();
+        });
+        assertTrue(recyclerView.getChildCount() > 0);
+    }
+
+    @Test
+    public void deleteAtTop() throws InterruptedException {
+        List<DataManager.Expense> updated = new ArrayList<>(expenses);
+        updated.remove(1);
+        compare("delete", updated);
+    }
+
+    @Test
+    public void editVisibleRow() throws InterruptedException {
+        List<DataManager.Expense> updated = new ArrayList<>(expenses);
+        DataManager.Expense old = updated.get(2);
+        updated.set(2, expense(old.id, old.amountCents + 1));
+        compare("edit", updated);
+    }
+
+    @Test
+    public void insertAtTop() throws InterruptedException {
+        List<DataManager.Expense> updated = new ArrayList<>(expenses);
+        updated.add(0, expense(ROWS + 1, 42));
+        compare("insert", updated);
+    }
+
+    @Test
+    public void resortWholeList() throws InterruptedException {
+        List<DataManager.Expense> updated = new ArrayList<>(expenses);
+        Collections.reverse(updated);
+        compare("reverse", updated);
+    }
+
+    private void compare(String change, List<DataManager.Expense> updated) throws InterruptedException {
+        // Diffed: only the rows that changed are rebound
+        CountDownLatch dispatched = new CountDownLatch(1);
+        instrumentation.runOnMainSync(() -> adapter.registerAdapterDataObserver(new RecyclerView.AdapterDataObserver() {
+            @Override
+            public void onChanged() {
+                dispatched.countDown();
+            }
+
+            @Override
+            public void onItemRangeChanged(int positionStart, int itemCount, Object payload) {
+                dispatched.countDown();
+            }
+
+            @Override
+            public void onItemRangeInserted(int positionStart, int itemCount) {
+                dispatched.countDown();
+            }
+
+            @Override
+            public void onItemRangeRemoved(int positionStart, int itemCount) {
+                dispatched.countDown();
+            }
+
+            @Override
+            public void onItemRangeMoved(int fromPosition, int toPosition, int itemCount) {
+                dispatched.countDown();
+            }
+        }));
+        long start = System.nanoTime();
+        instrumentation.runOnMainSync(() -> adapter.updateExpenses(updated));
+        assertTrue("Diff was not dispatched", dispatched.await(30, TimeUnit.SECONDS));
+        long diffNanos = System.nanoTime() - start;
+        long[] diffed = layoutAndCount(null);
+
+        // Everything rebound, as after notifyDataSetChanged()
+        long[] notified = layoutAndCount(() -> adapter.notifyDataSetChanged());
+
+        assertEquals(updated.size(), adapter.getItemCount());
+        assertTrue("Diffed " + diffed[0] + " binds, notified " + notified[0], diffed[0] <= notified[0]);
+        Log.d("AdapterUpdateBenchmarkTest", change + " in " + ROWS + " rows: diffed " + diffed[0] + " binds, layout " +
+                diffed[1] / 1000 + " us (diff " + diffNanos / 1000 + " us); notifyDataSetChanged " + notified[0] +
+                " binds, layout " + notified[1] / 1000 + " us");
+    }
+
+    /**
+     * Runs the update, if any, then a layout pass on the main thread.
+     *
+     * @return Binds during the pass and its duration in nanoseconds
+     */
+    private long[] layoutAndCount(Runnable update) {
+        long[] result = new long[2];
+        instrumentation.runOnMainSync(() -> {
+            adapter.binds = 0;
+            long start = System.nanoTime();
+            if (update != null) {
+                update.run();
+            }
+            layout();
+            result[1] = System.nanoTime() - start;
+            result[0] = adapter.binds;
+        });
+        return result;
+    }
+
+    private void layout() {
+        recyclerView.measure(View.MeasureSpec.makeMeasureSpec(WIDTH_PX, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(HEIGHT_PX, View.MeasureSpec.EXACTLY));
+        recyclerView.layout(0, 0, WIDTH_PX, HEIGHT_PX);
+    }
+
+    private static DataManager.Expense expense(int id, long amountCents) {
+        return new DataManager.Expense(id, BenchmarkDatabase.CATEGORIES[id % BenchmarkDatabase.CATEGORIES.length],
+                amountCents, "Card purchase " + id, "March 1, 2024", "", 19783);
+    }
+
+    private static final class CountingAdapter extends ExpenseAdapter {
+        int binds;
+
+        CountingAdapter(List<DataManager.Expense> expenses) {
+            super(expenses, null);
+        }
+
+        @Override
+        public void onBindViewHolder(@NonNull ExpenseViewHolder holder, int position) {
+            binds++;
+            super.onBindViewHolder(holder, position);
+        }
+    }
+}
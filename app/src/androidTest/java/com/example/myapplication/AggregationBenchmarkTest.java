@@ -0,0 +1,119 @@
+package com.example.myapplication;
+
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Compares the memory held by 100k and 1M expenses as a List of Expense objects and as an
+ * ExpenseColumns snapshot, and how fast each computes per-category totals: a HashMap keyed by name
+ * over the objects, the way totals were summed before, against the columnar loop. Filter logcat by
+ * "AggregationBenchmarkTest" for the results.
+ *
+ * Notes and dates come from small pools so that 1M rows fit in a normal app heap; the footprint of
+ * the list is therefore a lower bound.
+ */
+@RunWith(AndroidJUnit4.class)
+public class AggregationBenchmarkTest {
+    private static final String[] CATEGORIES = {"Food", "Transport", "Shopping", "Bills", "Entertainment", "Others"};
+    private static final int FIRST_DAY = 19000;
+    private static final int DAYS = 730;
+    private static final int RUNS = 5;
+
+    @Test
+    public void oneHundredThousandRows() {
+        compare(100_000);
+    }
+
+    @Test
+    public void oneMillionRows() {
+        compare(1_000_000);
+    }
+
+    private void compare(int rows) {
+        CategoryDictionary dictionary = new CategoryDictionary();
+        for (int id = 0; id < CATEGORIES.length; id++) {
+            dictionary.put(id + 1, CATEGORIES[id]);
+        }
+
+        long baseline = usedHeap();
+        List<DataManager.Expense> expenses = expenses(rows);
+        long listBytes = usedHeap() - baseline;
+        baseline = usedHeap();
+        ExpenseColumns columns = ExpenseColumns.of(expenses, dictionary);
+        long columnBytes = usedHeap() - baseline;
+
+        Map<String, Long> expected = null;
+        long listNanos = Long.MAX_VALUE;
+        for (int run = 0; run < RUNS; run++) {
+            long start = System.nanoTime();
+            expected = totalsOverList(expenses);
+            listNanos = Math.min(listNanos, System.nanoTime() - start);
+        }
+        List<DataManager.CategoryTotal> totals = null;
+        long columnNanos = Long.MAX_VALUE;
+        for (int run = 0; run < RUNS; run++) {
+            long start = System.nanoTime();
+            totals = columns.categoryTotals();
+            columnNanos = Math.min(columnNanos, System.nanoTime() - start);
+        }
+
+        assertEquals(expected.size(), totals.size());
+        for (DataManager.CategoryTotal total : totals) {
+            assertEquals(total.category, expected.get(total.category), Long.valueOf(total.totalCents));
+        }
+        Log.d("AggregationBenchmarkTest", rows + " rows: list " + listBytes / 1024 + " KiB, " +
+                listNanos / 1000 + " us per category total; columns " + columnBytes / 1024 + " KiB, " +
+                columnNanos / 1000 + " us");
+    }
+
+    /**
+     * Sums per category over the objects, boxing a Long on every row.
+     */
+    private static Map<String, Long> totalsOverList(List<DataManager.Expense> expenses) {
+        Map<String, Long> totals = new HashMap<>();
+        for (DataManager.Expense expense : expenses) {
+            totals.put(expense.category, totals.getOrDefault(expense.category, 0L) + expense.amountCents);
+        }
+        return totals;
+    }
+
+    private static List<DataManager.Expense> expenses(int rows) {
+        Random random = new Random(rows);
+        String[] notes = new String[1000];
+        for (int i = 0; i < notes.length; i++) {
+            notes[i] = "Card purchase " + i;
+        }
+        String[] dates = new String[DAYS];
+        for (int i = 0; i < DAYS; i++) {
+            dates[i] = ExpenseDates.format(new Date((FIRST_DAY + i) * 86_400_000L));
+        }
+        List<DataManager.Expense> expenses = new ArrayList<>(rows);
+        for (int id = rows; id > 0; id--) {
+            int day = random.nextInt(DAYS);
+            expenses.add(new DataManager.Expense(id, CATEGORIES[random.nextInt(CATEGORIES.length)],
+                    1 + random.nextInt(100_000), notes[random.nextInt(notes.length)], dates[day], "", FIRST_DAY + day));
+        }
+        return expenses;
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            runtime.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,75 @@
+package com.example.myapplication;
+
+import android.content.Context;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * A database of its own for a benchmark, holding one user and as many synthetic expenses as the
+ * benchmark asks for. Call close() when done; it deletes the file.
+ */
+final class BenchmarkDatabase {
+    static final String[] CATEGORIES = {"Food", "Transport", "Shopping", "Bills", "Entertainment", "Others"};
+    private static final int FIRST_DAY = 18500; // August 2020
+    private static final int DAYS = 3 * 365;
+    private static final long MILLIS_PER_DAY = 24L * 60 * 60 * 1000;
+    private static final int FILL_BATCH_SIZE = 10_000;
+
+    final DatabaseHelper helper;
+    final int userId;
+    private final Context context;
+    private final String name;
+    private final Random random = new Random(42);
+    private final String[] dates = new String[DAYS];
+
+    BenchmarkDatabase(Context context, String name) {
+        this.context = context;
+        this.name = name;
+        context.deleteDatabase(name);
+        helper = new DatabaseHelper(context, new CategoryDictionary(), name);
+        userId = (int) helper.signup("benchmark", "secret", "cat");
+        assertTrue(userId > 0);
+        for (int i = 0; i < DAYS; i++) {
+            dates[i] = ExpenseDates.format(new Date((FIRST_DAY + i) * MILLIS_PER_DAY));
+        }
+    }
+
+    /**
+     * Adds expenses through the bulk insert until the user has the given number.
+     */
+    void fillTo(int count) {
+        int existing = helper.getExpenseCount(userId);
+        while (existing < count) {
+            int batch = Math.min(FILL_BATCH_SIZE, count - existing);
+            assertEquals(batch, helper.addExpenses(userId, newExpenses(batch)));
+            existing += batch;
+        }
+    }
+
+    /**
+     * Returns unsaved expenses with random categories, amounts and dates over three years.
+     */
+    List<DataManager.Expense> newExpenses(int count) {
+        List<DataManager.Expense> expenses = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            expenses.add(newExpense());
+        }
+        return expenses;
+    }
+
+    DataManager.Expense newExpense() {
+        int day = random.nextInt(DAYS);
+        return new DataManager.Expense(0, CATEGORIES[random.nextInt(CATEGORIES.length)], 1 + random.nextInt(50_000),
+                "Card purchase " + random.nextInt(10_000), dates[day], "", FIRST_DAY + day);
+    }
+
+    void close() {
+        helper.close();
+        context.deleteDatabase(name);
+    }
+}
@@ -0,0 +1,79 @@
+package com.example.myapplication;
+
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Times the reads behind a budget check as the history grows from 1k to 100k expenses: the budget
+ * lookup plus the category total from the rollup, which should take about the same time at every
+ * size, against loading every expense and summing the category, as checkBudget used to. Filter
+ * logcat by "BudgetCheckBenchmarkTest" for the results.
+ */
+@RunWith(AndroidJUnit4.class)
+public class BudgetCheckBenchmarkTest {
+    private static final String DB_NAME = "budget_check_benchmark.db";
+    private static final int[] HISTORY_SIZES = {1_000, 10_000, 100_000};
+    private static final int CHECKS = 200;
+    private static final String CATEGORY = "Food";
+
+    private BenchmarkDatabase database;
+
+    @Before
+    public void setUp() {
+        database = new BenchmarkDatabase(InstrumentationRegistry.getInstrumentation().getTargetContext(), DB_NAME);
+        assertTrue(database.helper.setBudget(database.userId, CATEGORY, 500_000));
+    }
+
+    @After
+    public void tearDown() {
+        database.close();
+    }
+
+    @Test
+    public void budgetCheck_atGrowingHistorySizes() {
+        DatabaseHelper helper = database.helper;
+        int userId = database.userId;
+        for (int size : HISTORY_SIZES) {
+            database.fillTo(size);
+            // The check made when editing leaves the edited expense out of the total
+            int editedId = helper.getExpenses(userId, "date_desc").get(0).id;
+
+            long total = 0;
+            long start = System.nanoTime();
+            for (int i = 0; i < CHECKS; i++) {
+                assertNotNull(helper.getBudget(userId, CATEGORY));
+                total = helper.getCategoryTotalCents(userId, CATEGORY, editedId);
+            }
+            long aggregateNanos = (System.nanoTime() - start) / CHECKS;
+
+            start = System.nanoTime();
+            long expected = sumOverAllExpenses(helper.getExpenses(userId), editedId);
+            long loadAllNanos = System.nanoTime() - start;
+
+            assertEquals(expected, total);
+            Log.d("BudgetCheckBenchmarkTest", size + " expenses: aggregate " + aggregateNanos / 1000 +
+                    " us per check, loading every expense " + loadAllNanos / 1000 + " us");
+        }
+    }
+
+    private static long sumOverAllExpenses(List<DataManager.Expense> expenses, int excludeId) {
+        long total = 0;
+        for (DataManager.Expense expense : expenses) {
+            if (expense.category.equals(CATEGORY) && expense.id != excludeId) {
+                total += expense.amountCents;
+            }
+        }
+        return total;
+    }
+}
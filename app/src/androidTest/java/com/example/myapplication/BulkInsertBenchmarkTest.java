@@ -0,0 +1,117 @@
+package com.example.myapplication;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Measures insert throughput in rows per second: DataManager.addExpenses at 1k, 10k and 100k
+ * expenses and at several batch sizes, against adding the same expenses one addExpense call (and
+ * one commit) at a time, which is only run up to 10k as it is that much slower. Filter logcat by
+ * "BulkInsertBenchmarkTest" for the results.
+ */
+@RunWith(AndroidJUnit4.class)
+public class BulkInsertBenchmarkTest {
+    private static final int[] ROW_COUNTS = {1_000, 10_000, 100_000};
+    private static final int MAX_SINGLE_INSERT_ROWS = 10_000;
+    private static final int[] BATCH_SIZES = {100, DataManager.DEFAULT_BULK_BATCH_SIZE, 5_000, 0};
+
+    private DataManager dataManager;
+
+    @Before
+    public void setUp() {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        dataManager = DataManager.getInstance(context);
+        DataManager.SignupResult signup = dataManager.signup("bulk_bench_" + System.nanoTime(), "secret", "cat");
+        assertTrue(signup.error, signup.success);
+    }
+
+    @After
+    public void tearDown() {
+        dataManager.clearExpenses();
+        dataManager.logout();
+    }
+
+    @Test
+    public void bulkInsert_versusSingleInserts() {
+        for (int rows : ROW_COUNTS) {
+            List<DataManager.Expense> expenses = expenses(rows);
+            long expectedTotal = totalCents(expenses);
+
+            int[] progressCalls = {0};
+            int[] lastDone = {0};
+            long start = System.nanoTime();
+            int added = dataManager.addExpenses(expenses, DataManager.DEFAULT_BULK_BATCH_SIZE, (done, total) -> {
+                progressCalls[0]++;
+                lastDone[0] = done;
+                assertEquals(rows, total);
+            });
+            long bulkNanos = System.nanoTime() - start;
+            assertEquals(rows, added);
+            assertEquals(rows, lastDone[0]);
+            assertEquals((rows + DataManager.DEFAULT_BULK_BATCH_SIZE - 1) / DataManager.DEFAULT_BULK_BATCH_SIZE, progressCalls[0]);
+            assertEquals(expectedTotal, dataManager.getTotalSpentCents());
+            assertTrue(dataManager.clearExpenses());
+
+            String single = "skipped";
+            if (rows <= MAX_SINGLE_INSERT_ROWS) {
+                start = System.nanoTime();
+                for (DataManager.Expense expense : expenses) {
+                    assertTrue(dataManager.addExpense(expense.category, expense.amountCents, expense.note, expense.date, "") > 0);
+                }
+                single = perSecond(rows, System.nanoTime() - start) + " rows/s";
+                assertEquals(expectedTotal, dataManager.getTotalSpentCents());
+                assertTrue(dataManager.clearExpenses());
+            }
+            Log.d("BulkInsertBenchmarkTest", rows + " rows: addExpenses " + perSecond(rows, bulkNanos) +
+                    " rows/s, one addExpense each " + single);
+        }
+    }
+
+    @Test
+    public void batchSizes_atOneHundredThousandRows() {
+        int rows = ROW_COUNTS[ROW_COUNTS.length - 1];
+        List<DataManager.Expense> expenses = expenses(rows);
+        for (int batchSize : BATCH_SIZES) {
+            long start = System.nanoTime();
+            assertEquals(rows, dataManager.addExpenses(expenses, batchSize, null));
+            long nanos = System.nanoTime() - start;
+            assertTrue(dataManager.clearExpenses());
+            Log.d("BulkInsertBenchmarkTest", rows + " rows in batches of " + (batchSize > 0 ? batchSize : rows) + ": " +
+                    perSecond(rows, nanos) + " rows/s");
+        }
+    }
+
+    private static List<DataManager.Expense> expenses(int rows) {
+        List<DataManager.Expense> expenses = new ArrayList<>(rows);
+        for (int i = 0; i < rows; i++) {
+            expenses.add(new DataManager.Expense(0, BenchmarkDatabase.CATEGORIES[i % BenchmarkDatabase.CATEGORIES.length],
+                    100 + (i * 37L) % 50_000, "Card purchase " + i, "March " + (1 + i % 28) + ", 2024", "", 0));
+        }
+        return expenses;
+    }
+
+    private static long totalCents(List<DataManager.Expense> expenses) {
+        long total = 0;
+        for (DataManager.Expense expense : expenses) {
+            total += expense.amountCents;
+        }
+        return total;
+    }
+
+    private static long perSecond(int rows, long nanos) {
+        return rows * 1_000_000_000L / Math.max(nanos, 1);
+    }
+}
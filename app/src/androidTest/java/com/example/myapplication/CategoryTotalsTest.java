@@ -0,0 +1,179 @@
+package com.example.myapplication;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that the category_totals rollup, which every expense write keeps up to date incrementally,
+ * always equals a GROUP BY over the expenses table. Random sequences of inserts, updates (category,
+ * amount, date or all of them), deletes, bulk inserts and clears are applied, and the two are
+ * compared after every step. Seeds are fixed, so a failure names a reproducible step.
+ */
+@RunWith(AndroidJUnit4.class)
+public class CategoryTotalsTest {
+    private static final String DB_NAME = "category_totals_test.db";
+    private static final long[] SEEDS = {1, 42, 20240101};
+    private static final int STEPS = 300;
+
+    private static final String[] CATEGORIES = {"Food", "Transport", "Bills", "Café ☕", "Others"};
+    // Month ends and starts, other formats, "Today" and unparseable text, which all land in some period
+    private static final String[] DATES = {"January 31, 2024", "February 1, 2024", "Dec 31, 2023", "2024-02-29",
+            "03/01/2024", "Today", "", "not a date"};
+
+    // The rollup as the app maintains it, and the same grouping computed from scratch
+    static final String ROLLUP = "SELECT user_id, category_id, period, total, count FROM category_totals" +
+            " ORDER BY 1, 2, 3";
+    static final String EXPECTED = "SELECT user_id, category_id," +
+            " CASE WHEN date_day IS NULL THEN 0 ELSE CAST(strftime('%Y%m', date_day * 86400, 'unixepoch') AS INTEGER) END," +
+            " SUM(amount), COUNT(*) FROM expenses GROUP BY 1, 2, 3 ORDER BY 1, 2, 3";
+
+    private Context context;
+    private DatabaseHelper dbHelper;
+    private int[] userIds;
+
+    @Before
+    public void setUp() {
+        context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        context.deleteDatabase(DB_NAME);
+        dbHelper = new DatabaseHelper(context, new CategoryDictionary(), DB_NAME);
+        userIds = new int[]{
+                (int) dbHelper.signup("totals_a", "secret", "cat"),
+                (int) dbHelper.signup("totals_b", "secret", "dog"),
+        };
+        assertTrue(userIds[0] > 0 && userIds[1] > 0);
+    }
+
+    @After
+    public void tearDown() {
+        dbHelper.close();
+        context.deleteDatabase(DB_NAME);
+    }
+
+    @Test
+    public void randomEdits_keepRollupEqualToGroupBy() {
+        for (long seed : SEEDS) {
+            for (int userId : userIds) {
+                dbHelper.clearExpenses(userId);
+            }
+            assertRollupMatches("seed " + seed + " start");
+
+            Random random = new Random(seed);
+            for (int step = 0; step < STEPS; step++) {
+                String action = applyRandomEdit(random);
+                assertRollupMatches("seed " + seed + ", step " + step + ": " + action);
+            }
+        }
+    }
+
+    @Test
+    public void rebuild_leavesAConsistentRollupUnchanged() {
+        Random random = new Random(7);
+        for (int step = 0; step < 100; step++) {
+            applyRandomEdit(random);
+        }
+        List<String> before = rows(ROLLUP);
+
+        dbHelper.rebuildCategoryTotals();
+
+        assertEquals(before, rows(ROLLUP));
+        assertRollupMatches("after rebuild");
+    }
+
+    /**
+     * Applies one random write through DatabaseHelper and describes it for failure messages.
+     */
+    private String applyRandomEdit(Random random) {
+        int userId = userIds[random.nextInt(userIds.length)];
+        List<DataManager.Expense> expenses = dbHelper.getExpenses(userId);
+        int choice = expenses.isEmpty() ? 0 : random.nextInt(20);
+
+        if (choice < 8) {
+            String category = pick(random, CATEGORIES);
+            long amount = randomAmount(random);
+            String date = pick(random, DATES);
+            long id = dbHelper.addExpense(userId, category, amount, "note", date, "");
+            assertTrue(id > 0);
+            return "insert " + category + " " + amount + " \"" + date + "\" for user " + userId;
+        }
+        if (choice < 9) {
+            List<DataManager.Expense> batch = new ArrayList<>();
+            int size = 1 + random.nextInt(20);
+            for (int i = 0; i < size; i++) {
+                batch.add(new DataManager.Expense(0, pick(random, CATEGORIES), randomAmount(random), "bulk",
+                        pick(random, DATES), "", 0));
+            }
+            assertEquals(size, dbHelper.addExpenses(userId, batch));
+            return "bulk insert of " + size + " for user " + userId;
+        }
+        if (choice < 10) {
+            assertTrue(dbHelper.clearExpenses(userId));
+            return "clear user " + userId;
+        }
+
+        DataManager.Expense expense = expenses.get(random.nextInt(expenses.size()));
+        if (choice < 15) {
+            String category = expense.category;
+            long amount = expense.amountCents;
+            String date = expense.date;
+            switch (random.nextInt(4)) {
+                case 0:
+                    category = pick(random, CATEGORIES);
+                    break;
+                case 1:
+                    amount = randomAmount(random);
+                    break;
+                case 2:
+                    date = pick(random, DATES);
+                    break;
+                default:
+                    category = pick(random, CATEGORIES);
+                    amount = randomAmount(random);
+                    date = pick(random, DATES);
+                    break;
+            }
+            assertTrue(dbHelper.updateExpense(expense.id, category, amount, expense.note, date, expense.imageUri));
+            return "update " + expense.id + " to " + category + " " + amount + " \"" + date + "\"";
+        }
+        assertTrue(dbHelper.deleteExpense(expense.id));
+        return "delete " + expense.id;
+    }
+
+    private void assertRollupMatches(String after) {
+        assertEquals("category_totals differs from the expenses after " + after, rows(EXPECTED), rows(ROLLUP));
+    }
+
+    private List<String> rows(String sql) {
+        SQLiteDatabase db = dbHelper.getReadableDatabase();
+        List<String> rows = new ArrayList<>();
+        try (Cursor cursor = db.rawQuery(sql, null)) {
+            while (cursor.moveToNext()) {
+                rows.add(cursor.getLong(0) + "/" + cursor.getLong(1) + "/" + cursor.getLong(2) + ": " +
+                        cursor.getLong(3) + " in " + cursor.getLong(4));
+            }
+        }
+        return rows;
+    }
+
+    private static long randomAmount(Random random) {
+        return 1 + random.nextInt(100_000);
+    }
+
+    private static String pick(Random random, String[] values) {
+        return values[random.nextInt(values.length)];
+    }
+}
@@ -0,0 +1,139 @@
+package com.example.myapplication;
+
+import android.database.Cursor;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Measures the throughput of a mix of the app's reads and writes on a 10k-expense history with the
+ * connection and its compiled statements kept open, against closing the database after every call
+ * as DatabaseHelper used to. Also counts the reads a second thread completes while expenses are
+ * written, which WAL lets run alongside the writer. Filter logcat by "ConnectionBenchmarkTest" for
+ * the results.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ConnectionBenchmarkTest {
+    private static final String DB_NAME = "connection_benchmark.db";
+    private static final int HISTORY = 10_000;
+    private static final int OPERATIONS = 1_000;
+    private static final int CONCURRENT_WRITES = 500;
+
+    private BenchmarkDatabase database;
+
+    @Before
+    public void setUp() {
+        database = new BenchmarkDatabase(InstrumentationRegistry.getInstrumentation().getTargetContext(), DB_NAME);
+        database.fillTo(HISTORY);
+        assertTrue(database.helper.setBudget(database.userId, "Food", 100_000));
+    }
+
+    @After
+    public void tearDown() {
+        database.close();
+    }
+
+    @Test
+    public void mixedOperations_keptOpen_versusClosedEachCall() {
+        long keptOpenNanos = runMixed(false);
+        long reopenedNanos = runMixed(true);
+
+        assertEquals(sumOfExpenses(), database.helper.getTotalSpentCents(database.userId));
+        Log.d("ConnectionBenchmarkTest", OPERATIONS + " mixed operations: kept open " + perSecond(keptOpenNanos) +
+                " ops/s, closed after each " + perSecond(reopenedNanos) + " ops/s");
+    }
+
+    @Test
+    public void readsContinueWhileWriting() throws InterruptedException {
+        DatabaseHelper helper = database.helper;
+        int userId = database.userId;
+        assertTrue(helper.getWritableDatabase().isWriteAheadLoggingEnabled());
+
+        AtomicBoolean writing = new AtomicBoolean(true);
+        AtomicInteger reads = new AtomicInteger();
+        Thread reader = new Thread(() -> {
+            while (writing.get()) {
+                helper.getTotalSpentCents(userId);
+                reads.incrementAndGet();
+            }
+        });
+        reader.start();
+        long start = System.nanoTime();
+        for (int i = 0; i < CONCURRENT_WRITES; i++) {
+            DataManager.Expense expense = database.newExpense();
+            assertTrue(helper.addExpense(userId, expense.category, expense.amountCents, expense.note, expense.date, "") > 0);
+        }
+        long elapsedNanos = System.nanoTime() - start;
+        writing.set(false);
+        reader.join();
+
+        assertTrue("No read finished during " + CONCURRENT_WRITES + " writes", reads.get() > 0);
+        Log.d("ConnectionBenchmarkTest", CONCURRENT_WRITES + " writes in " + elapsedNanos / 1_000_000 + " ms with " +
+                reads.get() + " reads on another thread meanwhile");
+    }
+
+    /**
+     * Runs OPERATIONS calls cycling through adding, updating and deleting an expense and the reads
+     * done when saving one, optionally closing the database after each call.
+     *
+     * @return Nanoseconds taken
+     */
+    private long runMixed(boolean closeEachCall) {
+        DatabaseHelper helper = database.helper;
+        int userId = database.userId;
+        long lastId = -1;
+        long start = System.nanoTime();
+        for (int i = 0; i < OPERATIONS; i++) {
+            DataManager.Expense expense = database.newExpense();
+            switch (i % 6) {
+                case 0:
+                    lastId = helper.addExpense(userId, expense.category, expense.amountCents, expense.note, expense.date, "");
+                    assertTrue(lastId > 0);
+                    break;
+                case 1:
+                    assertNotNull(helper.getBudget(userId, "Food"));
+                    break;
+                case 2:
+                    assertTrue(helper.updateExpense((int) lastId, expense.category, expense.amountCents, expense.note,
+                            expense.date, ""));
+                    break;
+                case 3:
+                    helper.getCategoryTotalCents(userId, "Food", (int) lastId);
+                    break;
+                case 4:
+                    assertTrue(helper.getTotalSpentCents(userId) > 0);
+                    break;
+                default:
+                    assertTrue(helper.deleteExpense((int) lastId));
+                    break;
+            }
+            if (closeEachCall) {
+                helper.close();
+            }
+        }
+        return System.nanoTime() - start;
+    }
+
+    private long sumOfExpenses() {
+        try (Cursor cursor = database.helper.getReadableDatabase().rawQuery("SELECT TOTAL(amount) FROM expenses" +
+                " WHERE user_id=?", new String[]{String.valueOf(database.userId)})) {
+            assertTrue(cursor.moveToFirst());
+            return cursor.getLong(0);
+        }
+    }
+
+    private static long perSecond(long nanos) {
+        return OPERATIONS * 1_000_000_000L / Math.max(nanos, 1);
+    }
+}
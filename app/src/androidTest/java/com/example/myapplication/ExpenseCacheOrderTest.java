@@ -0,0 +1,144 @@
+package com.example.myapplication;
+
+import android.content.Context;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that ExpenseCache serves the same keyset pages as the database while both go through the
+ * same random adds, edits (category, amount and date) and deletes, the way DataManager writes
+ * through to the cache. Pages continue from expenses of an earlier walk, which may since have been
+ * edited or deleted, as the home list does while scrolling. Seeds are fixed, so a failure names a
+ * reproducible step.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ExpenseCacheOrderTest {
+    private static final String DB_NAME = "expense_cache_order_test.db";
+    private static final long[] SEEDS = {1, 42, 20240101};
+    private static final int STEPS = 150;
+    private static final int PAGE_SIZE = 5;
+    private static final String[] SORT_TYPES = {"date_desc", "date_asc", "amount_desc", "amount_asc",
+            "category_asc", "category_desc"};
+
+    // "Food" and "food" tie under NOCASE; "not a date" is stored with ExpenseDates.UNKNOWN_DAY
+    private static final String[] CATEGORIES = {"Food", "food", "Transport", "Café ☕", "Others"};
+    private static final String[] DATES = {"January 31, 2024", "February 1, 2024", "2024-02-29", "03/01/2024",
+            "Today", "not a date"};
+
+    private Context context;
+    private CategoryDictionary dictionary;
+    private DatabaseHelper dbHelper;
+    private ExpenseCache cache;
+    private int userId;
+
+    @Before
+    public void setUp() {
+        context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        context.deleteDatabase(DB_NAME);
+        dictionary = new CategoryDictionary();
+        dbHelper = new DatabaseHelper(context, dictionary, DB_NAME);
+        userId = (int) dbHelper.signup("cache_order", "secret", "cat");
+        assertTrue(userId > 0);
+        cache = new ExpenseCache(ExpenseCache.DEFAULT_BUDGET_BYTES, dictionary);
+    }
+
+    @After
+    public void tearDown() {
+        dbHelper.close();
+        context.deleteDatabase(DB_NAME);
+    }
+
+    @Test
+    public void randomWrites_cachePagesMatchDatabasePages() {
+        for (long seed : SEEDS) {
+            dbHelper.clearExpenses(userId);
+            cache.clear();
+            Random random = new Random(seed);
+            for (int i = 0; i < 30; i++) {
+                add(random);
+            }
+            cache.put(userId, dbHelper.getExpenses(userId), cache.version());
+            assertTrue(cache.contains(userId));
+            List<DataManager.Expense> lastWalk = new ArrayList<>();
+
+            for (int step = 0; step < STEPS; step++) {
+                String label = "seed " + seed + ", step " + step;
+                List<DataManager.Expense> stored = dbHelper.getExpenses(userId);
+                int operation = random.nextInt(10);
+                if (operation < 4 || stored.isEmpty()) {
+                    add(random);
+                } else if (operation < 8) {
+                    DataManager.Expense expense = stored.get(random.nextInt(stored.size()));
+                    String category = CATEGORIES[random.nextInt(CATEGORIES.length)];
+                    long amountCents = 100L * (1 + random.nextInt(5));
+                    String date = DATES[random.nextInt(DATES.length)];
+                    assertTrue(label, dbHelper.updateExpense(expense.id, category, amountCents, expense.note, date, ""));
+                    cache.onSaved(userId, stored(expense.id, category, amountCents, expense.note, date));
+                } else {
+                    int id = stored.get(random.nextInt(stored.size())).id;
+                    assertTrue(label, dbHelper.deleteExpense(id));
+                    cache.onDeleted(userId, id);
+                }
+
+                for (String sortType : SORT_TYPES) {
+                    DataManager.Expense after = lastWalk.isEmpty() || random.nextInt(4) == 0 ? null
+                            : lastWalk.get(random.nextInt(lastWalk.size()));
+                    lastWalk = walk(label + ", " + sortType, sortType, after);
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads every page after the given expense from both, asserting each pair is identical.
+     */
+    private List<DataManager.Expense> walk(String label, String sortType, DataManager.Expense after) {
+        List<DataManager.Expense> walked = new ArrayList<>();
+        while (true) {
+            List<DataManager.Expense> fromDatabase = dbHelper.getExpensesPage(userId, sortType, after, PAGE_SIZE);
+            List<DataManager.Expense> fromCache = cache.getPage(userId, sortType, after, PAGE_SIZE);
+            assertEquals(label + " after " + (after != null ? after.id : "start"), ids(fromDatabase), ids(fromCache));
+            if (fromDatabase.isEmpty()) {
+                return walked;
+            }
+            walked.addAll(fromCache);
+            after = fromDatabase.get(fromDatabase.size() - 1);
+        }
+    }
+
+    private void add(Random random) {
+        String category = CATEGORIES[random.nextInt(CATEGORIES.length)];
+        long amountCents = 100L * (1 + random.nextInt(5));
+        String date = DATES[random.nextInt(DATES.length)];
+        long id = dbHelper.addExpense(userId, category, amountCents, "note", date, "");
+        assertTrue(id > 0);
+        cache.onSaved(userId, stored((int) id, category, amountCents, "note", date));
+    }
+
+    /**
+     * The expense as DataManager hands it to the cache after a write.
+     */
+    private static DataManager.Expense stored(int id, String category, long amountCents, String note, String date) {
+        return new DataManager.Expense(id, category, amountCents, note, date, "", ExpenseDates.toEpochDay(date));
+    }
+
+    private static List<Integer> ids(List<DataManager.Expense> expenses) {
+        List<Integer> ids = new ArrayList<>(expenses.size());
+        for (DataManager.Expense expense : expenses) {
+            ids.add(expense.id);
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,139 @@
+package com.example.myapplication;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * Times reading a user's whole history at 10k and 100k expenses: DatabaseHelper.getExpenses, which
+ * builds each Expense straight from the cursor, against the JSON round-trip it replaced, where every
+ * row was appended to one JSON string that was then parsed back with org.json. The length of that
+ * string is logged as well, as it was allocated on top of the objects. Filter logcat by
+ * "ExpenseReadBenchmarkTest" for the results.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ExpenseReadBenchmarkTest {
+    private static final String DB_NAME = "read_benchmark.db";
+    private static final int RUNS = 3;
+
+    private BenchmarkDatabase database;
+
+    @Before
+    public void setUp() {
+        database = new BenchmarkDatabase(InstrumentationRegistry.getInstrumentation().getTargetContext(), DB_NAME);
+    }
+
+    @After
+    public void tearDown() {
+        database.close();
+    }
+
+    @Test
+    public void tenThousandExpenses() throws JSONException {
+        compare(10_000);
+    }
+
+    @Test
+    public void oneHundredThousandExpenses() throws JSONException {
+        compare(100_000);
+    }
+
+    private void compare(int rows) throws JSONException {
+        database.fillTo(rows);
+        int userId = database.userId;
+
+        List<DataManager.Expense> fromCursor = null;
+        long cursorNanos = Long.MAX_VALUE;
+        for (int run = 0; run < RUNS; run++) {
+            long start = System.nanoTime();
+            fromCursor = database.helper.getExpenses(userId);
+            cursorNanos = Math.min(cursorNanos, System.nanoTime() - start);
+        }
+
+        List<DataManager.Expense> fromJson = null;
+        int jsonChars = 0;
+        long jsonNanos = Long.MAX_VALUE;
+        for (int run = 0; run < RUNS; run++) {
+            long start = System.nanoTime();
+            String json = readAsJson(userId);
+            fromJson = parseJson(json);
+            jsonNanos = Math.min(jsonNanos, System.nanoTime() - start);
+            jsonChars = json.length();
+        }
+
+        assertEquals(rows, fromCursor.size());
+        assertEquals(rows, fromJson.size());
+        for (int i = 0; i < rows; i++) {
+            DataManager.Expense expected = fromJson.get(i);
+            DataManager.Expense actual = fromCursor.get(i);
+            assertEquals(expected.id, actual.id);
+            assertEquals(expected.category, actual.category);
+            assertEquals(expected.amountCents, actual.amountCents);
+            assertEquals(expected.date, actual.date);
+        }
+        Log.d("ExpenseReadBenchmarkTest", rows + " expenses: cursor " + cursorNanos / 1_000_000 + " ms, JSON " +
+                jsonNanos / 1_000_000 + " ms with a " + jsonChars / 1024 + " K char string");
+    }
+
+    /**
+     * The old DatabaseHelper.getExpenses: every row appended to one JSON array string.
+     */
+    private String readAsJson(int userId) {
+        SQLiteDatabase db = database.helper.getReadableDatabase();
+        Map<Integer, String> categoryNames = new HashMap<>();
+        try (Cursor cursor = db.rawQuery("SELECT id, name FROM categories", null)) {
+            while (cursor.moveToNext()) {
+                categoryNames.put(cursor.getInt(0), cursor.getString(1));
+            }
+        }
+        StringBuilder json = new StringBuilder("[");
+        try (Cursor cursor = db.rawQuery("SELECT id, category_id, amount, note, date, image_uri, date_day FROM expenses" +
+                " WHERE user_id=? ORDER BY id DESC", new String[]{String.valueOf(userId)})) {
+            while (cursor.moveToNext()) {
+                if (json.length() > 1) json.append(",");
+                json.append("{")
+                        .append("\"id\":").append(cursor.getInt(0)).append(",")
+                        .append("\"category\":").append(JSONObject.quote(categoryNames.get(cursor.getInt(1)))).append(",")
+                        .append("\"amount\":").append(cursor.getLong(2)).append(",")
+                        .append("\"note\":").append(JSONObject.quote(cursor.isNull(3) ? "" : cursor.getString(3))).append(",")
+                        .append("\"date\":").append(JSONObject.quote(cursor.isNull(4) ? "" : cursor.getString(4))).append(",")
+                        .append("\"imageUri\":").append(JSONObject.quote(cursor.isNull(5) ? "" : cursor.getString(5))).append(",")
+                        .append("\"dateDay\":").append(cursor.getInt(6))
+                        .append("}");
+            }
+        }
+        return json.append("]").toString();
+    }
+
+    /**
+     * The old DataManager.getExpenses: the JSON string parsed back into Expense objects.
+     */
+    private static List<DataManager.Expense> parseJson(String json) throws JSONException {
+        JSONArray array = new JSONArray(json);
+        List<DataManager.Expense> expenses = new ArrayList<>();
+        for (int i = 0; i < array.length(); i++) {
+            JSONObject obj = array.getJSONObject(i);
+            expenses.add(new DataManager.Expense(obj.getInt("id"), obj.getString("category"), obj.getLong("amount"),
+                    obj.getString("note"), obj.getString("date"), obj.optString("imageUri", ""), obj.getInt("dateDay")));
+        }
+        return expenses;
+    }
+}
@@ -0,0 +1,127 @@
+package com.example.myapplication;
+
+import android.content.Context;
+import android.net.Uri;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+
+import static org.junit.Assert.*;
+
+/**
+ * Times importing a 500k-row bank export into the database, end to end: reading and parsing the file
+ * and writing it in batched transactions. Parsing alone is timed too, so a slowdown can be placed on
+ * either side. Filter logcat by "ImportBenchmarkTest" for the results.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ImportBenchmarkTest {
+    private static final int ROWS = 500_000;
+    private static final int BAD_ROWS = 1_000; // Every 500th row has a bad amount
+
+    private Context context;
+    private DataManager dataManager;
+    private File file;
+    private long expectedTotalCents;
+
+    @Before
+    public void setUp() throws IOException {
+        context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        dataManager = DataManager.getInstance(context);
+        DataManager.SignupResult signup = dataManager.signup("import_bench_" + System.nanoTime(), "secret", "cat");
+        assertTrue(signup.error, signup.success);
+        file = new File(context.getCacheDir(), "import_benchmark.csv");
+        expectedTotalCents = writeBankExport(file);
+    }
+
+    @After
+    public void tearDown() {
+        dataManager.clearExpenses();
+        dataManager.logout();
+        file.delete();
+    }
+
+    @Test
+    public void importsFiveHundredThousandRows() {
+        long start = System.nanoTime();
+        DataManager.ImportResult result = dataManager.importExpenses(Uri.fromFile(file));
+        long elapsedMs = Math.max(1, (System.nanoTime() - start) / 1_000_000);
+
+        assertNull(result.failure, result.failure);
+        assertEquals(ROWS - BAD_ROWS, result.imported);
+        assertEquals(BAD_ROWS, result.rejected);
+        assertEquals(ExpenseImporter.MAX_REPORTED_ERRORS, result.errors.size());
+        assertEquals(expectedTotalCents, dataManager.getTotalSpentCents());
+        Log.d("ImportBenchmarkTest", "Imported " + result.imported + " rows (" + file.length() / 1024 + " KiB) in "
+                + elapsedMs + " ms, " + (result.imported * 1000L / elapsedMs) + " rows/s");
+    }
+
+    @Test
+    public void parsesFiveHundredThousandRows() throws IOException {
+        DataManager.ImportResult result = new DataManager.ImportResult();
+        long start = System.nanoTime();
+        int rows = 0;
+        long totalCents = 0;
+        try (Reader in = new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8)) {
+            ExpenseImporter importer = new ExpenseImporter(new CsvReader(in), result);
+            DataManager.Expense expense;
+            while ((expense = importer.next()) != null) {
+                rows++;
+                totalCents += expense.amountCents;
+            }
+        }
+        long elapsedMs = Math.max(1, (System.nanoTime() - start) / 1_000_000);
+
+        assertEquals(ROWS - BAD_ROWS, rows);
+        assertEquals(BAD_ROWS, result.rejected);
+        assertEquals(expectedTotalCents, totalCents);
+        Log.d("ImportBenchmarkTest", "Parsed " + rows + " rows in " + elapsedMs + " ms, " +
+                (rows * 1000L / elapsedMs) + " rows/s");
+    }
+
+    /**
+     * Writes the export and returns the total of its valid rows.
+     */
+    private static long writeBankExport(File file) throws IOException {
+        long totalCents = 0;
+        try (Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8))) {
+            out.write("\uFEFFPosted Date,Description,Amount,Category\r\n");
+            StringBuilder line = new StringBuilder(96);
+            for (int row = 0; row < ROWS; row++) {
+                int day = row / 4;
+                line.setLength(0);
+                line.append(String.format(Locale.ROOT, "%02d/%02d/%04d",
+                        1 + (day / 28) % 12, 1 + day % 28, 1990 + day / 336));
+                line.append(row % 5 == 0 ? ",\"Grocer, Main St\"," : ",Card purchase " + row + ",");
+                if (row % (ROWS / BAD_ROWS) == ROWS / BAD_ROWS - 1) {
+                    line.append("n/a");
+                } else {
+                    long cents = 100 + (row * 37L) % 50_000;
+                    totalCents += cents;
+                    line.append("\"$");
+                    Money.appendPlain(line, cents).append('"');
+                }
+                line.append(',').append(row % 3 == 0 ? "Food" : "Shopping").append("\r\n");
+                out.append(line);
+            }
+        }
+        return totalCents;
+    }
+}
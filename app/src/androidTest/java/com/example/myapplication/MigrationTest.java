@@ -0,0 +1,284 @@
+package com.example.myapplication;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * Writes a database with the schema of version 4 or 5, when categories were stored by name and amounts
+ * as REAL dollars, then opens it with the current DatabaseHelper and checks that every step up to the
+ * current version kept the data and filled in the columns and tables added since.
+ * The large variants add 100k expenses, about a heavy user's history, and hold every upgrade step to
+ * a time budget. Filter logcat by "MigrationTest" for the step times.
+ */
+@RunWith(AndroidJUnit4.class)
+public class MigrationTest {
+    private static final String DB_NAME = "migration_test.db";
+    private static final String PREFS_NAME = "ExpenseTracker";
+    private static final int ALICE = 1;
+    private static final int BOB = 2;
+    private static final int DELETED_USER = 99;
+
+    // id, user id, category, amount, note, date
+    private static final Object[][] EXPENSES = {
+            {1, ALICE, "Food", 12.5, "Lunch with team", "January 31, 2024"},
+            {2, ALICE, "Transport", 2.75, "École trip—bus ticket", "2024-02-29"},
+            {3, ALICE, "Café ☕", 3.1, "Espresso", "Feb 1, 2024"},
+            {4, BOB, "Food", 0.1 + 0.2, "Rounding check", "03/01/2024"},
+            {5, BOB, "Gym", 40.0, "Membership", "Dec 31, 2023"},
+    };
+    private static final long[] EXPECTED_CENTS = {1250, 275, 310, 30, 4000};
+    private static final int LARGE_ROWS = 100_000;
+    // Longest any single migrateTo() step may take on the large fixtures
+    private static final long MAX_STEP_MILLIS = 10_000;
+
+    private Context context;
+    private DatabaseHelper dbHelper;
+
+    @Before
+    public void setUp() {
+        context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        context.deleteDatabase(DB_NAME);
+        dbHelper = new DatabaseHelper(context, new CategoryDictionary(), DB_NAME);
+    }
+
+    @After
+    public void tearDown() {
+        dbHelper.close();
+        context.deleteDatabase(DB_NAME);
+        context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE).edit()
+                .remove("categories_" + ALICE)
+                .remove("categories_" + DELETED_USER)
+                .commit();
+    }
+
+    @Test
+    public void upgradesFromVersion5() {
+        createLegacyDatabase(5);
+        assertMigrated();
+    }
+
+    @Test
+    public void upgradesFromVersion4() {
+        createLegacyDatabase(4);
+        assertMigrated();
+        SQLiteDatabase db = dbHelper.getReadableDatabase();
+        try (Cursor cursor = db.rawQuery("SELECT COUNT(*) FROM expenses WHERE image_uri IS NOT NULL", null)) {
+            assertTrue(cursor.moveToFirst());
+            assertEquals("Version 4 had no receipt images", 0, cursor.getInt(0));
+        }
+    }
+
+    @Test
+    public void upgradesLargeVersion5Database_withinStepBudget() {
+        upgradeLarge(5);
+    }
+
+    @Test
+    public void upgradesLargeVersion4Database_withinStepBudget() {
+        upgradeLarge(4);
+    }
+
+    private void upgradeLarge(int version) {
+        createLegacyDatabase(version);
+        long largeCents = addLegacyExpenses(LARGE_ROWS);
+
+        // Opening also runs the date_day backfill, which is not part of any step
+        long start = System.nanoTime();
+        SQLiteDatabase db = dbHelper.getWritableDatabase();
+        long openMillis = (System.nanoTime() - start) / 1_000_000;
+
+        Map<Integer, Long> steps = dbHelper.getMigrationMillis();
+        int expectedVersion = version;
+        for (Map.Entry<Integer, Long> step : steps.entrySet()) {
+            assertEquals(++expectedVersion, (int) step.getKey());
+            Log.d("MigrationTest", "Version " + version + " with " + LARGE_ROWS + " expenses, step to " + step.getKey() +
+                    ": " + step.getValue() + " ms");
+            assertTrue("Step to version " + step.getKey() + " took " + step.getValue() + " ms",
+                    step.getValue() <= MAX_STEP_MILLIS);
+        }
+        assertEquals(db.getVersion(), expectedVersion);
+        Log.d("MigrationTest", "Version " + version + " with " + LARGE_ROWS + " expenses, open: " + openMillis + " ms");
+
+        try (Cursor cursor = db.rawQuery("SELECT COUNT(*), SUM(date_day IS NULL), SUM(typeof(amount)<>'integer')" +
+                " FROM expenses", null)) {
+            assertTrue(cursor.moveToFirst());
+            assertEquals(EXPENSES.length + LARGE_ROWS, cursor.getInt(0));
+            assertEquals("Rows without an epoch day", 0, cursor.getInt(1));
+            assertEquals("Rows still in dollars", 0, cursor.getInt(2));
+        }
+        assertEquals(1250 + 275 + 310 + largeCents, dbHelper.getTotalSpentCents(ALICE));
+        assertEquals(rows(db, CategoryTotalsTest.EXPECTED), rows(db, CategoryTotalsTest.ROLLUP));
+        assertEquals(1, dbHelper.searchExpenses(ALICE, "legacy 99999", 10).size());
+    }
+
+    private void assertMigrated() {
+        SQLiteDatabase db = dbHelper.getWritableDatabase();
+
+        // Every expense keeps its id, and gets cents, a category id and an epoch day
+        try (Cursor cursor = db.rawQuery("SELECT e.id, e.user_id, c.name, e.amount, typeof(e.amount), e.note, e.date," +
+                " e.date_day FROM expenses e JOIN categories c ON c.id=e.category_id ORDER BY e.id", null)) {
+            assertEquals(EXPENSES.length, cursor.getCount());
+            for (int i = 0; i < EXPENSES.length; i++) {
+                Object[] expense = EXPENSES[i];
+                assertTrue(cursor.moveToNext());
+                assertEquals(expense[0], cursor.getInt(0));
+                assertEquals(expense[1], cursor.getInt(1));
+                assertEquals(expense[2], cursor.getString(2));
+                assertEquals(EXPECTED_CENTS[i], cursor.getLong(3));
+                assertEquals("integer", cursor.getString(4));
+                assertEquals(expense[4], cursor.getString(5));
+                assertEquals(expense[5], cursor.getString(6));
+                assertFalse(cursor.isNull(7));
+                assertEquals(ExpenseDates.toEpochDay((String) expense[5]), cursor.getInt(7));
+            }
+        }
+
+        // Budgets are keyed by category id and hold cents; Travel was only used by a budget
+        List<DataManager.Budget> budgets = dbHelper.getBudgets(BOB);
+        assertEquals(1, budgets.size());
+        assertEquals("Travel", budgets.get(0).category);
+        assertEquals(9999, budgets.get(0).limitCents);
+        assertEquals(20000, dbHelper.getBudget(ALICE, "Food").limitCents);
+
+        assertEquals(rows(db, CategoryTotalsTest.EXPECTED), rows(db, CategoryTotalsTest.ROLLUP));
+        assertEquals(1250 + 275 + 310, dbHelper.getTotalSpentCents(ALICE));
+
+        // Search finds notes and category names through the rebuilt index, only ever for their owner
+        assertEquals(Arrays.asList(3), ids(dbHelper.searchExpenses(ALICE, "espresso", 10)));
+        assertEquals(Arrays.asList(2), ids(dbHelper.searchExpenses(ALICE, "transport", 10)));
+        assertEquals(Arrays.asList(5), ids(dbHelper.searchExpenses(BOB, "membership", 10)));
+        assertTrue(dbHelper.searchExpenses(ALICE, "membership", 10).isEmpty());
+        // Words split and lowercase as in HomeFragment.matchesSearch(): accents are kept, a dash separates
+        assertEquals(Arrays.asList(2), ids(dbHelper.searchExpenses(ALICE, "école", 10)));
+        assertEquals(Arrays.asList(2), ids(dbHelper.searchExpenses(ALICE, "bus", 10)));
+        assertTrue(dbHelper.searchExpenses(ALICE, "ecole", 10).isEmpty());
+        assertEquals(275, dbHelper.getSearchTotalCents(ALICE, "ÉCOLE TRIP"));
+
+        // Saved category lists become user_categories rows; the deleted user's list is dropped
+        assertEquals(Arrays.asList("Food", "Transport", "Café ☕", "Books"), dbHelper.getUserCategories(ALICE));
+        try (Cursor cursor = db.rawQuery("SELECT COUNT(*) FROM user_categories WHERE user_id=?",
+                new String[]{String.valueOf(DELETED_USER)})) {
+            assertTrue(cursor.moveToFirst());
+            assertEquals(0, cursor.getInt(0));
+        }
+
+        // Writes after the upgrade keep the rollup and search index in step, and never reuse a deleted id
+        long id = dbHelper.addExpense(ALICE, "Books", 1999, "Paperback", "March 2, 2024", "");
+        assertTrue("Id " + id + " was used before the upgrade", id > 6);
+        assertEquals(Arrays.asList((int) id), ids(dbHelper.searchExpenses(ALICE, "paperback", 10)));
+        assertEquals(rows(db, CategoryTotalsTest.EXPECTED), rows(db, CategoryTotalsTest.ROLLUP));
+    }
+
+    /**
+     * Creates the database as the app wrote it at the given version, before DatabaseHelper first opens it.
+     * Version 5 added the image_uri column to version 4's tables.
+     */
+    private void createLegacyDatabase(int version) {
+        SQLiteDatabase db = SQLiteDatabase.openOrCreateDatabase(context.getDatabasePath(DB_NAME), null);
+        try {
+            db.execSQL("CREATE TABLE users (id INTEGER PRIMARY KEY AUTOINCREMENT, username TEXT UNIQUE NOT NULL," +
+                    " password_hash TEXT NOT NULL, pet_hash TEXT NOT NULL)");
+            db.execSQL("CREATE TABLE expenses (id INTEGER PRIMARY KEY AUTOINCREMENT, user_id INTEGER NOT NULL," +
+                    " category TEXT NOT NULL, amount REAL NOT NULL, note TEXT, date TEXT," +
+                    (version >= 5 ? " image_uri TEXT," : "") +
+                    " FOREIGN KEY(user_id) REFERENCES users(id))");
+            db.execSQL("CREATE TABLE budgets (user_id INTEGER NOT NULL, category TEXT NOT NULL, limit_amount REAL NOT NULL," +
+                    " PRIMARY KEY(user_id, category), FOREIGN KEY(user_id) REFERENCES users(id))");
+
+            db.execSQL("INSERT INTO users (id, username, password_hash, pet_hash) VALUES (?, 'alice', 'x', 'x')",
+                    new Object[]{ALICE});
+            db.execSQL("INSERT INTO users (id, username, password_hash, pet_hash) VALUES (?, 'bob', 'x', 'x')",
+                    new Object[]{BOB});
+            for (Object[] expense : EXPENSES) {
+                db.execSQL("INSERT INTO expenses (id, user_id, category, amount, note, date) VALUES (?, ?, ?, ?, ?, ?)",
+                        expense);
+            }
+            // A deleted expense, so the id sequence is ahead of the highest id in the table
+            db.execSQL("INSERT INTO expenses (id, user_id, category, amount, note, date) VALUES (6, 1, 'Food', 1.0, 'gone', '')");
+            db.execSQL("DELETE FROM expenses WHERE id=6");
+            db.execSQL("INSERT INTO budgets (user_id, category, limit_amount) VALUES (?, 'Food', 200.0)", new Object[]{ALICE});
+            db.execSQL("INSERT INTO budgets (user_id, category, limit_amount) VALUES (?, 'Travel', 99.99)", new Object[]{BOB});
+            db.setVersion(version);
+        } finally {
+            db.close();
+        }
+
+        SharedPreferences prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        assertTrue(prefs.edit()
+                .putString("categories_" + ALICE, "[\"Food\",\"Transport\",\"Café ☕\",\"Books\"]")
+                .putString("categories_" + DELETED_USER, "[\"Food\"]")
+                .commit());
+    }
+
+    /**
+     * Adds expenses for ALICE to the legacy database, cycling through the fixture's categories and
+     * date formats.
+     *
+     * @return Total of the added amounts in cents
+     */
+    private long addLegacyExpenses(int count) {
+        long totalCents = 0;
+        SQLiteDatabase db = SQLiteDatabase.openDatabase(context.getDatabasePath(DB_NAME).getPath(), null,
+                SQLiteDatabase.OPEN_READWRITE);
+        try {
+            db.beginTransaction();
+            try (SQLiteStatement insert = db.compileStatement(
+                    "INSERT INTO expenses (user_id, category, amount, note, date) VALUES (?, ?, ?, ?, ?)")) {
+                for (int i = 0; i < count; i++) {
+                    long cents = 1 + i % 50_000;
+                    insert.bindLong(1, ALICE);
+                    insert.bindString(2, (String) EXPENSES[i % 3][2]);
+                    insert.bindDouble(3, cents / 100.0);
+                    insert.bindString(4, "Legacy " + i);
+                    insert.bindString(5, (String) EXPENSES[i % EXPENSES.length][5]);
+                    insert.executeInsert();
+                    totalCents += cents;
+                }
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
+        } finally {
+            db.close();
+        }
+        return totalCents;
+    }
+
+    private static List<Integer> ids(List<DataManager.Expense> expenses) {
+        List<Integer> ids = new ArrayList<>();
+        for (DataManager.Expense expense : expenses) {
+            ids.add(expense.id);
+        }
+        return ids;
+    }
+
+    private static List<String> rows(SQLiteDatabase db, String sql) {
+        List<String> rows = new ArrayList<>();
+        try (Cursor cursor = db.rawQuery(sql, null)) {
+            while (cursor.moveToNext()) {
+                rows.add(cursor.getLong(0) + "/" + cursor.getLong(1) + "/" + cursor.getLong(2) + ": " +
+                        cursor.getLong(3) + " in " + cursor.getLong(4));
+            }
+        }
+        return rows;
+    }
+}
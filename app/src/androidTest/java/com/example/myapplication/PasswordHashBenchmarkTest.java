@@ -0,0 +1,72 @@
+package com.example.myapplication;
+
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.*;
+
+/**
+ * Times one PBKDF2 hash at a range of iteration counts on the device, and a hash and a check at the
+ * count PasswordHasher calibrated, so login can be kept within its latency budget. A check against a
+ * stored hash of a given cost derives one hash at that cost, which is what is timed. Filter logcat by
+ * "PasswordHashBenchmarkTest" for the results.
+ */
+@RunWith(AndroidJUnit4.class)
+public class PasswordHashBenchmarkTest {
+    private static final int[] ITERATION_COUNTS = {PasswordHasher.MIN_ITERATIONS, 50_000, 100_000, 250_000, 500_000,
+            PasswordHasher.MAX_ITERATIONS};
+    // 16 bytes of salt and a 20-byte hash that no password produces
+    private static final String SALT_HEX = "000102030405060708090a0b0c0d0e0f";
+    private static final String HASH_HEX = "0000000000000000000000000000000000000000";
+    private static final int RUNS = 3;
+
+    private PasswordHasher hasher;
+
+    @Before
+    public void setUp() {
+        hasher = new PasswordHasher(InstrumentationRegistry.getInstrumentation().getTargetContext());
+    }
+
+    @Test
+    public void hashTime_acrossIterationCounts() {
+        long previousMillis = 0;
+        for (int iterations : ITERATION_COUNTS) {
+            String stored = "pbkdf2_sha1$" + iterations + "$" + SALT_HEX + "$" + HASH_HEX;
+            long bestNanos = Long.MAX_VALUE;
+            for (int run = 0; run < RUNS; run++) {
+                long start = System.nanoTime();
+                assertFalse(hasher.verify("password", stored));
+                bestNanos = Math.min(bestNanos, System.nanoTime() - start);
+            }
+            long millis = bestNanos / 1_000_000;
+            // The cost is linear in the iteration count
+            assertTrue(iterations + " iterations took " + millis + " ms, fewer took " + previousMillis + " ms",
+                    millis >= previousMillis / 2);
+            previousMillis = millis;
+            Log.d("PasswordHashBenchmarkTest", iterations + " iterations: " + millis + " ms");
+        }
+    }
+
+    @Test
+    public void calibratedCost_hashAndCheck() {
+        int iterations = hasher.getIterations();
+        assertTrue(iterations >= PasswordHasher.MIN_ITERATIONS && iterations <= PasswordHasher.MAX_ITERATIONS);
+
+        long start = System.nanoTime();
+        String stored = hasher.hash("password");
+        long hashMillis = (System.nanoTime() - start) / 1_000_000;
+        start = System.nanoTime();
+        assertTrue(hasher.verify("password", stored));
+        long verifyMillis = (System.nanoTime() - start) / 1_000_000;
+
+        assertFalse(hasher.needsRehash(stored));
+        Log.d("PasswordHashBenchmarkTest", "Calibrated " + iterations + " iterations for a " + PasswordHasher.TARGET_MILLIS +
+                " ms target: hash " + hashMillis + " ms, check " + verifyMillis + " ms");
+    }
+}
@@ -0,0 +1,91 @@
+package com.example.myapplication;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Runs EXPLAIN QUERY PLAN on every query in DatabaseHelper.HOT_QUERIES against the current schema
+ * and fails if any of them reads a whole table or sorts its rows after reading them.
+ */
+@RunWith(AndroidJUnit4.class)
+public class QueryPlanTest {
+    private static final String DB_NAME = "query_plan_test.db";
+    // Sorting by category deliberately walks the small categories table in name order
+    private static final String CATEGORY_NAME_INDEX = "idx_categories_name_nocase";
+
+    private Context context;
+    private DatabaseHelper dbHelper;
+
+    @Before
+    public void setUp() {
+        context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        context.deleteDatabase(DB_NAME);
+        dbHelper = new DatabaseHelper(context, new CategoryDictionary(), DB_NAME);
+    }
+
+    @After
+    public void tearDown() {
+        dbHelper.close();
+        context.deleteDatabase(DB_NAME);
+    }
+
+    @Test
+    public void everyHotQuery_searchesAnIndex() {
+        SQLiteDatabase db = dbHelper.getReadableDatabase();
+        List<String> failures = new ArrayList<>();
+        for (String[] query : DatabaseHelper.HOT_QUERIES) {
+            String[] args = Arrays.copyOfRange(query, 1, query.length);
+            List<String> plan = explain(db, query[0], args);
+            assertFalse("No plan for: " + query[0], plan.isEmpty());
+            for (String detail : plan) {
+                if (!isIndexed(detail)) {
+                    failures.add(detail + "\n    in: " + query[0]);
+                }
+            }
+        }
+        assertTrue("Hot queries not served by an index:\n" + String.join("\n", failures), failures.isEmpty());
+    }
+
+    /**
+     * A plan step is fine if it searches a table through an index or its primary key, e.g.
+     * "SEARCH e USING COVERING INDEX idx_expenses_user_date (user_id=?)". A SCAN reads the whole
+     * table, and a temp B-tree means the rows are sorted after reading.
+     */
+    private static boolean isIndexed(String detail) {
+        if (detail.contains("TEMP B-TREE")) {
+            return false;
+        }
+        if (detail.startsWith("SCAN")) {
+            return detail.contains(CATEGORY_NAME_INDEX);
+        }
+        return detail.startsWith("SEARCH") && (detail.contains(" USING INDEX ") ||
+                detail.contains(" USING COVERING INDEX ") || detail.contains(" USING INTEGER PRIMARY KEY ") ||
+                detail.contains(" USING PRIMARY KEY "));
+    }
+
+    private static List<String> explain(SQLiteDatabase db, String sql, String[] args) {
+        List<String> details = new ArrayList<>();
+        try (Cursor plan = db.rawQuery("EXPLAIN QUERY PLAN " + sql, args)) {
+            int detailColumn = plan.getColumnIndexOrThrow("detail");
+            while (plan.moveToNext()) {
+                details.add(plan.getString(detailColumn));
+            }
+        }
+        return details;
+    }
+}
@@ -0,0 +1,115 @@
+package com.example.myapplication;
+
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+/**
+ * Times searches at 10k and 100k expenses, with a second user holding as many expenses again, so
+ * the index is shared the way it is on a device with several accounts. A rare query must cost the
+ * same at both sizes, and a query matching every expense is bounded by the ranked candidates.
+ * Results must belong to the searching user and agree with a scan of their notes.
+ * Filter logcat by "SearchBenchmarkTest" for the results.
+ */
+@RunWith(AndroidJUnit4.class)
+public class SearchBenchmarkTest {
+    private static final String DB_NAME = "search_benchmark.db";
+    private static final int LIMIT = 200;
+    private static final int FILL_BATCH_SIZE = 10_000;
+
+    private BenchmarkDatabase database;
+    private int otherUserId;
+
+    @Before
+    public void setUp() {
+        database = new BenchmarkDatabase(InstrumentationRegistry.getInstrumentation().getTargetContext(), DB_NAME);
+        otherUserId = (int) database.helper.signup("other", "secret", "dog");
+        assertTrue(otherUserId > 0);
+    }
+
+    @After
+    public void tearDown() {
+        database.close();
+    }
+
+    @Test
+    public void tenThousandExpenses() {
+        search(10_000);
+    }
+
+    @Test
+    public void oneHundredThousandExpenses() {
+        search(100_000);
+    }
+
+    private void search(int rows) {
+        database.fillTo(rows);
+        for (int added = 0; added < rows; added += FILL_BATCH_SIZE) {
+            database.helper.addExpenses(otherUserId, database.newExpenses(Math.min(FILL_BATCH_SIZE, rows - added)));
+        }
+        List<DataManager.Expense> history = database.helper.getExpenses(database.userId);
+        Set<Integer> ownIds = new HashSet<>();
+        for (DataManager.Expense expense : history) {
+            ownIds.add(expense.id);
+        }
+
+        // Notes are "Card purchase <n>" with n below 10,000, so "4242" matches about one in 10,000
+        time(rows, "purchase 4242", history, ownIds);
+        time(rows, "food", history, ownIds);
+        time(rows, "card", history, ownIds);
+    }
+
+    private void time(int rows, String query, List<DataManager.Expense> history, Set<Integer> ownIds) {
+        long start = System.nanoTime();
+        List<DataManager.Expense> results = database.helper.searchExpenses(database.userId, query, LIMIT);
+        long searchNanos = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        long totalCents = database.helper.getSearchTotalCents(database.userId, query);
+        long totalNanos = System.nanoTime() - start;
+
+        int expectedCount = 0;
+        long expectedCents = 0;
+        for (DataManager.Expense expense : history) {
+            if (matches(expense, query)) {
+                expectedCount++;
+                expectedCents += expense.amountCents;
+            }
+        }
+        assertEquals(query, Math.min(expectedCount, LIMIT), results.size());
+        assertEquals(query, expectedCents, totalCents);
+        for (DataManager.Expense expense : results) {
+            assertTrue(query + " found expense " + expense.id + " of another user", ownIds.contains(expense.id));
+            assertTrue(query + " found " + expense.note, matches(expense, query));
+        }
+        Log.d("SearchBenchmarkTest", rows + " expenses per user, \"" + query + "\" (" + expectedCount + " matches): search " +
+                searchNanos / 1_000_000 + " ms, total " + totalNanos / 1_000_000 + " ms");
+    }
+
+    /**
+     * Whether every word of the query starts a word of the note or the category, which is all the
+     * benchmark queries can match.
+     */
+    private static boolean matches(DataManager.Expense expense, String query) {
+        String text = " " + (expense.note + " " + expense.category).toLowerCase(Locale.ROOT);
+        for (String word : query.split(" ")) {
+            if (!text.contains(" " + word)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
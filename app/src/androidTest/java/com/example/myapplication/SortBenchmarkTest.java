@@ -0,0 +1,140 @@
+package com.example.myapplication;
+
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+
+import static org.junit.Assert.*;
+
+/**
+ * Times every sort order of the expense list at 10k and 100k expenses: DatabaseHelper reading the
+ * rows in order through an index, against reading them newest first and sorting a copy with the
+ * comparators HomeFragment used, which parsed both dates with new SimpleDateFormats on every
+ * comparison. Both must give the same order of sort keys. The old date sorts take minutes at 100k.
+ * Filter logcat by "SortBenchmarkTest" for the results.
+ */
+@RunWith(AndroidJUnit4.class)
+public class SortBenchmarkTest {
+    private static final String DB_NAME = "sort_benchmark.db";
+    private static final String[] SORT_TYPES = {"date_desc", "date_asc", "amount_desc", "amount_asc",
+            "category_asc", "category_desc"};
+
+    private BenchmarkDatabase database;
+
+    @Before
+    public void setUp() {
+        database = new BenchmarkDatabase(InstrumentationRegistry.getInstrumentation().getTargetContext(), DB_NAME);
+    }
+
+    @After
+    public void tearDown() {
+        database.close();
+    }
+
+    @Test
+    public void tenThousandExpenses() {
+        compare(10_000);
+    }
+
+    @Test
+    public void oneHundredThousandExpenses() {
+        compare(100_000);
+    }
+
+    private void compare(int rows) {
+        database.fillTo(rows);
+        for (String sortType : SORT_TYPES) {
+            long start = System.nanoTime();
+            List<DataManager.Expense> fromSql = database.helper.getExpenses(database.userId, sortType);
+            long sqlNanos = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            List<DataManager.Expense> sorted = new ArrayList<>(database.helper.getExpenses(database.userId));
+            Collections.sort(sorted, comparator(sortType));
+            long comparatorNanos = System.nanoTime() - start;
+
+            assertEquals(rows, fromSql.size());
+            assertEquals(sortType, keys(sorted, sortType), keys(fromSql, sortType));
+            Log.d("SortBenchmarkTest", rows + " expenses, " + sortType + ": SQL " + sqlNanos / 1_000_000 +
+                    " ms, read and sort " + comparatorNanos / 1_000_000 + " ms");
+        }
+    }
+
+    /**
+     * The comparators of the old HomeFragment.sortExpenses.
+     */
+    private static Comparator<DataManager.Expense> comparator(String sortType) {
+        switch (sortType) {
+            case "date_asc":
+                return (e1, e2) -> compareDates(e1, e2, false);
+            case "amount_desc":
+                return (e1, e2) -> Long.compare(e2.amountCents, e1.amountCents);
+            case "amount_asc":
+                return (e1, e2) -> Long.compare(e1.amountCents, e2.amountCents);
+            case "category_asc":
+                return (e1, e2) -> e1.category.compareToIgnoreCase(e2.category);
+            case "category_desc":
+                return (e1, e2) -> e2.category.compareToIgnoreCase(e1.category);
+            default:
+                return (e1, e2) -> compareDates(e1, e2, true);
+        }
+    }
+
+    private static int compareDates(DataManager.Expense e1, DataManager.Expense e2, boolean newestFirst) {
+        Date d1 = parseDate(e1.date);
+        Date d2 = parseDate(e2.date);
+        if (d1 == null && d2 == null) return 0;
+        if (d1 == null) return 1;
+        if (d2 == null) return -1;
+        return newestFirst ? d2.compareTo(d1) : d1.compareTo(d2);
+    }
+
+    private static Date parseDate(String dateStr) {
+        SimpleDateFormat[] formats = {
+                new SimpleDateFormat("MMMM d, yyyy", Locale.getDefault()),
+                new SimpleDateFormat("MMM d, yyyy", Locale.getDefault()),
+                new SimpleDateFormat("yyyy-MM-dd", Locale.getDefault()),
+                new SimpleDateFormat("MM/dd/yyyy", Locale.getDefault())
+        };
+        for (SimpleDateFormat format : formats) {
+            try {
+                return format.parse(dateStr);
+            } catch (ParseException e) {
+                // Try next format
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the values a sort type orders by; ties may come in any order, so ids are not compared.
+     */
+    private static List<String> keys(List<DataManager.Expense> expenses, String sortType) {
+        List<String> keys = new ArrayList<>(expenses.size());
+        for (DataManager.Expense expense : expenses) {
+            if (sortType.startsWith("amount")) {
+                keys.add(String.valueOf(expense.amountCents));
+            } else if (sortType.startsWith("category")) {
+                keys.add(expense.category.toLowerCase(Locale.ROOT));
+            } else {
+                keys.add(String.valueOf(expense.dateDay));
+            }
+        }
+        return keys;
+    }
+}
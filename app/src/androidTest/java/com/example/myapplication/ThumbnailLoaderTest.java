@@ -0,0 +1,179 @@
+package com.example.myapplication;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Color;
+import android.net.Uri;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks where ThumbnailLoader serves a thumbnail from and what it counts. Decodes run only when
+ * the test runs the queued executor, so a request can be cancelled before its decode starts.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ThumbnailLoaderTest {
+    private static final int SIZE_PX = 48;
+
+    private Context context;
+    private File diskDir;
+    private File image;
+    private String uri;
+    private QueuedExecutor decodes;
+    private ThumbnailLoader loader;
+
+    @Before
+    public void setUp() throws IOException {
+        context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        diskDir = new File(context.getCacheDir(), "thumbnail_loader_test");
+        deleteAll(diskDir);
+        image = new File(context.getCacheDir(), "thumbnail_loader_test.png");
+        Bitmap bitmap = Bitmap.createBitmap(400, 300, Bitmap.Config.ARGB_8888);
+        bitmap.eraseColor(Color.RED);
+        try (FileOutputStream out = new FileOutputStream(image)) {
+            assertTrue(bitmap.compress(Bitmap.CompressFormat.PNG, 100, out));
+        }
+        uri = Uri.fromFile(image).toString();
+        decodes = new QueuedExecutor();
+        loader = new ThumbnailLoader(context, diskDir, decodes);
+    }
+
+    @After
+    public void tearDown() {
+        deleteAll(diskDir);
+        image.delete();
+    }
+
+    @Test
+    public void secondLoad_isServedFromMemoryBeforeReturning() {
+        List<Bitmap> first = load(loader, uri);
+        assertEquals(1, first.size());
+        assertNotNull(first.get(0));
+        assertEquals(1, loader.getDecodeCount());
+
+        List<Bitmap> second = new ArrayList<>();
+        loader.load(uri, SIZE_PX, second::add);
+
+        assertEquals("Delivered without a decode task", 0, decodes.tasks.size());
+        assertEquals(1, second.size());
+        assertSame(first.get(0), second.get(0));
+        assertEquals(1, loader.getMemoryHitCount());
+        assertEquals(0.5f, loader.getHitRate(), 0f);
+    }
+
+    @Test
+    public void newLoader_readsThumbnailFromDisk() {
+        load(loader, uri);
+        ThumbnailLoader restarted = new ThumbnailLoader(context, diskDir, decodes);
+
+        List<Bitmap> results = load(restarted, uri);
+
+        assertNotNull(results.get(0));
+        assertEquals(1, restarted.getDiskHitCount());
+        assertEquals(0, restarted.getDecodeCount());
+        assertEquals(1f, restarted.getHitRate(), 0f);
+    }
+
+    @Test
+    public void differentSize_isADifferentThumbnail() {
+        load(loader, uri);
+        List<Bitmap> results = new ArrayList<>();
+        loader.load(uri, SIZE_PX * 2, results::add);
+        decodes.runAll();
+        InstrumentationRegistry.getInstrumentation().waitForIdleSync();
+
+        assertEquals(2, loader.getDecodeCount());
+        assertEquals(0, loader.getMemoryHitCount());
+    }
+
+    @Test
+    public void cancelBeforeDecode_skipsDecodeAndCallback() {
+        List<Bitmap> results = new ArrayList<>();
+        DataManager.Request request = loader.load(uri, SIZE_PX, results::add);
+        request.cancel();
+        decodes.runAll();
+        InstrumentationRegistry.getInstrumentation().waitForIdleSync();
+
+        assertTrue(results.isEmpty());
+        assertEquals(0, loader.getDecodeCount());
+        assertEquals(0, loader.getFailureCount());
+        assertEquals(0f, loader.getHitRate(), 0f);
+    }
+
+    @Test
+    public void failedImage_isNotRetriedUntilMemoryIsCleared() {
+        String missing = Uri.fromFile(new File(context.getCacheDir(), "missing.png")).toString();
+        List<Bitmap> first = load(loader, missing);
+        assertEquals(1, first.size());
+        assertNull(first.get(0));
+        assertEquals(1, loader.getFailureCount());
+
+        List<Bitmap> second = new ArrayList<>();
+        loader.load(missing, SIZE_PX, second::add);
+        assertEquals("Answered without a decode task", 0, decodes.tasks.size());
+        assertEquals(1, second.size());
+        assertNull(second.get(0));
+        assertEquals(1, loader.getFailureCount());
+
+        loader.clearMemoryCache();
+        load(loader, missing);
+        assertEquals(2, loader.getFailureCount());
+    }
+
+    /**
+     * Loads a thumbnail through the queued decode and waits for its delivery on the main thread.
+     */
+    private List<Bitmap> load(ThumbnailLoader thumbnailLoader, String imageUri) {
+        List<Bitmap> results = new ArrayList<>();
+        thumbnailLoader.load(imageUri, SIZE_PX, results::add);
+        decodes.runAll();
+        InstrumentationRegistry.getInstrumentation().waitForIdleSync();
+        return results;
+    }
+
+    private static void deleteAll(File dir) {
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        dir.delete();
+    }
+
+    /**
+     * Executor that queues tasks until the test runs them on its own thread.
+     */
+    private static final class QueuedExecutor implements Executor {
+        final Queue<Runnable> tasks = new ArrayDeque<>();
+
+        @Override
+        public void execute(Runnable task) {
+            tasks.add(task);
+        }
+
+        void runAll() {
+            Runnable task;
+            while ((task = tasks.poll()) != null) {
+                task.run();
+            }
+        }
+    }
+}
@@ -18,10 +18,8 @@ import com.google.android.material.button.MaterialButton;
 import com.google.android.material.textfield.TextInputEditText;
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
-import java.util.Map;
 
 public class AnalyticsFragment extends Fragment {
     private RecyclerView rvCategoryBreakdown;
@@ -31,8 +29,13 @@ public class AnalyticsFragment extends Fragment {
     private DataManager dataManager;
     private CategoryBreakdownAdapter adapter;
     private List<CategoryBreakdownAdapter.CategoryBreakdown> allBreakdowns;
+    private List<CategoryBreakdownAdapter.CategoryBreakdown> filteredBreakdowns;
+    private SearchPipeline<CategoryBreakdownAdapter.CategoryBreakdown> searchPipeline;
     private String currentSortType = "amount_desc"; // Default: highest amount first
     private String searchQuery = "";
+    private List<DataManager.CategoryTotal> categoryTotals;
+    private DataManager.Request loadRequest; // In-flight totals load, cancelled when superseded or destroyed
+    private long loadedVersion = -1; // DataManager.getDataVersion() when the totals were last loaded
 
     @Nullable
     @Override
@@ -51,7 +54,20 @@ public class AnalyticsFragment extends Fragment {
         etSearch = view.findViewById(R.id.etSearchAnalytics);
         btnSort = view.findViewById(R.id.btnSortAnalytics);
 
-        // Setup search
+        // Setup search: filtering runs in memory, but still through the pipeline so fast typing
+        // is debounced and a longer query only re-checks the breakdowns that already matched
+        searchPipeline = new SearchPipeline<>("AnalyticsFragment", SearchPipeline.DEFAULT_DEBOUNCE_MS, Integer.MAX_VALUE,
+                (query, callback) -> {
+                    if (allBreakdowns != null) {
+                        callback.onResult(filterBreakdowns(allBreakdowns, query));
+                    }
+                    return null; // Runs synchronously, nothing to cancel
+                },
+                AnalyticsFragment::matchesBreakdown,
+                (query, results) -> {
+                    filteredBreakdowns = results;
+                    showBreakdowns();
+                });
         etSearch.addTextChangedListener(new TextWatcher() {
             @Override
             public void beforeTextChanged(CharSequence s, int start, int count, int after) {}
@@ -59,7 +75,7 @@ public class AnalyticsFragment extends Fragment {
             @Override
             public void onTextChanged(CharSequence s, int start, int before, int count) {
                 searchQuery = s.toString().toLowerCase().trim();
-                loadAnalytics();
+                searchPipeline.setQuery(searchQuery);
             }
 
             @Override
@@ -73,30 +89,48 @@ public class AnalyticsFragment extends Fragment {
     }
 
     private void loadAnalytics() {
-        List<DataManager.Expense> expenses = dataManager.getExpenses();
-        
-        double total = 0;
-        Map<String, Double> categoryTotals = new HashMap<>();
-        
-        for (DataManager.Expense expense : expenses) {
-            total += expense.amount;
-            categoryTotals.put(expense.category, 
-                categoryTotals.getOrDefault(expense.category, 0.0) + expense.amount);
+        if (loadRequest != null) {
+            loadRequest.cancel();
+        }
+        loadedVersion = dataManager.getDataVersion();
+        // One row per category from the rollup table, already summed by the database
+        loadRequest = dataManager.getCategoryTotalsAsync(totals -> {
+            categoryTotals = totals;
+            showAnalytics();
+        });
+    }
+
+    private void showAnalytics() {
+        if (categoryTotals == null) {
+            return; // First load has not finished yet
+        }
+
+        long totalCents = 0;
+        int transactionCount = 0;
+        for (DataManager.CategoryTotal categoryTotal : categoryTotals) {
+            totalCents += categoryTotal.totalCents;
+            transactionCount += categoryTotal.count;
         }
 
-        tvTotalExpenses.setText(String.format(Locale.getDefault(), "$%.2f", total));
-        tvTransactionCount.setText(expenses.size() + " transactions");
+        tvTotalExpenses.setText(Money.formatCurrency(totalCents));
+        tvTransactionCount.setText(transactionCount + " transactions");
 
         // Create category breakdown list
         allBreakdowns = new ArrayList<>();
-        for (Map.Entry<String, Double> entry : categoryTotals.entrySet()) {
-            double percentage = total > 0 ? (entry.getValue() / total) * 100 : 0;
-            allBreakdowns.add(new CategoryBreakdownAdapter.CategoryBreakdown(entry.getKey(), entry.getValue(), percentage));
+        for (DataManager.CategoryTotal categoryTotal : categoryTotals) {
+            double percentage = totalCents > 0 ? categoryTotal.totalCents * 100.0 / totalCents : 0;
+            allBreakdowns.add(new CategoryBreakdownAdapter.CategoryBreakdown(categoryTotal.category, categoryTotal.totalCents, percentage));
+        }
+
+        // Filter breakdowns based on search query; the pipeline calls showBreakdowns() with the result
+        searchPipeline.refresh(searchQuery);
+    }
+
+    private void showBreakdowns() {
+        if (filteredBreakdowns == null) {
+            return;
         }
 
-        // Filter breakdowns based on search query
-        List<CategoryBreakdownAdapter.CategoryBreakdown> filteredBreakdowns = filterBreakdowns(allBreakdowns);
-        
         // Sort breakdowns
         List<CategoryBreakdownAdapter.CategoryBreakdown> sortedBreakdowns = sortBreakdowns(filteredBreakdowns);
 
@@ -111,34 +145,36 @@ public class AnalyticsFragment extends Fragment {
         }
     }
 
-    private List<CategoryBreakdownAdapter.CategoryBreakdown> filterBreakdowns(List<CategoryBreakdownAdapter.CategoryBreakdown> breakdowns) {
-        if (searchQuery.isEmpty()) {
+    private static List<CategoryBreakdownAdapter.CategoryBreakdown> filterBreakdowns(List<CategoryBreakdownAdapter.CategoryBreakdown> breakdowns, String query) {
+        if (query.isEmpty()) {
             return new ArrayList<>(breakdowns);
         }
 
         List<CategoryBreakdownAdapter.CategoryBreakdown> filtered = new ArrayList<>();
         for (CategoryBreakdownAdapter.CategoryBreakdown breakdown : breakdowns) {
-            // Search in category name, amount, and percentage
-            if (breakdown.category != null && breakdown.category.toLowerCase().contains(searchQuery)) {
-                filtered.add(breakdown);
-            } else if (String.format(Locale.getDefault(), "%.2f", breakdown.amount).contains(searchQuery)) {
-                filtered.add(breakdown);
-            } else if (String.format(Locale.getDefault(), "%.1f", breakdown.percentage).contains(searchQuery)) {
+            if (matchesBreakdown(breakdown, query)) {
                 filtered.add(breakdown);
             }
         }
         return filtered;
     }
 
+    private static boolean matchesBreakdown(CategoryBreakdownAdapter.CategoryBreakdown breakdown, String query) {
+        // Search in category name, amount, and percentage
+        return (breakdown.category != null && breakdown.category.toLowerCase().contains(query))
+                || Money.format(breakdown.amountCents).contains(query)
+                || String.format(Locale.getDefault(), "%.1f", breakdown.percentage).contains(query);
+    }
+
     private List<CategoryBreakdownAdapter.CategoryBreakdown> sortBreakdowns(List<CategoryBreakdownAdapter.CategoryBreakdown> breakdowns) {
         List<CategoryBreakdownAdapter.CategoryBreakdown> sorted = new ArrayList<>(breakdowns);
         
         switch (currentSortType) {
             case "amount_desc":
-                Collections.sort(sorted, (a, b) -> Double.compare(b.amount, a.amount)); // Highest first
+                Collections.sort(sorted, (a, b) -> Long.compare(b.amountCents, a.amountCents)); // Highest first
                 break;
             case "amount_asc":
-                Collections.sort(sorted, (a, b) -> Double.compare(a.amount, b.amount)); // Lowest first
+                Collections.sort(sorted, (a, b) -> Long.compare(a.amountCents, b.amountCents)); // Lowest first
                 break;
             case "name_asc":
                 Collections.sort(sorted, (a, b) -> {
@@ -191,7 +227,7 @@ public class AnalyticsFragment extends Fragment {
                 } else if (title.equals("Percentage (Low to High)")) {
                     currentSortType = "percentage_asc";
                 }
-                loadAnalytics();
+                showBreakdowns();
                 return true;
             }
         });
@@ -199,9 +235,23 @@ public class AnalyticsFragment extends Fragment {
         popupMenu.show();
     }
 
+    // Tabs are kept while hidden and resumed each time they are shown; skip the reload if nothing changed
     @Override
     public void onResume() {
         super.onResume();
-        loadAnalytics();
+        if (dataManager.getDataVersion() != loadedVersion) {
+            loadAnalytics();
+        }
+    }
+
+    @Override
+    public void onDestroyView() {
+        super.onDestroyView();
+        loadedVersion = -1;
+        if (loadRequest != null) {
+            loadRequest.cancel();
+            loadRequest = null;
+        }
+        searchPipeline.cancel();
     }
 }
@@ -9,12 +9,28 @@ import android.widget.ProgressBar;
 import android.widget.TextView;
 import androidx.annotation.NonNull;
 import androidx.core.content.ContextCompat;
+import androidx.recyclerview.widget.AsyncListDiffer;
+import androidx.recyclerview.widget.DiffUtil;
 import androidx.recyclerview.widget.RecyclerView;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Locale;
 
 public class BudgetAdapter extends RecyclerView.Adapter<BudgetAdapter.BudgetViewHolder> {
-    private List<BudgetItem> budgets;
+    // A budget is identified by its category, which is unique per user
+    private static final DiffUtil.ItemCallback<BudgetItem> DIFF_CALLBACK = new DiffUtil.ItemCallback<BudgetItem>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull BudgetItem oldItem, @NonNull BudgetItem newItem) {
+            return oldItem.budget.category.equals(newItem.budget.category);
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull BudgetItem oldItem, @NonNull BudgetItem newItem) {
+            return oldItem.budget.limitCents == newItem.budget.limitCents && oldItem.spentCents == newItem.spentCents;
+        }
+    };
+
+    private final AsyncListDiffer<BudgetItem> differ = new AsyncListDiffer<>(this, DIFF_CALLBACK);
     private OnBudgetClickListener listener;
 
     public interface OnBudgetClickListener {
@@ -23,8 +39,8 @@ public class BudgetAdapter extends RecyclerView.Adapter<BudgetAdapter.BudgetView
     }
 
     public BudgetAdapter(List<BudgetItem> budgets, OnBudgetClickListener listener) {
-        this.budgets = budgets;
         this.listener = listener;
+        differ.submitList(new ArrayList<>(budgets));
     }
 
     @NonNull
@@ -37,18 +53,20 @@ public class BudgetAdapter extends RecyclerView.Adapter<BudgetAdapter.BudgetView
 
     @Override
     public void onBindViewHolder(@NonNull BudgetViewHolder holder, int position) {
-        BudgetItem budgetItem = budgets.get(position);
+        BudgetItem budgetItem = differ.getCurrentList().get(position);
         holder.bind(budgetItem);
     }
 
     @Override
     public int getItemCount() {
-        return budgets.size();
+        return differ.getCurrentList().size();
     }
 
+    /**
+     * Shows a new list of budgets, diffed against the current one on a background thread.
+     */
     public void updateBudgets(List<BudgetItem> newBudgets) {
-        this.budgets = newBudgets;
-        notifyDataSetChanged();
+        differ.submitList(new ArrayList<>(newBudgets));
     }
 
     class BudgetViewHolder extends RecyclerView.ViewHolder {
@@ -69,14 +87,14 @@ public class BudgetAdapter extends RecyclerView.Adapter<BudgetAdapter.BudgetView
 
         public void bind(BudgetItem budgetItem) {
             DataManager.Budget budget = budgetItem.budget;
-            double spent = budgetItem.spent;
-            double limit = budget.limit;
-            double percentage = limit > 0 ? (spent / limit) * 100 : 0;
+            long spentCents = budgetItem.spentCents;
+            long limitCents = budget.limitCents;
+            double percentage = limitCents > 0 ? spentCents * 100.0 / limitCents : 0;
             
             tvCategory.setText(budget.category);
             tvCategoryIcon.setText(getCategoryIcon(budget.category));
-            tvSpent.setText(String.format(Locale.getDefault(), "$%.2f", spent));
-            tvLimit.setText(String.format(Locale.getDefault(), "/ $%.2f", limit));
+            tvSpent.setText(Money.formatCurrency(spentCents));
+            tvLimit.setText("/ " + Money.formatCurrency(limitCents));
             
             // Set progress bar
             int progress = (int) Math.min(percentage, 100);
@@ -149,11 +167,11 @@ public class BudgetAdapter extends RecyclerView.Adapter<BudgetAdapter.BudgetView
 
     public static class BudgetItem {
         public DataManager.Budget budget;
-        public double spent;
+        public long spentCents;
 
-        public BudgetItem(DataManager.Budget budget, double spent) {
+        public BudgetItem(DataManager.Budget budget, long spentCents) {
             this.budget = budget;
-            this.spent = spent;
+            this.spentCents = spentCents;
         }
     }
 }
@@ -0,0 +1,66 @@
+package com.example.myapplication;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * CategoryDictionary is the in-memory id <-> name map of the categories table.
+ *
+ * The database stores categories as integer ids everywhere (expenses, budgets and the rollup), and
+ * DatabaseHelper translates between ids and names through this map instead of joining on every
+ * query. Ids are the table's primary keys, which are small and dense, so columnar data can store
+ * categories as an int[] and aggregate into plain arrays indexed by id.
+ *
+ * DatabaseHelper loads every row once and adds each new category after it is committed, so an id
+ * stays valid for the lifetime of the database. Names are compared exactly, like the table's UNIQUE
+ * constraint. All methods are thread-safe.
+ */
+public final class CategoryDictionary {
+    private final Map<String, Integer> ids = new HashMap<>();
+    // Indexed by id; null for ids not in use
+    private final List<String> names = new ArrayList<>();
+
+    /**
+     * Records a category row. Called by DatabaseHelper only.
+     */
+    synchronized void put(int id, String name) {
+        while (names.size() <= id) {
+            names.add(null);
+        }
+        names.set(id, name);
+        ids.put(name, id);
+    }
+
+    /**
+     * Returns the id of a category, or -1 if no category has that name.
+     */
+    public synchronized int idOf(String category) {
+        Integer id = ids.get(category != null ? category : "");
+        return id != null ? id : -1;
+    }
+
+    /**
+     * Returns the name of a category id, or "" if the id is not in use.
+     */
+    public synchronized String nameOf(int id) {
+        String name = id >= 0 && id < names.size() ? names.get(id) : null;
+        return name != null ? name : "";
+    }
+
+    /**
+     * Returns a bound on the ids; every id in use is below this value.
+     */
+    public synchronized int size() {
+        return names.size();
+    }
+
+    /**
+     * Forgets every category, e.g. when the database file is deleted.
+     */
+    synchronized void clear() {
+        ids.clear();
+        names.clear();
+    }
+}
@@ -0,0 +1,298 @@
+package com.example.myapplication;
+
+import android.content.Context;
+import android.util.TypedValue;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.TextView;
+import androidx.annotation.NonNull;
+import androidx.core.content.ContextCompat;
+import androidx.recyclerview.widget.GridLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
+import com.google.android.material.card.MaterialCardView;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * CategoryPickerAdapter shows categories as a grid of selectable cards. It is shared by the add
+ * expense screen and the edit expense and budget dialogs.
+ *
+ * Theme colors are resolved once per adapter. Changing the selection or the "Others" label rebinds
+ * only the affected cards with a payload, so a tap costs the same whether there are six categories
+ * or several hundred. attachTo() caps the grid at MAX_VISIBLE_ROWS rows; only the visible cards are
+ * created and they are recycled as the grid scrolls.
+ */
+public class CategoryPickerAdapter extends RecyclerView.Adapter<CategoryPickerAdapter.CategoryViewHolder> {
+    // The category that lets the user type a name instead of picking one
+    public static final String OTHERS = "Others";
+
+    private static final int SPAN_COUNT = 3;
+    private static final int MAX_VISIBLE_ROWS = 4;
+    // Card height plus its vertical margins in item_category_picker.xml
+    private static final int ROW_HEIGHT_DP = 96;
+    private static final int SELECTED_STROKE_PX = 4;
+    private static final float DISABLED_ALPHA = 0.6f;
+    private static final int TYPE_CATEGORY = 0;
+    private static final int TYPE_ADD = 1;
+    // Rebinds only the selection state and the label of a card
+    private static final Object PAYLOAD_SELECTION = new Object();
+
+    public interface OnCategorySelectedListener {
+        void onCategorySelected(String category);
+    }
+
+    private final List<String> categories = new ArrayList<>();
+    private final OnCategorySelectedListener listener;
+    private final int surfaceColor;
+    private final int primaryColor;
+    private final int primaryContainerColor;
+    private final int onSurfaceVariantColor;
+    private final int rowHeightPx;
+    private RecyclerView recyclerView;
+    private Runnable onAddClick; // Shows an "Add New" card after the categories when set
+    private String selected = "";
+    private String customName = ""; // Shown on the Others card while it is selected
+    private boolean enabled = true;
+
+    public CategoryPickerAdapter(Context context, OnCategorySelectedListener listener) {
+        this.listener = listener;
+        this.surfaceColor = getMaterialColor(context, "colorSurface");
+        this.primaryColor = getMaterialColor(context, "colorPrimary");
+        this.primaryContainerColor = getMaterialColor(context, "colorPrimaryContainer");
+        this.onSurfaceVariantColor = getMaterialColor(context, "colorOnSurfaceVariant");
+        this.rowHeightPx = Math.round(ROW_HEIGHT_DP * context.getResources().getDisplayMetrics().density);
+    }
+
+    /**
+     * Lays the grid out in the given view and shows this adapter in it.
+     */
+    public void attachTo(RecyclerView view) {
+        recyclerView = view;
+        view.setLayoutManager(new GridLayoutManager(view.getContext(), SPAN_COUNT));
+        view.setAdapter(this);
+        updateHeight();
+    }
+
+    public void setCategories(List<String> newCategories) {
+        categories.clear();
+        categories.addAll(newCategories);
+        notifyDataSetChanged();
+        updateHeight();
+    }
+
+    /**
+     * Adds an "Add New" card after the categories that runs the given action when tapped.
+     */
+    public void setOnAddClickListener(Runnable onAddClick) {
+        boolean hadAddCard = this.onAddClick != null;
+        this.onAddClick = onAddClick;
+        if (!hadAddCard && onAddClick != null) {
+            notifyItemInserted(categories.size());
+            updateHeight();
+        }
+    }
+
+    public String getSelected() {
+        return selected;
+    }
+
+    /**
+     * Highlights a category; the previously selected card and the new one are the only ones rebound.
+     */
+    public void setSelected(String category) {
+        String previous = selected;
+        selected = category != null ? category : "";
+        if (!previous.equals(selected)) {
+            notifySelectionChanged(previous);
+            notifySelectionChanged(selected);
+        }
+    }
+
+    /**
+     * Sets the name shown on the Others card while it is selected; an empty name shows "Others".
+     */
+    public void setCustomName(String name) {
+        String previous = customName;
+        customName = name != null ? name : "";
+        if (!previous.equals(customName) && OTHERS.equals(selected)) {
+            notifySelectionChanged(OTHERS);
+        }
+    }
+
+    /**
+     * Enables or disables picking, e.g. when an existing budget's category must not change.
+     */
+    public void setEnabled(boolean enabled) {
+        if (this.enabled != enabled) {
+            this.enabled = enabled;
+            notifyItemRangeChanged(0, getItemCount(), PAYLOAD_SELECTION);
+        }
+    }
+
+    @Override
+    public int getItemViewType(int position) {
+        return position < categories.size() ? TYPE_CATEGORY : TYPE_ADD;
+    }
+
+    @Override
+    public int getItemCount() {
+        return categories.size() + (onAddClick != null ? 1 : 0);
+    }
+
+    @NonNull
+    @Override
+    public CategoryViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+        View view = LayoutInflater.from(parent.getContext())
+            .inflate(R.layout.item_category_picker, parent, false);
+        return new CategoryViewHolder(view);
+    }
+
+    @Override
+    public void onBindViewHolder(@NonNull CategoryViewHolder holder, int position) {
+        if (getItemViewType(position) == TYPE_ADD) {
+            holder.bindAddCard();
+        } else {
+            holder.bind(categories.get(position));
+        }
+    }
+
+    @Override
+    public void onBindViewHolder(@NonNull CategoryViewHolder holder, int position, @NonNull List<Object> payloads) {
+        if (payloads.isEmpty() || getItemViewType(position) == TYPE_ADD) {
+            onBindViewHolder(holder, position);
+        } else {
+            holder.bindSelection(categories.get(position));
+        }
+    }
+
+    private void notifySelectionChanged(String category) {
+        int position = categories.indexOf(category);
+        if (position >= 0) {
+            notifyItemChanged(position, PAYLOAD_SELECTION);
+        }
+    }
+
+    /**
+     * Wraps the grid while it fits in MAX_VISIBLE_ROWS rows and makes it scroll beyond that, so a long
+     * list does not inflate a card per category inside the surrounding scroll view.
+     */
+    private void updateHeight() {
+        if (recyclerView == null) return;
+        int rows = (getItemCount() + SPAN_COUNT - 1) / SPAN_COUNT;
+        ViewGroup.LayoutParams params = recyclerView.getLayoutParams();
+        if (params == null) return;
+        int height = rows > MAX_VISIBLE_ROWS ? MAX_VISIBLE_ROWS * rowHeightPx : ViewGroup.LayoutParams.WRAP_CONTENT;
+        if (params.height != height) {
+            params.height = height;
+            recyclerView.setLayoutParams(params);
+        }
+    }
+
+    /**
+     * Returns the emoji shown for a category; custom categories share a tag.
+     */
+    public static String getCategoryIcon(String category) {
+        switch (category) {
+            case "Food": return "🍔";
+            case "Transport": return "🚗";
+            case "Shopping": return "🛍️";
+            case "Bills": return "📜";
+            case "Entertainment": return "🍿";
+            case OTHERS: return "✨";
+            default: return "🏷️";
+        }
+    }
+
+    private static int getThemeColor(Context context, int attr) {
+        TypedValue typedValue = new TypedValue();
+        if (context.getTheme().resolveAttribute(attr, typedValue, true)) {
+            if (typedValue.type >= TypedValue.TYPE_FIRST_COLOR_INT &&
+                typedValue.type <= TypedValue.TYPE_LAST_COLOR_INT) {
+                return typedValue.data;
+            } else {
+                return ContextCompat.getColor(context, typedValue.resourceId);
+            }
+        }
+        return 0xFF000000;
+    }
+
+    private static int getMaterialColor(Context context, String attrName) {
+        int attrId = context.getResources().getIdentifier(attrName, "attr", context.getPackageName());
+        if (attrId == 0) {
+            attrId = context.getResources().getIdentifier(attrName, "attr", "com.google.android.material");
+        }
+        if (attrId != 0) {
+            return getThemeColor(context, attrId);
+        }
+        switch (attrName) {
+            case "colorSurface": return getThemeColor(context, android.R.attr.colorBackground);
+            case "colorPrimary": return getThemeColor(context, android.R.attr.colorPrimary);
+            case "colorOnSurfaceVariant": return getThemeColor(context, android.R.attr.textColorSecondary);
+            case "colorPrimaryContainer": return getThemeColor(context, android.R.attr.colorPrimary);
+            default: return 0xFF000000;
+        }
+    }
+
+    class CategoryViewHolder extends RecyclerView.ViewHolder {
+        private final MaterialCardView card;
+        private final TextView tvIcon, tvLabel;
+
+        CategoryViewHolder(@NonNull View itemView) {
+            super(itemView);
+            card = (MaterialCardView) itemView;
+            tvIcon = itemView.findViewById(R.id.tvPickerIcon);
+            tvLabel = itemView.findViewById(R.id.tvPickerLabel);
+            card.setOnClickListener(v -> onClick());
+        }
+
+        void bind(String category) {
+            tvIcon.setText(getCategoryIcon(category));
+            bindSelection(category);
+        }
+
+        void bindSelection(String category) {
+            boolean isSelected = category.equals(selected);
+            tvLabel.setText(isSelected && OTHERS.equals(category) && !customName.isEmpty() ? customName : category);
+            if (isSelected) {
+                card.setCardBackgroundColor(primaryContainerColor);
+                card.setStrokeWidth(SELECTED_STROKE_PX);
+                card.setStrokeColor(primaryColor);
+                tvLabel.setTextColor(primaryColor);
+            } else {
+                card.setCardBackgroundColor(surfaceColor);
+                card.setStrokeWidth(0);
+                tvLabel.setTextColor(onSurfaceVariantColor);
+            }
+            bindEnabled();
+        }
+
+        void bindAddCard() {
+            tvIcon.setText("➕");
+            tvLabel.setText("Add New");
+            card.setCardBackgroundColor(surfaceColor);
+            card.setStrokeWidth(0);
+            tvLabel.setTextColor(onSurfaceVariantColor);
+            bindEnabled();
+        }
+
+        private void bindEnabled() {
+            card.setEnabled(enabled);
+            card.setAlpha(enabled ? 1f : DISABLED_ALPHA);
+        }
+
+        private void onClick() {
+            int position = getBindingAdapterPosition();
+            if (!enabled || position == RecyclerView.NO_POSITION) return;
+            if (position >= categories.size()) {
+                if (onAddClick != null) {
+                    onAddClick.run();
+                }
+                return;
+            }
+            String category = categories.get(position);
+            setSelected(category);
+            listener.onCategorySelected(category);
+        }
+    }
+}
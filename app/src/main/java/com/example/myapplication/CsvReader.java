@@ -0,0 +1,133 @@
+package com.example.myapplication;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.List;
+
+/**
+ * CsvReader parses RFC 4180 CSV incrementally, one record at a time, from a Reader.
+ *
+ * Input is read through a fixed char buffer and fields are built in one reused StringBuilder, so
+ * memory use depends on the longest record rather than on the size of the file. Quoted fields may
+ * contain commas, doubled quotes and line breaks; records may end with CRLF, LF or CR. A leading
+ * byte order mark is skipped, as spreadsheet and bank exports often write one.
+ *
+ * Not thread-safe. The caller closes the Reader.
+ */
+public final class CsvReader {
+    private static final int BUFFER_CHARS = 8 * 1024;
+    private static final char BYTE_ORDER_MARK = '\uFEFF';
+
+    private final Reader reader;
+    private final char[] buffer = new char[BUFFER_CHARS];
+    private final StringBuilder field = new StringBuilder(64);
+    private int position;
+    private int limit;
+    private boolean started;
+    // Line the next character is on, and the line the last record returned by next() started on
+    private int line = 1;
+    private int recordLine;
+
+    public CsvReader(Reader reader) {
+        this.reader = reader;
+    }
+
+    /**
+     * Reads the next record into fields, replacing their previous content.
+     *
+     * @return false at the end of the input, in which case fields is left empty
+     * @throws IOException If reading fails or the input ends inside a quoted field
+     */
+    public boolean next(List<String> fields) throws IOException {
+        fields.clear();
+        if (!started) {
+            started = true;
+            if (peek() == BYTE_ORDER_MARK) {
+                position++;
+            }
+        }
+        if (peek() < 0) {
+            return false;
+        }
+
+        recordLine = line;
+        field.setLength(0);
+        boolean quoted = false;
+        boolean afterQuote = false;
+        while (true) {
+            int c = read();
+            if (quoted) {
+                if (c < 0) {
+                    throw new IOException("Unterminated quoted field starting on line " + recordLine);
+                }
+                if (c == '"') {
+                    if (peek() == '"') {
+                        position++;
+                        field.append('"');
+                    } else {
+                        quoted = false;
+                        afterQuote = true;
+                    }
+                } else {
+                    countLine(c);
+                    field.append((char) c);
+                }
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+                afterQuote = false;
+            } else if (c < 0 || c == '\n' || c == '\r') {
+                if (c == '\r' && peek() == '\n') {
+                    position++;
+                }
+                if (c >= 0) {
+                    line++;
+                }
+                fields.add(field.toString());
+                return true;
+            } else if (c == '"' && field.length() == 0 && !afterQuote) {
+                quoted = true;
+            } else {
+                // Lenient about stray quotes and text after a closing quote, which some exporters write
+                field.append((char) c);
+            }
+        }
+    }
+
+    /**
+     * Returns the line number (starting at 1) on which the last record returned by next() started.
+     */
+    public int getLine() {
+        return recordLine;
+    }
+
+    private void countLine(int c) throws IOException {
+        // A CRLF inside a quoted field counts once, on its LF
+        if (c == '\n' || (c == '\r' && peek() != '\n')) {
+            line++;
+        }
+    }
+
+    private int read() throws IOException {
+        int c = peek();
+        if (c >= 0) {
+            position++;
+        }
+        return c;
+    }
+
+    private int peek() throws IOException {
+        if (position == limit) {
+            int count;
+            do {
+                count = reader.read(buffer, 0, buffer.length);
+            } while (count == 0);
+            if (count < 0) {
+                return -1;
+            }
+            position = 0;
+            limit = count;
+        }
+        return buffer[position];
+    }
+}
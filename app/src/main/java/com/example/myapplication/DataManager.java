@@ -2,11 +2,30 @@ package com.example.myapplication;
 
 import android.content.Context;
 import android.content.SharedPreferences;
-import org.json.JSONArray;
-import org.json.JSONException;
-import org.json.JSONObject;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.ParcelFileDescriptor;
+import androidx.annotation.VisibleForTesting;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
 
 /**
  * DataManager serves as the central data access layer (Repository Pattern) for the application.
@@ -14,33 +33,91 @@ import java.util.List;
  * (SQLite Database and SharedPreferences).
  *
  * It uses the Singleton pattern to ensure only one instance exists throughout the app lifecycle.
+ * The singleton also owns the database connection: its DatabaseHelper opens the database on first
+ * use and keeps it open for the lifetime of the process instead of reopening it per operation.
+ *
+ * Screens should use the *Async methods, which run the database work on a small background pool and
+ * deliver the result on the main thread. The synchronous methods remain for callers already off the
+ * main thread.
+ *
+ * Expense lists are served from an in-memory ExpenseCache once loaded. The expense write methods
+ * update the cache after the database commit, so it never has to be re-read; anything that changes
+ * expenses must go through them or invalidate the cache.
  */
 public class DataManager {
     private static DataManager instance;
     private DatabaseHelper dbHelper;
-    private SharedPreferences prefs;
-    private Context context;
+    private final SharedPreferences prefs;
+    private final Context context;
+
+    // SQLite allows one writer at a time; with WAL a second thread lets a read run alongside a write
+    private static final int IO_THREADS = 2;
+    // Expenses per transaction for addExpenses: large enough to amortize the commit, small enough
+    // that other writes are not held up for long and progress is reported regularly
+    public static final int DEFAULT_BULK_BATCH_SIZE = 500;
+    // Expenses read per query when exporting; bounds the memory an export holds at any time
+    private static final int EXPORT_CHUNK_SIZE = 1000;
+    private static final String[] DEFAULT_CATEGORIES = {"Food", "Transport", "Shopping", "Bills", "Entertainment", "Others"};
+    private final Executor ioExecutor;
+    private final Executor mainExecutor;
+    private final CategoryDictionary categoryDictionary = new CategoryDictionary();
+    private final ExpenseCache expenseCache = new ExpenseCache(ExpenseCache.DEFAULT_BUDGET_BYTES, categoryDictionary);
+    // The logged-in user's category list as last read or saved, so pickers do not query it each time
+    private List<String> userCategories;
+    private int userCategoriesUserId = -1;
+    // Held while the expense history is read into the cache; see loadIntoCache
+    private final Object cacheLoadLock = new Object();
+    // Cache version at which each user's history was found too large to cache, so page requests
+    // do not count their expenses again until a write may have changed that
+    private final Map<Integer, Long> tooLargeToCache = new ConcurrentHashMap<>();
+    // Bumped by every write and session change; see getDataVersion
+    private final AtomicLong dataVersion = new AtomicLong();
 
     private DataManager(Context context) {
-        this.context = context;
-        this.prefs = context.getSharedPreferences("ExpenseTracker", Context.MODE_PRIVATE);
-        
+        this(context, context.getSharedPreferences("ExpenseTracker", Context.MODE_PRIVATE), null,
+                newIoExecutor(), new Handler(Looper.getMainLooper())::post);
+
         // Initialize database helper
         try {
-            this.dbHelper = new DatabaseHelper(context);
+            this.dbHelper = new DatabaseHelper(context, categoryDictionary);
             android.util.Log.d("DataManager", "DatabaseHelper initialized");
         } catch (Exception e) {
             android.util.Log.e("DataManager", "Error initializing DatabaseHelper: " + e.getMessage(), e);
             // Try to recover by deleting and recreating
             try {
                 context.deleteDatabase("expense_tracker.db");
-                this.dbHelper = new DatabaseHelper(context);
+                this.dbHelper = new DatabaseHelper(context, categoryDictionary);
             } catch (Exception e2) {
                 android.util.Log.e("DataManager", "Failed to recover database: " + e2.getMessage(), e2);
             }
         }
     }
     
+    /**
+     * Creates a DataManager from its parts. The app goes through getInstance(); JVM unit tests pass
+     * direct or queued executors so that work and callbacks run on the test thread, in an order the
+     * test controls, without a main Looper.
+     *
+     * @param dbHelper     Database to use, or null for tests that do not reach the database
+     * @param ioExecutor   Runs the database work of the async methods
+     * @param mainExecutor Delivers their results; the app posts to the main thread
+     */
+    @VisibleForTesting
+    DataManager(Context context, SharedPreferences prefs, DatabaseHelper dbHelper, Executor ioExecutor, Executor mainExecutor) {
+        this.context = context;
+        this.prefs = prefs;
+        this.dbHelper = dbHelper;
+        this.ioExecutor = ioExecutor;
+        this.mainExecutor = mainExecutor;
+    }
+
+    private static Executor newIoExecutor() {
+        ThreadPoolExecutor io = new ThreadPoolExecutor(IO_THREADS, IO_THREADS, 30, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), runnable -> new Thread(runnable, "DataManager-io"));
+        io.allowCoreThreadTimeOut(true);
+        return io;
+    }
+
     // Public method to reset database
     public void resetDatabase() {
         android.util.Log.d("DataManager", "Resetting database via DataManager...");
@@ -50,11 +127,25 @@ public class DataManager {
         editor.apply();
         
         // Reset database
+        expenseCache.clear();
+        clearUserCategories();
         dbHelper.resetDatabase(context);
+        dataChanged();
         
         android.util.Log.d("DataManager", "Database reset completed");
     }
 
+    /**
+     * Resets the database on the I/O executor, since it closes, deletes and recreates the file.
+     * Delivers true once the fresh database is open.
+     */
+    public Request resetDatabaseAsync(Callback<Boolean> callback) {
+        return runAsync(() -> {
+            resetDatabase();
+            return true;
+        }, callback);
+    }
+
     /**
      * Public method to get the singleton instance of DataManager.
      * Uses double-checked locking (if synchronized) or simple null check here for thread safety context.
@@ -69,7 +160,249 @@ public class DataManager {
         return instance;
     }
 
-    // Authentication methods
+    /**
+     * Sets how much memory the expense cache may use, evicting cached users if it now exceeds it.
+     */
+    public void setExpenseCacheBudget(long bytes) {
+        expenseCache.setBudgetBytes(bytes);
+        tooLargeToCache.clear();
+    }
+
+    public long getExpenseCacheHits() {
+        return expenseCache.getHitCount();
+    }
+
+    public long getExpenseCacheMisses() {
+        return expenseCache.getMissCount();
+    }
+
+    /**
+     * Returns the order getExpensesPage() reads expenses in for a sort type, ties included, so a
+     * screen can put an edited expense back at its keyset position without reloading.
+     */
+    public Comparator<Expense> getSortOrder(String sortType) {
+        return expenseCache.comparator(sortType);
+    }
+
+    /**
+     * Returns a number that changes whenever the current user's data may have changed: any expense,
+     * budget, category or profile write, or a login, logout or reset. Screens kept alive in the
+     * background remember the version they loaded and reload only when it differs.
+     */
+    public long getDataVersion() {
+        return dataVersion.get();
+    }
+
+    private void dataChanged() {
+        dataVersion.incrementAndGet();
+    }
+
+    // Async API
+    /**
+     * Receives the result of an async DataManager call on the main thread.
+     */
+    public interface Callback<T> {
+        void onResult(T result);
+    }
+
+    /**
+     * Handle to an async call. Cancelling from the main thread guarantees the callback will not run,
+     * and skips the work if it has not started yet. Fragments cancel their loads in onDestroyView().
+     */
+    public static final class Request {
+        private volatile boolean cancelled;
+
+        public void cancel() {
+            cancelled = true;
+        }
+
+        public boolean isCancelled() {
+            return cancelled;
+        }
+    }
+
+    /**
+     * Receives progress of a long-running operation.
+     */
+    public interface ProgressListener {
+        void onProgress(int done, int total);
+    }
+
+    /**
+     * Same as runAsync(work, callback, onError) for callers with nothing to undo on failure;
+     * failures are only logged.
+     */
+    public <T> Request runAsync(Supplier<T> work, Callback<T> callback) {
+        return runAsync(new Request(), work, callback, null);
+    }
+
+    /**
+     * Runs work on the I/O executor and delivers its result on the main thread.
+     * Failures are logged and passed to onError instead, so callers can reset state they set up
+     * for the call, e.g. re-enable a button.
+     *
+     * @param work     Database work to run in the background
+     * @param callback Receives the result on the main thread unless the request is cancelled first
+     * @param onError  Receives the failure on the main thread unless the request is cancelled
+     *                 first; may be null
+     * @return Request that can be cancelled
+     */
+    public <T> Request runAsync(Supplier<T> work, Callback<T> callback, Callback<Throwable> onError) {
+        return runAsync(new Request(), work, callback, onError);
+    }
+
+    /**
+     * Same as runAsync(work, callback, onError) with a request created by the caller, so the work
+     * itself can check it and stop early.
+     */
+    private <T> Request runAsync(Request request, Supplier<T> work, Callback<T> callback, Callback<Throwable> onError) {
+        ioExecutor.execute(() -> {
+            if (request.isCancelled()) return;
+            T result;
+            try {
+                result = work.get();
+            } catch (RuntimeException e) {
+                android.util.Log.e("DataManager", "Async operation failed: " + e.getMessage(), e);
+                if (onError != null) {
+                    mainExecutor.execute(() -> {
+                        if (!request.isCancelled()) {
+                            onError.onResult(e);
+                        }
+                    });
+                }
+                return;
+            }
+            mainExecutor.execute(() -> {
+                if (!request.isCancelled()) {
+                    callback.onResult(result);
+                }
+            });
+        });
+        return request;
+    }
+
+    public Request getExpensesAsync(String sortType, Callback<List<Expense>> callback) {
+        return runAsync(() -> getExpenses(sortType), callback);
+    }
+
+    public Request getExpensesPageAsync(String sortType, Expense after, int limit, Callback<List<Expense>> callback,
+                                        Callback<Throwable> onError) {
+        return runAsync(() -> getExpensesPage(sortType, after, limit), callback, onError);
+    }
+
+    public Request searchExpensesAsync(String query, int limit, Callback<List<Expense>> callback) {
+        return runAsync(() -> searchExpenses(query, limit), callback);
+    }
+
+    public Request getSearchTotalCentsAsync(String query, Callback<Long> callback) {
+        return runAsync(() -> getSearchTotalCents(query), callback);
+    }
+
+    public Request getTotalSpentCentsAsync(Callback<Long> callback) {
+        return runAsync(this::getTotalSpentCents, callback);
+    }
+
+    public Request getCategoryTotalsAsync(Callback<List<CategoryTotal>> callback) {
+        return runAsync(this::getCategoryTotals, callback);
+    }
+
+    public Request addExpenseAsync(String category, long amountCents, String note, String date, String imageUri, Callback<Long> callback,
+                                   Callback<Throwable> onError) {
+        return runAsync(() -> addExpense(category, amountCents, note, date, imageUri), callback, onError);
+    }
+
+    /**
+     * Runs addExpenses in the background. Progress is delivered on the main thread, and cancelling
+     * the request stops the import after the batch in progress; batches already committed are kept.
+     */
+    public Request addExpensesAsync(Collection<Expense> expenses, int batchSize, ProgressListener progress, Callback<Integer> callback) {
+        Request request = new Request();
+        ProgressListener onMain = progress == null ? null : (done, total) -> mainExecutor.execute(() -> {
+            if (!request.isCancelled()) {
+                progress.onProgress(done, total);
+            }
+        });
+        return runAsync(request, () -> addExpenses(expenses, batchSize, onMain, request), callback, null);
+    }
+
+    /**
+     * Runs exportExpenses in the background; cancelling the request stops the export after the
+     * expense being written.
+     */
+    public Request exportExpensesAsync(Uri uri, ExpenseExporter.Format format, Callback<Integer> callback) {
+        Request request = new Request();
+        return runAsync(request, () -> exportExpenses(uri, format, request), callback, null);
+    }
+
+    /**
+     * Runs importExpenses in the background; cancelling the request stops the import after the
+     * batch being written, keeping the batches already committed.
+     */
+    public Request importExpensesAsync(Uri uri, Callback<ImportResult> callback) {
+        Request request = new Request();
+        return runAsync(request, () -> importExpenses(uri, request), callback, null);
+    }
+
+    /**
+     * Runs updateExpense in the background.
+     *
+     * @param callback Receives the expense as now stored, or null if it was not updated
+     */
+    public Request updateExpenseAsync(int expenseId, String category, long amountCents, String note, String date, String imageUri, Callback<Expense> callback) {
+        return runAsync(() -> updateExpense(expenseId, category, amountCents, note, date, imageUri)
+                ? newExpense(expenseId, category, amountCents, note, date, imageUri) : null, callback);
+    }
+
+    public Request deleteExpenseAsync(int expenseId, Callback<Boolean> callback) {
+        return runAsync(() -> deleteExpense(expenseId), callback);
+    }
+
+    public Request clearExpensesAsync(Callback<Boolean> callback) {
+        return runAsync(this::clearExpenses, callback);
+    }
+
+    public Request checkBudgetAsync(String category, long amountCents, Callback<BudgetCheckResult> callback) {
+        return checkBudgetAsync(category, amountCents, callback, null);
+    }
+
+    public Request checkBudgetAsync(String category, long amountCents, Callback<BudgetCheckResult> callback,
+                                    Callback<Throwable> onError) {
+        return runAsync(() -> checkBudget(category, amountCents), callback, onError);
+    }
+
+    public Request checkBudgetOnUpdateAsync(String category, long newAmountCents, int expenseId, Callback<BudgetCheckResult> callback) {
+        return runAsync(() -> checkBudgetOnUpdate(category, newAmountCents, expenseId), callback);
+    }
+
+    public Request getCategoriesAsync(Callback<List<String>> callback) {
+        return runAsync(this::getCategories, callback);
+    }
+
+    public Request addCategoryAsync(String category, Callback<Boolean> callback) {
+        return runAsync(() -> addCategory(category), callback);
+    }
+
+    // Authentication methods; password hashing is slow by design, so screens use the async variants
+    public Request loginAsync(String username, String password, Callback<LoginResult> callback, Callback<Throwable> onError) {
+        return runAsync(() -> login(username, password), callback, onError);
+    }
+
+    public Request signupAsync(String username, String password, String pet, Callback<SignupResult> callback) {
+        return runAsync(() -> signup(username, password, pet), callback);
+    }
+
+    public Request resetPasswordAsync(String username, String pet, String newPassword, Callback<Boolean> callback) {
+        return runAsync(() -> resetPassword(username, pet, newPassword), callback);
+    }
+
+    public Request updatePasswordAsync(String currentPassword, String newPassword, Callback<Boolean> callback) {
+        return runAsync(() -> updatePassword(currentPassword, newPassword), callback);
+    }
+
+    public Request updateUsernameAsync(String newUsername, Callback<Boolean> callback) {
+        return runAsync(() -> updateUsername(newUsername), callback);
+    }
+
     /**
      * Authenticates a user with the provided credentials.
      *
@@ -78,7 +411,6 @@ public class DataManager {
      * @return LoginResult containing success status, user object, or error message
      */
     public LoginResult login(String username, String password) {
-        android.util.Log.d("DataManager", "Login attempt for: " + username);
         DatabaseHelper.User user = dbHelper.login(username, password);
         if (user != null) {
             // Save login session to SharedPreferences to keep user logged in
@@ -86,15 +418,15 @@ public class DataManager {
             editor.putInt("userId", user.id);
             editor.putString("username", user.username);
             editor.apply();
-            android.util.Log.d("DataManager", "Login success, saving user to prefs");
+            dataChanged();
+            android.util.Log.d("DataManager", "Logged in user " + user.id);
             return new LoginResult(true, user, null);
         }
-        android.util.Log.e("DataManager", "Login failed for: " + username);
+        android.util.Log.e("DataManager", "Login failed");
         return new LoginResult(false, null, "Invalid username or password");
     }
 
     public SignupResult signup(String username, String password, String pet) {
-        android.util.Log.d("DataManager", "Signup attempt for: " + username);
         if (username == null || username.trim().isEmpty()) {
             android.util.Log.e("DataManager", "Signup failed: Username is required");
             return new SignupResult(false, null, "Username is required");
@@ -114,6 +446,7 @@ public class DataManager {
             editor.putInt("userId", (int) userId);
             editor.putString("username", username.trim());
             editor.apply();
+            dataChanged();
             android.util.Log.d("DataManager", "Signup success, user ID: " + userId);
             DatabaseHelper.User user = new DatabaseHelper.User((int) userId, username.trim());
             return new SignupResult(true, user, null);
@@ -149,6 +482,7 @@ public class DataManager {
             SharedPreferences.Editor editor = prefs.edit();
             editor.putString("username", newUsername.trim());
             editor.apply();
+            dataChanged();
         }
         return success;
     }
@@ -164,6 +498,68 @@ public class DataManager {
         return dbHelper.updatePassword(userId, currentPassword, newPassword);
     }
 
+    /**
+     * Returns the logged-in user from the saved session alone, without opening the database, so
+     * startup can show the main screen at once. startUpAsync confirms the user still exists.
+     *
+     * @return The saved user, or null if nobody is logged in
+     */
+    public DatabaseHelper.User getSessionUser() {
+        int userId = prefs.getInt("userId", -1);
+        String username = prefs.getString("username", null);
+        return userId > 0 && username != null ? new DatabaseHelper.User(userId, username) : null;
+    }
+
+    /**
+     * Runs the database side of a cold start in the background: opens the database, which applies
+     * any migrations and backfills, checks that the saved session user still exists, and then loads
+     * their expenses into the cache so the home list is served from memory.
+     * A session whose user is gone (e.g. after a database reset) is logged out, and so is one whose
+     * database cannot be opened or migrated, so the app falls back to the login screen.
+     *
+     * @param callback Receives whether the session is still valid, as soon as that is known and
+     *                 before the cache is warmed; always called unless the request is cancelled
+     * @return Request that can be cancelled; the warm-up itself still completes
+     */
+    public Request startUpAsync(Callback<Boolean> callback) {
+        Request request = new Request();
+        ioExecutor.execute(() -> {
+            boolean valid = false;
+            try {
+                dbHelper.getWritableDatabase();
+                StartupTrace.mark(StartupTrace.DATABASE_OPEN);
+                DatabaseHelper.User user = getCurrentUser();
+                if (user != null) {
+                    StartupTrace.mark(StartupTrace.SESSION_VALIDATED);
+                    valid = true;
+                }
+            } catch (RuntimeException e) {
+                android.util.Log.e("DataManager", "Startup failed: " + e.getMessage(), e);
+                logout();
+            }
+            boolean sessionValid = valid;
+            mainExecutor.execute(() -> {
+                if (!request.isCancelled()) {
+                    callback.onResult(sessionValid);
+                }
+            });
+            if (sessionValid) {
+                // A failed warm-up only costs speed; the screens load from the database instead
+                try {
+                    // Loaded now so the first category picker is served from memory
+                    getCategories();
+                    int userId = prefs.getInt("userId", -1);
+                    if (userId > 0 && loadIntoCache(userId)) {
+                        StartupTrace.mark(StartupTrace.CACHE_WARM);
+                    }
+                } catch (RuntimeException e) {
+                    android.util.Log.e("DataManager", "Cache warm-up failed: " + e.getMessage(), e);
+                }
+            }
+        });
+        return request;
+    }
+
     public DatabaseHelper.User getCurrentUser() {
         int userId = prefs.getInt("userId", -1);
         String username = prefs.getString("username", null);
@@ -183,10 +579,13 @@ public class DataManager {
     }
 
     public void logout() {
+        expenseCache.clear();
+        clearUserCategories();
         SharedPreferences.Editor editor = prefs.edit();
         editor.remove("userId");
         editor.remove("username");
         editor.apply();
+        dataChanged();
     }
 
     // Expense methods
@@ -194,133 +593,455 @@ public class DataManager {
      * Adds a new expense record for the currently logged-in user.
      *
      * @param category Expense category (e.g., Food, Transport)
-     * @param amount   Monetary value
+     * @param amountCents Amount in cents, see Money
      * @param note     Optional description
      * @param date     Date string
      * @param imageUri Optional URI for receipt image
      * @return The ID of the new expense, or -1 if failed
      */
-    public long addExpense(String category, double amount, String note, String date, String imageUri) {
+    public long addExpense(String category, long amountCents, String note, String date, String imageUri) {
         int userId = prefs.getInt("userId", -1);
         if (userId <= 0) return -1;
-        return dbHelper.addExpense(userId, category, amount, note, date, imageUri);
+        long id = dbHelper.addExpense(userId, category, amountCents, note, date, imageUri);
+        if (id > 0) {
+            expenseCache.onSaved(userId, newExpense((int) id, category, amountCents, note, date, imageUri));
+            dataChanged();
+        }
+        return id;
     }
 
     /**
-     * Retrieves all expenses for the current user.
-     * Parses the JSON string returned by DatabaseHelper into a List of Expense objects.
+     * Retrieves all expenses for the current user, newest first.
      *
-     * @return List of Expense objects, or empty list if none found or error
+     * @return List of Expense objects, or empty list if none found or not logged in
      */
     public List<Expense> getExpenses() {
         int userId = prefs.getInt("userId", -1);
         if (userId <= 0) return new ArrayList<>();
-        
+        List<Expense> cached = loadIntoCache(userId) ? expenseCache.get(userId, ExpenseCache.SORT_ID_DESC) : null;
+        return cached != null ? cached : dbHelper.getExpenses(userId);
+    }
+
+    /**
+     * Retrieves all expenses for the current user, already sorted by the database.
+     *
+     * @param sortType "date_desc", "date_asc", "amount_desc", "amount_asc", "category_asc" or "category_desc"
+     * @return List of Expense objects, or empty list if none found or not logged in
+     */
+    public List<Expense> getExpenses(String sortType) {
+        int userId = prefs.getInt("userId", -1);
+        if (userId <= 0) return new ArrayList<>();
+        List<Expense> cached = loadIntoCache(userId) ? expenseCache.get(userId, sortType) : null;
+        return cached != null ? cached : dbHelper.getExpenses(userId, sortType);
+    }
+
+    /**
+     * Retrieves the current user's expenses dated within an inclusive range, newest first.
+     *
+     * @param fromDay First epoch day to include (see ExpenseDates)
+     * @param toDay   Last epoch day to include
+     * @return List of Expense objects, or empty list if none found or not logged in
+     */
+    public List<Expense> getExpensesBetween(int fromDay, int toDay) {
+        int userId = prefs.getInt("userId", -1);
+        if (userId <= 0) return new ArrayList<>();
+        List<Expense> cached = loadIntoCache(userId) ? expenseCache.getBetween(userId, fromDay, toDay) : null;
+        return cached != null ? cached : dbHelper.getExpensesBetween(userId, fromDay, toDay);
+    }
+
+    /**
+     * Retrieves the current user's all-time spending per category.
+     * Aggregated from the cached columns when the expenses are in memory, otherwise served by the
+     * category totals rollup; either way no Expense objects are read.
+     *
+     * @return List of CategoryTotal objects, or empty list if none found or not logged in
+     */
+    public List<CategoryTotal> getCategoryTotals() {
+        int userId = prefs.getInt("userId", -1);
+        if (userId <= 0) return new ArrayList<>();
+        ExpenseColumns columns = expenseCache.getColumns(userId);
+        if (columns != null) {
+            return columns.categoryTotals();
+        }
+        return dbHelper.getCategoryTotals(userId);
+    }
+
+    /**
+     * Retrieves one page of the current user's expenses, see DatabaseHelper.getExpensesPage.
+     *
+     * @param after Last expense of the previous page, or null for the first page
+     * @return Up to limit expenses; fewer means there are no more pages
+     */
+    public List<Expense> getExpensesPage(String sortType, Expense after, int limit) {
+        int userId = prefs.getInt("userId", -1);
+        if (userId <= 0) return new ArrayList<>();
+        List<Expense> cached = loadIntoCache(userId) ? expenseCache.getPage(userId, sortType, after, limit) : null;
+        return cached != null ? cached : dbHelper.getExpensesPage(userId, sortType, after, limit);
+    }
+
+    /**
+     * Searches the current user's expenses by note, category, date and amount.
+     * Each word is matched as a prefix; best matches come first.
+     *
+     * @param query Free text as typed by the user
+     * @param limit Maximum number of results
+     * @return Matching expenses, or empty list if none found or not logged in
+     */
+    public List<Expense> searchExpenses(String query, int limit) {
+        int userId = prefs.getInt("userId", -1);
+        if (userId <= 0) return new ArrayList<>();
+        return dbHelper.searchExpenses(userId, query, limit);
+    }
+
+    /**
+     * Returns the total of every expense matching a search, not just of the results searchExpenses
+     * returns under its limit.
+     */
+    public long getSearchTotalCents(String query) {
+        int userId = prefs.getInt("userId", -1);
+        if (userId <= 0) return 0;
+        return dbHelper.getSearchTotalCents(userId, query);
+    }
+
+    /**
+     * Returns the current user's all-time spending in cents without loading any expenses, from the
+     * cached columns if available or else the rollup.
+     */
+    public long getTotalSpentCents() {
+        int userId = prefs.getInt("userId", -1);
+        if (userId <= 0) return 0;
+        ExpenseColumns columns = expenseCache.getColumns(userId);
+        if (columns != null) {
+            return columns.totalCents();
+        }
+        return dbHelper.getTotalSpentCents(userId);
+    }
+
+    public List<Expense> getExpensesThisMonth() {
+        int[] month = ExpenseDates.monthRange(ExpenseDates.today());
+        return getExpensesBetween(month[0], month[1]);
+    }
+
+    public boolean updateExpense(int expenseId, String category, long amountCents, String note, String date, String imageUri) {
+        boolean updated = dbHelper.updateExpense(expenseId, category, amountCents, note, date, imageUri);
+        int userId = prefs.getInt("userId", -1);
+        if (updated && userId > 0) {
+            expenseCache.onSaved(userId, newExpense(expenseId, category, amountCents, note, date, imageUri));
+            dataChanged();
+        }
+        return updated;
+    }
+
+    public boolean deleteExpense(int expenseId) {
+        boolean deleted = dbHelper.deleteExpense(expenseId);
+        int userId = prefs.getInt("userId", -1);
+        if (deleted && userId > 0) {
+            expenseCache.onDeleted(userId, expenseId);
+            dataChanged();
+        }
+        return deleted;
+    }
+
+    /**
+     * Adds many expenses for the current user, e.g. when importing, in DEFAULT_BULK_BATCH_SIZE batches.
+     *
+     * @see #addExpenses(Collection, int, ProgressListener)
+     */
+    public int addExpenses(Collection<Expense> expenses) {
+        return addExpenses(expenses, DEFAULT_BULK_BATCH_SIZE, null);
+    }
+
+    /**
+     * Adds many expenses for the current user. Each batch is inserted in one transaction with a
+     * reused compiled statement, so the cost is one commit per batch rather than one per expense.
+     *
+     * @param expenses  Expenses to add; their id and dateDay are ignored, ids are assigned and days parsed from date
+     * @param batchSize Expenses per transaction; 0 or less inserts everything in a single transaction
+     * @param listener  Called after each committed batch with the number added so far, may be null
+     * @return Number of expenses added; fewer than given if a batch failed, in which case that batch
+     *         and the ones after it are not added
+     */
+    public int addExpenses(Collection<Expense> expenses, int batchSize, ProgressListener listener) {
+        return addExpenses(expenses, batchSize, listener, null);
+    }
+
+    private int addExpenses(Collection<Expense> expenses, int batchSize, ProgressListener listener, Request request) {
+        int userId = prefs.getInt("userId", -1);
+        if (userId <= 0 || expenses.isEmpty()) return 0;
+
+        List<Expense> all = new ArrayList<>(expenses);
+        int size = batchSize > 0 ? batchSize : all.size();
+        int added = 0;
         try {
-            // DatabaseHelper returns data as a JSON string to decouple implementation
-            String json = dbHelper.getExpenses(userId);
-            JSONArray jsonArray = new JSONArray(json);
-            List<Expense> expenses = new ArrayList<>();
-            
-            for (int i = 0; i < jsonArray.length(); i++) {
-                JSONObject obj = jsonArray.getJSONObject(i);
-                Expense expense = new Expense(
-                    obj.getInt("id"),
-                    obj.getString("category"),
-                    obj.getDouble("amount"),
-                    obj.getString("note"),
-                    obj.getString("date"),
-                    obj.optString("imageUri", "")
-                );
-                expenses.add(expense);
+            for (int from = 0; from < all.size(); from += size) {
+                if (request != null && request.isCancelled()) {
+                    break;
+                }
+                List<Expense> batch = all.subList(from, Math.min(from + size, all.size()));
+                if (dbHelper.addExpenses(userId, batch) < 0) {
+                    break;
+                }
+                added += batch.size();
+                if (listener != null) {
+                    listener.onProgress(added, all.size());
+                }
+            }
+        } finally {
+            // Patching thousands of rows into the cache one by one would cost more than reloading it
+            if (added > 0) {
+                expenseCache.invalidate(userId);
+                dataChanged();
             }
-            return expenses;
-        } catch (JSONException e) {
-            return new ArrayList<>();
         }
+        android.util.Log.d("DataManager", "Added " + added + " of " + all.size() + " expenses");
+        return added;
     }
 
-    public boolean updateExpense(int expenseId, String category, double amount, String note, String date, String imageUri) {
-        return dbHelper.updateExpense(expenseId, category, amount, note, date, imageUri);
+    /**
+     * Writes the current user's whole expense history, oldest first, to a document chosen by the
+     * user. Expenses are read in EXPORT_CHUNK_SIZE chunks and streamed through a FileChannel, so
+     * memory use does not grow with the history; the cache is bypassed for the same reason.
+     *
+     * @param uri    Document to write, e.g. from ActivityResultContracts.CreateDocument; existing content is replaced
+     * @param format File format to write
+     * @return Number of expenses written, or -1 if the document could not be written
+     */
+    public int exportExpenses(Uri uri, ExpenseExporter.Format format) {
+        return exportExpenses(uri, format, null);
     }
 
-    public boolean deleteExpense(int expenseId) {
-        return dbHelper.deleteExpense(expenseId);
+    private int exportExpenses(Uri uri, ExpenseExporter.Format format, Request request) {
+        int userId = prefs.getInt("userId", -1);
+        if (userId <= 0) return -1;
+
+        long start = android.os.SystemClock.uptimeMillis();
+        int written;
+        try (ParcelFileDescriptor descriptor = context.getContentResolver().openFileDescriptor(uri, "wt")) {
+            if (descriptor == null) {
+                android.util.Log.e("DataManager", "Export failed: cannot open " + uri);
+                return -1;
+            }
+            try (FileOutputStream out = new FileOutputStream(descriptor.getFileDescriptor());
+                 FileChannel channel = out.getChannel()) {
+                ExpenseExporter exporter = new ExpenseExporter(channel, format);
+                dbHelper.forEachExpense(userId, EXPORT_CHUNK_SIZE, expense -> {
+                    exporter.write(expense);
+                    return request == null || !request.isCancelled();
+                });
+                written = exporter.finish();
+            }
+        } catch (IOException | RuntimeException e) {
+            // Also e.g. a revoked permission, a provider without "wt" or a database error, which
+            // runAsync would only log, leaving the screen without an answer
+            android.util.Log.e("DataManager", "Export failed: " + e.getMessage(), e);
+            return -1;
+        }
+        long elapsed = android.os.SystemClock.uptimeMillis() - start;
+        android.util.Log.d("DataManager", "Exported " + written + " expenses in " + elapsed + " ms");
+        return written;
+    }
+
+    /**
+     * Imports expenses for the current user from a CSV document, e.g. a bank export or a file written
+     * by exportExpenses. The file is parsed as it is read and written in DEFAULT_BULK_BATCH_SIZE
+     * transactions, so memory use does not grow with its size. Invalid rows are skipped and reported
+     * in the result; see ExpenseImporter for the accepted columns.
+     *
+     * @param uri Document to read, e.g. from ActivityResultContracts.OpenDocument
+     * @return What was imported; failure is set if the file could not be read to the end
+     */
+    public ImportResult importExpenses(Uri uri) {
+        return importExpenses(uri, null);
+    }
+
+    private ImportResult importExpenses(Uri uri, Request request) {
+        ImportResult result = new ImportResult();
+        int userId = prefs.getInt("userId", -1);
+        if (userId <= 0) {
+            result.failure = "Not logged in";
+            return result;
+        }
+
+        List<Expense> batch = new ArrayList<>(DEFAULT_BULK_BATCH_SIZE);
+        try (InputStream in = context.getContentResolver().openInputStream(uri)) {
+            if (in == null) {
+                result.failure = "Cannot open the file";
+                return result;
+            }
+            ExpenseImporter importer = new ExpenseImporter(
+                    new CsvReader(new InputStreamReader(in, StandardCharsets.UTF_8)), result);
+            Expense expense;
+            while ((expense = importer.next()) != null) {
+                batch.add(expense);
+                if (batch.size() == DEFAULT_BULK_BATCH_SIZE) {
+                    if (!commitImportBatch(userId, batch, result) || (request != null && request.isCancelled())) {
+                        break;
+                    }
+                }
+            }
+            commitImportBatch(userId, batch, result);
+        } catch (IOException e) {
+            android.util.Log.e("DataManager", "Import failed: " + e.getMessage(), e);
+            result.failure = e.getMessage();
+        } catch (RuntimeException e) {
+            // E.g. a revoked permission or a database error, which runAsync would only log, leaving
+            // the screen without a summary
+            android.util.Log.e("DataManager", "Import failed: " + e.getMessage(), e);
+            result.failure = "Could not import the file";
+        } finally {
+            // Patching thousands of rows into the cache one by one would cost more than reloading it
+            if (result.imported > 0) {
+                expenseCache.invalidate(userId);
+                dataChanged();
+            }
+        }
+        android.util.Log.d("DataManager", "Imported " + result.imported + " expenses, rejected " + result.rejected + " rows" +
+                (result.failure != null ? ", stopped: " + result.failure : ""));
+        return result;
+    }
+
+    /**
+     * Writes a batch of imported expenses in one transaction and empties it.
+     *
+     * @return false if the batch could not be written, in which case result.failure is set
+     */
+    private boolean commitImportBatch(int userId, List<Expense> batch, ImportResult result) {
+        if (batch.isEmpty()) return true;
+        if (dbHelper.addExpenses(userId, batch) < 0) {
+            result.failure = "Could not save expenses";
+            batch.clear();
+            return false;
+        }
+        result.imported += batch.size();
+        batch.clear();
+        return true;
     }
 
     public boolean clearExpenses() {
         int userId = prefs.getInt("userId", -1);
         if (userId <= 0) return false;
-        return dbHelper.clearExpenses(userId);
+        boolean cleared = dbHelper.clearExpenses(userId);
+        if (cleared) {
+            expenseCache.onCleared(userId);
+            dataChanged();
+        }
+        return cleared;
+    }
+
+    /**
+     * Makes sure the user's expenses are in the cache, loading them once on a miss.
+     * A history too large for the cache budget is left to the database, and is not counted again until
+     * the next write or budget change. Each call counts one cache hit or miss. Loads are serialized, so a
+     * page request that arrives while the startup warm-up is loading waits for it instead of reading
+     * the whole history a second time.
+     *
+     * @return Whether the cache is expected to hold the user's expenses now
+     */
+    private boolean loadIntoCache(int userId) {
+        if (expenseCache.isCached(userId)) {
+            return true;
+        }
+        if (isTooLargeToCache(userId)) {
+            return false;
+        }
+        synchronized (cacheLoadLock) {
+            return loadIntoCacheLocked(userId);
+        }
+    }
+
+    private boolean loadIntoCacheLocked(int userId) {
+        // Already counted by loadIntoCache; another request may have loaded it while this one waited
+        if (expenseCache.contains(userId)) {
+            return true;
+        }
+        if (isTooLargeToCache(userId)) {
+            return false;
+        }
+        long version = expenseCache.version();
+        if (!expenseCache.mayHold(dbHelper.getExpenseCount(userId))) {
+            tooLargeToCache.put(userId, version);
+            return false;
+        }
+        long start = android.os.SystemClock.uptimeMillis();
+        List<Expense> expenses = dbHelper.getExpenses(userId);
+        expenseCache.put(userId, expenses, version);
+        if (!expenseCache.contains(userId)) {
+            if (expenseCache.version() == version) {
+                // Refused by the budget rather than discarded because of a concurrent write
+                tooLargeToCache.put(userId, version);
+            }
+            return false;
+        }
+        android.util.Log.d("DataManager", "Loaded " + expenses.size() + " expenses into cache in " +
+                (android.os.SystemClock.uptimeMillis() - start) + " ms (hits " + expenseCache.getHitCount() +
+                ", misses " + expenseCache.getMissCount() + ")");
+        return true;
+    }
+
+    private boolean isTooLargeToCache(int userId) {
+        Long version = tooLargeToCache.get(userId);
+        return version != null && version == expenseCache.version();
+    }
+
+    /**
+     * Builds the Expense the database now holds for these values, the same way readExpense maps a row.
+     */
+    private static Expense newExpense(int id, String category, long amountCents, String note, String date, String imageUri) {
+        return new Expense(id, category != null ? category : "", amountCents, note != null ? note : "",
+                date != null ? date : "", imageUri != null ? imageUri : "", ExpenseDates.toEpochDay(date));
     }
 
     // Budget methods
-    public boolean setBudget(String category, double limit) {
+    public boolean setBudget(String category, long limitCents) {
         int userId = prefs.getInt("userId", -1);
         if (userId <= 0) return false;
-        return dbHelper.setBudget(userId, category, limit);
+        boolean saved = dbHelper.setBudget(userId, category, limitCents);
+        if (saved) {
+            dataChanged();
+        }
+        return saved;
     }
 
     public List<Budget> getBudgets() {
         int userId = prefs.getInt("userId", -1);
         if (userId <= 0) return new ArrayList<>();
-        
-        try {
-            String json = dbHelper.getBudgets(userId);
-            JSONArray jsonArray = new JSONArray(json);
-            List<Budget> budgets = new ArrayList<>();
-            
-            for (int i = 0; i < jsonArray.length(); i++) {
-                JSONObject obj = jsonArray.getJSONObject(i);
-                Budget budget = new Budget(
-                    obj.getString("category"),
-                    obj.getDouble("limit")
-                );
-                budgets.add(budget);
-            }
-            return budgets;
-        } catch (JSONException e) {
-            return new ArrayList<>();
-        }
+        return dbHelper.getBudgets(userId);
     }
 
     public boolean deleteBudget(String category) {
         int userId = prefs.getInt("userId", -1);
         if (userId <= 0) return false;
-        return dbHelper.deleteBudget(userId, category);
+        boolean deleted = dbHelper.deleteBudget(userId, category);
+        if (deleted) {
+            dataChanged();
+        }
+        return deleted;
     }
 
     // Category methods
-    public List<String> getCategories() {
+    /**
+     * Returns the categories offered to the current user, in display order. A user who has never
+     * saved a list gets the default categories, which are saved on first use.
+     * The list is kept in memory after the first read, but that read and every addCategory() write
+     * the database, so screens use getCategoriesAsync and addCategoryAsync.
+     */
+    public synchronized List<String> getCategories() {
         int userId = prefs.getInt("userId", -1);
-        List<String> categories = new ArrayList<>();
-        
-        // Default categories
-        String[] defaults = {"Food", "Transport", "Shopping", "Bills", "Entertainment", "Others"};
-        
-        if (userId <= 0) {
-            for (String c : defaults) categories.add(c);
-            return categories;
-        }
+        if (userId <= 0) return new ArrayList<>(Arrays.asList(DEFAULT_CATEGORIES));
 
-        String json = prefs.getString("categories_" + userId, null);
-        if (json == null) {
-            for (String c : defaults) categories.add(c);
-            return categories;
-        }
-
-        try {
-            JSONArray jsonArray = new JSONArray(json);
-            for (int i = 0; i < jsonArray.length(); i++) {
-                categories.add(jsonArray.getString(i));
+        if (userCategories == null || userCategoriesUserId != userId) {
+            List<String> categories = dbHelper.getUserCategories(userId);
+            if (categories.isEmpty()) {
+                categories = new ArrayList<>(Arrays.asList(DEFAULT_CATEGORIES));
+                dbHelper.setUserCategories(userId, categories);
             }
-        } catch (JSONException e) {
-            for (String c : defaults) categories.add(c);
+            userCategories = categories;
+            userCategoriesUserId = userId;
         }
-        return categories;
+        return new ArrayList<>(userCategories);
     }
 
-    public boolean addCategory(String category) {
+    public synchronized boolean addCategory(String category) {
         int userId = prefs.getInt("userId", -1);
         if (userId <= 0) return false;
         
@@ -335,94 +1056,56 @@ public class DataManager {
             categories.add(category);
         }
         
-        return saveCategories(userId, categories);
-    }
-    
-    private boolean saveCategories(int userId, List<String> categories) {
-        JSONArray jsonArray = new JSONArray();
-        for (String c : categories) {
-            jsonArray.put(c);
-        }
-        
-        SharedPreferences.Editor editor = prefs.edit();
-        editor.putString("categories_" + userId, jsonArray.toString());
-        editor.apply();
+        if (!dbHelper.setUserCategories(userId, categories)) return false;
+        userCategories = categories;
+        dataChanged();
         return true;
     }
 
+    private synchronized void clearUserCategories() {
+        userCategories = null;
+        userCategoriesUserId = -1;
+    }
+
     // Check if adding an expense would exceed the budget
     /**
      * Checks if adding a new expense amount would exceed the set budget for that category.
      *
      * @param category The category to check
-     * @param amount   The amount of the new expense
+     * @param amountCents The amount of the new expense in cents
      * @return BudgetCheckResult containing calculation details and whether budget is exceeded
      */
-    public BudgetCheckResult checkBudget(String category, double amount) {
-        List<Budget> budgets = getBudgets();
-        
-        // Find budget for this category
-        DataManager.Budget budget = null;
-        for (DataManager.Budget b : budgets) {
-            if (b.category.equals(category)) {
-                budget = b;
-                break;
-            }
-        }
-        
-        // If no budget set for this category, no check needed
-        if (budget == null) {
-            return new BudgetCheckResult(false, 0, 0, 0);
-        }
-        
-        // Calculate current total spent for this category
-        List<Expense> expenses = getExpenses();
-        double totalSpent = 0;
-        for (Expense expense : expenses) {
-            if (expense.category.equals(category)) {
-                totalSpent += expense.amount;
-            }
-        }
-        
-        // Calculate new total if this expense is added
-        double newTotal = totalSpent + amount;
-        boolean exceedsBudget = newTotal >= budget.limit;
-        
-        return new BudgetCheckResult(exceedsBudget, budget.limit, totalSpent, newTotal);
+    public BudgetCheckResult checkBudget(String category, long amountCents) {
+        return checkBudget(category, amountCents, -1);
     }
 
     // Check budget when updating an expense (need expense ID to exclude it from calculation)
-    public BudgetCheckResult checkBudgetOnUpdate(String category, double newAmount, int expenseId) {
-        List<Budget> budgets = getBudgets();
-        
-        // Find budget for this category
-        DataManager.Budget budget = null;
-        for (DataManager.Budget b : budgets) {
-            if (b.category.equals(category)) {
-                budget = b;
-                break;
-            }
-        }
-        
+    public BudgetCheckResult checkBudgetOnUpdate(String category, long newAmountCents, int expenseId) {
+        return checkBudget(category, newAmountCents, expenseId);
+    }
+
+    /**
+     * Checks a category budget with two indexed lookups: the budget itself and the category total.
+     * This runs on every save, so it deliberately avoids loading the user's budgets or expenses.
+     */
+    private BudgetCheckResult checkBudget(String category, long amountCents, int excludeExpenseId) {
+        int userId = prefs.getInt("userId", -1);
+        if (userId <= 0) return new BudgetCheckResult(false, 0, 0, 0);
+
         // If no budget set for this category, no check needed
+        Budget budget = dbHelper.getBudget(userId, category);
         if (budget == null) {
             return new BudgetCheckResult(false, 0, 0, 0);
         }
-        
-        // Calculate current total spent for this category (excluding the expense being updated)
-        List<Expense> expenses = getExpenses();
-        double totalSpent = 0;
-        for (Expense expense : expenses) {
-            if (expense.category.equals(category) && expense.id != expenseId) {
-                totalSpent += expense.amount;
-            }
-        }
-        
-        // Add new amount
-        double newTotal = totalSpent + newAmount;
-        boolean exceedsBudget = newTotal >= budget.limit;
-        
-        return new BudgetCheckResult(exceedsBudget, budget.limit, totalSpent, newTotal);
+
+        // Current total spent for this category, excluding the expense being updated if any
+        long totalSpentCents = dbHelper.getCategoryTotalCents(userId, category, excludeExpenseId);
+
+        // Calculate new total if this expense is added
+        long newTotalCents = totalSpentCents + amountCents;
+        boolean exceedsBudget = newTotalCents >= budget.limitCents;
+
+        return new BudgetCheckResult(exceedsBudget, budget.limitCents, totalSpentCents, newTotalCents);
     }
 
     // Result classes
@@ -454,42 +1137,65 @@ public class DataManager {
     public static class Expense {
         public int id;
         public String category;
-        public double amount;
+        public long amountCents;
         public String note;
         public String date;
         public String imageUri;
+        public int dateDay; // Epoch day parsed from date, see ExpenseDates
 
-        public Expense(int id, String category, double amount, String note, String date, String imageUri) {
+        public Expense(int id, String category, long amountCents, String note, String date, String imageUri, int dateDay) {
             this.id = id;
             this.category = category;
-            this.amount = amount;
+            this.amountCents = amountCents;
             this.note = note;
             this.date = date;
             this.imageUri = imageUri;
+            this.dateDay = dateDay;
         }
     }
 
     public static class Budget {
         public String category;
-        public double limit;
+        public long limitCents;
+
+        public Budget(String category, long limitCents) {
+            this.category = category;
+            this.limitCents = limitCents;
+        }
+    }
+
+    public static class CategoryTotal {
+        public String category;
+        public long totalCents;
+        public int count;
 
-        public Budget(String category, double limit) {
+        public CategoryTotal(String category, long totalCents, int count) {
             this.category = category;
-            this.limit = limit;
+            this.totalCents = totalCents;
+            this.count = count;
         }
     }
 
+    public static class ImportResult {
+        public int imported;
+        public int rejected;
+        // "Line n: reason" for the first ExpenseImporter.MAX_REPORTED_ERRORS rejected rows
+        public final List<String> errors = new ArrayList<>();
+        // Why the import stopped before the end of the file, or null if it read the whole file
+        public String failure;
+    }
+
     public static class BudgetCheckResult {
         public boolean exceedsBudget;
-        public double budgetLimit;
-        public double currentSpent;
-        public double newTotal;
+        public long budgetLimitCents;
+        public long currentSpentCents;
+        public long newTotalCents;
 
-        public BudgetCheckResult(boolean exceedsBudget, double budgetLimit, double currentSpent, double newTotal) {
+        public BudgetCheckResult(boolean exceedsBudget, long budgetLimitCents, long currentSpentCents, long newTotalCents) {
             this.exceedsBudget = exceedsBudget;
-            this.budgetLimit = budgetLimit;
-            this.currentSpent = currentSpent;
-            this.newTotal = newTotal;
+            this.budgetLimitCents = budgetLimitCents;
+            this.currentSpentCents = currentSpentCents;
+            this.newTotalCents = newTotalCents;
         }
     }
 }
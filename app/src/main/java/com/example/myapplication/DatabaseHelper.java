@@ -2,24 +2,40 @@ package com.example.myapplication;
 
 import android.content.ContentValues;
 import android.content.Context;
+import android.content.SharedPreferences;
 import android.database.Cursor;
 import android.database.SQLException;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
 import android.util.Log;
-import java.nio.charset.StandardCharsets;
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
+import androidx.annotation.VisibleForTesting;
+import org.json.JSONArray;
+import org.json.JSONException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 
 /**
  * DatabaseHelper manages the SQLite database creation and version management.
  * It extends SQLiteOpenHelper to handle database lifecycle events (create, upgrade, open).
  *
  * This class defines the database schema including tables for Users, Expenses, and Budgets.
+ *
+ * The connection is opened once and kept for the lifetime of the process (DataManager holds the
+ * only instance), so methods here must not close the database. Write-ahead logging is enabled so
+ * reads can run concurrently with writes, and the hot expense write paths reuse compiled statements.
  */
 public class DatabaseHelper extends SQLiteOpenHelper {
     private static final String DATABASE_NAME = "expense_tracker.db";
-    private static final int DATABASE_VERSION = 5; // Incremented to add image URI
+    private static final int DATABASE_VERSION = 14; // Incremented to tokenize the search index as Unicode
+    // Oldest schema version onUpgrade can migrate in place; older databases are recreated
+    private static final int MIN_MIGRATABLE_VERSION = 4;
 
     // Users table
     private static final String TABLE_USERS = "users";
@@ -28,27 +44,161 @@ public class DatabaseHelper extends SQLiteOpenHelper {
     private static final String COL_PASSWORD_HASH = "password_hash";
     private static final String COL_PET_HASH = "pet_hash";
 
+    // Categories table: one row per distinct category name, shared by all users. Since version 12
+    // expenses, budgets and the rollup refer to categories by id; CategoryDictionary maps ids to names.
+    private static final String TABLE_CATEGORIES = "categories";
+    private static final String COL_CATEGORY_ID = "id";
+    private static final String COL_CATEGORY_NAME = "name";
+
+    // User categories table: the categories offered in each user's category picker, in order
+    private static final String TABLE_USER_CATEGORIES = "user_categories";
+    private static final String COL_USER_CATEGORY_USER_ID = "user_id";
+    private static final String COL_USER_CATEGORY_ID = "category_id";
+    private static final String COL_USER_CATEGORY_POSITION = "position";
+
+    // Before version 12 categories were kept per user in SharedPreferences, as a JSON array of names
+    private static final String LEGACY_PREFS_NAME = "ExpenseTracker";
+    private static final String LEGACY_CATEGORIES_KEY_PREFIX = "categories_";
+
     // Expenses table
     private static final String TABLE_EXPENSES = "expenses";
     private static final String COL_EXPENSE_ID = "id";
     private static final String COL_EXPENSE_USER_ID = "user_id";
-    private static final String COL_EXPENSE_CATEGORY = "category";
-    private static final String COL_EXPENSE_AMOUNT = "amount";
+    private static final String COL_EXPENSE_CATEGORY = "category"; // Category name, replaced by category_id in version 12
+    private static final String COL_EXPENSE_CATEGORY_ID = "category_id";
+    private static final String COL_EXPENSE_AMOUNT = "amount"; // Integer cents since version 11, see Money
     private static final String COL_EXPENSE_NOTE = "note";
     private static final String COL_EXPENSE_DATE = "date";
     private static final String COL_EXPENSE_IMAGE_URI = "image_uri";
+    private static final String COL_EXPENSE_DATE_DAY = "date_day"; // Epoch day parsed from date
 
     // Budgets table
     private static final String TABLE_BUDGETS = "budgets";
     private static final String COL_BUDGET_USER_ID = "user_id";
-    private static final String COL_BUDGET_CATEGORY = "category";
-    private static final String COL_BUDGET_LIMIT = "limit_amount";
+    private static final String COL_BUDGET_CATEGORY = "category"; // Category name, replaced by category_id in version 12
+    private static final String COL_BUDGET_CATEGORY_ID = "category_id";
+    private static final String COL_BUDGET_LIMIT = "limit_amount"; // Integer cents since version 11
+
+    // Category totals table: per-user, per-category, per-month rollup of the expenses table.
+    // Kept in step with expenses by every write path, and rebuildable with rebuildCategoryTotals().
+    private static final String TABLE_CATEGORY_TOTALS = "category_totals";
+    private static final String COL_TOTAL_USER_ID = "user_id";
+    private static final String COL_TOTAL_CATEGORY_ID = "category_id";
+    private static final String COL_TOTAL_PERIOD = "period"; // yyyyMM, see ExpenseDates.monthKey
+    private static final String COL_TOTAL_AMOUNT = "total"; // Integer cents since version 11
+    private static final String COL_TOTAL_COUNT = "count";
+
+    // Period for expenses whose date_day has not been backfilled yet
+    private static final int UNDATED_PERIOD = 0;
+
+    // Full-text index over the searchable expense fields. Its docid is the expense id, and triggers
+    // on the expenses table keep it in step with every insert, update and delete.
+    private static final String TABLE_EXPENSES_FTS = "expenses_fts";
+    private static final String COL_FTS_CATEGORY = "category"; // Category name
+    private static final String COL_FTS_AMOUNT = "amount_text"; // Amount formatted as shown, e.g. "12.50"
+    private static final String COL_FTS_USER_ID = "user_id"; // Owning user, the index's languageid
+    // Most recently added matches that searchExpenses() ranks; older ones are only counted in totals
+    private static final int SEARCH_CANDIDATES = 1000;
+
+    // Indexes
+    private static final String INDEX_EXPENSES_USER = "idx_expenses_user_id";
+    private static final String INDEX_EXPENSES_USER_CATEGORY = "idx_expenses_user_category";
+    private static final String INDEX_EXPENSES_USER_DATE = "idx_expenses_user_date";
+    private static final String INDEX_EXPENSES_PENDING_DATE_DAY = "idx_expenses_pending_date_day";
+    private static final String INDEX_EXPENSES_USER_AMOUNT = "idx_expenses_user_amount";
+    private static final String INDEX_CATEGORIES_NAME_NOCASE = "idx_categories_name_nocase";
+
+    // Expense queries alias the expenses table as "e". Sorting by category name joins the categories
+    // table as "c" and walks it first, in name order, so neither side has to be sorted.
+    private static final String EXPENSES_FROM = TABLE_EXPENSES + " e";
+    private static final String EXPENSES_BY_CATEGORY_FROM = TABLE_CATEGORIES + " c CROSS JOIN " + TABLE_EXPENSES +
+            " e ON e." + COL_EXPENSE_CATEGORY_ID + "=c." + COL_CATEGORY_ID;
+
+    // Columns read into DataManager.Expense, in the order readExpense() expects
+    private static final String[] EXPENSE_COLUMNS = {"e." + COL_EXPENSE_ID, "e." + COL_EXPENSE_CATEGORY_ID,
+            "e." + COL_EXPENSE_AMOUNT, "e." + COL_EXPENSE_NOTE, "e." + COL_EXPENSE_DATE, "e." + COL_EXPENSE_IMAGE_URI,
+            "e." + COL_EXPENSE_DATE_DAY};
+
+    // Rows per transaction when backfilling derived columns
+    private static final int BACKFILL_BATCH_SIZE = 500;
+
+    // Every query the app issues on a hot path, with sample arguments. QueryPlanTest checks that
+    // each one is served by an index; add new hot queries here so that it covers them too.
+    @VisibleForTesting
+    static final String[][] HOT_QUERIES = {
+            {"SELECT " + COL_EXPENSE_ID + ", " + COL_EXPENSE_CATEGORY_ID + ", " + COL_EXPENSE_AMOUNT + ", " + COL_EXPENSE_NOTE + ", " +
+                    COL_EXPENSE_DATE + ", " + COL_EXPENSE_IMAGE_URI + " FROM " + TABLE_EXPENSES +
+                    " WHERE " + COL_EXPENSE_USER_ID + "=? ORDER BY " + COL_EXPENSE_ID + " DESC", "1"},
+            {"SELECT " + COL_EXPENSE_ID + " FROM " + TABLE_EXPENSES + " WHERE " + COL_EXPENSE_USER_ID + "=? AND " +
+                    COL_EXPENSE_DATE_DAY + " BETWEEN ? AND ? ORDER BY " + COL_EXPENSE_DATE_DAY + " DESC, " + COL_EXPENSE_ID + " DESC",
+                    "1", "19000", "19030"},
+            {"SELECT e." + COL_EXPENSE_ID + " FROM " + EXPENSES_FROM + " WHERE e." + COL_EXPENSE_USER_ID + "=? ORDER BY " +
+                    expenseOrderBy("date_desc"), "1"},
+            {"SELECT e." + COL_EXPENSE_ID + " FROM " + EXPENSES_FROM + " WHERE e." + COL_EXPENSE_USER_ID + "=? ORDER BY " +
+                    expenseOrderBy("amount_asc"), "1"},
+            {"SELECT e." + COL_EXPENSE_ID + " FROM " + EXPENSES_FROM + " WHERE e." + COL_EXPENSE_USER_ID + "=? AND e." +
+                    COL_EXPENSE_DATE_DAY + "<=? AND (e." + COL_EXPENSE_DATE_DAY + "<? OR e." + COL_EXPENSE_ID + "<?) ORDER BY " +
+                    expenseOrderBy("date_desc") + " LIMIT 50", "1", "19000", "19000", "500"},
+            {"SELECT SUM(" + COL_TOTAL_AMOUNT + ") FROM " + TABLE_CATEGORY_TOTALS + " WHERE " + COL_TOTAL_USER_ID + "=?", "1"},
+            {"SELECT e." + COL_EXPENSE_ID + " FROM " + EXPENSES_BY_CATEGORY_FROM + " WHERE e." + COL_EXPENSE_USER_ID +
+                    "=? ORDER BY " + expenseOrderBy("category_desc"), "1"},
+            {"SELECT e." + COL_EXPENSE_ID + " FROM " + EXPENSES_BY_CATEGORY_FROM + " WHERE e." + COL_EXPENSE_USER_ID +
+                    "=? AND c." + COL_CATEGORY_NAME + " COLLATE NOCASE>=? AND (c." + COL_CATEGORY_NAME + " COLLATE NOCASE>? OR c." +
+                    COL_CATEGORY_ID + ">? OR (c." + COL_CATEGORY_ID + "=? AND e." + COL_EXPENSE_ID + ">?)) ORDER BY " +
+                    expenseOrderBy("category_asc") + " LIMIT 50", "1", "Food", "Food", "1", "1", "500"},
+            {"SELECT " + COL_EXPENSE_ID + " FROM " + TABLE_EXPENSES + " WHERE " + COL_EXPENSE_USER_ID + "=? AND " +
+                    COL_EXPENSE_ID + ">? ORDER BY " + COL_EXPENSE_ID + " LIMIT 1000", "1", "500"},
+            {"SELECT SUM(" + COL_TOTAL_AMOUNT + ") FROM " + TABLE_CATEGORY_TOTALS +
+                    " WHERE " + COL_TOTAL_USER_ID + "=? AND " + COL_TOTAL_CATEGORY_ID + "=?", "1", "1"},
+            {"SELECT " + COL_TOTAL_CATEGORY_ID + ", SUM(" + COL_TOTAL_AMOUNT + "), SUM(" + COL_TOTAL_COUNT + ") FROM " +
+                    TABLE_CATEGORY_TOTALS + " WHERE " + COL_TOTAL_USER_ID + "=? GROUP BY " + COL_TOTAL_CATEGORY_ID, "1"},
+            {"SELECT " + COL_EXPENSE_USER_ID + ", " + COL_EXPENSE_CATEGORY_ID + ", " + COL_EXPENSE_AMOUNT + ", " +
+                    COL_EXPENSE_DATE_DAY + " FROM " + TABLE_EXPENSES + " WHERE " + COL_EXPENSE_ID + "=?", "1"},
+            {"DELETE FROM " + TABLE_EXPENSES + " WHERE " + COL_EXPENSE_USER_ID + "=?", "1"},
+            {"DELETE FROM " + TABLE_EXPENSES + " WHERE " + COL_EXPENSE_ID + "=?", "1"},
+            {"SELECT " + COL_BUDGET_CATEGORY_ID + ", " + COL_BUDGET_LIMIT + " FROM " + TABLE_BUDGETS +
+                    " WHERE " + COL_BUDGET_USER_ID + "=?", "1"},
+            {"SELECT " + COL_BUDGET_LIMIT + " FROM " + TABLE_BUDGETS +
+                    " WHERE " + COL_BUDGET_USER_ID + "=? AND " + COL_BUDGET_CATEGORY_ID + "=?", "1", "1"},
+            {"SELECT " + COL_USER_ID + ", " + COL_USERNAME + ", " + COL_PASSWORD_HASH + " FROM " + TABLE_USERS +
+                    " WHERE " + COL_USERNAME + "=?", "user"},
+            {"SELECT " + COL_USER_ID + " FROM " + TABLE_USERS + " WHERE " + COL_USER_ID + "=?", "1"},
+    };
 
     private Context context;
+    private final CategoryDictionary categories;
+    private final PasswordHasher passwordHasher;
+
+    // Compiled statements for the hot write paths, created lazily and reused until close()
+    private SQLiteStatement insertCategoryStatement;
+    private SQLiteStatement insertExpenseStatement;
+    private SQLiteStatement updateExpenseStatement;
+    private SQLiteStatement deleteExpenseStatement;
+    private SQLiteStatement adjustTotalStatement;
+    private SQLiteStatement insertTotalStatement;
+    private SQLiteStatement pruneTotalStatement;
+
+    // How long each migrateTo() step of the last upgrade took, in milliseconds by version
+    private final Map<Integer, Long> migrationMillis = new LinkedHashMap<>();
     
-    public DatabaseHelper(Context context) {
-        super(context, DATABASE_NAME, null, DATABASE_VERSION);
+    /**
+     * @param categories Dictionary to fill from the categories table and keep in step with it
+     */
+    public DatabaseHelper(Context context, CategoryDictionary categories) {
+        this(context, categories, DATABASE_NAME);
+    }
+
+    /**
+     * Opens the database file with the given name instead of the app's, so instrumented tests can
+     * work on a database of their own.
+     */
+    @VisibleForTesting
+    DatabaseHelper(Context context, CategoryDictionary categories, String name) {
+        super(context, name, null, DATABASE_VERSION);
         this.context = context;
+        this.categories = categories;
+        this.passwordHasher = new PasswordHasher(context);
+        setWriteAheadLoggingEnabled(true);
         Log.d("DatabaseHelper", "DatabaseHelper constructor called");
     }
 
@@ -75,28 +225,26 @@ public class DatabaseHelper extends SQLiteOpenHelper {
             db.execSQL(createUsersTable);
             Log.d("DatabaseHelper", "Users table created");
 
+            createCategoriesTables(db);
+            Log.d("DatabaseHelper", "Categories tables created");
+
             // Create expenses table
-            String createExpensesTable = "CREATE TABLE " + TABLE_EXPENSES + " (" +
-                    COL_EXPENSE_ID + " INTEGER PRIMARY KEY AUTOINCREMENT, " +
-                    COL_EXPENSE_USER_ID + " INTEGER NOT NULL, " +
-                    COL_EXPENSE_CATEGORY + " TEXT NOT NULL, " +
-                    COL_EXPENSE_AMOUNT + " REAL NOT NULL, " +
-                    COL_EXPENSE_NOTE + " TEXT, " +
-                    COL_EXPENSE_DATE + " TEXT, " +
-                    COL_EXPENSE_IMAGE_URI + " TEXT, " +
-                    "FOREIGN KEY(" + COL_EXPENSE_USER_ID + ") REFERENCES " + TABLE_USERS + "(" + COL_USER_ID + "))";
-            db.execSQL(createExpensesTable);
+            createExpensesTable(db, TABLE_EXPENSES);
+            createExpenseIndexes(db);
+            createDateIndexes(db);
+            createSortIndexes(db);
             Log.d("DatabaseHelper", "Expenses table created");
 
             // Create budgets table
-            String createBudgetsTable = "CREATE TABLE " + TABLE_BUDGETS + " (" +
-                    COL_BUDGET_USER_ID + " INTEGER NOT NULL, " +
-                    COL_BUDGET_CATEGORY + " TEXT NOT NULL, " +
-                    COL_BUDGET_LIMIT + " REAL NOT NULL, " +
-                    "PRIMARY KEY(" + COL_BUDGET_USER_ID + ", " + COL_BUDGET_CATEGORY + "), " +
-                    "FOREIGN KEY(" + COL_BUDGET_USER_ID + ") REFERENCES " + TABLE_USERS + "(" + COL_USER_ID + "))";
-            db.execSQL(createBudgetsTable);
+            createBudgetsTable(db, TABLE_BUDGETS);
             Log.d("DatabaseHelper", "Budgets table created");
+
+            createCategoryTotalsTable(db);
+            Log.d("DatabaseHelper", "Category totals table created");
+
+            createExpenseSearchTable(db);
+            createExpenseSearchTriggers(db);
+            Log.d("DatabaseHelper", "Expense search index created");
             Log.d("DatabaseHelper", "Database created successfully");
         } catch (Exception e) {
             Log.e("DatabaseHelper", "Error creating database: " + e.getMessage(), e);
@@ -105,23 +253,519 @@ public class DatabaseHelper extends SQLiteOpenHelper {
         }
     }
     
+    @Override
+    public void onConfigure(SQLiteDatabase db) {
+        super.onConfigure(db);
+        // Enable foreign keys every time database is opened (must happen outside a transaction)
+        db.setForeignKeyConstraintsEnabled(true);
+    }
+
     @Override
     public void onOpen(SQLiteDatabase db) {
         super.onOpen(db);
-        // Enable foreign keys every time database is opened
-        db.execSQL("PRAGMA foreign_keys = ON");
+        loadCategories(db);
+        if (!db.isReadOnly()) {
+            runPendingBackfills(db);
+        }
+    }
+
+    /**
+     * Closes the cached statements together with the underlying connection.
+     * Only needed when the database file itself goes away (see resetDatabase).
+     */
+    @Override
+    public synchronized void close() {
+        releaseStatements();
+        super.close();
+    }
+
+    private synchronized void releaseStatements() {
+        if (insertCategoryStatement != null) {
+            insertCategoryStatement.close();
+            insertCategoryStatement = null;
+        }
+        if (insertExpenseStatement != null) {
+            insertExpenseStatement.close();
+            insertExpenseStatement = null;
+        }
+        if (updateExpenseStatement != null) {
+            updateExpenseStatement.close();
+            updateExpenseStatement = null;
+        }
+        if (deleteExpenseStatement != null) {
+            deleteExpenseStatement.close();
+            deleteExpenseStatement = null;
+        }
+        if (adjustTotalStatement != null) {
+            adjustTotalStatement.close();
+            adjustTotalStatement = null;
+        }
+        if (insertTotalStatement != null) {
+            insertTotalStatement.close();
+            insertTotalStatement = null;
+        }
+        if (pruneTotalStatement != null) {
+            pruneTotalStatement.close();
+            pruneTotalStatement = null;
+        }
+    }
+
+    /**
+     * Creates the categories dictionary and the per-user category lists. The NOCASE index on names
+     * lets category sorts walk the dictionary in display order instead of sorting expenses.
+     */
+    private void createCategoriesTables(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE IF NOT EXISTS " + TABLE_CATEGORIES + " (" +
+                COL_CATEGORY_ID + " INTEGER PRIMARY KEY AUTOINCREMENT, " +
+                COL_CATEGORY_NAME + " TEXT NOT NULL UNIQUE)");
+        db.execSQL("CREATE INDEX IF NOT EXISTS " + INDEX_CATEGORIES_NAME_NOCASE + " ON " + TABLE_CATEGORIES + " (" +
+                COL_CATEGORY_NAME + " COLLATE NOCASE)");
+        db.execSQL("CREATE TABLE IF NOT EXISTS " + TABLE_USER_CATEGORIES + " (" +
+                COL_USER_CATEGORY_USER_ID + " INTEGER NOT NULL, " +
+                COL_USER_CATEGORY_ID + " INTEGER NOT NULL, " +
+                COL_USER_CATEGORY_POSITION + " INTEGER NOT NULL, " +
+                "PRIMARY KEY(" + COL_USER_CATEGORY_USER_ID + ", " + COL_USER_CATEGORY_ID + "), " +
+                "FOREIGN KEY(" + COL_USER_CATEGORY_USER_ID + ") REFERENCES " + TABLE_USERS + "(" + COL_USER_ID + "), " +
+                "FOREIGN KEY(" + COL_USER_CATEGORY_ID + ") REFERENCES " + TABLE_CATEGORIES + "(" + COL_CATEGORY_ID + "))");
+    }
+
+    private void createExpensesTable(SQLiteDatabase db, String table) {
+        db.execSQL("CREATE TABLE " + table + " (" +
+                COL_EXPENSE_ID + " INTEGER PRIMARY KEY AUTOINCREMENT, " +
+                COL_EXPENSE_USER_ID + " INTEGER NOT NULL, " +
+                COL_EXPENSE_CATEGORY_ID + " INTEGER NOT NULL, " +
+                COL_EXPENSE_AMOUNT + " INTEGER NOT NULL, " +
+                COL_EXPENSE_NOTE + " TEXT, " +
+                COL_EXPENSE_DATE + " TEXT, " +
+                COL_EXPENSE_IMAGE_URI + " TEXT, " +
+                COL_EXPENSE_DATE_DAY + " INTEGER, " +
+                "FOREIGN KEY(" + COL_EXPENSE_USER_ID + ") REFERENCES " + TABLE_USERS + "(" + COL_USER_ID + "), " +
+                "FOREIGN KEY(" + COL_EXPENSE_CATEGORY_ID + ") REFERENCES " + TABLE_CATEGORIES + "(" + COL_CATEGORY_ID + "))");
+    }
+
+    private void createBudgetsTable(SQLiteDatabase db, String table) {
+        db.execSQL("CREATE TABLE " + table + " (" +
+                COL_BUDGET_USER_ID + " INTEGER NOT NULL, " +
+                COL_BUDGET_CATEGORY_ID + " INTEGER NOT NULL, " +
+                COL_BUDGET_LIMIT + " INTEGER NOT NULL, " +
+                "PRIMARY KEY(" + COL_BUDGET_USER_ID + ", " + COL_BUDGET_CATEGORY_ID + "), " +
+                "FOREIGN KEY(" + COL_BUDGET_USER_ID + ") REFERENCES " + TABLE_USERS + "(" + COL_USER_ID + "), " +
+                "FOREIGN KEY(" + COL_BUDGET_CATEGORY_ID + ") REFERENCES " + TABLE_CATEGORIES + "(" + COL_CATEGORY_ID + "))");
+    }
+
+    /**
+     * Creates the indexes used by the per-user expense queries.
+     * (user_id, id DESC) serves the expense list and clearExpenses, and (user_id, category_id) finds a
+     * user's expenses per category, which the category sorts read in dictionary order.
+     */
+    private void createExpenseIndexes(SQLiteDatabase db) {
+        db.execSQL("CREATE INDEX IF NOT EXISTS " + INDEX_EXPENSES_USER + " ON " + TABLE_EXPENSES + " (" +
+                COL_EXPENSE_USER_ID + ", " + COL_EXPENSE_ID + " DESC)");
+        db.execSQL("CREATE INDEX IF NOT EXISTS " + INDEX_EXPENSES_USER_CATEGORY + " ON " + TABLE_EXPENSES + " (" +
+                COL_EXPENSE_USER_ID + ", " + COL_EXPENSE_CATEGORY_ID + ")");
+    }
+
+    /**
+     * Creates the indexes on the normalized date column: (user_id, date_day) answers date range
+     * queries, and a partial index keeps rows that still need a date_day backfill cheap to find.
+     */
+    private void createDateIndexes(SQLiteDatabase db) {
+        db.execSQL("CREATE INDEX IF NOT EXISTS " + INDEX_EXPENSES_USER_DATE + " ON " + TABLE_EXPENSES + " (" +
+                COL_EXPENSE_USER_ID + ", " + COL_EXPENSE_DATE_DAY + ")");
+        db.execSQL("CREATE INDEX IF NOT EXISTS " + INDEX_EXPENSES_PENDING_DATE_DAY + " ON " + TABLE_EXPENSES + " (" +
+                COL_EXPENSE_ID + ") WHERE " + COL_EXPENSE_DATE_DAY + " IS NULL");
+    }
+
+    /**
+     * Creates the index behind the amount orders of getExpenses(userId, sortType). The date orders use
+     * the date index and the category orders the category index. Each index ends in the implicit
+     * rowid, so the id tie-breaker is also read in index order.
+     */
+    private void createSortIndexes(SQLiteDatabase db) {
+        db.execSQL("CREATE INDEX IF NOT EXISTS " + INDEX_EXPENSES_USER_AMOUNT + " ON " + TABLE_EXPENSES + " (" +
+                COL_EXPENSE_USER_ID + ", " + COL_EXPENSE_AMOUNT + ")");
+    }
+
+    /**
+     * Creates the category totals rollup. The primary key doubles as the index for per-user reads
+     * grouped by category, so they never sort.
+     */
+    private void createCategoryTotalsTable(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE IF NOT EXISTS " + TABLE_CATEGORY_TOTALS + " (" +
+                COL_TOTAL_USER_ID + " INTEGER NOT NULL, " +
+                COL_TOTAL_CATEGORY_ID + " INTEGER NOT NULL, " +
+                COL_TOTAL_PERIOD + " INTEGER NOT NULL, " +
+                COL_TOTAL_AMOUNT + " INTEGER NOT NULL, " +
+                COL_TOTAL_COUNT + " INTEGER NOT NULL, " +
+                "PRIMARY KEY(" + COL_TOTAL_USER_ID + ", " + COL_TOTAL_CATEGORY_ID + ", " + COL_TOTAL_PERIOD + "), " +
+                "FOREIGN KEY(" + COL_TOTAL_USER_ID + ") REFERENCES " + TABLE_USERS + "(" + COL_USER_ID + "))");
+    }
+
+    /**
+     * Creates the FTS4 search index. FTS4 rather than FTS5 because FTS5 is not available in the SQLite
+     * builds of older supported Android versions. It holds category names rather than ids, so a
+     * search for "food" matches without a join. The owning user is its languageid, which keeps a
+     * separate index per user: a match only ever reads that user's terms, however many other users
+     * share the device, and a query without a user id matches nothing. The unicode61 tokenizer
+     * splits words and lowercases them the way toFtsQuery() and HomeFragment.matchesSearch() do:
+     * any character that is not a letter or digit, such as "—", "€" or a no-break space, separates
+     * words, and accented letters keep their accents, so "école" finds "École" but not "Ecole".
+     */
+    private void createExpenseSearchTable(SQLiteDatabase db) {
+        db.execSQL("CREATE VIRTUAL TABLE IF NOT EXISTS " + TABLE_EXPENSES_FTS + " USING fts4(" +
+                COL_EXPENSE_NOTE + ", " + COL_FTS_CATEGORY + ", " + COL_EXPENSE_DATE + ", " + COL_FTS_AMOUNT +
+                ", languageid=\"" + COL_FTS_USER_ID + "\", tokenize=unicode61 \"remove_diacritics=0\")");
+    }
+
+    /**
+     * Creates the triggers that keep the search index in step with the expenses table.
+     */
+    private void createExpenseSearchTriggers(SQLiteDatabase db) {
+        String categoryName = "(SELECT " + COL_CATEGORY_NAME + " FROM " + TABLE_CATEGORIES + " WHERE " + COL_CATEGORY_ID +
+                "=new." + COL_EXPENSE_CATEGORY_ID + ")";
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS " + TABLE_EXPENSES_FTS + "_insert AFTER INSERT ON " + TABLE_EXPENSES + " BEGIN " +
+                "INSERT INTO " + TABLE_EXPENSES_FTS + " (docid, " + COL_FTS_USER_ID + ", " + COL_EXPENSE_NOTE + ", " +
+                COL_FTS_CATEGORY + ", " + COL_EXPENSE_DATE + ", " + COL_FTS_AMOUNT + ") VALUES (new." + COL_EXPENSE_ID + ", new." +
+                COL_EXPENSE_USER_ID + ", new." + COL_EXPENSE_NOTE + ", " + categoryName + ", new." + COL_EXPENSE_DATE + ", " +
+                ftsAmount("new." + COL_EXPENSE_AMOUNT) + "); END");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS " + TABLE_EXPENSES_FTS + "_update AFTER UPDATE OF " + COL_EXPENSE_NOTE + ", " +
+                COL_EXPENSE_CATEGORY_ID + ", " + COL_EXPENSE_DATE + ", " + COL_EXPENSE_AMOUNT + " ON " + TABLE_EXPENSES + " BEGIN " +
+                "UPDATE " + TABLE_EXPENSES_FTS + " SET " + COL_EXPENSE_NOTE + "=new." + COL_EXPENSE_NOTE + ", " +
+                COL_FTS_CATEGORY + "=" + categoryName + ", " + COL_EXPENSE_DATE + "=new." + COL_EXPENSE_DATE + ", " +
+                COL_FTS_AMOUNT + "=" + ftsAmount("new." + COL_EXPENSE_AMOUNT) + " WHERE docid=new." + COL_EXPENSE_ID + "; END");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS " + TABLE_EXPENSES_FTS + "_delete AFTER DELETE ON " + TABLE_EXPENSES + " BEGIN " +
+                "DELETE FROM " + TABLE_EXPENSES_FTS + " WHERE docid=old." + COL_EXPENSE_ID + "; END");
+    }
+
+    /**
+     * Drops and rebuilds the search index and its triggers from the expenses table.
+     */
+    private void rebuildExpenseSearchIndex(SQLiteDatabase db) {
+        db.execSQL("DROP TRIGGER IF EXISTS " + TABLE_EXPENSES_FTS + "_insert");
+        db.execSQL("DROP TRIGGER IF EXISTS " + TABLE_EXPENSES_FTS + "_update");
+        db.execSQL("DROP TRIGGER IF EXISTS " + TABLE_EXPENSES_FTS + "_delete");
+        db.execSQL("DROP TABLE IF EXISTS " + TABLE_EXPENSES_FTS);
+        createExpenseSearchTable(db);
+        db.execSQL("INSERT INTO " + TABLE_EXPENSES_FTS + " (docid, " + COL_FTS_USER_ID + ", " + COL_EXPENSE_NOTE + ", " +
+                COL_FTS_CATEGORY + ", " + COL_EXPENSE_DATE + ", " + COL_FTS_AMOUNT + ") SELECT e." + COL_EXPENSE_ID + ", e." +
+                COL_EXPENSE_USER_ID + ", e." + COL_EXPENSE_NOTE + ", c." + COL_CATEGORY_NAME + ", e." + COL_EXPENSE_DATE + ", " +
+                ftsAmount("e." + COL_EXPENSE_AMOUNT) + " FROM " + TABLE_EXPENSES + " e JOIN " + TABLE_CATEGORIES + " c ON c." +
+                COL_CATEGORY_ID + "=e." + COL_EXPENSE_CATEGORY_ID);
+        createExpenseSearchTriggers(db);
+    }
+
+    /**
+     * SQL for the searchable text of an amount in cents, e.g. 1250 becomes "12.50" like Money.formatPlain().
+     */
+    private static String ftsAmount(String amountColumn) {
+        return "printf('%.2f', " + amountColumn + " / 100.0)";
     }
 
+    /**
+     * Upgrades the schema one version at a time so existing data is kept.
+     * SQLiteOpenHelper runs this inside a single transaction and only records the new version once
+     * every step has succeeded, so an interrupted upgrade is rolled back and simply runs again on
+     * the next open. Each step is written to be safe to repeat.
+     * Version 12 also reads the legacy "ExpenseTracker" SharedPreferences file (see
+     * readLegacyCategoryLists()), so the upgrade does file I/O beyond the database; like the rest of
+     * the upgrade it runs on whichever thread first opens the database, which DataManager keeps off
+     * the main thread.
+     */
     @Override
     public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
         Log.d("DatabaseHelper", "Upgrading database from version " + oldVersion + " to " + newVersion);
-        // Drop all tables and recreate
-        db.execSQL("DROP TABLE IF EXISTS " + TABLE_BUDGETS);
-        db.execSQL("DROP TABLE IF EXISTS " + TABLE_EXPENSES);
-        db.execSQL("DROP TABLE IF EXISTS " + TABLE_USERS);
-        onCreate(db);
+        if (oldVersion < MIN_MIGRATABLE_VERSION) {
+            // Schemas this old have no migration path, so drop all tables and recreate
+            Log.w("DatabaseHelper", "Version " + oldVersion + " is too old to migrate, recreating database");
+            db.execSQL("DROP TABLE IF EXISTS " + TABLE_BUDGETS);
+            db.execSQL("DROP TABLE IF EXISTS " + TABLE_EXPENSES);
+            db.execSQL("DROP TABLE IF EXISTS " + TABLE_USERS);
+            onCreate(db);
+            Log.d("DatabaseHelper", "Database upgrade completed");
+            return;
+        }
+
+        migrationMillis.clear();
+        for (int version = oldVersion + 1; version <= newVersion; version++) {
+            long start = System.currentTimeMillis();
+            migrateTo(db, version);
+            long millis = System.currentTimeMillis() - start;
+            migrationMillis.put(version, millis);
+            Log.d("DatabaseHelper", "Migrated to version " + version + " in " + millis + " ms");
+        }
         Log.d("DatabaseHelper", "Database upgrade completed");
     }
+
+    /**
+     * Returns how long each step of the last upgrade took, in milliseconds by version, in step order.
+     * Empty if this helper has not upgraded the database.
+     */
+    @VisibleForTesting
+    synchronized Map<Integer, Long> getMigrationMillis() {
+        return new LinkedHashMap<>(migrationMillis);
+    }
+
+    /**
+     * Applies the schema changes introduced by a single database version.
+     *
+     * @param db      The database being upgraded
+     * @param version The version to migrate to, from version - 1
+     */
+    private void migrateTo(SQLiteDatabase db, int version) {
+        switch (version) {
+            case 5:
+                // Receipt image URI
+                addColumnIfMissing(db, TABLE_EXPENSES, COL_EXPENSE_IMAGE_URI, "TEXT");
+                break;
+            case 6:
+                // Per-user expense indexes; version 12 creates them on the rebuilt expenses table
+                break;
+            case 7:
+                // Normalized epoch-day date; existing rows are filled in by runPendingBackfills()
+                addColumnIfMissing(db, TABLE_EXPENSES, COL_EXPENSE_DATE_DAY, "INTEGER");
+                createDateIndexes(db);
+                break;
+            case 8:
+                createSortIndexes(db);
+                break;
+            case 9:
+                // Category totals rollup; version 12 creates it keyed by category id
+                break;
+            case 10:
+                // Search index; version 14 builds it partitioned by user, once category ids exist
+                break;
+            case 11:
+                convertAmountsToCents(db);
+                break;
+            case 12:
+                normalizeCategories(db);
+                break;
+            case 13:
+                // Search index partitioned by user; version 14 builds it with the unicode61 tokenizer
+                break;
+            case 14:
+                rebuildExpenseSearchIndex(db);
+                break;
+            default:
+                throw new IllegalStateException("No migration defined for database version " + version);
+        }
+    }
+
+    /**
+     * Converts every stored amount from REAL dollars to cents. The values are updated in place; the
+     * columns take their INTEGER type when version 12 copies the expenses and budgets tables. Search
+     * triggers written before version 12 are dropped first, as the index holds formatted text that
+     * does not change.
+     */
+    private void convertAmountsToCents(SQLiteDatabase db) {
+        db.execSQL("DROP TRIGGER IF EXISTS " + TABLE_EXPENSES_FTS + "_insert");
+        db.execSQL("DROP TRIGGER IF EXISTS " + TABLE_EXPENSES_FTS + "_update");
+        db.execSQL("DROP TRIGGER IF EXISTS " + TABLE_EXPENSES_FTS + "_delete");
+        db.execSQL("UPDATE " + TABLE_EXPENSES + " SET " + COL_EXPENSE_AMOUNT + "=CAST(ROUND(" + COL_EXPENSE_AMOUNT +
+                " * 100) AS INTEGER)");
+        db.execSQL("UPDATE " + TABLE_BUDGETS + " SET " + COL_BUDGET_LIMIT + "=CAST(ROUND(" + COL_BUDGET_LIMIT +
+                " * 100) AS INTEGER)");
+    }
+
+    /**
+     * Replaces category names with ids from a new categories table. Every name used by an expense, a
+     * budget or a category list saved in SharedPreferences gets a row. SQLite cannot change a column,
+     * so the expenses and budgets tables are copied into new tables with ids in place of names and
+     * swapped in, keeping every expense id; indexes are then recreated and the rollup is recomputed.
+     * The search index and its triggers are left to version 14. The saved lists become
+     * user_categories rows. Their preference keys are left in place; nothing reads them any more.
+     */
+    private void normalizeCategories(SQLiteDatabase db) {
+        createCategoriesTables(db);
+        db.execSQL("INSERT OR IGNORE INTO " + TABLE_CATEGORIES + " (" + COL_CATEGORY_NAME + ") SELECT " +
+                COL_EXPENSE_CATEGORY + " FROM " + TABLE_EXPENSES + " UNION SELECT " + COL_BUDGET_CATEGORY + " FROM " + TABLE_BUDGETS);
+        Map<Integer, List<String>> legacyLists = readLegacyCategoryLists();
+        SQLiteStatement insertName = db.compileStatement("INSERT OR IGNORE INTO " + TABLE_CATEGORIES + " (" +
+                COL_CATEGORY_NAME + ") VALUES (?)");
+        try {
+            for (List<String> list : legacyLists.values()) {
+                for (String name : list) {
+                    insertName.bindString(1, name);
+                    insertName.executeInsert();
+                }
+            }
+        } finally {
+            insertName.close();
+        }
+
+        String expenseColumns = COL_EXPENSE_ID + ", " + COL_EXPENSE_USER_ID + ", " + COL_EXPENSE_CATEGORY_ID + ", " +
+                COL_EXPENSE_AMOUNT + ", " + COL_EXPENSE_NOTE + ", " + COL_EXPENSE_DATE + ", " + COL_EXPENSE_IMAGE_URI + ", " +
+                COL_EXPENSE_DATE_DAY;
+        db.execSQL("DROP TABLE IF EXISTS " + TABLE_EXPENSES + "_new");
+        createExpensesTable(db, TABLE_EXPENSES + "_new");
+        db.execSQL("INSERT INTO " + TABLE_EXPENSES + "_new (" + expenseColumns + ") SELECT x." + COL_EXPENSE_ID + ", x." +
+                COL_EXPENSE_USER_ID + ", c." + COL_CATEGORY_ID + ", x." + COL_EXPENSE_AMOUNT + ", x." + COL_EXPENSE_NOTE + ", x." +
+                COL_EXPENSE_DATE + ", x." + COL_EXPENSE_IMAGE_URI + ", x." + COL_EXPENSE_DATE_DAY + " FROM " + TABLE_EXPENSES +
+                " x JOIN " + TABLE_CATEGORIES + " c ON c." + COL_CATEGORY_NAME + "=x." + COL_EXPENSE_CATEGORY);
+        // Keep the AUTOINCREMENT high-water mark, so ids of deleted expenses are still never reused
+        db.execSQL("DELETE FROM sqlite_sequence WHERE name='" + TABLE_EXPENSES + "_new'");
+        db.execSQL("INSERT INTO sqlite_sequence (name, seq) SELECT '" + TABLE_EXPENSES + "_new', seq FROM sqlite_sequence" +
+                " WHERE name='" + TABLE_EXPENSES + "'");
+        db.execSQL("DROP TABLE " + TABLE_EXPENSES); // Also drops its indexes and triggers
+        db.execSQL("ALTER TABLE " + TABLE_EXPENSES + "_new RENAME TO " + TABLE_EXPENSES);
+        createExpenseIndexes(db);
+        createDateIndexes(db);
+        createSortIndexes(db);
+
+        db.execSQL("DROP TABLE IF EXISTS " + TABLE_BUDGETS + "_new");
+        createBudgetsTable(db, TABLE_BUDGETS + "_new");
+        db.execSQL("INSERT INTO " + TABLE_BUDGETS + "_new (" + COL_BUDGET_USER_ID + ", " + COL_BUDGET_CATEGORY_ID + ", " +
+                COL_BUDGET_LIMIT + ") SELECT b." + COL_BUDGET_USER_ID + ", c." + COL_CATEGORY_ID + ", b." + COL_BUDGET_LIMIT +
+                " FROM " + TABLE_BUDGETS + " b JOIN " + TABLE_CATEGORIES + " c ON c." + COL_CATEGORY_NAME + "=b." +
+                COL_BUDGET_CATEGORY);
+        db.execSQL("DROP TABLE " + TABLE_BUDGETS);
+        db.execSQL("ALTER TABLE " + TABLE_BUDGETS + "_new RENAME TO " + TABLE_BUDGETS);
+
+        db.execSQL("DROP TABLE IF EXISTS " + TABLE_CATEGORY_TOTALS);
+        createCategoryTotalsTable(db);
+        rebuildCategoryTotals(db);
+
+        // Lists of users that no longer exist are skipped
+        SQLiteStatement insertListEntry = db.compileStatement("INSERT OR IGNORE INTO " + TABLE_USER_CATEGORIES + " (" +
+                COL_USER_CATEGORY_USER_ID + ", " + COL_USER_CATEGORY_ID + ", " + COL_USER_CATEGORY_POSITION + ") SELECT ?, " +
+                COL_CATEGORY_ID + ", ? FROM " + TABLE_CATEGORIES + " WHERE " + COL_CATEGORY_NAME + "=? AND EXISTS (SELECT 1 FROM " +
+                TABLE_USERS + " WHERE " + COL_USER_ID + "=?)");
+        try {
+            for (Map.Entry<Integer, List<String>> list : legacyLists.entrySet()) {
+                List<String> names = list.getValue();
+                for (int position = 0; position < names.size(); position++) {
+                    insertListEntry.bindLong(1, list.getKey());
+                    insertListEntry.bindLong(2, position);
+                    insertListEntry.bindString(3, names.get(position));
+                    insertListEntry.bindLong(4, list.getKey());
+                    insertListEntry.executeInsert();
+                }
+            }
+        } finally {
+            insertListEntry.close();
+        }
+    }
+
+    /**
+     * Reads the category lists that versions before 12 saved in SharedPreferences, by user id.
+     * A list that cannot be parsed is skipped; that user gets the default categories instead.
+     * Called from onUpgrade(), inside its transaction: loading the preferences file is a disk read
+     * on the upgrading thread, but it happens once per install and the file only holds small lists.
+     */
+    private Map<Integer, List<String>> readLegacyCategoryLists() {
+        Map<Integer, List<String>> lists = new HashMap<>();
+        SharedPreferences prefs = context.getSharedPreferences(LEGACY_PREFS_NAME, Context.MODE_PRIVATE);
+        for (Map.Entry<String, ?> entry : prefs.getAll().entrySet()) {
+            String key = entry.getKey();
+            if (!key.startsWith(LEGACY_CATEGORIES_KEY_PREFIX) || !(entry.getValue() instanceof String)) {
+                continue;
+            }
+            try {
+                int userId = Integer.parseInt(key.substring(LEGACY_CATEGORIES_KEY_PREFIX.length()));
+                JSONArray array = new JSONArray((String) entry.getValue());
+                List<String> names = new ArrayList<>(array.length());
+                for (int i = 0; i < array.length(); i++) {
+                    names.add(array.getString(i));
+                }
+                lists.put(userId, names);
+            } catch (NumberFormatException | JSONException e) {
+                Log.w("DatabaseHelper", "Skipping saved categories " + key + ": " + e.getMessage());
+            }
+        }
+        return lists;
+    }
+
+    private void addColumnIfMissing(SQLiteDatabase db, String table, String column, String definition) {
+        if (!hasColumn(db, table, column)) {
+            db.execSQL("ALTER TABLE " + table + " ADD COLUMN " + column + " " + definition);
+        }
+    }
+
+    private boolean hasColumn(SQLiteDatabase db, String table, String column) {
+        Cursor cursor = db.rawQuery("PRAGMA table_info(" + table + ")", null);
+        try {
+            int nameColumn = cursor.getColumnIndexOrThrow("name");
+            while (cursor.moveToNext()) {
+                if (column.equals(cursor.getString(nameColumn))) {
+                    return true;
+                }
+            }
+            return false;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Fills derived columns for rows written before those columns existed.
+     * This runs on open rather than inside onUpgrade so that it can commit in batches: each batch
+     * only selects rows that still need work, so an interrupted backfill continues where it stopped.
+     */
+    private void runPendingBackfills(SQLiteDatabase db) {
+        long start = System.currentTimeMillis();
+        int updated = backfillInBatches(db,
+                new String[]{COL_EXPENSE_ID, COL_EXPENSE_DATE, COL_EXPENSE_USER_ID, COL_EXPENSE_CATEGORY_ID, COL_EXPENSE_AMOUNT},
+                COL_EXPENSE_DATE_DAY + " IS NULL",
+                "UPDATE " + TABLE_EXPENSES + " SET " + COL_EXPENSE_DATE_DAY + "=? WHERE " + COL_EXPENSE_ID + "=?",
+                (statement, row) -> {
+                    int dateDay = ExpenseDates.toEpochDay(row.isNull(1) ? null : row.getString(1));
+                    statement.bindLong(1, dateDay);
+                    statement.bindLong(2, row.getLong(0));
+                    // Move the expense out of the undated bucket within the same batch transaction
+                    int userId = row.getInt(2);
+                    int categoryId = row.getInt(3);
+                    long amountCents = row.getLong(4);
+                    adjustCategoryTotal(db, userId, categoryId, UNDATED_PERIOD, -amountCents, -1);
+                    adjustCategoryTotal(db, userId, categoryId, ExpenseDates.monthKey(dateDay), amountCents, 1);
+                });
+        if (updated > 0) {
+            Log.d("DatabaseHelper", "Backfilled " + COL_EXPENSE_DATE_DAY + " for " + updated + " expenses in " +
+                    (System.currentTimeMillis() - start) + " ms");
+        }
+    }
+
+    /**
+     * Runs an UPDATE for every expense row matching pendingSelection, BACKFILL_BATCH_SIZE rows per transaction.
+     * The binder must leave each row no longer matching pendingSelection, otherwise the loop would not end.
+     *
+     * @return Number of rows updated
+     */
+    private int backfillInBatches(SQLiteDatabase db, String[] columns, String pendingSelection, String updateSql, RowBinder binder) {
+        int total = 0;
+        SQLiteStatement update = db.compileStatement(updateSql);
+        try {
+            int batchCount;
+            do {
+                batchCount = 0;
+                db.beginTransaction();
+                try {
+                    Cursor cursor = db.query(TABLE_EXPENSES, columns, pendingSelection, null, null, null,
+                            COL_EXPENSE_ID, String.valueOf(BACKFILL_BATCH_SIZE));
+                    try {
+                        while (cursor.moveToNext()) {
+                            update.clearBindings();
+                            binder.bind(update, cursor);
+                            update.executeUpdateDelete();
+                            batchCount++;
+                        }
+                    } finally {
+                        cursor.close();
+                    }
+                    db.setTransactionSuccessful();
+                } finally {
+                    db.endTransaction();
+                }
+                total += batchCount;
+            } while (batchCount == BACKFILL_BATCH_SIZE);
+        } finally {
+            update.close();
+        }
+        return total;
+    }
+
+    private interface RowBinder {
+        void bind(SQLiteStatement statement, Cursor row);
+    }
     
     // Method to completely reset the database
     /**
@@ -141,16 +785,17 @@ public class DatabaseHelper extends SQLiteOpenHelper {
                 if (db != null && db.isOpen()) {
                     // Drop all tables
                     db.execSQL("DROP TABLE IF EXISTS " + TABLE_BUDGETS);
+                    db.execSQL("DROP TABLE IF EXISTS " + TABLE_USER_CATEGORIES);
                     db.execSQL("DROP TABLE IF EXISTS " + TABLE_EXPENSES);
                     db.execSQL("DROP TABLE IF EXISTS " + TABLE_USERS);
                     Log.d("DatabaseHelper", "All tables dropped");
-                    db.close();
                 }
             } catch (Exception e) {
                 Log.e("DatabaseHelper", "Error dropping tables: " + e.getMessage());
-                if (db != null && db.isOpen()) {
-                    db.close();
-                }
+            } finally {
+                // Release the persistent connection and cached statements before deleting the file
+                close();
+                categories.clear();
             }
         } catch (Exception e) {
             Log.e("DatabaseHelper", "Error closing database: " + e.getMessage());
@@ -158,19 +803,17 @@ public class DatabaseHelper extends SQLiteOpenHelper {
         
         // Delete the database file completely
         try {
-            boolean deleted = context.deleteDatabase(DATABASE_NAME);
+            boolean deleted = context.deleteDatabase(getDatabaseName());
             Log.d("DatabaseHelper", "Database file deleted: " + deleted);
         } catch (Exception e) {
             Log.e("DatabaseHelper", "Error deleting database file: " + e.getMessage(), e);
         }
         
-        // Recreate database by getting a new instance
+        // Recreate database by reopening it; SQLiteOpenHelper runs onCreate for the new file
         try {
             SQLiteDatabase newDb = this.getWritableDatabase();
             if (newDb != null) {
-                onCreate(newDb);
                 Log.d("DatabaseHelper", "Database recreated successfully");
-                newDb.close();
             }
         } catch (Exception e) {
             Log.e("DatabaseHelper", "Error recreating database: " + e.getMessage(), e);
@@ -179,37 +822,6 @@ public class DatabaseHelper extends SQLiteOpenHelper {
         Log.d("DatabaseHelper", "=== DATABASE RESET COMPLETED ===");
     }
 
-    /**
-     * Hashes a password using SHA-256 for secure storage.
-     * Never store plain text passwords!
-     *
-     * @param password The plain text password
-     * @return The SHA-256 hash string, or null if error
-     */
-    private String hashPassword(String password) {
-        if (password == null) {
-            Log.e("DatabaseHelper", "Hash error: password is null");
-            return null;
-        }
-        try {
-            MessageDigest md = MessageDigest.getInstance("SHA-256");
-            byte[] hash = md.digest(password.getBytes(StandardCharsets.UTF_8));
-            StringBuilder hexString = new StringBuilder();
-            for (byte b : hash) {
-                String hex = Integer.toHexString(0xff & b);
-                if (hex.length() == 1) hexString.append('0');
-                hexString.append(hex);
-            }
-            return hexString.toString();
-        } catch (NoSuchAlgorithmException e) {
-            Log.e("DatabaseHelper", "Hash error", e);
-            return null;
-        } catch (Exception e) {
-            Log.e("DatabaseHelper", "Hash error: " + e.getMessage(), e);
-            return null;
-        }
-    }
-
     public long signup(String username, String password, String pet) {
         SQLiteDatabase db = null;
         try {
@@ -248,25 +860,19 @@ public class DatabaseHelper extends SQLiteOpenHelper {
             String trimmedUsername = username.trim();
             String trimmedPet = pet.trim().toLowerCase();
             
-            Log.d("DatabaseHelper", "Signup attempt for username: " + trimmedUsername);
-            
-            String passwordHash = hashPassword(password);
-            String petHash = hashPassword(trimmedPet);
+            // Slow by design; DataManager runs signup on its I/O executor
+            String passwordHash = passwordHasher.hash(password);
+            String petHash = passwordHasher.hash(trimmedPet);
             
             if (passwordHash == null || petHash == null) {
                 Log.e("DatabaseHelper", "Signup failed: Hash generation failed - passwordHash: " + (passwordHash != null) + ", petHash: " + (petHash != null));
                 return -1;
             }
 
-            // Enable foreign keys for this connection
-            db.execSQL("PRAGMA foreign_keys = ON");
-            
             ContentValues values = new ContentValues();
             values.put(COL_USERNAME, trimmedUsername);
             values.put(COL_PASSWORD_HASH, passwordHash);
             values.put(COL_PET_HASH, petHash);
-
-            Log.d("DatabaseHelper", "Attempting to insert user: " + trimmedUsername);
             
             // First check if username already exists
             Cursor checkUser = db.query(TABLE_USERS, new String[]{COL_USER_ID}, COL_USERNAME + "=?", new String[]{trimmedUsername}, null, null, null);
@@ -274,19 +880,19 @@ public class DatabaseHelper extends SQLiteOpenHelper {
             if (checkUser != null) checkUser.close();
             
             if (usernameExists) {
-                Log.e("DatabaseHelper", "Signup failed: Username '" + trimmedUsername + "' already exists");
+                Log.e("DatabaseHelper", "Signup failed: Username already exists");
                 return -2; // Return -2 to indicate username exists (different from -1 for other errors)
             }
             
             long id = -1;
             try {
                 id = db.insertOrThrow(TABLE_USERS, null, values);
-                Log.d("DatabaseHelper", "Signup successful for user: " + trimmedUsername + " with ID: " + id);
+                Log.d("DatabaseHelper", "Signup successful for user ID: " + id);
             } catch (SQLException e) {
                 Log.e("DatabaseHelper", "SQLException during insert: " + e.getMessage(), e);
                 // Check if it's a unique constraint violation (username already exists)
                 if (e.getMessage() != null && (e.getMessage().contains("UNIQUE constraint") || e.getMessage().contains("unique"))) {
-                    Log.e("DatabaseHelper", "Username '" + trimmedUsername + "' already exists (caught in exception)");
+                    Log.e("DatabaseHelper", "Signup failed: Username already exists (caught in exception)");
                     id = -2; // Username exists
                 } else {
                     Log.e("DatabaseHelper", "Database insert failed: " + e.getMessage());
@@ -319,9 +925,9 @@ public class DatabaseHelper extends SQLiteOpenHelper {
                 return null;
             }
             
-            db = this.getReadableDatabase();
+            db = this.getWritableDatabase();
             if (db == null) {
-                Log.e("DatabaseHelper", "Login failed: Cannot get readable database");
+                Log.e("DatabaseHelper", "Login failed: Cannot get writable database");
                 return null;
             }
             
@@ -337,15 +943,6 @@ public class DatabaseHelper extends SQLiteOpenHelper {
             
             // Trim username to match signup behavior
             String trimmedUsername = username.trim();
-            Log.d("DatabaseHelper", "Attempting login for user: '" + trimmedUsername + "'");
-            Log.d("DatabaseHelper", "Password length: " + (password != null ? password.length() : 0));
-            
-            String passwordHash = hashPassword(password);
-            if (passwordHash == null) {
-                Log.e("DatabaseHelper", "Login failed: Hash generation failed");
-                return null;
-            }
-            Log.d("DatabaseHelper", "Password hash generated (length: " + passwordHash.length() + ")");
             
             // First check if username exists
             Cursor userCheck = db.query(TABLE_USERS, 
@@ -359,36 +956,22 @@ public class DatabaseHelper extends SQLiteOpenHelper {
                 int userId = userCheck.getInt(0);
                 String storedUsername = userCheck.getString(1);
                 String storedPasswordHash = userCheck.getString(2);
-                Log.d("DatabaseHelper", "Username found! User ID: " + userId + ", Username: '" + storedUsername + "'");
-                Log.d("DatabaseHelper", "Stored password hash length: " + (storedPasswordHash != null ? storedPasswordHash.length() : 0));
-                Log.d("DatabaseHelper", "Input password hash length: " + passwordHash.length());
-                
-                // Compare hashes
-                if (storedPasswordHash != null && storedPasswordHash.equals(passwordHash)) {
-                    Log.d("DatabaseHelper", "Password hash matches! Login successful.");
-                    User user = new User(userId, storedUsername);
-                    userCheck.close();
-                    return user;
+                userCheck.close();
+
+                // Compare hashes; slow by design, DataManager runs login on its I/O executor
+                if (passwordHasher.verify(password, storedPasswordHash)) {
+                    if (passwordHasher.needsRehash(storedPasswordHash)) {
+                        // The password is only known here, so older hashes are upgraded on login
+                        updatePasswordHash(db, userId, password);
+                    }
+                    return new User(userId, storedUsername);
                 } else {
-                    Log.e("DatabaseHelper", "Password hash mismatch!");
-                    Log.e("DatabaseHelper", "Stored hash: " + (storedPasswordHash != null ? storedPasswordHash.substring(0, Math.min(20, storedPasswordHash.length())) + "..." : "null"));
-                    Log.e("DatabaseHelper", "Input hash:  " + passwordHash.substring(0, Math.min(20, passwordHash.length())) + "...");
-                    userCheck.close();
+                    Log.e("DatabaseHelper", "Login failed: Password does not match");
                     return null;
                 }
             } else {
                 if (userCheck != null) userCheck.close();
-                Log.e("DatabaseHelper", "Login failed: Username '" + trimmedUsername + "' does not exist in database");
-                
-                // Debug: List all usernames in database
-                Cursor allUsers = db.query(TABLE_USERS, new String[]{COL_USERNAME}, null, null, null, null, null);
-                if (allUsers != null) {
-                    Log.d("DatabaseHelper", "All usernames in database:");
-                    while (allUsers.moveToNext()) {
-                        Log.d("DatabaseHelper", "  - '" + allUsers.getString(0) + "'");
-                    }
-                    allUsers.close();
-                }
+                Log.e("DatabaseHelper", "Login failed: Unknown username");
                 return null;
             }
         } catch (Exception e) {
@@ -424,7 +1007,7 @@ public class DatabaseHelper extends SQLiteOpenHelper {
             if (cursor != null) cursor.close();
             
             if (usernameExists) {
-                Log.e("DatabaseHelper", "Update username failed: Username '" + trimmedUsername + "' already exists");
+                Log.e("DatabaseHelper", "Update username failed: Username already exists");
                 return false;
             }
             
@@ -480,15 +1063,14 @@ public class DatabaseHelper extends SQLiteOpenHelper {
             String storedHash = cursor.getString(cursor.getColumnIndexOrThrow(COL_PASSWORD_HASH));
             cursor.close();
             
-            String currentPasswordHash = hashPassword(currentPassword);
-            if (currentPasswordHash == null || !currentPasswordHash.equals(storedHash)) {
+            if (!passwordHasher.verify(currentPassword, storedHash)) {
                 Log.e("DatabaseHelper", "Update password failed: Current password is incorrect");
                 return false;
             }
             
             // Update password
             db = this.getWritableDatabase();
-            String newPasswordHash = hashPassword(newPassword);
+            String newPasswordHash = passwordHasher.hash(newPassword);
             if (newPasswordHash == null) {
                 Log.e("DatabaseHelper", "Update password failed: Hash generation failed");
                 return false;
@@ -524,31 +1106,43 @@ public class DatabaseHelper extends SQLiteOpenHelper {
                 return false;
             }
             
-            String petHash = hashPassword(pet != null ? pet.toLowerCase().trim() : "");
-            String newPasswordHash = hashPassword(newPassword);
-            
-            if (petHash == null || newPasswordHash == null) {
-                Log.e("DatabaseHelper", "Reset password failed: Hash generation failed");
-                return false;
-            }
+            String trimmedPet = pet != null ? pet.toLowerCase().trim() : "";
 
+            // Hashes are salted, so the answer is checked against the user's row rather than looked up
             cursor = db.query(TABLE_USERS,
-                    new String[]{COL_USER_ID},
-                    COL_USERNAME + "=? AND " + COL_PET_HASH + "=?",
-                    new String[]{trimmedUsername, petHash},
+                    new String[]{COL_USER_ID, COL_PET_HASH},
+                    COL_USERNAME + "=?",
+                    new String[]{trimmedUsername},
                     null, null, null);
-
+            int userId = -1;
+            String storedPetHash = null;
             if (cursor != null && cursor.moveToFirst()) {
-                ContentValues values = new ContentValues();
-                values.put(COL_PASSWORD_HASH, newPasswordHash);
-                int rows = db.update(TABLE_USERS, values, COL_USER_ID + "=?",
-                        new String[]{String.valueOf(cursor.getInt(0))});
-                cursor.close();
-                return rows > 0;
+                userId = cursor.getInt(0);
+                storedPetHash = cursor.getString(1);
             }
             if (cursor != null) cursor.close();
-            Log.e("DatabaseHelper", "Reset password failed: Invalid username or security answer");
-            return false;
+
+            if (userId < 0 || !passwordHasher.verify(trimmedPet, storedPetHash)) {
+                Log.e("DatabaseHelper", "Reset password failed: Invalid username or security answer");
+                return false;
+            }
+
+            String newPasswordHash = passwordHasher.hash(newPassword);
+            if (newPasswordHash == null) {
+                Log.e("DatabaseHelper", "Reset password failed: Hash generation failed");
+                return false;
+            }
+            ContentValues values = new ContentValues();
+            values.put(COL_PASSWORD_HASH, newPasswordHash);
+            if (passwordHasher.needsRehash(storedPetHash)) {
+                String petHash = passwordHasher.hash(trimmedPet);
+                if (petHash != null) {
+                    values.put(COL_PET_HASH, petHash);
+                }
+            }
+            int rows = db.update(TABLE_USERS, values, COL_USER_ID + "=?",
+                    new String[]{String.valueOf(userId)});
+            return rows > 0;
         } catch (Exception e) {
             Log.e("DatabaseHelper", "Reset password exception: " + e.getMessage(), e);
             if (cursor != null) cursor.close();
@@ -556,77 +1150,538 @@ public class DatabaseHelper extends SQLiteOpenHelper {
         }
     }
 
+    /**
+     * Replaces a user's password hash with one at the current cost, after the password was verified.
+     * A failure is only logged: the old hash still works and is upgraded on a later login.
+     */
+    private void updatePasswordHash(SQLiteDatabase db, int userId, String password) {
+        String hash = passwordHasher.hash(password);
+        if (hash == null) {
+            return;
+        }
+        ContentValues values = new ContentValues();
+        values.put(COL_PASSWORD_HASH, hash);
+        try {
+            db.update(TABLE_USERS, values, COL_USER_ID + "=?", new String[]{String.valueOf(userId)});
+            Log.d("DatabaseHelper", "Upgraded password hash for user ID: " + userId);
+        } catch (SQLException e) {
+            Log.e("DatabaseHelper", "Upgrade password hash failed: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Puts every row of the categories table into the dictionary. Called each time the database is
+     * opened, so expenses can be read without joining the table.
+     */
+    private synchronized void loadCategories(SQLiteDatabase db) {
+        Cursor cursor = db.query(TABLE_CATEGORIES, new String[]{COL_CATEGORY_ID, COL_CATEGORY_NAME},
+                null, null, null, null, null);
+        try {
+            while (cursor.moveToNext()) {
+                categories.put(cursor.getInt(0), cursor.getString(1));
+            }
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Returns the id of a category, adding it to the categories table if it is new.
+     * Must be called before the transaction that uses the id, never inside it: if that transaction
+     * rolled back, the dictionary would keep an id that is not in the table.
+     */
+    private synchronized int categoryId(SQLiteDatabase db, String category) {
+        String name = category != null ? category : "";
+        int id = categories.idOf(name);
+        if (id >= 0) {
+            return id;
+        }
+        if (insertCategoryStatement == null) {
+            insertCategoryStatement = db.compileStatement("INSERT OR IGNORE INTO " + TABLE_CATEGORIES + " (" +
+                    COL_CATEGORY_NAME + ") VALUES (?)");
+        }
+        insertCategoryStatement.clearBindings();
+        insertCategoryStatement.bindString(1, name);
+        long rowId = insertCategoryStatement.executeInsert();
+        if (rowId < 0) {
+            // Already in the table, e.g. added by another helper on the same file
+            Cursor cursor = db.query(TABLE_CATEGORIES, new String[]{COL_CATEGORY_ID}, COL_CATEGORY_NAME + "=?",
+                    new String[]{name}, null, null, null);
+            try {
+                if (!cursor.moveToFirst()) {
+                    throw new SQLException("Cannot add category " + name);
+                }
+                rowId = cursor.getLong(0);
+            } finally {
+                cursor.close();
+            }
+        }
+        categories.put((int) rowId, name);
+        return (int) rowId;
+    }
+
     /**
      * Inserts a new expense into the database.
      *
      * @param userId   The ID of the user owning the expense
      * @param category Expense category
-     * @param amount   Expense amount
+     * @param amountCents Expense amount in cents
      * @param note     Optional note
      * @param date     Date of expense
      * @param imageUri Optional receipt image URI
      * @return The row ID of the newly inserted expense, or -1 if an error occurred
      */
-    public long addExpense(int userId, String category, double amount, String note, String date, String imageUri) {
-        SQLiteDatabase db = this.getWritableDatabase();
-        ContentValues values = new ContentValues();
-        values.put(COL_EXPENSE_USER_ID, userId);
-        values.put(COL_EXPENSE_CATEGORY, category);
-        values.put(COL_EXPENSE_AMOUNT, amount);
-        values.put(COL_EXPENSE_NOTE, note);
-        values.put(COL_EXPENSE_DATE, date);
-        values.put(COL_EXPENSE_IMAGE_URI, imageUri);
-
-        long id = db.insert(TABLE_EXPENSES, null, values);
-        db.close();
-        return id;
-    }
-
-    public String getExpenses(int userId) {
-        SQLiteDatabase db = this.getReadableDatabase();
-        Cursor cursor = db.query(TABLE_EXPENSES,
-                new String[]{COL_EXPENSE_ID, COL_EXPENSE_CATEGORY, COL_EXPENSE_AMOUNT, COL_EXPENSE_NOTE, COL_EXPENSE_DATE, COL_EXPENSE_IMAGE_URI},
-                COL_EXPENSE_USER_ID + "=?",
-                new String[]{String.valueOf(userId)},
-                null, null, COL_EXPENSE_ID + " DESC");
-
-        StringBuilder json = new StringBuilder("[");
-        if (cursor != null) {
-            while (cursor.moveToNext()) {
-                if (json.length() > 1) json.append(",");
-                json.append("{")
-                    .append("\"id\":").append(cursor.getInt(0)).append(",")
-                    .append("\"category\":\"").append(cursor.getString(1) != null ? cursor.getString(1) : "").append("\",")
-                    .append("\"amount\":").append(cursor.getDouble(2)).append(",")
-                    .append("\"note\":\"").append(escapeJson(cursor.isNull(3) ? "" : cursor.getString(3))).append("\",")
-                    .append("\"date\":\"").append(escapeJson(cursor.isNull(4) ? "" : cursor.getString(4))).append("\",")
-                    .append("\"imageUri\":\"").append(escapeJson(cursor.isNull(5) ? "" : cursor.getString(5))).append("\"")
-                    .append("}");
+    public synchronized long addExpense(int userId, String category, long amountCents, String note, String date, String imageUri) {
+        try {
+            SQLiteDatabase db = this.getWritableDatabase();
+            int categoryId = categoryId(db, category);
+            db.beginTransaction();
+            try {
+                long id = insertExpense(db, userId, categoryId, amountCents, note, date, imageUri);
+                db.setTransactionSuccessful();
+                return id;
+            } finally {
+                db.endTransaction();
             }
-            cursor.close();
+        } catch (SQLException e) {
+            Log.e("DatabaseHelper", "Add expense failed: " + e.getMessage(), e);
+            return -1;
         }
-        json.append("]");
-        db.close();
-        return json.toString();
     }
 
-    public boolean updateExpense(int expenseId, String category, double amount, String note, String date, String imageUri) {
-        try {
+    /**
+     * Inserts many expenses for a user in a single transaction, reusing the compiled insert statement,
+     * so the whole list costs one commit instead of one per row. Either every expense is inserted or,
+     * if any insert fails, none are.
+     *
+     * @param userId   The ID of the user owning the expenses
+     * @param expenses Expenses to insert; their id and dateDay are ignored, ids are assigned and days parsed from date
+     * @return Number of expenses inserted, or -1 if the transaction failed and was rolled back
+     */
+    public synchronized int addExpenses(int userId, List<DataManager.Expense> expenses) {
+        try {
+            SQLiteDatabase db = this.getWritableDatabase();
+            int[] categoryIds = new int[expenses.size()];
+            for (int i = 0; i < categoryIds.length; i++) {
+                categoryIds[i] = categoryId(db, expenses.get(i).category);
+            }
+            db.beginTransaction();
+            try {
+                for (int i = 0; i < categoryIds.length; i++) {
+                    DataManager.Expense expense = expenses.get(i);
+                    insertExpense(db, userId, categoryIds[i], expense.amountCents, expense.note, expense.date, expense.imageUri);
+                }
+                db.setTransactionSuccessful();
+                return expenses.size();
+            } finally {
+                db.endTransaction();
+            }
+        } catch (SQLException e) {
+            Log.e("DatabaseHelper", "Add expenses failed: " + e.getMessage(), e);
+            return -1;
+        }
+    }
+
+    /**
+     * Inserts one expense and counts it in the rollup. Must be called inside a transaction.
+     *
+     * @return The row ID of the new expense
+     */
+    private long insertExpense(SQLiteDatabase db, int userId, int categoryId, long amountCents, String note, String date, String imageUri) {
+        if (insertExpenseStatement == null) {
+            insertExpenseStatement = db.compileStatement("INSERT INTO " + TABLE_EXPENSES + " (" +
+                    COL_EXPENSE_USER_ID + ", " + COL_EXPENSE_CATEGORY_ID + ", " + COL_EXPENSE_AMOUNT + ", " +
+                    COL_EXPENSE_NOTE + ", " + COL_EXPENSE_DATE + ", " + COL_EXPENSE_IMAGE_URI + ", " +
+                    COL_EXPENSE_DATE_DAY + ") VALUES (?, ?, ?, ?, ?, ?, ?)");
+        }
+        int dateDay = ExpenseDates.toEpochDay(date);
+        SQLiteStatement statement = insertExpenseStatement;
+        statement.clearBindings();
+        statement.bindLong(1, userId);
+        statement.bindLong(2, categoryId);
+        statement.bindLong(3, amountCents);
+        bindStringOrNull(statement, 4, note);
+        bindStringOrNull(statement, 5, date);
+        bindStringOrNull(statement, 6, imageUri);
+        statement.bindLong(7, dateDay);
+
+        long id = statement.executeInsert();
+        adjustCategoryTotal(db, userId, categoryId, ExpenseDates.monthKey(dateDay), amountCents, 1);
+        return id;
+    }
+
+    /**
+     * Retrieves all expenses for a user, newest first.
+     * Rows are read straight from the cursor into Expense objects so no intermediate
+     * representation of the whole history is built.
+     *
+     * @param userId The ID of the user owning the expenses
+     * @return List of expenses, empty if none found
+     */
+    public List<DataManager.Expense> getExpenses(int userId) {
+        return queryExpenses(EXPENSES_FROM, "e." + COL_EXPENSE_USER_ID + "=?",
+                new String[]{String.valueOf(userId)},
+                "e." + COL_EXPENSE_ID + " DESC");
+    }
+
+    /**
+     * Retrieves all expenses for a user in the given order, sorted by SQLite while it walks an index
+     * so the caller never has to re-sort the list.
+     *
+     * @param userId   The ID of the user owning the expenses
+     * @param sortType One of "date_desc", "date_asc", "amount_desc", "amount_asc", "category_asc", "category_desc"
+     * @return List of expenses, empty if none found
+     */
+    public List<DataManager.Expense> getExpenses(int userId, String sortType) {
+        return queryExpenses(expensesFrom(sortType), "e." + COL_EXPENSE_USER_ID + "=?",
+                new String[]{String.valueOf(userId)},
+                expenseOrderBy(sortType));
+    }
+
+    /**
+     * Retrieves one page of a user's expenses in the given order using keyset pagination: each page
+     * starts right after the last row of the previous one, so the index seeks straight to it instead
+     * of skipping an OFFSET worth of rows, and rows added meanwhile do not shift the pages.
+     *
+     * @param userId   The ID of the user owning the expenses
+     * @param sortType Same values as getExpenses(userId, sortType)
+     * @param after    Last expense of the previous page, or null for the first page
+     * @param limit    Maximum number of expenses to return
+     * @return Up to limit expenses; fewer means there are no more pages
+     */
+    public List<DataManager.Expense> getExpensesPage(int userId, String sortType, DataManager.Expense after, int limit) {
+        String from = expensesFrom(sortType);
+        String orderBy = expenseOrderBy(sortType);
+        if (after == null) {
+            return queryExpenses(from, "e." + COL_EXPENSE_USER_ID + "=?", new String[]{String.valueOf(userId)}, orderBy, limit);
+        }
+        String before = sortType.endsWith("_asc") ? ">" : "<";
+
+        if (sortType.startsWith("category_")) {
+            // (name, category id, id) strictly past the last row; the category id separates names that
+            // differ only in case, which compare equal under NOCASE
+            String name = "c." + COL_CATEGORY_NAME + " COLLATE NOCASE";
+            String categoryId = String.valueOf(categories.idOf(after.category));
+            String selection = "e." + COL_EXPENSE_USER_ID + "=? AND " + name + before + "=? AND (" + name + before +
+                    "? OR c." + COL_CATEGORY_ID + before + "? OR (c." + COL_CATEGORY_ID + "=? AND e." + COL_EXPENSE_ID +
+                    before + "?))";
+            return queryExpenses(from, selection,
+                    new String[]{String.valueOf(userId), after.category, after.category, categoryId, categoryId,
+                            String.valueOf(after.id)},
+                    orderBy, limit);
+        }
+
+        // The sort key of the previous page's last row, compared the way expenseOrderBy() sorts it
+        String key;
+        String lastValue;
+        if (sortType.startsWith("amount_")) {
+            key = "e." + COL_EXPENSE_AMOUNT;
+            lastValue = String.valueOf(after.amountCents);
+        } else {
+            key = "e." + COL_EXPENSE_DATE_DAY;
+            lastValue = String.valueOf(after.dateDay);
+        }
+
+        // (key, id) strictly past (lastValue, lastId). Spelled out because row values need SQLite 3.15;
+        // the leading key range lets the index seek, the OR only filters rows tied on the key.
+        String selection = "e." + COL_EXPENSE_USER_ID + "=? AND " + key + before + "=? AND (" +
+                key + before + "? OR e." + COL_EXPENSE_ID + before + "?)";
+        return queryExpenses(from, selection,
+                new String[]{String.valueOf(userId), lastValue, lastValue, String.valueOf(after.id)},
+                orderBy, limit);
+    }
+
+    /**
+     * Returns a user's all-time spending in cents from the category totals rollup.
+     */
+    public long getTotalSpentCents(int userId) {
+        SQLiteDatabase db = this.getReadableDatabase();
+        Cursor cursor = db.rawQuery("SELECT SUM(" + COL_TOTAL_AMOUNT + ") FROM " + TABLE_CATEGORY_TOTALS +
+                " WHERE " + COL_TOTAL_USER_ID + "=?", new String[]{String.valueOf(userId)});
+        try {
+            return cursor.moveToFirst() ? cursor.getLong(0) : 0;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Returns how many expenses a user has, from the category totals rollup.
+     */
+    public int getExpenseCount(int userId) {
+        SQLiteDatabase db = this.getReadableDatabase();
+        Cursor cursor = db.rawQuery("SELECT TOTAL(" + COL_TOTAL_COUNT + ") FROM " + TABLE_CATEGORY_TOTALS +
+                " WHERE " + COL_TOTAL_USER_ID + "=?", new String[]{String.valueOf(userId)});
+        try {
+            return cursor.moveToFirst() ? cursor.getInt(0) : 0;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Maps a sort type to an ORDER BY clause that matches one of the expense indexes exactly.
+     * Ties are broken by id in the same direction so the order is stable between loads. Category
+     * orders follow the categories name index and then the (user_id, category_id) index, so they need
+     * the join of expensesFrom(). Unknown sort types fall back to newest first.
+     */
+    private static String expenseOrderBy(String sortType) {
+        switch (sortType) {
+            case "date_asc":
+                return "e." + COL_EXPENSE_DATE_DAY + " ASC, e." + COL_EXPENSE_ID + " ASC";
+            case "amount_desc":
+                return "e." + COL_EXPENSE_AMOUNT + " DESC, e." + COL_EXPENSE_ID + " DESC";
+            case "amount_asc":
+                return "e." + COL_EXPENSE_AMOUNT + " ASC, e." + COL_EXPENSE_ID + " ASC";
+            case "category_asc":
+                return "c." + COL_CATEGORY_NAME + " COLLATE NOCASE ASC, c." + COL_CATEGORY_ID + " ASC, e." + COL_EXPENSE_ID + " ASC";
+            case "category_desc":
+                return "c." + COL_CATEGORY_NAME + " COLLATE NOCASE DESC, c." + COL_CATEGORY_ID + " DESC, e." + COL_EXPENSE_ID + " DESC";
+            case "date_desc":
+            default:
+                return "e." + COL_EXPENSE_DATE_DAY + " DESC, e." + COL_EXPENSE_ID + " DESC";
+        }
+    }
+
+    /**
+     * Returns the FROM clause for a sort type: expenses joined to their categories when sorting by
+     * category name, otherwise the expenses table alone.
+     */
+    private static String expensesFrom(String sortType) {
+        return sortType.startsWith("category_") ? EXPENSES_BY_CATEGORY_FROM : EXPENSES_FROM;
+    }
+
+    /**
+     * Searches a user's expenses by note, category, date and amount through that user's part of the
+     * full-text index, so the cost depends on their matches rather than on the size of any history.
+     * Every word of the query is matched as a prefix ("lun din" finds "Lunch with Dinah"). Of the
+     * SEARCH_CANDIDATES most recently added matches, those with more hits rank first, counting every
+     * matching token in every column, then newer expenses; a broad query like "c" never ranks the
+     * whole history.
+     *
+     * @param userId The ID of the user owning the expenses
+     * @param query  Free text as typed by the user
+     * @param limit  Maximum number of results
+     * @return Matching expenses, empty if the query has no searchable words
+     */
+    public List<DataManager.Expense> searchExpenses(int userId, String query, int limit) {
+        String match = toFtsQuery(query);
+        if (match.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        // offsets() lists four space-separated integers per matched token, so its space count ranks
+        // rows by their number of hits (4 * hits - 1) without parsing it
+        SQLiteDatabase db = this.getReadableDatabase();
+        Cursor cursor = db.rawQuery("SELECT " + String.join(", ", EXPENSE_COLUMNS) +
+                        " FROM (SELECT docid, offsets(" + TABLE_EXPENSES_FTS + ") AS hits FROM " + TABLE_EXPENSES_FTS +
+                        " WHERE " + TABLE_EXPENSES_FTS + " MATCH ? AND " + COL_FTS_USER_ID + "=?" +
+                        " ORDER BY docid DESC LIMIT " + Math.max(limit, SEARCH_CANDIDATES) + ") m" +
+                        " JOIN " + TABLE_EXPENSES + " e ON e." + COL_EXPENSE_ID + "=m.docid" +
+                        " ORDER BY length(m.hits) - length(replace(m.hits, ' ', '')) DESC, e." + COL_EXPENSE_DATE_DAY +
+                        " DESC, e." + COL_EXPENSE_ID + " DESC LIMIT ?",
+                new String[]{match, String.valueOf(userId), String.valueOf(limit)});
+        try {
+            return readExpenses(cursor);
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Sums the amounts of all of a user's expenses matching a search, however many there are, with
+     * the same matching as searchExpenses().
+     *
+     * @return Total in cents, 0 if nothing matches or the query has no searchable words
+     */
+    public long getSearchTotalCents(int userId, String query) {
+        String match = toFtsQuery(query);
+        if (match.isEmpty()) {
+            return 0;
+        }
+
+        SQLiteDatabase db = this.getReadableDatabase();
+        Cursor cursor = db.rawQuery("SELECT SUM(e." + COL_EXPENSE_AMOUNT + ") FROM " + TABLE_EXPENSES_FTS +
+                        " JOIN " + TABLE_EXPENSES + " e ON e." + COL_EXPENSE_ID + "=" + TABLE_EXPENSES_FTS + ".docid" +
+                        " WHERE " + TABLE_EXPENSES_FTS + " MATCH ? AND " + TABLE_EXPENSES_FTS + "." + COL_FTS_USER_ID + "=?",
+                new String[]{match, String.valueOf(userId)});
+        try {
+            return cursor.moveToFirst() ? cursor.getLong(0) : 0;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Turns free text into an FTS query of prefix terms, all of which must match.
+     * Only letters and digits are kept so user input can never form FTS operators or syntax errors.
+     */
+    private static String toFtsQuery(String query) {
+        StringBuilder match = new StringBuilder();
+        if (query != null) {
+            for (String word : query.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}]+")) {
+                if (!word.isEmpty()) {
+                    match.append(match.length() == 0 ? "" : " ").append(word).append('*');
+                }
+            }
+        }
+        return match.toString();
+    }
+
+    /**
+     * Retrieves a user's expenses dated within an inclusive range of epoch days, newest first.
+     * Served by the (user_id, date_day) index rather than by filtering in memory.
+     *
+     * @param userId  The ID of the user owning the expenses
+     * @param fromDay First epoch day to include
+     * @param toDay   Last epoch day to include
+     * @return List of expenses, empty if none found
+     */
+    public List<DataManager.Expense> getExpensesBetween(int userId, int fromDay, int toDay) {
+        return queryExpenses(EXPENSES_FROM, "e." + COL_EXPENSE_USER_ID + "=? AND e." + COL_EXPENSE_DATE_DAY + " BETWEEN ? AND ?",
+                new String[]{String.valueOf(userId), String.valueOf(fromDay), String.valueOf(toDay)},
+                expenseOrderBy("date_desc"));
+    }
+
+    /**
+     * Receives expenses one at a time from forEachExpense().
+     */
+    public interface ExpenseVisitor {
+        /**
+         * @return true to continue with the next expense, false to stop
+         */
+        boolean visit(DataManager.Expense expense) throws IOException;
+    }
+
+    /**
+     * Walks all of a user's expenses, oldest first, without holding more than one chunk in memory.
+     * Each chunk is a separate short query that resumes after the last id of the previous one, so no
+     * cursor window is kept open across the whole history and writers are not blocked while the
+     * visitor does slow I/O between chunks.
+     *
+     * @param userId    The ID of the user owning the expenses
+     * @param chunkSize Rows per query
+     * @param visitor   Receives each expense in id order
+     * @return Number of expenses visited
+     * @throws IOException If the visitor failed; expenses after the failing one are not visited
+     */
+    public int forEachExpense(int userId, int chunkSize, ExpenseVisitor visitor) throws IOException {
+        SQLiteDatabase db = this.getReadableDatabase();
+        String selection = "e." + COL_EXPENSE_USER_ID + "=? AND e." + COL_EXPENSE_ID + ">?";
+        String[] selectionArgs = {String.valueOf(userId), "0"};
+        String limit = String.valueOf(chunkSize);
+        int visited = 0;
+        while (true) {
+            Cursor cursor = db.query(EXPENSES_FROM, EXPENSE_COLUMNS, selection, selectionArgs, null, null,
+                    "e." + COL_EXPENSE_ID, limit);
+            int rows = 0;
+            int lastId = 0;
+            try {
+                while (cursor.moveToNext()) {
+                    DataManager.Expense expense = readExpense(cursor);
+                    rows++;
+                    lastId = expense.id;
+                    if (!visitor.visit(expense)) {
+                        return visited + rows;
+                    }
+                }
+            } finally {
+                cursor.close();
+            }
+            visited += rows;
+            if (rows < chunkSize) {
+                return visited;
+            }
+            selectionArgs[1] = String.valueOf(lastId);
+        }
+    }
+
+    private List<DataManager.Expense> queryExpenses(String from, String selection, String[] selectionArgs, String orderBy) {
+        return queryExpenses(from, selection, selectionArgs, orderBy, 0);
+    }
+
+    /**
+     * @param from  EXPENSES_FROM or EXPENSES_BY_CATEGORY_FROM; selection and orderBy use their aliases
+     * @param limit Maximum number of rows, or 0 for all
+     */
+    private List<DataManager.Expense> queryExpenses(String from, String selection, String[] selectionArgs, String orderBy, int limit) {
+        SQLiteDatabase db = this.getReadableDatabase();
+        Cursor cursor = db.query(from, EXPENSE_COLUMNS, selection, selectionArgs, null, null, orderBy,
+                limit > 0 ? String.valueOf(limit) : null);
+
+        List<DataManager.Expense> expenses = new ArrayList<>();
+        if (cursor != null) {
+            try {
+                expenses = readExpenses(cursor);
+            } finally {
+                cursor.close();
+            }
+        }
+        return expenses;
+    }
+
+    private List<DataManager.Expense> readExpenses(Cursor cursor) {
+        List<DataManager.Expense> expenses = new ArrayList<>(cursor.getCount());
+        while (cursor.moveToNext()) {
+            expenses.add(readExpense(cursor));
+        }
+        return expenses;
+    }
+
+    /**
+     * Maps the current cursor row to an Expense, looking the category name up in the dictionary.
+     * Expects the columns of EXPENSE_COLUMNS in that order.
+     */
+    private DataManager.Expense readExpense(Cursor cursor) {
+        return new DataManager.Expense(
+                cursor.getInt(0),
+                categories.nameOf(cursor.getInt(1)),
+                cursor.getLong(2),
+                cursor.isNull(3) ? "" : cursor.getString(3),
+                cursor.isNull(4) ? "" : cursor.getString(4),
+                cursor.isNull(5) ? "" : cursor.getString(5),
+                cursor.getInt(6));
+    }
+
+    public synchronized boolean updateExpense(int expenseId, String category, long amountCents, String note, String date, String imageUri) {
+        try {
             SQLiteDatabase db = this.getWritableDatabase();
             if (db == null) {
                 Log.e("DatabaseHelper", "Update expense failed: Cannot get writable database");
                 return false;
             }
             
-            ContentValues values = new ContentValues();
-            values.put(COL_EXPENSE_CATEGORY, category);
-            values.put(COL_EXPENSE_AMOUNT, amount);
-            values.put(COL_EXPENSE_NOTE, note);
-            values.put(COL_EXPENSE_DATE, date);
-            values.put(COL_EXPENSE_IMAGE_URI, imageUri);
+            int categoryId = categoryId(db, category);
+            if (updateExpenseStatement == null) {
+                updateExpenseStatement = db.compileStatement("UPDATE " + TABLE_EXPENSES + " SET " +
+                        COL_EXPENSE_CATEGORY_ID + "=?, " + COL_EXPENSE_AMOUNT + "=?, " + COL_EXPENSE_NOTE + "=?, " +
+                        COL_EXPENSE_DATE + "=?, " + COL_EXPENSE_IMAGE_URI + "=?, " + COL_EXPENSE_DATE_DAY + "=? WHERE " +
+                        COL_EXPENSE_ID + "=?");
+            }
+            int dateDay = ExpenseDates.toEpochDay(date);
+            SQLiteStatement statement = updateExpenseStatement;
+            statement.clearBindings();
+            statement.bindLong(1, categoryId);
+            statement.bindLong(2, amountCents);
+            bindStringOrNull(statement, 3, note);
+            bindStringOrNull(statement, 4, date);
+            bindStringOrNull(statement, 5, imageUri);
+            statement.bindLong(6, dateDay);
+            statement.bindLong(7, expenseId);
 
-            int rows = db.update(TABLE_EXPENSES, values, COL_EXPENSE_ID + "=?",
-                    new String[]{String.valueOf(expenseId)});
+            int rows = 0;
+            db.beginTransaction();
+            try {
+                TotalKey previous = readTotalKey(db, expenseId);
+                if (previous != null) {
+                    rows = statement.executeUpdateDelete();
+                    adjustCategoryTotal(db, previous.userId, previous.categoryId, previous.period, -previous.amountCents, -1);
+                    adjustCategoryTotal(db, previous.userId, categoryId, ExpenseDates.monthKey(dateDay), amountCents, 1);
+                }
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
             
             if (rows > 0) {
                 Log.d("DatabaseHelper", "Expense updated successfully: ID " + expenseId);
@@ -641,67 +1696,343 @@ public class DatabaseHelper extends SQLiteOpenHelper {
         }
     }
 
-    public boolean deleteExpense(int expenseId) {
+    public synchronized boolean deleteExpense(int expenseId) {
         SQLiteDatabase db = this.getWritableDatabase();
-        int rows = db.delete(TABLE_EXPENSES, COL_EXPENSE_ID + "=?",
-                new String[]{String.valueOf(expenseId)});
-        db.close();
-        return rows > 0;
+        if (deleteExpenseStatement == null) {
+            deleteExpenseStatement = db.compileStatement("DELETE FROM " + TABLE_EXPENSES + " WHERE " + COL_EXPENSE_ID + "=?");
+        }
+        deleteExpenseStatement.clearBindings();
+        deleteExpenseStatement.bindLong(1, expenseId);
+
+        db.beginTransaction();
+        try {
+            TotalKey previous = readTotalKey(db, expenseId);
+            if (previous == null) {
+                return false;
+            }
+            boolean deleted = deleteExpenseStatement.executeUpdateDelete() > 0;
+            adjustCategoryTotal(db, previous.userId, previous.categoryId, previous.period, -previous.amountCents, -1);
+            db.setTransactionSuccessful();
+            return deleted;
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * Reads the rollup row an existing expense is counted in, before it is changed or removed.
+     *
+     * @return The expense's rollup key and amount in cents, or null if the expense does not exist
+     */
+    private TotalKey readTotalKey(SQLiteDatabase db, int expenseId) {
+        Cursor cursor = db.query(TABLE_EXPENSES,
+                new String[]{COL_EXPENSE_USER_ID, COL_EXPENSE_CATEGORY_ID, COL_EXPENSE_AMOUNT, COL_EXPENSE_DATE_DAY},
+                COL_EXPENSE_ID + "=?", new String[]{String.valueOf(expenseId)},
+                null, null, null);
+        try {
+            if (!cursor.moveToFirst()) {
+                return null;
+            }
+            int period = cursor.isNull(3) ? UNDATED_PERIOD : ExpenseDates.monthKey(cursor.getInt(3));
+            return new TotalKey(cursor.getInt(0), cursor.getInt(1), period, cursor.getLong(2));
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Adds an amount and a count to one rollup row, creating it on first use and dropping it once
+     * no expenses are left in it. Must be called inside the transaction that changes the expense.
+     */
+    private synchronized void adjustCategoryTotal(SQLiteDatabase db, int userId, int categoryId, int period, long amountCents, int count) {
+        if (adjustTotalStatement == null) {
+            adjustTotalStatement = db.compileStatement("UPDATE " + TABLE_CATEGORY_TOTALS + " SET " +
+                    COL_TOTAL_AMOUNT + "=" + COL_TOTAL_AMOUNT + "+?, " + COL_TOTAL_COUNT + "=" + COL_TOTAL_COUNT + "+? WHERE " +
+                    COL_TOTAL_USER_ID + "=? AND " + COL_TOTAL_CATEGORY_ID + "=? AND " + COL_TOTAL_PERIOD + "=?");
+            insertTotalStatement = db.compileStatement("INSERT INTO " + TABLE_CATEGORY_TOTALS + " (" +
+                    COL_TOTAL_USER_ID + ", " + COL_TOTAL_CATEGORY_ID + ", " + COL_TOTAL_PERIOD + ", " +
+                    COL_TOTAL_AMOUNT + ", " + COL_TOTAL_COUNT + ") VALUES (?, ?, ?, ?, ?)");
+            pruneTotalStatement = db.compileStatement("DELETE FROM " + TABLE_CATEGORY_TOTALS + " WHERE " +
+                    COL_TOTAL_USER_ID + "=? AND " + COL_TOTAL_CATEGORY_ID + "=? AND " + COL_TOTAL_PERIOD + "=? AND " +
+                    COL_TOTAL_COUNT + "<=0");
+        }
+        adjustTotalStatement.clearBindings();
+        adjustTotalStatement.bindLong(1, amountCents);
+        adjustTotalStatement.bindLong(2, count);
+        adjustTotalStatement.bindLong(3, userId);
+        adjustTotalStatement.bindLong(4, categoryId);
+        adjustTotalStatement.bindLong(5, period);
+        if (adjustTotalStatement.executeUpdateDelete() == 0) {
+            insertTotalStatement.clearBindings();
+            insertTotalStatement.bindLong(1, userId);
+            insertTotalStatement.bindLong(2, categoryId);
+            insertTotalStatement.bindLong(3, period);
+            insertTotalStatement.bindLong(4, amountCents);
+            insertTotalStatement.bindLong(5, count);
+            insertTotalStatement.executeInsert();
+        } else if (count < 0) {
+            pruneTotalStatement.clearBindings();
+            pruneTotalStatement.bindLong(1, userId);
+            pruneTotalStatement.bindLong(2, categoryId);
+            pruneTotalStatement.bindLong(3, period);
+            pruneTotalStatement.executeUpdateDelete();
+        }
+    }
+
+    private static class TotalKey {
+        final int userId;
+        final int categoryId;
+        final int period;
+        final long amountCents;
+
+        TotalKey(int userId, int categoryId, int period, long amountCents) {
+            this.userId = userId;
+            this.categoryId = categoryId;
+            this.period = period;
+            this.amountCents = amountCents;
+        }
     }
 
-    public boolean clearExpenses(int userId) {
+    private void bindStringOrNull(SQLiteStatement statement, int index, String value) {
+        if (value == null) {
+            statement.bindNull(index);
+        } else {
+            statement.bindString(index, value);
+        }
+    }
+
+    public synchronized boolean clearExpenses(int userId) {
         SQLiteDatabase db = this.getWritableDatabase();
-        int rows = db.delete(TABLE_EXPENSES, COL_EXPENSE_USER_ID + "=?",
+        String[] args = {String.valueOf(userId)};
+        db.beginTransaction();
+        try {
+            int rows = db.delete(TABLE_EXPENSES, COL_EXPENSE_USER_ID + "=?", args);
+            db.delete(TABLE_CATEGORY_TOTALS, COL_TOTAL_USER_ID + "=?", args);
+            db.setTransactionSuccessful();
+            return rows >= 0;
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * Returns a user's all-time spending per category from the rollup table.
+     * Reads one row per category and month instead of every expense.
+     *
+     * @return Totals ordered by category name, empty if the user has no expenses
+     */
+    public List<DataManager.CategoryTotal> getCategoryTotals(int userId) {
+        SQLiteDatabase db = this.getReadableDatabase();
+        Cursor cursor = db.rawQuery("SELECT " + COL_TOTAL_CATEGORY_ID + ", SUM(" + COL_TOTAL_AMOUNT + "), SUM(" +
+                        COL_TOTAL_COUNT + ") FROM " + TABLE_CATEGORY_TOTALS + " WHERE " + COL_TOTAL_USER_ID + "=? GROUP BY " +
+                        COL_TOTAL_CATEGORY_ID,
                 new String[]{String.valueOf(userId)});
-        db.close();
-        return rows >= 0;
+        List<DataManager.CategoryTotal> totals = new ArrayList<>();
+        try {
+            while (cursor.moveToNext()) {
+                totals.add(new DataManager.CategoryTotal(categories.nameOf(cursor.getInt(0)), cursor.getLong(1), cursor.getInt(2)));
+            }
+        } finally {
+            cursor.close();
+        }
+        // Grouped in id order; a handful of rows, so they are sorted here rather than joined by name
+        Collections.sort(totals, (a, b) -> a.category.compareTo(b.category));
+        return totals;
+    }
+
+    /**
+     * Recomputes the category totals rollup for every user from the expenses table.
+     * Used when the rollup is first created and to repair it if it is ever found out of step.
+     */
+    public synchronized void rebuildCategoryTotals() {
+        SQLiteDatabase db = this.getWritableDatabase();
+        db.beginTransaction();
+        try {
+            rebuildCategoryTotals(db);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    private void rebuildCategoryTotals(SQLiteDatabase db) {
+        long start = System.currentTimeMillis();
+        db.execSQL("DELETE FROM " + TABLE_CATEGORY_TOTALS);
+        db.execSQL("INSERT INTO " + TABLE_CATEGORY_TOTALS + " (" + COL_TOTAL_USER_ID + ", " + COL_TOTAL_CATEGORY_ID + ", " +
+                COL_TOTAL_PERIOD + ", " + COL_TOTAL_AMOUNT + ", " + COL_TOTAL_COUNT + ") " + selectCategoryTotalsFromExpenses());
+        Log.d("DatabaseHelper", "Rebuilt " + TABLE_CATEGORY_TOTALS + " in " + (System.currentTimeMillis() - start) + " ms");
     }
 
-    public boolean setBudget(int userId, String category, double limit) {
+    /**
+     * Brute-force computation of the rollup straight from the expenses table, grouped like the rollup's
+     * primary key. CategoryTotalsTest checks the incrementally maintained rollup against this grouping.
+     */
+    private static String selectCategoryTotalsFromExpenses() {
+        return "SELECT " + COL_EXPENSE_USER_ID + ", " + COL_EXPENSE_CATEGORY_ID + ", " +
+                "CASE WHEN " + COL_EXPENSE_DATE_DAY + " IS NULL THEN " + UNDATED_PERIOD +
+                " ELSE CAST(strftime('%Y%m', " + COL_EXPENSE_DATE_DAY + " * 86400, 'unixepoch') AS INTEGER) END AS " + COL_TOTAL_PERIOD + ", " +
+                "SUM(" + COL_EXPENSE_AMOUNT + ") AS " + COL_TOTAL_AMOUNT + ", COUNT(*) AS " + COL_TOTAL_COUNT +
+                " FROM " + TABLE_EXPENSES + " GROUP BY 1, 2, 3";
+    }
+
+    public boolean setBudget(int userId, String category, long limitCents) {
         SQLiteDatabase db = this.getWritableDatabase();
         ContentValues values = new ContentValues();
         values.put(COL_BUDGET_USER_ID, userId);
-        values.put(COL_BUDGET_CATEGORY, category);
-        values.put(COL_BUDGET_LIMIT, limit);
+        values.put(COL_BUDGET_CATEGORY_ID, categoryId(db, category));
+        values.put(COL_BUDGET_LIMIT, limitCents);
 
         long id = db.insertWithOnConflict(TABLE_BUDGETS, null, values, SQLiteDatabase.CONFLICT_REPLACE);
-        db.close();
         return id > 0;
     }
 
-    public String getBudgets(int userId) {
+    /**
+     * Retrieves all budgets of a user, read straight from the cursor.
+     *
+     * @return List of budgets, empty if none are set
+     */
+    public List<DataManager.Budget> getBudgets(int userId) {
         SQLiteDatabase db = this.getReadableDatabase();
         Cursor cursor = db.query(TABLE_BUDGETS,
-                new String[]{COL_BUDGET_CATEGORY, COL_BUDGET_LIMIT},
+                new String[]{COL_BUDGET_CATEGORY_ID, COL_BUDGET_LIMIT},
                 COL_BUDGET_USER_ID + "=?",
                 new String[]{String.valueOf(userId)},
                 null, null, null);
-
-        StringBuilder json = new StringBuilder("[");
-        if (cursor != null) {
+        try {
+            List<DataManager.Budget> budgets = new ArrayList<>(cursor.getCount());
             while (cursor.moveToNext()) {
-                if (json.length() > 1) json.append(",");
-                json.append("{")
-                    .append("\"category\":\"").append(cursor.getString(0)).append("\",")
-                    .append("\"limit\":").append(cursor.getDouble(1))
-                    .append("}");
+                budgets.add(new DataManager.Budget(categories.nameOf(cursor.getInt(0)), cursor.getLong(1)));
+            }
+            return budgets;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Looks up the budget for a single category using the (user_id, category_id) primary key.
+     *
+     * @return The budget, or null if none is set for the category
+     */
+    public DataManager.Budget getBudget(int userId, String category) {
+        SQLiteDatabase db = this.getReadableDatabase();
+        int categoryId = categories.idOf(category);
+        if (categoryId < 0) {
+            return null;
+        }
+        Cursor cursor = db.query(TABLE_BUDGETS,
+                new String[]{COL_BUDGET_LIMIT},
+                COL_BUDGET_USER_ID + "=? AND " + COL_BUDGET_CATEGORY_ID + "=?",
+                new String[]{String.valueOf(userId), String.valueOf(categoryId)},
+                null, null, null);
+        try {
+            return cursor.moveToFirst() ? new DataManager.Budget(category, cursor.getLong(0)) : null;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Returns a user's spending in one category from the rollup table, so the cost depends on the
+     * number of months with expenses in the category rather than on the whole history.
+     *
+     * @param excludeExpenseId Expense left out of the total (the one being edited), or -1 for none
+     * @return Total amount spent in cents, 0 if the category has no expenses
+     */
+    public long getCategoryTotalCents(int userId, String category, int excludeExpenseId) {
+        SQLiteDatabase db = this.getReadableDatabase();
+        int categoryId = categories.idOf(category);
+        if (categoryId < 0) {
+            return 0;
+        }
+        long total = 0;
+        Cursor cursor = db.rawQuery("SELECT SUM(" + COL_TOTAL_AMOUNT + ") FROM " + TABLE_CATEGORY_TOTALS +
+                        " WHERE " + COL_TOTAL_USER_ID + "=? AND " + COL_TOTAL_CATEGORY_ID + "=?",
+                new String[]{String.valueOf(userId), String.valueOf(categoryId)});
+        try {
+            if (cursor.moveToFirst()) {
+                total = cursor.getLong(0);
             }
+        } finally {
             cursor.close();
         }
-        json.append("]");
-        db.close();
-        return json.toString();
+
+        if (excludeExpenseId > 0) {
+            TotalKey excluded = readTotalKey(db, excludeExpenseId);
+            if (excluded != null && excluded.userId == userId && excluded.categoryId == categoryId) {
+                total -= excluded.amountCents;
+            }
+        }
+        return total;
     }
 
     public boolean deleteBudget(int userId, String category) {
         SQLiteDatabase db = this.getWritableDatabase();
+        int categoryId = categories.idOf(category);
+        if (categoryId < 0) {
+            return false;
+        }
         int rows = db.delete(TABLE_BUDGETS,
-                COL_BUDGET_USER_ID + "=? AND " + COL_BUDGET_CATEGORY + "=?",
-                new String[]{String.valueOf(userId), category});
-        db.close();
+                COL_BUDGET_USER_ID + "=? AND " + COL_BUDGET_CATEGORY_ID + "=?",
+                new String[]{String.valueOf(userId), String.valueOf(categoryId)});
         return rows > 0;
     }
 
+    /**
+     * Returns the categories offered to a user, in the order they were saved.
+     *
+     * @return Category names, empty if the user has not saved a list yet
+     */
+    public List<String> getUserCategories(int userId) {
+        SQLiteDatabase db = this.getReadableDatabase();
+        Cursor cursor = db.query(TABLE_USER_CATEGORIES, new String[]{COL_USER_CATEGORY_ID},
+                COL_USER_CATEGORY_USER_ID + "=?", new String[]{String.valueOf(userId)},
+                null, null, COL_USER_CATEGORY_POSITION);
+        List<String> names = new ArrayList<>();
+        try {
+            while (cursor.moveToNext()) {
+                names.add(categories.nameOf(cursor.getInt(0)));
+            }
+        } finally {
+            cursor.close();
+        }
+        return names;
+    }
+
+    /**
+     * Replaces the categories offered to a user. New names are added to the categories table.
+     *
+     * @param names Category names in display order
+     * @return true if the list was saved
+     */
+    public synchronized boolean setUserCategories(int userId, List<String> names) {
+        try {
+            SQLiteDatabase db = this.getWritableDatabase();
+            int[] categoryIds = new int[names.size()];
+            for (int i = 0; i < categoryIds.length; i++) {
+                categoryIds[i] = categoryId(db, names.get(i));
+            }
+            db.beginTransaction();
+            try {
+                db.delete(TABLE_USER_CATEGORIES, COL_USER_CATEGORY_USER_ID + "=?", new String[]{String.valueOf(userId)});
+                ContentValues values = new ContentValues();
+                for (int position = 0; position < categoryIds.length; position++) {
+                    values.put(COL_USER_CATEGORY_USER_ID, userId);
+                    values.put(COL_USER_CATEGORY_ID, categoryIds[position]);
+                    values.put(COL_USER_CATEGORY_POSITION, position);
+                    db.insertWithOnConflict(TABLE_USER_CATEGORIES, null, values, SQLiteDatabase.CONFLICT_IGNORE);
+                }
+                db.setTransactionSuccessful();
+                return true;
+            } finally {
+                db.endTransaction();
+            }
+        } catch (SQLException e) {
+            Log.e("DatabaseHelper", "Save categories failed: " + e.getMessage(), e);
+            return false;
+        }
+    }
+
     public boolean checkUserExists(int userId) {
         SQLiteDatabase db = this.getReadableDatabase();
         Cursor cursor = null;
@@ -711,25 +2042,14 @@ public class DatabaseHelper extends SQLiteOpenHelper {
                     null, null, null);
             boolean exists = (cursor != null && cursor.getCount() > 0);
             if (cursor != null) cursor.close();
-            db.close();
             return exists;
         } catch (Exception e) {
             Log.e("DatabaseHelper", "Error checking user existence: " + e.getMessage());
             if (cursor != null) cursor.close();
-            db.close();
             return false;
         }
     }
 
-    private String escapeJson(String str) {
-        if (str == null) return "";
-        return str.replace("\\", "\\\\")
-                  .replace("\"", "\\\"")
-                  .replace("\n", "\\n")
-                  .replace("\r", "\\r")
-                  .replace("\t", "\\t");
-    }
-
     // Debug method to check database state
     public boolean verifyDatabase() {
         try {
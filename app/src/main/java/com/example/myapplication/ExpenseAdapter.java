@@ -7,14 +7,36 @@ import android.view.ViewGroup;
 import android.widget.ImageView;
 import android.widget.PopupMenu;
 import android.widget.TextView;
-import android.net.Uri;
 import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.AsyncListDiffer;
+import androidx.recyclerview.widget.DiffUtil;
 import androidx.recyclerview.widget.RecyclerView;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.Locale;
+import java.util.Objects;
 
 public class ExpenseAdapter extends RecyclerView.Adapter<ExpenseAdapter.ExpenseViewHolder> {
-    private List<DataManager.Expense> expenses;
+    // Rows are matched by expense id and rebound only when a displayed field changed
+    private static final DiffUtil.ItemCallback<DataManager.Expense> DIFF_CALLBACK = new DiffUtil.ItemCallback<DataManager.Expense>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull DataManager.Expense oldItem, @NonNull DataManager.Expense newItem) {
+            return oldItem.id == newItem.id;
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull DataManager.Expense oldItem, @NonNull DataManager.Expense newItem) {
+            return oldItem.amountCents == newItem.amountCents
+                    && Objects.equals(oldItem.category, newItem.category)
+                    && Objects.equals(oldItem.note, newItem.note)
+                    && Objects.equals(oldItem.date, newItem.date)
+                    && Objects.equals(oldItem.imageUri, newItem.imageUri);
+        }
+    };
+
+    // Diffs each submitted list against the current one on a background thread
+    private final AsyncListDiffer<DataManager.Expense> differ = new AsyncListDiffer<>(this, DIFF_CALLBACK);
+    // Size of the icon slot in item_expense.xml that receipt thumbnails fill
+    private static final int THUMBNAIL_SIZE_DP = 48;
     private OnExpenseClickListener listener;
 
     public interface OnExpenseClickListener {
@@ -23,8 +45,9 @@ public class ExpenseAdapter extends RecyclerView.Adapter<ExpenseAdapter.ExpenseV
     }
 
     public ExpenseAdapter(List<DataManager.Expense> expenses, OnExpenseClickListener listener) {
-        this.expenses = expenses;
         this.listener = listener;
+        setHasStableIds(true);
+        differ.submitList(new ArrayList<>(expenses));
     }
 
     @NonNull
@@ -37,27 +60,48 @@ public class ExpenseAdapter extends RecyclerView.Adapter<ExpenseAdapter.ExpenseV
 
     @Override
     public void onBindViewHolder(@NonNull ExpenseViewHolder holder, int position) {
-        DataManager.Expense expense = expenses.get(position);
+        DataManager.Expense expense = differ.getCurrentList().get(position);
         holder.bind(expense);
     }
 
+    @Override
+    public void onViewRecycled(@NonNull ExpenseViewHolder holder) {
+        super.onViewRecycled(holder);
+        holder.cancelThumbnail();
+        // Lets the cache evict the bitmap while the row waits in the pool
+        holder.ivCategoryIconImage.setImageBitmap(null);
+    }
+
     @Override
     public int getItemCount() {
-        return expenses.size();
+        return differ.getCurrentList().size();
+    }
+
+    @Override
+    public long getItemId(int position) {
+        return differ.getCurrentList().get(position).id;
     }
 
+    /**
+     * Shows a new list, dispatching only the inserts, removals, moves and changes that differ from
+     * the current one. The list is copied, so callers may keep modifying theirs.
+     */
     public void updateExpenses(List<DataManager.Expense> newExpenses) {
-        this.expenses = newExpenses;
-        notifyDataSetChanged();
+        differ.submitList(new ArrayList<>(newExpenses));
     }
 
     class ExpenseViewHolder extends RecyclerView.ViewHolder {
         private TextView tvCategory, tvNote, tvAmount, tvCategoryIcon, tvDate;
         private ImageView ivExpenseImage, ivCategoryIconImage;
         private android.widget.ImageButton btnMenu;
+        private final ThumbnailLoader thumbnailLoader;
+        private final int thumbnailSizePx;
+        private DataManager.Request thumbnailRequest;
 
         public ExpenseViewHolder(@NonNull View itemView) {
             super(itemView);
+            thumbnailLoader = ThumbnailLoader.getInstance(itemView.getContext());
+            thumbnailSizePx = Math.round(THUMBNAIL_SIZE_DP * itemView.getResources().getDisplayMetrics().density);
             tvCategory = itemView.findViewById(R.id.tvCategory);
             tvNote = itemView.findViewById(R.id.tvNote);
             tvAmount = itemView.findViewById(R.id.tvAmount);
@@ -71,25 +115,32 @@ public class ExpenseAdapter extends RecyclerView.Adapter<ExpenseAdapter.ExpenseV
         public void bind(DataManager.Expense expense) {
             tvCategory.setText(expense.category);
             tvNote.setText(expense.note);
-            tvAmount.setText(String.format(Locale.getDefault(), "-$%.2f", expense.amount));
+            tvAmount.setText(Money.formatCurrency(-expense.amountCents));
             
             // Handle Image and Icon display
             // If an image is present, show it in the icon slot (ivCategoryIconImage) and hide the text icon.
             // Also hide the large ivExpenseImage as requested.
+            cancelThumbnail();
             if (expense.imageUri != null && !expense.imageUri.isEmpty()) {
                 ivCategoryIconImage.setVisibility(View.VISIBLE);
-                ivCategoryIconImage.setImageURI(Uri.parse(expense.imageUri));
+                ivCategoryIconImage.setImageBitmap(null);
                 tvCategoryIcon.setVisibility(View.GONE);
+
+                // Decoded off the main thread at the size of the icon slot
+                thumbnailRequest = thumbnailLoader.load(expense.imageUri, thumbnailSizePx, bitmap -> {
+                    thumbnailRequest = null;
+                    if (bitmap != null) {
+                        ivCategoryIconImage.setImageBitmap(bitmap);
+                    } else {
+                        // Image deleted or no longer readable: fall back to the category icon
+                        showCategoryIcon(expense.category);
+                    }
+                });
                 
                 // Hide the big image preview
                 ivExpenseImage.setVisibility(View.GONE);
             } else {
-                ivCategoryIconImage.setVisibility(View.GONE);
-                tvCategoryIcon.setVisibility(View.VISIBLE);
-                
-                // Set category icon
-                String icon = getCategoryIcon(expense.category);
-                tvCategoryIcon.setText(icon);
+                showCategoryIcon(expense.category);
                 
                 // Ensure big image is hidden
                 ivExpenseImage.setVisibility(View.GONE);
@@ -126,6 +177,23 @@ public class ExpenseAdapter extends RecyclerView.Adapter<ExpenseAdapter.ExpenseV
             });
         }
 
+        /**
+         * Stops loading the thumbnail of the previously bound expense, so it cannot land in this row.
+         */
+        void cancelThumbnail() {
+            if (thumbnailRequest != null) {
+                thumbnailRequest.cancel();
+                thumbnailRequest = null;
+            }
+        }
+
+        private void showCategoryIcon(String category) {
+            ivCategoryIconImage.setVisibility(View.GONE);
+            ivCategoryIconImage.setImageBitmap(null);
+            tvCategoryIcon.setVisibility(View.VISIBLE);
+            tvCategoryIcon.setText(getCategoryIcon(category));
+        }
+
         private String getCategoryIcon(String category) {
             switch (category) {
                 case "Food": return "🍔";
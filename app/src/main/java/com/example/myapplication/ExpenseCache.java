@@ -0,0 +1,396 @@
+package com.example.myapplication;
+
+import android.util.Log;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * ExpenseCache keeps each user's full expense list in memory so switching between screens does not
+ * read the same rows from the database again.
+ *
+ * Responsibilities:
+ * 1. Holds one entry per user, loaded once and then updated in place by DataManager's write methods
+ *    (write-through) instead of being thrown away and re-read.
+ * 2. Serves sorted lists, keyset pages and date ranges with the same ordering as DatabaseHelper, so a
+ *    page read from memory continues seamlessly from one read from the database and vice versa.
+ * 3. Stays within a memory budget: the least recently used users are evicted first, and a history
+ *    too large for the budget is never cached at all.
+ * 4. Keeps an ExpenseColumns snapshot per user, built on demand, so totals are aggregated over
+ *    primitive arrays rather than the Expense objects.
+ * 5. Counts hits and misses.
+ *
+ * All methods are thread-safe. Returned lists are fresh copies, but the Expense objects are shared
+ * with the cache and must not be modified.
+ */
+public final class ExpenseCache {
+    public static final long DEFAULT_BUDGET_BYTES = 4L * 1024 * 1024;
+    public static final String SORT_ID_DESC = "id_desc"; // Insertion order, as DatabaseHelper.getExpenses(userId)
+
+    // Rough heap cost of one Expense: object header and fields, four boxed references and the
+    // slots it takes in the cached lists and columns. Strings are added separately by length.
+    private static final int EXPENSE_OVERHEAD_BYTES = 64;
+    private static final int STRING_OVERHEAD_BYTES = 40;
+    private static final int AVERAGE_EXPENSE_BYTES = 256;
+
+    private final CategoryDictionary dictionary;
+    private final LinkedHashMap<Integer, Entry> entries = new LinkedHashMap<>(4, 0.75f, true);
+    private long budgetBytes;
+    private long usedBytes;
+    private long version; // Bumped by every write, so a load that raced with a write is discarded
+    private long hits;
+    private long misses;
+
+    public ExpenseCache(long budgetBytes, CategoryDictionary dictionary) {
+        this.budgetBytes = budgetBytes;
+        this.dictionary = dictionary;
+    }
+
+    /**
+     * Changes the memory budget, evicting users until the cache fits.
+     */
+    public synchronized void setBudgetBytes(long budgetBytes) {
+        this.budgetBytes = budgetBytes;
+        trimTo(budgetBytes, -1);
+    }
+
+    /**
+     * Returns whether a history of this many expenses is expected to fit in the budget, so callers
+     * can skip loading one that would be discarded right away.
+     */
+    public synchronized boolean mayHold(int expenseCount) {
+        return (long) expenseCount * AVERAGE_EXPENSE_BYTES <= budgetBytes;
+    }
+
+    /**
+     * Returns the current write version, to be passed to put() after loading from the database.
+     */
+    public synchronized long version() {
+        return version;
+    }
+
+    /**
+     * Returns whether a user's expenses are cached, counting a hit or a miss. The other read methods
+     * do not count, so one request is counted once however many of them it calls.
+     */
+    public synchronized boolean isCached(int userId) {
+        if (entries.containsKey(userId)) {
+            hits++;
+            return true;
+        }
+        misses++;
+        return false;
+    }
+
+    /**
+     * Returns whether a user's expenses are cached, without counting a hit or a miss. For callers
+     * that check again after isCached() already counted the request.
+     */
+    public synchronized boolean contains(int userId) {
+        return entries.containsKey(userId);
+    }
+
+    /**
+     * Stores a user's expenses as loaded from the database, newest id first.
+     * Ignored if any write happened since expectedVersion was read, as the list may then be missing it.
+     */
+    public synchronized void put(int userId, List<DataManager.Expense> expenses, long expectedVersion) {
+        if (expectedVersion != version) {
+            Log.d("ExpenseCache", "Discarding load for user " + userId + ", a write happened meanwhile");
+            return;
+        }
+        Entry entry = new Entry(new ArrayList<>(expenses));
+        if (entry.bytes > budgetBytes) {
+            Log.d("ExpenseCache", "Not caching " + expenses.size() + " expenses for user " + userId +
+                    ": " + entry.bytes + " bytes exceeds budget of " + budgetBytes);
+            return;
+        }
+        Entry previous = entries.put(userId, entry);
+        if (previous != null) {
+            usedBytes -= previous.bytes;
+        }
+        usedBytes += entry.bytes;
+        trimTo(budgetBytes, userId);
+    }
+
+    /**
+     * Returns all of a user's expenses in the given order, or null on a miss.
+     */
+    public synchronized List<DataManager.Expense> get(int userId, String sortType) {
+        Entry entry = lookup(userId);
+        return entry != null ? new ArrayList<>(entry.sorted(sortType)) : null;
+    }
+
+    /**
+     * Returns the page following the given expense, see DatabaseHelper.getExpensesPage, or null on a miss.
+     */
+    public synchronized List<DataManager.Expense> getPage(int userId, String sortType, DataManager.Expense after, int limit) {
+        Entry entry = lookup(userId);
+        if (entry == null) {
+            return null;
+        }
+        List<DataManager.Expense> sorted = entry.sorted(sortType);
+        int start = 0;
+        if (after != null) {
+            // The comparator is a total order, so this finds the keyset position even if the
+            // expense itself has since been edited or deleted
+            int index = Collections.binarySearch(sorted, after, comparator(sortType));
+            start = index >= 0 ? index + 1 : -index - 1;
+        }
+        int end = Math.min(start + limit, sorted.size());
+        return start < end ? new ArrayList<>(sorted.subList(start, end)) : new ArrayList<>();
+    }
+
+    /**
+     * Returns a columnar snapshot of a user's expenses for aggregation, or null on a miss. Does not
+     * load anything or count a hit or miss, so totals can use it whenever it happens to be available.
+     * The snapshot is immutable and stays valid after later writes; it just does not include them.
+     */
+    public synchronized ExpenseColumns getColumns(int userId) {
+        Entry entry = lookup(userId);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.columns == null) {
+            entry.columns = ExpenseColumns.of(entry.byId, dictionary);
+        }
+        return entry.columns;
+    }
+
+    /**
+     * Returns a user's expenses dated within an inclusive range, newest first, or null on a miss.
+     */
+    public synchronized List<DataManager.Expense> getBetween(int userId, int fromDay, int toDay) {
+        Entry entry = lookup(userId);
+        if (entry == null) {
+            return null;
+        }
+        List<DataManager.Expense> result = new ArrayList<>();
+        for (DataManager.Expense expense : entry.sorted("date_desc")) {
+            if (expense.dateDay < fromDay) {
+                break;
+            }
+            if (expense.dateDay <= toDay) {
+                result.add(expense);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Records a newly added or updated expense. Safe to call for an expense the cache already holds.
+     */
+    public synchronized void onSaved(int userId, DataManager.Expense expense) {
+        version++;
+        Entry entry = entries.get(userId);
+        if (entry == null) {
+            return;
+        }
+        usedBytes -= entry.bytes;
+        entry.remove(expense.id);
+        entry.insert(expense);
+        usedBytes += entry.bytes;
+        trimTo(budgetBytes, -1);
+    }
+
+    public synchronized void onDeleted(int userId, int expenseId) {
+        version++;
+        Entry entry = entries.get(userId);
+        if (entry != null) {
+            usedBytes -= entry.bytes;
+            entry.remove(expenseId);
+            usedBytes += entry.bytes;
+        }
+    }
+
+    public synchronized void onCleared(int userId) {
+        version++;
+        Entry entry = entries.get(userId);
+        if (entry != null) {
+            usedBytes -= entry.bytes;
+            entry.removeAll();
+            usedBytes += entry.bytes;
+        }
+    }
+
+    /**
+     * Drops one user's entry, e.g. after changes made outside the write-through methods.
+     */
+    public synchronized void invalidate(int userId) {
+        version++;
+        Entry entry = entries.remove(userId);
+        if (entry != null) {
+            usedBytes -= entry.bytes;
+        }
+    }
+
+    public synchronized void clear() {
+        version++;
+        entries.clear();
+        usedBytes = 0;
+    }
+
+    public synchronized long getHitCount() {
+        return hits;
+    }
+
+    public synchronized long getMissCount() {
+        return misses;
+    }
+
+    public synchronized long getUsedBytes() {
+        return usedBytes;
+    }
+
+    private Entry lookup(int userId) {
+        return entries.get(userId);
+    }
+
+    /**
+     * Evicts least recently used users until usedBytes fits the limit, never evicting keepUserId.
+     */
+    private void trimTo(long limit, int keepUserId) {
+        Iterator<Map.Entry<Integer, Entry>> iterator = entries.entrySet().iterator();
+        while (usedBytes > limit && iterator.hasNext()) {
+            Map.Entry<Integer, Entry> eldest = iterator.next();
+            if (eldest.getKey() == keepUserId) {
+                continue;
+            }
+            usedBytes -= eldest.getValue().bytes;
+            iterator.remove();
+            Log.d("ExpenseCache", "Evicted expenses of user " + eldest.getKey());
+        }
+    }
+
+    /**
+     * Returns the in-memory equivalent of DatabaseHelper's ORDER BY for a sort type, including the
+     * id tie-breaks, so both produce exactly the same sequence. Category names equal under NOCASE
+     * are ordered by their category id, like the join on the categories table.
+     */
+    Comparator<DataManager.Expense> comparator(String sortType) {
+        switch (sortType) {
+            case "date_asc":
+                return (a, b) -> a.dateDay != b.dateDay ? Integer.compare(a.dateDay, b.dateDay) : Integer.compare(a.id, b.id);
+            case "amount_desc":
+                return (a, b) -> a.amountCents != b.amountCents ? Long.compare(b.amountCents, a.amountCents) : Integer.compare(b.id, a.id);
+            case "amount_asc":
+                return (a, b) -> a.amountCents != b.amountCents ? Long.compare(a.amountCents, b.amountCents) : Integer.compare(a.id, b.id);
+            case "category_asc":
+                return (a, b) -> {
+                    int result = compareCategories(a.category, b.category);
+                    return result != 0 ? result : Integer.compare(a.id, b.id);
+                };
+            case "category_desc":
+                return (a, b) -> {
+                    int result = compareCategories(b.category, a.category);
+                    return result != 0 ? result : Integer.compare(b.id, a.id);
+                };
+            case "date_desc":
+            default:
+                return (a, b) -> a.dateDay != b.dateDay ? Integer.compare(b.dateDay, a.dateDay) : Integer.compare(b.id, a.id);
+        }
+    }
+
+    private int compareCategories(String a, String b) {
+        int result = compareNoCase(a, b);
+        return result != 0 ? result : Integer.compare(dictionary.idOf(a), dictionary.idOf(b));
+    }
+
+    /**
+     * Compares like SQLite's NOCASE collation, which folds only ASCII letters.
+     */
+    private static int compareNoCase(String a, String b) {
+        int length = Math.min(a.length(), b.length());
+        for (int i = 0; i < length; i++) {
+            char x = a.charAt(i);
+            char y = b.charAt(i);
+            if (x >= 'A' && x <= 'Z') x += 'a' - 'A';
+            if (y >= 'A' && y <= 'Z') y += 'a' - 'A';
+            if (x != y) {
+                return x - y;
+            }
+        }
+        return a.length() - b.length();
+    }
+
+    private static long sizeOf(DataManager.Expense expense) {
+        return EXPENSE_OVERHEAD_BYTES + ExpenseColumns.BYTES_PER_ROW + sizeOf(expense.category) + sizeOf(expense.note) +
+                sizeOf(expense.date) + sizeOf(expense.imageUri);
+    }
+
+    private static long sizeOf(String value) {
+        return value != null ? STRING_OVERHEAD_BYTES + 2L * value.length() : 0;
+    }
+
+    /**
+     * One user's expenses, newest id first, plus sorted views and columns built on demand.
+     */
+    private class Entry {
+        final List<DataManager.Expense> byId;
+        final Map<String, List<DataManager.Expense>> views = new HashMap<>();
+        ExpenseColumns columns; // Rebuilt on next use after any write
+        long bytes;
+
+        Entry(List<DataManager.Expense> byId) {
+            this.byId = byId;
+            for (DataManager.Expense expense : byId) {
+                bytes += sizeOf(expense);
+            }
+        }
+
+        List<DataManager.Expense> sorted(String sortType) {
+            if (SORT_ID_DESC.equals(sortType)) {
+                return byId;
+            }
+            List<DataManager.Expense> view = views.get(sortType);
+            if (view == null) {
+                view = new ArrayList<>(byId);
+                Collections.sort(view, comparator(sortType));
+                views.put(sortType, view);
+            }
+            return view;
+        }
+
+        void insert(DataManager.Expense expense) {
+            int index = 0;
+            while (index < byId.size() && byId.get(index).id > expense.id) {
+                index++;
+            }
+            byId.add(index, expense);
+            bytes += sizeOf(expense);
+            columns = null;
+            for (Map.Entry<String, List<DataManager.Expense>> view : views.entrySet()) {
+                List<DataManager.Expense> list = view.getValue();
+                int position = Collections.binarySearch(list, expense, comparator(view.getKey()));
+                list.add(position >= 0 ? position : -position - 1, expense);
+            }
+        }
+
+        void remove(int expenseId) {
+            for (Iterator<DataManager.Expense> iterator = byId.iterator(); iterator.hasNext(); ) {
+                DataManager.Expense expense = iterator.next();
+                if (expense.id == expenseId) {
+                    iterator.remove();
+                    bytes -= sizeOf(expense);
+                    columns = null;
+                    for (List<DataManager.Expense> view : views.values()) {
+                        view.remove(expense);
+                    }
+                    return;
+                }
+            }
+        }
+
+        void removeAll() {
+            byId.clear();
+            views.clear();
+            columns = null;
+            bytes = 0;
+        }
+    }
+}
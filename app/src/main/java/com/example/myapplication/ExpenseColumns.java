@@ -0,0 +1,138 @@
+package com.example.myapplication;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * ExpenseColumns is an immutable, column-oriented snapshot of one user's expenses for aggregation.
+ *
+ * Each field of the expenses is stored in its own primitive array (amounts in cents, categories as
+ * CategoryDictionary ids, dates as epoch days), so totals are computed with tight loops over
+ * contiguous memory, without touching Expense objects or boxing a value per row. Text fields such as
+ * notes are deliberately left out; they stay with the Expense objects and are only read for display.
+ */
+public final class ExpenseColumns {
+    // Bytes per row across the three arrays
+    public static final int BYTES_PER_ROW = 8 + 4 + 4;
+
+    // Category names by the ids in categoryIds, copied when the snapshot is built
+    private final String[] categoryNames;
+    private final int size;
+    private final long[] cents;
+    private final int[] categoryIds;
+    private final int[] days;
+
+    private ExpenseColumns(String[] categoryNames, long[] cents, int[] categoryIds, int[] days) {
+        this.categoryNames = categoryNames;
+        this.size = cents.length;
+        this.cents = cents;
+        this.categoryIds = categoryIds;
+        this.days = days;
+    }
+
+    /**
+     * Copies a list of expenses into columns. Categories are stored by their dictionary id; expenses
+     * read from or saved through DatabaseHelper always have one. A category the dictionary does not
+     * know, e.g. after the database was reset, gets an id of its own past the dictionary's ids.
+     */
+    public static ExpenseColumns of(List<DataManager.Expense> expenses, CategoryDictionary dictionary) {
+        int known = dictionary.size();
+        List<String> names = new ArrayList<>(known);
+        for (int id = 0; id < known; id++) {
+            names.add(dictionary.nameOf(id));
+        }
+        int size = expenses.size();
+        long[] cents = new long[size];
+        int[] categoryIds = new int[size];
+        int[] days = new int[size];
+        Map<String, Integer> unknownIds = null;
+        for (int i = 0; i < size; i++) {
+            DataManager.Expense expense = expenses.get(i);
+            cents[i] = expense.amountCents;
+            days[i] = expense.dateDay;
+            String category = expense.category;
+            int id = dictionary.idOf(category);
+            if (id < 0 || id >= known) {
+                if (unknownIds == null) {
+                    unknownIds = new HashMap<>();
+                }
+                Integer unknownId = unknownIds.get(category);
+                if (unknownId == null) {
+                    unknownId = names.size();
+                    unknownIds.put(category, unknownId);
+                    names.add(category != null ? category : "");
+                }
+                id = unknownId;
+            }
+            categoryIds[i] = id;
+        }
+        return new ExpenseColumns(names.toArray(new String[0]), cents, categoryIds, days);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the sum of all amounts, in cents.
+     */
+    public long totalCents() {
+        long total = 0;
+        for (int i = 0; i < size; i++) {
+            total += cents[i];
+        }
+        return total;
+    }
+
+    /**
+     * Returns the sum of the amounts dated within an inclusive range of epoch days, in cents.
+     */
+    public long totalCents(int fromDay, int toDay) {
+        long total = 0;
+        for (int i = 0; i < size; i++) {
+            int day = days[i];
+            if (day >= fromDay && day <= toDay) {
+                total += cents[i];
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Returns spending per category, ordered by category name like DatabaseHelper.getCategoryTotals.
+     */
+    public List<DataManager.CategoryTotal> categoryTotals() {
+        return categoryTotals(Integer.MIN_VALUE, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Returns spending per category for expenses dated within an inclusive range of epoch days,
+     * ordered by category name.
+     */
+    public List<DataManager.CategoryTotal> categoryTotals(int fromDay, int toDay) {
+        // Every id in categoryIds is an index into categoryNames
+        int categories = categoryNames.length;
+        long[] sums = new long[categories];
+        int[] counts = new int[categories];
+        for (int i = 0; i < size; i++) {
+            int day = days[i];
+            if (day >= fromDay && day <= toDay) {
+                int category = categoryIds[i];
+                sums[category] += cents[i];
+                counts[category]++;
+            }
+        }
+
+        List<DataManager.CategoryTotal> totals = new ArrayList<>();
+        for (int category = 0; category < categories; category++) {
+            if (counts[category] > 0) {
+                totals.add(new DataManager.CategoryTotal(categoryNames[category], sums[category], counts[category]));
+            }
+        }
+        Collections.sort(totals, (a, b) -> a.category.compareTo(b.category));
+        return totals;
+    }
+}
@@ -0,0 +1,145 @@
+package com.example.myapplication;
+
+import java.text.ParsePosition;
+import java.text.SimpleDateFormat;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+
+/**
+ * ExpenseDates converts the free-text expense dates shown in the UI into epoch days
+ * (days since 1970-01-01 in the device's calendar), which is what the database indexes and sorts on.
+ *
+ * It understands the same formats the app has always accepted: "MMMM d, yyyy" from the date picker,
+ * "MMM d, yyyy", "yyyy-MM-dd", "MM/dd/yyyy" and the literal "Today".
+ */
+public final class ExpenseDates {
+    private static final long MILLIS_PER_DAY = 24L * 60 * 60 * 1000;
+
+    /**
+     * Epoch day stored for a date in no known format: 1970-01-01, before any real expense, so such
+     * expenses sort last in the default newest-first list and fall outside every month's totals.
+     */
+    public static final int UNKNOWN_DAY = 0;
+    private static final String[] PATTERNS = {"MMMM d, yyyy", "MMM d, yyyy", "yyyy-MM-dd", "MM/dd/yyyy"};
+
+    // SimpleDateFormat is not thread-safe, so each thread keeps its own set for the current locale
+    private static final ThreadLocal<FormatCache> FORMATS = new ThreadLocal<>();
+
+    private ExpenseDates() {
+    }
+
+    /**
+     * Converts an expense date string to an epoch day.
+     * Empty and "Today" resolve to the current day. A value in no known format resolves to
+     * UNKNOWN_DAY rather than to today, which would move the expense to the top of the list and
+     * into this month's totals every time it is rewritten.
+     *
+     * @param dateStr The date as entered or stored
+     * @return Days since 1970-01-01, or UNKNOWN_DAY
+     */
+    public static int toEpochDay(String dateStr) {
+        Date date = parse(dateStr);
+        return date != null ? epochDay(date) : UNKNOWN_DAY;
+    }
+
+    /**
+     * Parses an expense date string.
+     *
+     * @param dateStr The date as entered or stored
+     * @return The parsed date, the current date for empty or "Today", or null if no format matches
+     */
+    public static Date parse(String dateStr) {
+        if (dateStr == null || dateStr.isEmpty() || dateStr.equals("Today")) {
+            return new Date();
+        }
+        // Same result as format.parse(dateStr), without building a ParseException for each format
+        // that does not match; imports parse every row, mostly in the later formats
+        for (SimpleDateFormat format : formats()) {
+            Date date = format.parse(dateStr, new ParsePosition(0));
+            if (date != null) {
+                return date;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Formats a date in the app's display format ("MMMM d, yyyy").
+     */
+    public static String format(Date date) {
+        return formats()[0].format(date);
+    }
+
+    public static int today() {
+        return epochDay(new Date());
+    }
+
+    /**
+     * Returns the epoch day of the calendar day the given instant falls on in the default time zone.
+     */
+    public static int epochDay(Date date) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.setTime(date);
+        return epochDay(calendar.get(Calendar.YEAR), calendar.get(Calendar.MONTH), calendar.get(Calendar.DAY_OF_MONTH));
+    }
+
+    /**
+     * @param year       Calendar year
+     * @param month      Zero-based month, as used by Calendar
+     * @param dayOfMonth Day of month starting at 1
+     */
+    public static int epochDay(int year, int month, int dayOfMonth) {
+        Calendar utc = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+        utc.clear();
+        utc.set(year, month, dayOfMonth);
+        return (int) Math.floorDiv(utc.getTimeInMillis(), MILLIS_PER_DAY);
+    }
+
+    /**
+     * Returns the first and last epoch day of the month containing the given day.
+     */
+    public static int[] monthRange(int epochDay) {
+        Calendar utc = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+        utc.setTimeInMillis(epochDay * MILLIS_PER_DAY);
+        int year = utc.get(Calendar.YEAR);
+        int month = utc.get(Calendar.MONTH);
+        int first = epochDay(year, month, 1);
+        int last = first + utc.getActualMaximum(Calendar.DAY_OF_MONTH) - 1;
+        return new int[]{first, last};
+    }
+
+    /**
+     * Returns the month containing the given day as yyyyMM, e.g. 202403.
+     * Matches CAST(strftime('%Y%m', day * 86400, 'unixepoch') AS INTEGER) in SQLite.
+     */
+    public static int monthKey(int epochDay) {
+        Calendar utc = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+        utc.setTimeInMillis(epochDay * MILLIS_PER_DAY);
+        return utc.get(Calendar.YEAR) * 100 + utc.get(Calendar.MONTH) + 1;
+    }
+
+    private static SimpleDateFormat[] formats() {
+        Locale locale = Locale.getDefault();
+        FormatCache cache = FORMATS.get();
+        if (cache == null || !cache.locale.equals(locale)) {
+            cache = new FormatCache(locale);
+            FORMATS.set(cache);
+        }
+        return cache.formats;
+    }
+
+    private static class FormatCache {
+        final Locale locale;
+        final SimpleDateFormat[] formats;
+
+        FormatCache(Locale locale) {
+            this.locale = locale;
+            this.formats = new SimpleDateFormat[PATTERNS.length];
+            for (int i = 0; i < PATTERNS.length; i++) {
+                formats[i] = new SimpleDateFormat(PATTERNS[i], locale);
+            }
+        }
+    }
+}
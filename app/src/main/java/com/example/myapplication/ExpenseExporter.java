@@ -0,0 +1,214 @@
+package com.example.myapplication;
+
+import androidx.annotation.VisibleForTesting;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * ExpenseExporter writes expenses one at a time to a channel as CSV or JSON lines.
+ *
+ * Each expense is formatted into a reused StringBuilder and encoded as UTF-8 straight into a fixed
+ * size ByteBuffer, which is written to the channel whenever it fills up. Nothing else is kept per
+ * row, so memory use is the same for ten expenses as for a million. Amounts are written as plain
+ * decimals ("12.50") whatever the locale, so the file reads back the same everywhere.
+ *
+ * Not thread-safe; call finish() once after the last expense to flush what is still buffered.
+ */
+public final class ExpenseExporter {
+    public enum Format {
+        CSV("text/csv", ".csv"),
+        JSON_LINES("application/x-ndjson", ".jsonl");
+
+        public final String mimeType;
+        public final String extension;
+
+        Format(String mimeType, String extension) {
+            this.mimeType = mimeType;
+            this.extension = extension;
+        }
+    }
+
+    private static final int BUFFER_BYTES = 64 * 1024;
+    private static final String CSV_HEADER = "id,date,category,amount,note,image_uri\r\n";
+
+    private final WritableByteChannel channel;
+    private final Format format;
+    private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_BYTES);
+    private final StringBuilder line = new StringBuilder(256);
+    private int count;
+
+    /**
+     * Creates an exporter and writes the CSV header line, if the format has one.
+     */
+    public ExpenseExporter(WritableByteChannel channel, Format format) throws IOException {
+        this.channel = channel;
+        this.format = format;
+        if (format == Format.CSV) {
+            line.append(CSV_HEADER);
+            encodeLine();
+        }
+    }
+
+    public void write(DataManager.Expense expense) throws IOException {
+        line.setLength(0);
+        if (format == Format.CSV) {
+            appendCsv(expense);
+        } else {
+            appendJson(expense);
+        }
+        encodeLine();
+        count++;
+    }
+
+    /**
+     * Writes out everything still buffered. The channel is left open for the caller to close.
+     *
+     * @return Number of expenses written
+     */
+    public int finish() throws IOException {
+        flush();
+        return count;
+    }
+
+    /**
+     * Returns the size of the output buffer, which is allocated once and never grows.
+     */
+    @VisibleForTesting
+    int getBufferCapacity() {
+        return buffer.capacity();
+    }
+
+    /**
+     * Returns the capacity of the reused line builder; it only grows for a line longer than any before.
+     */
+    @VisibleForTesting
+    int getLineCapacity() {
+        return line.capacity();
+    }
+
+    // RFC 4180: comma separated, CRLF line endings, fields quoted only when they need it
+    private void appendCsv(DataManager.Expense expense) {
+        line.append(expense.id).append(',');
+        appendCsvField(expense.date);
+        line.append(',');
+        appendCsvField(expense.category);
+        line.append(',');
+        Money.appendPlain(line, expense.amountCents).append(',');
+        appendCsvField(expense.note);
+        line.append(',');
+        appendCsvField(expense.imageUri);
+        line.append("\r\n");
+    }
+
+    private void appendCsvField(String value) {
+        if (value == null || value.isEmpty()) {
+            return;
+        }
+        boolean quote = false;
+        for (int i = 0; i < value.length() && !quote; i++) {
+            char c = value.charAt(i);
+            quote = c == ',' || c == '"' || c == '\r' || c == '\n';
+        }
+        if (!quote) {
+            line.append(value);
+            return;
+        }
+        line.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"') {
+                line.append('"');
+            }
+            line.append(c);
+        }
+        line.append('"');
+    }
+
+    private void appendJson(DataManager.Expense expense) {
+        line.append("{\"id\":").append(expense.id);
+        line.append(",\"date\":");
+        appendJsonString(expense.date);
+        line.append(",\"category\":");
+        appendJsonString(expense.category);
+        // A JSON number, so the value is exact and needs no parsing of locale formats
+        line.append(",\"amount\":");
+        Money.appendPlain(line, expense.amountCents);
+        line.append(",\"note\":");
+        appendJsonString(expense.note);
+        line.append(",\"image_uri\":");
+        appendJsonString(expense.imageUri);
+        line.append("}\n");
+    }
+
+    private void appendJsonString(String value) {
+        line.append('"');
+        if (value != null) {
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                switch (c) {
+                    case '"':
+                        line.append("\\\"");
+                        break;
+                    case '\\':
+                        line.append("\\\\");
+                        break;
+                    case '\n':
+                        line.append("\\n");
+                        break;
+                    case '\r':
+                        line.append("\\r");
+                        break;
+                    case '\t':
+                        line.append("\\t");
+                        break;
+                    default:
+                        if (c < 0x20) {
+                            line.append("\\u00");
+                            line.append(Character.forDigit(c >> 4, 16));
+                            line.append(Character.forDigit(c & 0xF, 16));
+                        } else {
+                            line.append(c);
+                        }
+                        break;
+                }
+            }
+        }
+        line.append('"');
+    }
+
+    /**
+     * Encodes the current line into the buffer, writing the buffer out each time it fills up.
+     */
+    private void encodeLine() throws IOException {
+        CharBuffer chars = CharBuffer.wrap(line);
+        while (true) {
+            CoderResult result = encoder.encode(chars, buffer, true);
+            if (result.isOverflow()) {
+                flush();
+            } else if (result.isUnderflow()) {
+                break;
+            } else {
+                result.throwException();
+            }
+        }
+        // Each line is encoded on its own, so a split surrogate pair never spans two calls
+        encoder.reset();
+    }
+
+    private void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+}
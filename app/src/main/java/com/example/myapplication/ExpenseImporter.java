@@ -0,0 +1,259 @@
+package com.example.myapplication;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * ExpenseImporter turns the records of a CSV file into expenses, one at a time.
+ *
+ * The first record must be a header; columns are found by name, so both the app's own export and
+ * typical bank exports ("Date", "Description", "Amount") can be read. Each following record is
+ * validated on its own: a record with a bad amount or date is counted and reported in the result,
+ * and the import carries on with the next one.
+ *
+ * Banks differ in the sign of spending: many list debits as negative amounts. The sign is taken
+ * from the file, as the one most of its first SIGN_SAMPLE_ROWS amounts have, since a statement is
+ * mostly spending. Amounts of that sign are imported as positive expenses, like ones entered by
+ * hand, and zero amounts or the other sign (credits and refunds) are rejected rather than stored as
+ * spending. Files with a separate debit column are read from that column, and rows without a debit
+ * are skipped like blank rows, since they are the file's deposits rather than errors.
+ *
+ * Dates are accepted in the formats ExpenseDates understands and stored in the app's display format,
+ * so imported expenses look and sort exactly like ones entered by hand.
+ */
+public final class ExpenseImporter {
+    // Row errors kept for display; later ones are only counted, so a bad file cannot exhaust memory
+    public static final int MAX_REPORTED_ERRORS = 100;
+    // Records read ahead to find the sign of spending; they are then imported as usual
+    static final int SIGN_SAMPLE_ROWS = 100;
+
+    private static final String DEFAULT_CATEGORY = "Others";
+    private static final String DEFAULT_NOTE = "No note";
+
+    // Accepted header names per field, compared ignoring case and surrounding spaces
+    private static final String[] DATE_HEADERS = {"date", "transaction date", "posted date", "posting date"};
+    private static final String[] AMOUNT_HEADERS = {"amount", "value"};
+    // Used when there is no amount column; such files put deposits in a separate credit column
+    private static final String[] DEBIT_HEADERS = {"debit", "debit amount", "withdrawal", "withdrawals",
+            "withdrawal amount"};
+    private static final String[] CATEGORY_HEADERS = {"category"};
+    private static final String[] NOTE_HEADERS = {"note", "notes", "description", "memo", "payee", "details"};
+
+    private final CsvReader csv;
+    private final DataManager.ImportResult result;
+    private final List<String> fields = new ArrayList<>();
+    private final int dateColumn;
+    private final int amountColumn;
+    private final boolean debitColumn;
+    private final int categoryColumn;
+    private final int noteColumn;
+    // 1 if spending is positive in this file, -1 if it is negative
+    private final int spendingSign;
+    private final ArrayDeque<Record> sample = new ArrayDeque<>();
+    private int line;
+    private String lastDateText;
+    private String lastDate;
+
+    /**
+     * Reads the header record, locates the columns and reads ahead to find the sign of spending.
+     *
+     * @param csv    Reader positioned at the start of the file
+     * @param result Receives the count of rejected rows and their errors
+     * @throws IOException If the file cannot be read or has no date or amount column
+     */
+    public ExpenseImporter(CsvReader csv, DataManager.ImportResult result) throws IOException {
+        this.csv = csv;
+        this.result = result;
+        if (!csv.next(fields)) {
+            throw new IOException("The file is empty");
+        }
+        dateColumn = column(DATE_HEADERS);
+        int amount = column(AMOUNT_HEADERS);
+        debitColumn = amount < 0;
+        amountColumn = debitColumn ? column(DEBIT_HEADERS) : amount;
+        categoryColumn = column(CATEGORY_HEADERS);
+        noteColumn = column(NOTE_HEADERS);
+        if (dateColumn < 0 || amountColumn < 0) {
+            throw new IOException("The first row must name a date and an amount column");
+        }
+        spendingSign = readSample();
+    }
+
+    /**
+     * Reads up to SIGN_SAMPLE_ROWS records ahead and counts the signs of their amounts.
+     *
+     * @return -1 if more amounts are negative than positive, otherwise 1
+     */
+    private int readSample() throws IOException {
+        int positive = 0;
+        int negative = 0;
+        while (sample.size() < SIGN_SAMPLE_ROWS && csv.next(fields)) {
+            sample.add(new Record(new ArrayList<>(fields), csv.getLine()));
+            try {
+                long cents = Money.parse(stripCurrency(field(amountColumn)));
+                if (cents > 0) {
+                    positive++;
+                } else if (cents < 0) {
+                    negative++;
+                }
+            } catch (NumberFormatException e) {
+                // Reported when the record is imported
+            }
+        }
+        return negative > positive ? -1 : 1;
+    }
+
+    /**
+     * Returns the next valid expense, skipping and reporting invalid records.
+     * The id and dateDay of the returned expense are not set; DataManager.addExpenses ignores them.
+     *
+     * @return The next expense, or null at the end of the file
+     * @throws IOException If the file cannot be read
+     */
+    public DataManager.Expense next() throws IOException {
+        while (nextRecord()) {
+            if (isBlank() || (debitColumn && field(amountColumn).isEmpty())) {
+                continue;
+            }
+            DataManager.Expense expense = toExpense();
+            if (expense != null) {
+                return expense;
+            }
+        }
+        return null;
+    }
+
+    private DataManager.Expense toExpense() {
+        String amountText = field(amountColumn);
+        if (amountText.isEmpty()) {
+            return reject("missing amount");
+        }
+        long amountCents;
+        try {
+            amountCents = Money.parse(stripCurrency(amountText));
+        } catch (NumberFormatException e) {
+            return reject("invalid amount \"" + amountText + "\"");
+        }
+        amountCents *= spendingSign;
+        if (amountCents <= 0) {
+            // Same rule as the add expense screen; refunds and credits are not expenses
+            return reject("amount must be " + (spendingSign > 0 ? "positive" : "negative") + " \"" + amountText + "\"");
+        }
+
+        String dateText = field(dateColumn);
+        if (dateText.isEmpty()) {
+            return reject("missing date");
+        }
+        String date = normalizeDate(dateText);
+        if (date == null) {
+            return reject("unrecognized date \"" + dateText + "\"");
+        }
+
+        String category = field(categoryColumn);
+        String note = field(noteColumn);
+        return new DataManager.Expense(0,
+                category.isEmpty() ? DEFAULT_CATEGORY : category,
+                amountCents,
+                note.isEmpty() ? DEFAULT_NOTE : note,
+                date,
+                "",
+                0);
+    }
+
+    /**
+     * Moves to the next record, taking the records read ahead first.
+     *
+     * @return false at the end of the file
+     */
+    private boolean nextRecord() throws IOException {
+        Record record = sample.poll();
+        if (record != null) {
+            fields.clear();
+            fields.addAll(record.fields);
+            line = record.line;
+            return true;
+        }
+        if (csv.next(fields)) {
+            line = csv.getLine();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Returns the date in the app's display format, or null if it is not in a known format.
+     * Exports list transactions in date order, so consecutive rows mostly share a date and the last
+     * result is reused rather than running every date format over each row.
+     */
+    private String normalizeDate(String text) {
+        if (!text.equals(lastDateText)) {
+            Date date = ExpenseDates.parse(text);
+            lastDateText = text;
+            lastDate = date != null ? ExpenseDates.format(date) : null;
+        }
+        return lastDate;
+    }
+
+    private DataManager.Expense reject(String message) {
+        result.rejected++;
+        if (result.errors.size() < MAX_REPORTED_ERRORS) {
+            result.errors.add("Line " + line + ": " + message);
+        }
+        return null;
+    }
+
+    /**
+     * Drops a leading currency sign and thousands separators, e.g. "$1,234.50" or "-$3.00".
+     */
+    private static String stripCurrency(String text) {
+        StringBuilder builder = new StringBuilder(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c != '$' && c != ',' && !Character.isWhitespace(c)) {
+                builder.append(c);
+            }
+        }
+        return builder.toString();
+    }
+
+    private int column(String[] names) {
+        for (String name : names) {
+            for (int i = 0; i < fields.size(); i++) {
+                if (fields.get(i).trim().toLowerCase(Locale.ROOT).equals(name)) {
+                    return i;
+                }
+            }
+        }
+        return -1;
+    }
+
+    private String field(int column) {
+        return column >= 0 && column < fields.size() ? fields.get(column).trim() : "";
+    }
+
+    private boolean isBlank() {
+        for (String field : fields) {
+            if (!field.trim().isEmpty()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * A record read ahead, with the line it started on.
+     */
+    private static final class Record {
+        final List<String> fields;
+        final int line;
+
+        Record(List<String> fields, int line) {
+            this.fields = fields;
+            this.line = line;
+        }
+    }
+}
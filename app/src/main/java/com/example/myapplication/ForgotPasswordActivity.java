@@ -15,6 +15,7 @@ public class ForgotPasswordActivity extends AppCompatActivity {
     private TextView tvError;
     private MaterialButton btnReset;
     private DataManager dataManager;
+    private DataManager.Request resetRequest;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -52,12 +53,24 @@ public class ForgotPasswordActivity extends AppCompatActivity {
             return;
         }
 
-        boolean success = dataManager.resetPassword(username, pet, newPassword);
-        if (success) {
-            Toast.makeText(this, "Password reset successful. Please log in.", Toast.LENGTH_LONG).show();
-            finish();
-        } else {
-            showError("Invalid username or security answer");
+        btnReset.setEnabled(false);
+        tvError.setVisibility(View.GONE);
+        resetRequest = dataManager.resetPasswordAsync(username, pet, newPassword, success -> {
+            btnReset.setEnabled(true);
+            if (success) {
+                Toast.makeText(this, "Password reset successful. Please log in.", Toast.LENGTH_LONG).show();
+                finish();
+            } else {
+                showError("Invalid username or security answer");
+            }
+        });
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        if (resetRequest != null) {
+            resetRequest.cancel();
         }
     }
 
@@ -9,7 +9,6 @@ import android.view.LayoutInflater;
 import android.view.MenuItem;
 import android.view.View;
 import android.view.ViewGroup;
-import android.widget.GridLayout;
 import android.widget.PopupMenu;
 import android.widget.TextView;
 import android.widget.Toast;
@@ -19,9 +18,7 @@ import androidx.fragment.app.Fragment;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 import com.google.android.material.button.MaterialButton;
-import com.google.android.material.card.MaterialCardView;
 import com.google.android.material.textfield.TextInputEditText;
-import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Calendar;
@@ -41,6 +38,11 @@ import java.util.Locale;
  * 4. Handles clicks to edit or delete expenses.
  */
 public class HomeFragment extends Fragment {
+    private static final int PAGE_SIZE = 50;
+    // Load the next page once the last visible row is this close to the end of the loaded rows
+    private static final int PREFETCH_DISTANCE = 15;
+    private static final int SEARCH_LIMIT = 200;
+
     private RecyclerView rvExpenses;
     private TextView tvTotalAmount;
     private ExpenseAdapter adapter;
@@ -50,6 +52,13 @@ public class HomeFragment extends Fragment {
     private List<DataManager.Expense> allExpenses;
     private String currentSortType = "date_desc"; // Default: newest first
     private String searchQuery = "";
+    private SearchPipeline<DataManager.Expense> searchPipeline;
+    private DataManager.Request loadRequest; // In-flight expense load, cancelled when superseded or destroyed
+    private DataManager.Request totalRequest;
+    private DataManager.Request searchTotalRequest;
+    private boolean hasMorePages; // allExpenses holds only the pages loaded so far
+    private long totalSpentCents;
+    private long loadedVersion = -1; // DataManager.getDataVersion() when the list was last loaded
 
     @Nullable
     @Override
@@ -70,15 +79,35 @@ public class HomeFragment extends Fragment {
         etSearch = view.findViewById(R.id.etSearch);
         btnSort = view.findViewById(R.id.btnSort);
 
-        // Setup search: Listen for text changes to filter list in real-time
+        // Setup search: queries go through a pipeline that debounces typing, cancels superseded
+        // searches and narrows the previous results in memory when the query only grew
+        searchPipeline = new SearchPipeline<>("HomeFragment", SearchPipeline.DEFAULT_DEBOUNCE_MS, SEARCH_LIMIT,
+                (query, callback) -> dataManager.searchExpensesAsync(query, SEARCH_LIMIT, callback),
+                HomeFragment::matchesSearch,
+                (query, results) -> {
+                    allExpenses = results;
+                    hasMorePages = false;
+                    showExpenses();
+                });
         etSearch.addTextChangedListener(new TextWatcher() {
             @Override
             public void beforeTextChanged(CharSequence s, int start, int count, int after) {}
 
             @Override
             public void onTextChanged(CharSequence s, int start, int before, int count) {
-                searchQuery = s.toString().toLowerCase().trim();
-                loadExpenses(); // Reload list with new filter
+                String query = s.toString().toLowerCase().trim();
+                if (query.equals(searchQuery)) {
+                    return;
+                }
+                searchQuery = query;
+                // Search results are ranked by relevance, so the sort order only applies to the full list
+                btnSort.setVisibility(searchQuery.isEmpty() ? View.VISIBLE : View.GONE);
+                if (searchQuery.isEmpty()) {
+                    loadExpenses(); // Back to the paged list
+                } else {
+                    cancelLoads(); // Pages still loading must not replace the search results
+                    searchPipeline.setQuery(searchQuery);
+                }
             }
 
             @Override
@@ -102,137 +131,227 @@ public class HomeFragment extends Fragment {
                     .setTitle("Delete Expense")
                     .setMessage("Are you sure to delete it?")
                     .setPositiveButton("Delete", (dialog, which) -> {
-                        if (dataManager.deleteExpense(expense.id)) {
-                            loadExpenses(); // Refresh list after delete
-                            Toast.makeText(requireContext(), "Expense deleted", Toast.LENGTH_SHORT).show();
-                        }
+                        dataManager.deleteExpenseAsync(expense.id, deleted -> {
+                            if (deleted && isAdded()) {
+                                applyChange(expense.id, null);
+                                Toast.makeText(requireContext(), "Expense deleted", Toast.LENGTH_SHORT).show();
+                            }
+                        });
                     })
                     .setNegativeButton("Cancel", null)
                     .show();
             }
         });
 
-        rvExpenses.setLayoutManager(new LinearLayoutManager(requireContext()));
+        LinearLayoutManager layoutManager = new LinearLayoutManager(requireContext());
+        rvExpenses.setLayoutManager(layoutManager);
         rvExpenses.setAdapter(adapter);
+        rvExpenses.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrolled(@NonNull RecyclerView recyclerView, int dx, int dy) {
+                if (dy > 0 && layoutManager.findLastVisibleItemPosition() >= adapter.getItemCount() - PREFETCH_DISTANCE) {
+                    loadNextPage();
+                }
+            }
+        });
 
         // Initial load of data
         loadExpenses();
     }
 
     /**
-     * Loads, filters, sorts, and displays expenses.
-     * Also calculates and updates the total amount.
+     * Loads expenses in the background, then displays them.
+     * Without a search only the first page is loaded, in the selected order, and the rest follow as
+     * the list scrolls. A search asks the full-text index for the best matches instead.
+     * A newer load cancels the previous one so results never arrive out of order.
      */
     private void loadExpenses() {
-        allExpenses = dataManager.getExpenses();
-        
-        // Filter expenses based on search query
-        List<DataManager.Expense> filteredExpenses = filterExpenses(allExpenses);
-        
-        // Sort expenses based on current sort criteria
-        List<DataManager.Expense> sortedExpenses = sortExpenses(filteredExpenses);
-        
-        // Update adapter to refresh UI
-        adapter.updateExpenses(sortedExpenses);
+        cancelLoads();
+        loadedVersion = dataManager.getDataVersion();
+        loadTotal();
+        if (!searchQuery.isEmpty()) {
+            searchPipeline.refresh(searchQuery);
+            return;
+        }
+
+        searchPipeline.invalidate(); // Data may have changed since the last search
 
-        // Calculate total amount from the currently displayed (filtered) list
-        double total = 0;
-        for (DataManager.Expense expense : sortedExpenses) {
-            total += expense.amount;
+        loadRequest = dataManager.getExpensesPageAsync(currentSortType, null, PAGE_SIZE, page -> {
+            loadRequest = null;
+            allExpenses = new ArrayList<>(page);
+            hasMorePages = page.size() == PAGE_SIZE;
+            showExpenses();
+            reportStartupDone();
+        }, error -> loadRequest = null);
+    }
+
+    /**
+     * Loads the all-time total in the background and shows it unless a search is showing its own.
+     */
+    private void loadTotal() {
+        if (totalRequest != null) {
+            totalRequest.cancel();
         }
-        tvTotalAmount.setText(String.format(Locale.getDefault(), "$%.2f", total));
+        totalRequest = dataManager.getTotalSpentCentsAsync(totalCents -> {
+            totalRequest = null;
+            totalSpentCents = totalCents;
+            if (searchQuery.isEmpty()) {
+                showTotal(totalSpentCents);
+            }
+        });
     }
 
-    private List<DataManager.Expense> filterExpenses(List<DataManager.Expense> expenses) {
+    /**
+     * Applies a delete or an edit made on this screen to the loaded rows instead of reloading every
+     * page. The old row is removed, and an edited one goes back where getExpensesPage() would return
+     * it: its keyset position in the paged list, unless that lies past the loaded pages, where a
+     * later page brings it. Search results are ranked by relevance, so there an edit keeps its place
+     * while it still matches. Only the total is read again.
+     *
+     * @param expenseId The deleted or edited expense
+     * @param updated   The edited expense as stored, or null after a delete
+     */
+    private void applyChange(int expenseId, @Nullable DataManager.Expense updated) {
+        int index = -1;
+        for (int i = 0; i < allExpenses.size(); i++) {
+            if (allExpenses.get(i).id == expenseId) {
+                index = i;
+                break;
+            }
+        }
+        if (index >= 0) {
+            allExpenses.remove(index);
+        }
+        if (updated != null) {
+            if (!searchQuery.isEmpty()) {
+                if (index >= 0 && matchesSearch(updated, searchQuery)) {
+                    allExpenses.add(index, updated);
+                }
+            } else {
+                int position = Collections.binarySearch(allExpenses, updated, dataManager.getSortOrder(currentSortType));
+                position = position >= 0 ? position : -position - 1;
+                if (position < allExpenses.size() || !hasMorePages) {
+                    allExpenses.add(position, updated);
+                }
+            }
+        }
+
+        // A page still loading may have been read before the change; scrolling loads it again
+        if (loadRequest != null) {
+            loadRequest.cancel();
+            loadRequest = null;
+        }
+        searchPipeline.invalidate();
+        loadedVersion = dataManager.getDataVersion(); // The loaded rows now include this change
+        showExpenses();
         if (searchQuery.isEmpty()) {
-            return new ArrayList<>(expenses);
+            loadTotal();
         }
+    }
 
-        List<DataManager.Expense> filtered = new ArrayList<>();
-        for (DataManager.Expense expense : expenses) {
-            // Search in note, category, amount, and date
-            if (expense.note != null && expense.note.toLowerCase().contains(searchQuery)) {
-                filtered.add(expense);
-            } else if (expense.category != null && expense.category.toLowerCase().contains(searchQuery)) {
-                filtered.add(expense);
-            } else if (String.format(Locale.getDefault(), "%.2f", expense.amount).contains(searchQuery)) {
-                filtered.add(expense);
-            } else if (expense.date != null && expense.date.toLowerCase().contains(searchQuery)) {
-                filtered.add(expense);
-            }
+    /**
+     * Ends the cold-start trace once the first page is on screen; later loads do nothing.
+     */
+    private void reportStartupDone() {
+        StartupTrace.mark(StartupTrace.HOME_LIST_SHOWN);
+        if (StartupTrace.finish() && getActivity() != null) {
+            getActivity().reportFullyDrawn();
         }
-        return filtered;
     }
 
-    private List<DataManager.Expense> sortExpenses(List<DataManager.Expense> expenses) {
-        List<DataManager.Expense> sorted = new ArrayList<>(expenses);
-        
-        switch (currentSortType) {
-            case "date_desc":
-                Collections.sort(sorted, (e1, e2) -> {
-                    Date d1 = parseDate(e1.date);
-                    Date d2 = parseDate(e2.date);
-                    if (d1 == null && d2 == null) return 0;
-                    if (d1 == null) return 1;
-                    if (d2 == null) return -1;
-                    return d2.compareTo(d1); // Newest first
-                });
-                break;
-            case "date_asc":
-                Collections.sort(sorted, (e1, e2) -> {
-                    Date d1 = parseDate(e1.date);
-                    Date d2 = parseDate(e2.date);
-                    if (d1 == null && d2 == null) return 0;
-                    if (d1 == null) return 1;
-                    if (d2 == null) return -1;
-                    return d1.compareTo(d2); // Oldest first
-                });
-                break;
-            case "amount_desc":
-                Collections.sort(sorted, (e1, e2) -> Double.compare(e2.amount, e1.amount)); // Highest first
-                break;
-            case "amount_asc":
-                Collections.sort(sorted, (e1, e2) -> Double.compare(e1.amount, e2.amount)); // Lowest first
-                break;
-            case "category_asc":
-                Collections.sort(sorted, (e1, e2) -> {
-                    String c1 = e1.category != null ? e1.category : "";
-                    String c2 = e2.category != null ? e2.category : "";
-                    return c1.compareToIgnoreCase(c2);
-                });
-                break;
-            case "category_desc":
-                Collections.sort(sorted, (e1, e2) -> {
-                    String c1 = e1.category != null ? e1.category : "";
-                    String c2 = e2.category != null ? e2.category : "";
-                    return c2.compareToIgnoreCase(c1);
-                });
-                break;
+    private void loadNextPage() {
+        if (loadRequest != null || !hasMorePages || !searchQuery.isEmpty() || allExpenses == null || allExpenses.isEmpty()) {
+            return;
         }
-        
-        return sorted;
+        DataManager.Expense last = allExpenses.get(allExpenses.size() - 1);
+        loadRequest = dataManager.getExpensesPageAsync(currentSortType, last, PAGE_SIZE, page -> {
+            loadRequest = null;
+            allExpenses.addAll(page);
+            hasMorePages = page.size() == PAGE_SIZE;
+            showExpenses(); // The adapter's diff turns the new page into a single range insert
+        }, error -> loadRequest = null); // Scrolling to the end again retries the page
     }
 
-    private Date parseDate(String dateStr) {
-        if (dateStr == null || dateStr.isEmpty() || dateStr.equals("Today")) {
-            return new Date(); // Return current date for "Today"
+    private void cancelLoads() {
+        searchPipeline.cancel();
+        if (loadRequest != null) {
+            loadRequest.cancel();
+            loadRequest = null;
         }
-        
-        SimpleDateFormat[] formats = {
-            new SimpleDateFormat("MMMM d, yyyy", Locale.getDefault()),
-            new SimpleDateFormat("MMM d, yyyy", Locale.getDefault()),
-            new SimpleDateFormat("yyyy-MM-dd", Locale.getDefault()),
-            new SimpleDateFormat("MM/dd/yyyy", Locale.getDefault())
-        };
-        
-        for (SimpleDateFormat format : formats) {
-            try {
-                return format.parse(dateStr);
-            } catch (ParseException e) {
-                // Try next format
+        if (totalRequest != null) {
+            totalRequest.cancel();
+            totalRequest = null;
+        }
+        cancelSearchTotal();
+    }
+
+    private void cancelSearchTotal() {
+        if (searchTotalRequest != null) {
+            searchTotalRequest.cancel();
+            searchTotalRequest = null;
+        }
+    }
+
+    /**
+     * In-memory version of the full-text search used to narrow earlier results: every word of the
+     * query must start one of the words of the note, category, date or amount, as in the FTS index.
+     */
+    private static boolean matchesSearch(DataManager.Expense expense, String query) {
+        String text = expense.note + " " + expense.category + " " + expense.date + " " +
+                Money.formatPlain(expense.amountCents);
+        String[] words = text.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}]+");
+        for (String term : query.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}]+")) {
+            if (term.isEmpty()) {
+                continue;
+            }
+            boolean found = false;
+            for (String word : words) {
+                if (word.startsWith(term)) {
+                    found = true;
+                    break;
+                }
             }
+            if (!found) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Displays the loaded expenses.
+     * Also updates the total amount: the all-time total from the database when not searching,
+     * otherwise the sum of every matching expense. Results below SEARCH_LIMIT are all the matches
+     * and are summed here; a full page may be cut off, so the database sums the whole match.
+     */
+    private void showExpenses() {
+        // Update adapter to refresh UI
+        adapter.updateExpenses(allExpenses);
+
+        cancelSearchTotal();
+        if (searchQuery.isEmpty()) {
+            showTotal(totalSpentCents);
+            return;
+        }
+        if (allExpenses.size() >= SEARCH_LIMIT) {
+            String query = searchQuery;
+            searchTotalRequest = dataManager.getSearchTotalCentsAsync(query, totalCents -> {
+                searchTotalRequest = null;
+                if (query.equals(searchQuery)) {
+                    showTotal(totalCents);
+                }
+            });
+            return;
+        }
+        long totalCents = 0;
+        for (DataManager.Expense expense : allExpenses) {
+            totalCents += expense.amountCents;
         }
-        return null;
+        showTotal(totalCents);
+    }
+
+    private void showTotal(long totalCents) {
+        tvTotalAmount.setText(Money.formatCurrency(totalCents));
     }
 
     private void showSortMenu() {
@@ -269,72 +388,59 @@ public class HomeFragment extends Fragment {
         popupMenu.show();
     }
 
+    /**
+     * MainActivity keeps this fragment while another tab is shown and resumes it when the Home tab
+     * is selected again. The loaded pages, scroll position and search stay as they were unless an
+     * expense, budget or category changed meanwhile.
+     */
     @Override
     public void onResume() {
         super.onResume();
-        loadExpenses();
+        if (dataManager.getDataVersion() != loadedVersion) {
+            loadExpenses();
+        }
+    }
+
+    @Override
+    public void onDestroyView() {
+        super.onDestroyView();
+        cancelLoads();
+        loadedVersion = -1;
     }
 
     private void showEditDialog(DataManager.Expense expense) {
+        dataManager.getCategoriesAsync(categories -> {
+            if (isAdded()) {
+                showEditDialog(expense, categories);
+            }
+        });
+    }
+
+    private void showEditDialog(DataManager.Expense expense, List<String> categories) {
         View dialogView = LayoutInflater.from(requireContext()).inflate(R.layout.dialog_edit_expense, null);
         
         TextInputEditText etAmount = dialogView.findViewById(R.id.etAmount);
         TextInputEditText etNote = dialogView.findViewById(R.id.etNote);
         TextInputEditText etDate = dialogView.findViewById(R.id.etDate);
-        GridLayout gridCategories = dialogView.findViewById(R.id.gridCategories);
+        RecyclerView rvCategories = dialogView.findViewById(R.id.rvCategories);
         
         // Pre-fill with existing values
-        etAmount.setText(String.valueOf(expense.amount));
+        etAmount.setText(Money.formatPlain(expense.amountCents));
         etNote.setText(expense.note);
         etDate.setText(expense.date);
         
         // Set up date picker
         etDate.setOnClickListener(v -> showDatePickerDialog(etDate, expense.date));
         
-        String[] categories = {"Food", "Transport", "Shopping", "Bills", "Entertainment", "Others"};
-        String[] categoryIcons = {"🍔", "🚗", "🛍️", "📜", "🍿", "✨"};
-        String[] selectedCategory = {expense.category};
-        
-        // Setup category grid
-        for (int i = 0; i < categories.length; i++) {
-            MaterialCardView card = new MaterialCardView(requireContext());
-            GridLayout.LayoutParams params = new GridLayout.LayoutParams();
-            params.width = 0;
-            params.height = GridLayout.LayoutParams.WRAP_CONTENT;
-            params.columnSpec = GridLayout.spec(i % 3, 1f);
-            params.setMargins(8, 8, 8, 8);
-            card.setLayoutParams(params);
-            card.setRadius(24);
-            card.setCardElevation(2);
-
-            TextView tvIcon = new TextView(requireContext());
-            tvIcon.setText(categoryIcons[i]);
-            tvIcon.setTextSize(24);
-            tvIcon.setPadding(24, 24, 24, 8);
-            tvIcon.setGravity(android.view.Gravity.CENTER);
-
-            TextView tvLabel = new TextView(requireContext());
-            tvLabel.setText(categories[i]);
-            tvLabel.setTextSize(10);
-            tvLabel.setGravity(android.view.Gravity.CENTER);
-            tvLabel.setPadding(8, 0, 8, 16);
-            tvLabel.setTextColor(requireContext().getColor(android.R.color.darker_gray));
-
-            android.widget.LinearLayout layout = new android.widget.LinearLayout(requireContext());
-            layout.setOrientation(android.widget.LinearLayout.VERTICAL);
-            layout.addView(tvIcon);
-            layout.addView(tvLabel);
-            card.addView(layout);
-
-            final String category = categories[i];
-            card.setOnClickListener(v -> {
-                selectedCategory[0] = category;
-                updateCategorySelection(gridCategories, categories, selectedCategory[0]);
-            });
-
-            gridCategories.addView(card);
+        // The user's categories, plus the expense's own if it has since been removed from the list
+        if (!categories.contains(expense.category)) {
+            categories.add(expense.category);
         }
-        updateCategorySelection(gridCategories, categories, selectedCategory[0]);
+        String[] selectedCategory = {expense.category};
+        CategoryPickerAdapter categoryPicker = new CategoryPickerAdapter(requireContext(), category -> selectedCategory[0] = category);
+        categoryPicker.attachTo(rvCategories);
+        categoryPicker.setCategories(categories);
+        categoryPicker.setSelected(selectedCategory[0]);
 
         AlertDialog dialog = new AlertDialog.Builder(requireContext())
             .setTitle("Edit Expense")
@@ -350,36 +456,34 @@ public class HomeFragment extends Fragment {
                 }
 
                 try {
-                    double amount = Double.parseDouble(amountStr);
-                    if (amount <= 0) {
+                    long amountCents = Money.parse(amountStr);
+                    if (amountCents <= 0) {
                         Toast.makeText(requireContext(), "Amount must be greater than 0", Toast.LENGTH_SHORT).show();
                         return;
                     }
 
+                    String category = selectedCategory[0];
                     // Check budget before updating (only if category changed or amount changed)
-                    if (!selectedCategory[0].equals(expense.category) || amount != expense.amount) {
-                        DataManager.BudgetCheckResult budgetCheck;
-                        if (!selectedCategory[0].equals(expense.category)) {
+                    if (!category.equals(expense.category) || amountCents != expense.amountCents) {
+                        DataManager.Callback<DataManager.BudgetCheckResult> onChecked = budgetCheck -> {
+                            if (!isAdded()) return;
+                            if (budgetCheck.exceedsBudget) {
+                                showBudgetExceededAlert(category, budgetCheck, amountCents, expense, note, date);
+                            } else {
+                                saveExpenseUpdate(expense, category, amountCents, note, date);
+                            }
+                        };
+                        if (!category.equals(expense.category)) {
                             // Category changed, check new category budget
-                            budgetCheck = dataManager.checkBudget(selectedCategory[0], amount);
+                            dataManager.checkBudgetAsync(category, amountCents, onChecked);
                         } else {
                             // Same category, check with expense ID to exclude it from calculation
-                            budgetCheck = dataManager.checkBudgetOnUpdate(selectedCategory[0], amount, expense.id);
-                        }
-                        
-                        if (budgetCheck.exceedsBudget) {
-                            showBudgetExceededAlert(selectedCategory[0], budgetCheck, amount, expense, note, date);
-                            return;
+                            dataManager.checkBudgetOnUpdateAsync(category, amountCents, expense.id, onChecked);
                         }
+                        return;
                     }
 
-                    if (dataManager.updateExpense(expense.id, selectedCategory[0], amount, 
-                            note.isEmpty() ? "No note" : note, date.isEmpty() ? "Today" : date, expense.imageUri)) {
-                        loadExpenses();
-                        Toast.makeText(requireContext(), "Expense updated", Toast.LENGTH_SHORT).show();
-                    } else {
-                        Toast.makeText(requireContext(), "Failed to update expense", Toast.LENGTH_SHORT).show();
-                    }
+                    saveExpenseUpdate(expense, category, amountCents, note, date);
                 } catch (NumberFormatException e) {
                     Toast.makeText(requireContext(), "Invalid amount", Toast.LENGTH_SHORT).show();
                 }
@@ -424,20 +528,20 @@ public class HomeFragment extends Fragment {
         datePickerDialog.show();
     }
 
-    private void showBudgetExceededAlert(String category, DataManager.BudgetCheckResult budgetCheck, double amount, DataManager.Expense expense, String note, String date) {
+    private void showBudgetExceededAlert(String category, DataManager.BudgetCheckResult budgetCheck, long amountCents, DataManager.Expense expense, String note, String date) {
         String message = String.format(Locale.getDefault(),
             "Budget Limit Reached!\n\n" +
             "Category: %s\n" +
-            "Budget Limit: $%.2f\n" +
-            "Current Spent: $%.2f\n" +
-            "This Expense: $%.2f\n" +
-            "New Total: $%.2f\n\n" +
+            "Budget Limit: %s\n" +
+            "Current Spent: %s\n" +
+            "This Expense: %s\n" +
+            "New Total: %s\n\n" +
             "This expense will exceed your budget limit. Do you still want to proceed?",
             category,
-            budgetCheck.budgetLimit,
-            budgetCheck.currentSpent,
-            amount,
-            budgetCheck.newTotal
+            Money.formatCurrency(budgetCheck.budgetLimitCents),
+            Money.formatCurrency(budgetCheck.currentSpentCents),
+            Money.formatCurrency(amountCents),
+            Money.formatCurrency(budgetCheck.newTotalCents)
         );
 
         new AlertDialog.Builder(requireContext())
@@ -445,31 +549,23 @@ public class HomeFragment extends Fragment {
             .setMessage(message)
             .setPositiveButton("Update Anyway", (dialog, which) -> {
                 // User chose to update despite exceeding budget
-                if (dataManager.updateExpense(expense.id, category, amount, 
-                        note.isEmpty() ? "No note" : note, date.isEmpty() ? "Today" : date, expense.imageUri)) {
-                    loadExpenses();
-                    Toast.makeText(requireContext(), "Expense updated", Toast.LENGTH_SHORT).show();
-                } else {
-                    Toast.makeText(requireContext(), "Failed to update expense", Toast.LENGTH_SHORT).show();
-                }
+                saveExpenseUpdate(expense, category, amountCents, note, date);
             })
             .setNegativeButton("Cancel", null)
             .setIcon(android.R.drawable.ic_dialog_alert)
             .show();
     }
 
-    private void updateCategorySelection(GridLayout gridCategories, String[] categories, String selected) {
-        for (int i = 0; i < gridCategories.getChildCount(); i++) {
-            MaterialCardView card = (MaterialCardView) gridCategories.getChildAt(i);
-            TextView tvLabel = (TextView) ((android.widget.LinearLayout) card.getChildAt(0)).getChildAt(1);
-            if (tvLabel.getText().toString().equals(selected)) {
-                card.setCardBackgroundColor(requireContext().getColor(android.R.color.white));
-                card.setStrokeWidth(4);
-                card.setStrokeColor(requireContext().getColor(android.R.color.holo_blue_dark));
+    private void saveExpenseUpdate(DataManager.Expense expense, String category, long amountCents, String note, String date) {
+        dataManager.updateExpenseAsync(expense.id, category, amountCents,
+                note.isEmpty() ? "No note" : note, date.isEmpty() ? "Today" : date, expense.imageUri, updated -> {
+            if (!isAdded()) return;
+            if (updated != null) {
+                applyChange(expense.id, updated);
+                Toast.makeText(requireContext(), "Expense updated", Toast.LENGTH_SHORT).show();
             } else {
-                card.setCardBackgroundColor(requireContext().getColor(android.R.color.white));
-                card.setStrokeWidth(0);
+                Toast.makeText(requireContext(), "Failed to update expense", Toast.LENGTH_SHORT).show();
             }
-        }
+        });
     }
 }
@@ -25,29 +25,35 @@ public class LoginActivity extends AppCompatActivity {
     private TextView tvError;
     private MaterialButton btnLogin;
     private DataManager dataManager;
+    private DataManager.Request loginRequest;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
+        StartupTrace.mark(StartupTrace.ACTIVITY_CREATED);
         
         // Load dark mode preference
         SharedPreferences prefs = getSharedPreferences("AppSettings", 0);
         int darkMode = prefs.getInt("dark_mode", AppCompatDelegate.MODE_NIGHT_FOLLOW_SYSTEM);
         AppCompatDelegate.setDefaultNightMode(darkMode);
-        
-        setContentView(R.layout.activity_login);
 
         // Initialize DataManager singleton
         dataManager = DataManager.getInstance(this);
 
         // Check persistent login state using SharedPreferences info stored in DataManager
-        // If a user is currently logged in, skip the login screen and go directly to the dashboard
-        if (dataManager.getCurrentUser() != null) {
+        // If a user is currently logged in, skip the login screen and go directly to the dashboard.
+        // Only the saved session is read here; MainActivity checks it against the database in the
+        // background, so the database is not opened before the first frame.
+        if (dataManager.getSessionUser() != null) {
             startActivity(new Intent(this, MainActivity.class));
             finish(); // Finish LoginActivity so user can't go back to it with 'Back' button
             return;
         }
 
+        setContentView(R.layout.activity_login);
+        // Nobody is logged in, so this start ends at the login screen rather than the home list
+        StartupTrace.finish();
+
         etUsername = findViewById(R.id.etUsername);
         etPassword = findViewById(R.id.etPassword);
         tvError = findViewById(R.id.tvError);
@@ -83,9 +89,11 @@ public class LoginActivity extends AppCompatActivity {
             .setTitle("Reset Database")
             .setMessage("This will delete ALL data including all users and expenses. This cannot be undone. Are you sure?")
             .setPositiveButton("Reset", (dialog, which) -> {
-                dataManager.resetDatabase();
-                Toast.makeText(this, "Database reset. Please restart the app.", Toast.LENGTH_LONG).show();
-                finish();
+                // Not cancelled in onDestroy: once confirmed, the reset should finish either way
+                dataManager.resetDatabaseAsync(done -> {
+                    Toast.makeText(getApplicationContext(), "Database reset. Please restart the app.", Toast.LENGTH_LONG).show();
+                    finish();
+                });
             })
             .setNegativeButton("Cancel", null)
             .show();
@@ -105,15 +113,31 @@ public class LoginActivity extends AppCompatActivity {
             return;
         }
 
-        // Attempt login via DataManager
-        DataManager.LoginResult result = dataManager.login(username, password);
-        if (result.success) {
-            // Navigate to main app
-            startActivity(new Intent(this, MainActivity.class));
-            finish();
-        } else {
-            // Show error message
-            showError(result.error);
+        // Attempt login via DataManager; hashing the password takes a noticeable moment, so it runs
+        // in the background with the button disabled against double taps
+        btnLogin.setEnabled(false);
+        tvError.setVisibility(View.GONE);
+        loginRequest = dataManager.loginAsync(username, password, result -> {
+            btnLogin.setEnabled(true);
+            if (result.success) {
+                // Navigate to main app
+                startActivity(new Intent(this, MainActivity.class));
+                finish();
+            } else {
+                // Show error message
+                showError(result.error);
+            }
+        }, error -> {
+            btnLogin.setEnabled(true);
+            showError("Login failed. Please try again.");
+        });
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        if (loginRequest != null) {
+            loginRequest.cancel();
         }
     }
 
@@ -1,29 +1,39 @@
 package com.example.myapplication;
 
+import android.content.ComponentCallbacks2;
 import android.content.Intent;
 import android.content.SharedPreferences;
 import android.os.Bundle;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.appcompat.app.AppCompatDelegate;
 import androidx.fragment.app.Fragment;
+import androidx.fragment.app.FragmentManager;
+import androidx.fragment.app.FragmentTransaction;
+import androidx.lifecycle.Lifecycle;
 import com.google.android.material.bottomnavigation.BottomNavigationView;
 
 /**
  * MainActivity is the central hub of the application after login.
- * It hosts the BottomNavigationView and manages the swapping of Fragments.
+ * It hosts the BottomNavigationView and keeps one Fragment per tab, showing and hiding them.
  *
  * Responsibilities:
- * 1. Validates session (redirects to LoginActivity if not logged in).
+ * 1. Validates session (redirects to LoginActivity if not logged in), checking it against the
+ *    database in the background so the first frame does not wait for the database to open.
  * 2. Sets up the bottom navigation menu.
- * 3. Handles switching between Home, Analytics, Add, Budget, and Settings fragments.
+ * 3. Handles switching between Home, Analytics, Add, Budget, and Settings fragments. Tabs are kept
+ *    alive while hidden, so switching back does not reload them unless their data changed.
  */
 public class MainActivity extends AppCompatActivity {
+    private static final int[] TAB_IDS = {R.id.nav_home, R.id.nav_analytics, R.id.nav_add, R.id.nav_budget, R.id.nav_settings};
+
     public BottomNavigationView bottomNavigation;
     private DataManager dataManager;
+    private DataManager.Request startUpRequest; // Background database open and session check
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
+        StartupTrace.mark(StartupTrace.ACTIVITY_CREATED);
         
         // Load dark mode preference
         SharedPreferences prefs = getSharedPreferences("AppSettings", 0);
@@ -34,46 +44,141 @@ public class MainActivity extends AppCompatActivity {
 
         dataManager = DataManager.getInstance(this);
 
-        // Security check: Ensure user is still logged in when reaching MainActivity
-        if (dataManager.getCurrentUser() == null) {
-            startActivity(new Intent(this, LoginActivity.class));
-            finish();
+        // Security check: Ensure user is still logged in when reaching MainActivity.
+        // The saved session is trusted for the first frame; startUpAsync opens the database in the
+        // background and sends the user back to login if their account no longer exists.
+        if (dataManager.getSessionUser() == null) {
+            openLogin();
             return;
         }
+        StartupTrace.mark(StartupTrace.SESSION_RESTORED);
+        startUpRequest = dataManager.startUpAsync(valid -> {
+            startUpRequest = null;
+            if (!valid) {
+                openLogin();
+            }
+        });
 
         bottomNavigation = findViewById(R.id.bottomNavigation);
+        // Posted runnables run after the traversal that attaches the view, i.e. after the first draw
+        bottomNavigation.post(() -> StartupTrace.mark(StartupTrace.FIRST_FRAME));
         
-        // Handle navigation item clicks
-        bottomNavigation.setOnItemSelectedListener(item -> {
-            Fragment selectedFragment = null;
-            int itemId = item.getItemId();
-            
-            // Map menu IDs to correspond Fragments
-            if (itemId == R.id.nav_home) {
-                selectedFragment = new HomeFragment();
-            } else if (itemId == R.id.nav_analytics) {
-                selectedFragment = new AnalyticsFragment();
-            } else if (itemId == R.id.nav_add) {
-                selectedFragment = new AddExpenseFragment();
-            } else if (itemId == R.id.nav_budget) {
-                selectedFragment = new BudgetFragment();
-            } else if (itemId == R.id.nav_settings) {
-                selectedFragment = new SettingsFragment();
+        // Each tab is created on first use and then kept, so switching back shows it as it was left
+        bottomNavigation.setOnItemSelectedListener(item -> showTab(item.getItemId()));
+
+        // Load default fragment; after a recreation the FragmentManager restores the tabs itself
+        if (savedInstanceState == null) {
+            bottomNavigation.setSelectedItemId(R.id.nav_home);
+        }
+    }
+
+    /**
+     * Drops the hidden tabs when memory runs low, and the decoded thumbnails with them; the tabs are
+     * created again when next selected. Moving to the background alone keeps them, since the user
+     * will likely come back.
+     */
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+        boolean runningLow = level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW && level < ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN;
+        if (!runningLow && level < ComponentCallbacks2.TRIM_MEMORY_BACKGROUND) {
+            return;
+        }
+        FragmentTransaction transaction = getSupportFragmentManager().beginTransaction();
+        int removed = 0;
+        for (int itemId : TAB_IDS) {
+            Fragment tab = getSupportFragmentManager().findFragmentByTag(tabTag(itemId));
+            if (tab != null && tab.isHidden()) {
+                transaction.remove(tab);
+                removed++;
             }
+        }
+        if (removed > 0) {
+            // The activity may already have saved its state; a restored hidden tab is harmless
+            transaction.commitAllowingStateLoss();
+        }
+        ThumbnailLoader.getInstance(this).clearMemoryCache();
+        android.util.Log.d("MainActivity", "Trim level " + level + ": removed " + removed + " hidden tabs");
+    }
 
-            // Perform the fragment transaction
-            if (selectedFragment != null) {
-                getSupportFragmentManager().beginTransaction()
-                    .replace(R.id.fragmentContainer, selectedFragment)
-                    .commit();
-                return true;
+    /**
+     * Shows the tab for a navigation item, hiding the current one. A hidden tab keeps its views and
+     * data but is held at STARTED, so its onResume runs again each time it is shown.
+     *
+     * @return false if the item is not a tab
+     */
+    private boolean showTab(int itemId) {
+        FragmentManager fragments = getSupportFragmentManager();
+        Fragment current = currentTab();
+        Fragment target = fragments.findFragmentByTag(tabTag(itemId));
+        if (target != null && target == current) {
+            return true;
+        }
+        boolean created = target == null;
+        if (created) {
+            target = newTab(itemId);
+            if (target == null) {
+                return false;
             }
-            return false;
-        });
+        }
 
-        // Load default fragment
-        if (savedInstanceState == null) {
-            bottomNavigation.setSelectedItemId(R.id.nav_home);
+        FragmentTransaction transaction = fragments.beginTransaction().setReorderingAllowed(true);
+        if (current != null) {
+            transaction.hide(current).setMaxLifecycle(current, Lifecycle.State.STARTED);
+        }
+        if (created) {
+            transaction.add(R.id.fragmentContainer, target, tabTag(itemId));
+        } else {
+            transaction.show(target);
+        }
+        // Run now rather than later, so a quick second tap sees which tab is visible
+        transaction.setMaxLifecycle(target, Lifecycle.State.RESUMED).commitNow();
+        return true;
+    }
+
+    /**
+     * Returns the visible tab, or null before the first one is shown.
+     */
+    private Fragment currentTab() {
+        for (int itemId : TAB_IDS) {
+            Fragment tab = getSupportFragmentManager().findFragmentByTag(tabTag(itemId));
+            if (tab != null && !tab.isHidden()) {
+                return tab;
+            }
+        }
+        return null;
+    }
+
+    private static Fragment newTab(int itemId) {
+        // Map menu IDs to correspond Fragments
+        if (itemId == R.id.nav_home) {
+            return new HomeFragment();
+        } else if (itemId == R.id.nav_analytics) {
+            return new AnalyticsFragment();
+        } else if (itemId == R.id.nav_add) {
+            return new AddExpenseFragment();
+        } else if (itemId == R.id.nav_budget) {
+            return new BudgetFragment();
+        } else if (itemId == R.id.nav_settings) {
+            return new SettingsFragment();
         }
+        return null;
+    }
+
+    private static String tabTag(int itemId) {
+        return "tab_" + itemId;
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        if (startUpRequest != null) {
+            startUpRequest.cancel();
+        }
+    }
+
+    private void openLogin() {
+        startActivity(new Intent(this, LoginActivity.class));
+        finish();
     }
 }
\ No newline at end of file
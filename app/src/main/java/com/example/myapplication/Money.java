@@ -0,0 +1,110 @@
+package com.example.myapplication;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.text.DecimalFormatSymbols;
+import java.util.Locale;
+
+/**
+ * Money handles amounts as a long number of cents (minor units), which is how the database stores
+ * them. Sums of cents are exact however many expenses are added, unlike sums of doubles, and plain
+ * long arithmetic needs no objects.
+ *
+ * Parsing and formatting happen only at the UI edges. Formatting writes the digits directly instead
+ * of going through String.format, and the locale's decimal separator is looked up once per locale.
+ */
+public final class Money {
+    private static final int CENTS_PER_UNIT = 100;
+
+    // Decimal separator of the locale it was looked up for; replaced when the default locale changes
+    private static volatile Separator separator;
+
+    private Money() {
+    }
+
+    /**
+     * Parses an amount as typed by the user, e.g. "12", "12.5" or "12.345", rounding half up to cents.
+     *
+     * @throws NumberFormatException If the text is not a plain decimal number or is out of range
+     */
+    public static long parse(String text) {
+        try {
+            return new BigDecimal(text.trim()).setScale(2, RoundingMode.HALF_UP).movePointRight(2).longValueExact();
+        } catch (ArithmeticException e) {
+            throw new NumberFormatException("Amount out of range: " + text);
+        }
+    }
+
+    /**
+     * Formats cents with two decimals and the default locale's decimal separator, e.g. "12.50" or
+     * "12,50", like String.format(Locale.getDefault(), "%.2f", amount) for locales with Latin digits.
+     */
+    public static String format(long cents) {
+        return append(new StringBuilder(16), cents, separator()).toString();
+    }
+
+    /**
+     * Formats cents as a dollar amount, e.g. "$12.50" or "-$3.00".
+     */
+    public static String formatCurrency(long cents) {
+        StringBuilder builder = new StringBuilder(16);
+        if (cents < 0) {
+            builder.append('-');
+        }
+        builder.append('$');
+        return appendMagnitude(builder, cents, separator()).toString();
+    }
+
+    /**
+     * Formats cents with two decimals and a '.' separator regardless of locale, e.g. "12.50", as
+     * used in editable fields (which parse() reads back) and in the search index.
+     */
+    public static String formatPlain(long cents) {
+        return appendPlain(new StringBuilder(16), cents).toString();
+    }
+
+    /**
+     * Appends cents the way formatPlain() formats them, without creating a String, for writers that
+     * format many amounts into one buffer.
+     */
+    public static StringBuilder appendPlain(StringBuilder builder, long cents) {
+        return append(builder, cents, '.');
+    }
+
+    private static StringBuilder append(StringBuilder builder, long cents, char decimalSeparator) {
+        if (cents < 0) {
+            builder.append('-');
+        }
+        return appendMagnitude(builder, cents, decimalSeparator);
+    }
+
+    // Divides before dropping the sign, as -Long.MIN_VALUE does not fit in a long
+    private static StringBuilder appendMagnitude(StringBuilder builder, long cents, char decimalSeparator) {
+        long fraction = Math.abs(cents % CENTS_PER_UNIT);
+        builder.append(Math.abs(cents / CENTS_PER_UNIT)).append(decimalSeparator);
+        if (fraction < 10) {
+            builder.append('0');
+        }
+        return builder.append(fraction);
+    }
+
+    private static char separator() {
+        Locale locale = Locale.getDefault();
+        Separator current = separator;
+        if (current == null || !current.locale.equals(locale)) {
+            current = new Separator(locale, DecimalFormatSymbols.getInstance(locale).getDecimalSeparator());
+            separator = current;
+        }
+        return current.value;
+    }
+
+    private static class Separator {
+        final Locale locale;
+        final char value;
+
+        Separator(Locale locale, char value) {
+            this.locale = locale;
+            this.value = value;
+        }
+    }
+}
@@ -0,0 +1,228 @@
+package com.example.myapplication;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.SystemClock;
+import android.util.Log;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+
+/**
+ * PasswordHasher derives salted, deliberately slow hashes of passwords and security answers.
+ *
+ * Hashes are PBKDF2 with a random 16-byte salt per hash, stored as
+ * "pbkdf2_sha1$iterations$salt$hash" with salt and hash in hex, so each stored value carries the
+ * cost it was made with. The iteration count is calibrated once per device so that one hash takes
+ * about TARGET_MILLIS: fast phones get more iterations, slow ones stay usable. HMAC-SHA1 rather than
+ * SHA-256 because PBKDF2WithHmacSHA256 is only available from API 26.
+ *
+ * Each hash is expensive by design, so callers must run it off the main thread. Plain SHA-256 hex
+ * hashes written by earlier versions still verify; needsRehash() reports them, and any hash made
+ * with fewer iterations than this device now uses, so callers can replace them after a successful
+ * check.
+ *
+ * Thread-safe.
+ */
+public final class PasswordHasher {
+    // Time one hash should take on this device; signup and reset hash twice
+    public static final long TARGET_MILLIS = 150;
+    // A floor for slow devices, and a cap at OWASP's recommended count for PBKDF2-HMAC-SHA1 so a
+    // stray measurement cannot make login take seconds
+    public static final int MIN_ITERATIONS = 10_000;
+    public static final int MAX_ITERATIONS = 1_300_000;
+
+    private static final String ALGORITHM = "PBKDF2WithHmacSHA1";
+    private static final String PREFIX = "pbkdf2_sha1";
+    private static final int SALT_BYTES = 16;
+    private static final int HASH_BITS = 160; // The HMAC-SHA1 output size; more would only slow down verification
+    private static final int CALIBRATION_ITERATIONS = 10_000;
+    private static final int CALIBRATION_RUNS = 3;
+    private static final int LEGACY_HASH_LENGTH = 64; // Hex SHA-256
+
+    private static final String PREFS_NAME = "PasswordHasher";
+    private static final String KEY_ITERATIONS = "iterations";
+
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    private final SharedPreferences prefs;
+    private final SecureRandom random = new SecureRandom();
+    private volatile int iterations;
+
+    public PasswordHasher(Context context) {
+        this.prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    }
+
+    /**
+     * Hashes a secret with a new random salt at this device's calibrated cost.
+     *
+     * @return The encoded hash, or null if the platform lacks PBKDF2
+     */
+    public String hash(String secret) {
+        byte[] salt = new byte[SALT_BYTES];
+        random.nextBytes(salt);
+        int cost = getIterations();
+        byte[] hash = derive(secret, salt, cost);
+        if (hash == null) {
+            return null;
+        }
+        StringBuilder encoded = new StringBuilder(PREFIX.length() + 16 + 2 * (SALT_BYTES + HASH_BITS / 8));
+        encoded.append(PREFIX).append('$').append(cost).append('$');
+        appendHex(encoded, salt).append('$');
+        return appendHex(encoded, hash).toString();
+    }
+
+    /**
+     * Checks a secret against a stored hash, in time independent of where the hashes differ.
+     *
+     * @param stored A value returned by hash(), or a plain SHA-256 hex hash from before salting
+     * @return true if the secret matches
+     */
+    public boolean verify(String secret, String stored) {
+        if (secret == null || stored == null) {
+            return false;
+        }
+        if (isLegacy(stored)) {
+            byte[] expected = fromHex(stored);
+            return expected != null && MessageDigest.isEqual(expected, sha256(secret));
+        }
+
+        String[] parts = stored.split("\\$");
+        if (parts.length != 4 || !PREFIX.equals(parts[0])) {
+            Log.e("PasswordHasher", "Unknown hash format");
+            return false;
+        }
+        int cost;
+        try {
+            cost = Integer.parseInt(parts[1]);
+        } catch (NumberFormatException e) {
+            return false;
+        }
+        byte[] salt = fromHex(parts[2]);
+        byte[] expected = fromHex(parts[3]);
+        if (cost <= 0 || salt == null || expected == null) {
+            return false;
+        }
+        byte[] actual = derive(secret, salt, cost);
+        return actual != null && MessageDigest.isEqual(expected, actual);
+    }
+
+    /**
+     * Returns whether a stored hash is weaker than what hash() produces now: a legacy unsalted hash,
+     * or one made with fewer iterations than this device's calibrated count.
+     */
+    public boolean needsRehash(String stored) {
+        if (stored == null || isLegacy(stored)) {
+            return true;
+        }
+        String[] parts = stored.split("\\$");
+        try {
+            return parts.length != 4 || Integer.parseInt(parts[1]) < getIterations();
+        } catch (NumberFormatException e) {
+            return true;
+        }
+    }
+
+    /**
+     * Returns the iteration count used for new hashes, calibrating it on first use.
+     * Calibration takes a few tens of milliseconds and runs at most once per install.
+     */
+    public int getIterations() {
+        int cost = iterations;
+        if (cost == 0) {
+            synchronized (this) {
+                cost = iterations;
+                if (cost == 0) {
+                    cost = prefs.getInt(KEY_ITERATIONS, 0);
+                    if (cost == 0) {
+                        cost = calibrate();
+                        prefs.edit().putInt(KEY_ITERATIONS, cost).apply();
+                    }
+                    iterations = cost;
+                }
+            }
+        }
+        return cost;
+    }
+
+    /**
+     * Measures CALIBRATION_ITERATIONS and scales linearly to TARGET_MILLIS. The fastest of a few runs
+     * is used, as the first ones also pay for class loading and JIT warm-up.
+     */
+    private int calibrate() {
+        byte[] salt = new byte[SALT_BYTES];
+        random.nextBytes(salt);
+        long bestNanos = Long.MAX_VALUE;
+        for (int run = 0; run < CALIBRATION_RUNS; run++) {
+            bestNanos = Math.min(bestNanos, time(salt, CALIBRATION_ITERATIONS));
+        }
+        long scaled = CALIBRATION_ITERATIONS * TARGET_MILLIS * 1_000_000 / Math.max(bestNanos, 1);
+        // Rounded to a thousand so logs and stored hashes read cleanly
+        int cost = (int) Math.max(MIN_ITERATIONS, Math.min(MAX_ITERATIONS, scaled / 1000 * 1000));
+        Log.d("PasswordHasher", "Calibrated " + cost + " iterations (" + CALIBRATION_ITERATIONS + " took " + bestNanos / 1000 + " us)");
+        return cost;
+    }
+
+    /**
+     * @return Nanoseconds taken by one hash at the given cost
+     */
+    private long time(byte[] salt, int cost) {
+        long start = SystemClock.elapsedRealtimeNanos();
+        derive("calibration", salt, cost);
+        return SystemClock.elapsedRealtimeNanos() - start;
+    }
+
+    private static byte[] derive(String secret, byte[] salt, int cost) {
+        PBEKeySpec spec = new PBEKeySpec(secret.toCharArray(), salt, cost, HASH_BITS);
+        try {
+            return SecretKeyFactory.getInstance(ALGORITHM).generateSecret(spec).getEncoded();
+        } catch (GeneralSecurityException e) {
+            Log.e("PasswordHasher", "Hash error", e);
+            return null;
+        } finally {
+            spec.clearPassword();
+        }
+    }
+
+    private static byte[] sha256(String secret) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(secret.getBytes(StandardCharsets.UTF_8));
+        } catch (GeneralSecurityException e) {
+            // Every Android runtime provides SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static boolean isLegacy(String stored) {
+        return stored.length() == LEGACY_HASH_LENGTH && stored.indexOf('$') < 0;
+    }
+
+    private static StringBuilder appendHex(StringBuilder builder, byte[] bytes) {
+        for (byte b : bytes) {
+            builder.append(HEX_DIGITS[(b >> 4) & 0xF]).append(HEX_DIGITS[b & 0xF]);
+        }
+        return builder;
+    }
+
+    /**
+     * @return The decoded bytes, or null if the text is not lowercase or uppercase hex of even length
+     */
+    private static byte[] fromHex(String hex) {
+        if (hex.length() % 2 != 0) {
+            return null;
+        }
+        byte[] bytes = new byte[hex.length() / 2];
+        for (int i = 0; i < bytes.length; i++) {
+            int high = Character.digit(hex.charAt(2 * i), 16);
+            int low = Character.digit(hex.charAt(2 * i + 1), 16);
+            if (high < 0 || low < 0) {
+                return null;
+            }
+            bytes[i] = (byte) ((high << 4) | low);
+        }
+        return bytes;
+    }
+}
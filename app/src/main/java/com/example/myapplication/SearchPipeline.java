@@ -0,0 +1,151 @@
+package com.example.myapplication;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * SearchPipeline sits between a search box and the code that runs the search.
+ *
+ * Responsibilities:
+ * 1. Debounces input: a search only runs once typing has paused for the debounce delay.
+ * 2. Cancels superseded searches so a slow result for an old query is never shown.
+ * 3. Narrows incrementally: when the new query extends the previous one and the previous results
+ *    were complete, it filters those results in memory instead of searching again.
+ * 4. Logs the latency of every query, measured from the keystroke that produced it.
+ *
+ * All methods must be called on the main thread; results are delivered there as well.
+ */
+public class SearchPipeline<T> {
+    public static final long DEFAULT_DEBOUNCE_MS = 250;
+
+    /**
+     * Runs a search and reports the results through the callback on the main thread.
+     */
+    public interface Source<T> {
+        DataManager.Request search(String query, DataManager.Callback<List<T>> callback);
+    }
+
+    /**
+     * Decides whether an item still matches a longer query. Must agree with the Source: anything
+     * the Source would return for the query has to match here, or narrowing would drop it.
+     */
+    public interface Matcher<T> {
+        boolean matches(T item, String query);
+    }
+
+    public interface Listener<T> {
+        void onResults(String query, List<T> results);
+    }
+
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final String name;
+    private final long debounceMs;
+    private final int limit;
+    private final Source<T> source;
+    private final Matcher<T> matcher;
+    private final Listener<T> listener;
+
+    private String pendingQuery = "";
+    private long typedAt; // Uptime of the keystroke that produced pendingQuery
+    private DataManager.Request inFlight;
+    private String lastQuery; // Query that produced lastResults, null if they are no longer valid
+    private List<T> lastResults;
+    private final Runnable runPending = this::run;
+
+    /**
+     * @param name       Label used in latency logs
+     * @param debounceMs How long typing must pause before a search runs
+     * @param limit      Maximum number of results the Source returns; results of exactly this size
+     *                   may be truncated, so they are never narrowed
+     */
+    public SearchPipeline(String name, long debounceMs, int limit, Source<T> source, Matcher<T> matcher, Listener<T> listener) {
+        this.name = name;
+        this.debounceMs = debounceMs;
+        this.limit = limit;
+        this.source = source;
+        this.matcher = matcher;
+        this.listener = listener;
+    }
+
+    /**
+     * Schedules a search for the query once input pauses, replacing any search not yet started.
+     */
+    public void setQuery(String query) {
+        pendingQuery = query;
+        typedAt = SystemClock.uptimeMillis();
+        handler.removeCallbacks(runPending);
+        handler.postDelayed(runPending, debounceMs);
+    }
+
+    /**
+     * Runs the query right away, without debouncing or narrowing. Call this when the underlying
+     * data has changed.
+     */
+    public void refresh(String query) {
+        pendingQuery = query;
+        invalidate();
+        typedAt = SystemClock.uptimeMillis();
+        handler.removeCallbacks(runPending);
+        run();
+    }
+
+    /**
+     * Forgets the previous results so the next query is searched rather than narrowed.
+     */
+    public void invalidate() {
+        lastQuery = null;
+        lastResults = null;
+    }
+
+    /**
+     * Drops the scheduled search and any search in flight; no results are delivered until the
+     * next setQuery() or refresh().
+     */
+    public void cancel() {
+        handler.removeCallbacks(runPending);
+        if (inFlight != null) {
+            inFlight.cancel();
+            inFlight = null;
+        }
+    }
+
+    private void run() {
+        String query = pendingQuery;
+        long startedAt = typedAt;
+        if (inFlight != null) {
+            inFlight.cancel(); // Superseded by this query
+            inFlight = null;
+        }
+
+        if (lastResults != null && query.startsWith(lastQuery) && lastResults.size() < limit) {
+            long narrowStart = SystemClock.uptimeMillis();
+            List<T> narrowed = new ArrayList<>();
+            for (T item : lastResults) {
+                if (matcher.matches(item, query)) {
+                    narrowed.add(item);
+                }
+            }
+            deliver(query, narrowed, startedAt, narrowStart, "narrowed");
+            return;
+        }
+
+        long searchStart = SystemClock.uptimeMillis();
+        inFlight = source.search(query, results -> {
+            inFlight = null;
+            deliver(query, results, startedAt, searchStart, "searched");
+        });
+    }
+
+    private void deliver(String query, List<T> results, long typedAt, long workStart, String how) {
+        lastQuery = query;
+        lastResults = results;
+        long now = SystemClock.uptimeMillis();
+        Log.d("SearchPipeline", name + ": \"" + query + "\" " + how + " to " + results.size() + " results in " +
+                (now - workStart) + " ms, " + (now - typedAt) + " ms after input");
+        listener.onResults(query, results);
+    }
+}
@@ -2,6 +2,7 @@ package com.example.myapplication;
 
 import android.content.Intent;
 import android.content.SharedPreferences;
+import android.net.Uri;
 import android.os.Bundle;
 import android.os.Handler;
 import android.os.Looper;
@@ -12,6 +13,8 @@ import android.view.ViewGroup;
 import android.widget.LinearLayout;
 import android.widget.TextView;
 import android.widget.Toast;
+import androidx.activity.result.ActivityResultLauncher;
+import androidx.activity.result.contract.ActivityResultContracts;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.appcompat.app.AlertDialog;
@@ -24,7 +27,7 @@ import com.google.android.material.textfield.TextInputEditText;
 public class SettingsFragment extends Fragment {
     private TextView tvUsername, tvUserInitial;
     private MaterialButton btnLogout;
-    private View btnClearData, btnEditProfile;
+    private View btnClearData, btnEditProfile, btnExportData, btnImportData;
     private SwitchMaterial switchDarkMode;
     private DataManager dataManager;
     private SharedPreferences prefs;
@@ -34,6 +37,25 @@ public class SettingsFragment extends Fragment {
     private final Handler debounceHandler = new Handler(Looper.getMainLooper());
     private Runnable debounceRunnable;
 
+    private ActivityResultLauncher<String> exportCsvLauncher;
+    private ActivityResultLauncher<String> exportJsonLinesLauncher;
+    private ActivityResultLauncher<String[]> importLauncher;
+
+    // Rejected rows listed in the import summary; the rest are only counted
+    private static final int IMPORT_ERRORS_SHOWN = 10;
+
+    @Override
+    public void onCreate(@Nullable Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        exportCsvLauncher = registerForActivityResult(
+                new ActivityResultContracts.CreateDocument(ExpenseExporter.Format.CSV.mimeType),
+                uri -> exportExpenses(uri, ExpenseExporter.Format.CSV));
+        exportJsonLinesLauncher = registerForActivityResult(
+                new ActivityResultContracts.CreateDocument(ExpenseExporter.Format.JSON_LINES.mimeType),
+                uri -> exportExpenses(uri, ExpenseExporter.Format.JSON_LINES));
+        importLauncher = registerForActivityResult(new ActivityResultContracts.OpenDocument(), this::importExpenses);
+    }
+
     @Nullable
     @Override
     public View onCreateView(@NonNull LayoutInflater inflater, @Nullable ViewGroup container, @Nullable Bundle savedInstanceState) {
@@ -53,6 +75,8 @@ public class SettingsFragment extends Fragment {
         btnEditProfile = view.findViewById(R.id.btnEditProfile);
         switchDarkMode = view.findViewById(R.id.switchDarkMode);
         btnClearData = view.findViewById(R.id.btnClearData);
+        btnExportData = view.findViewById(R.id.btnExportData);
+        btnImportData = view.findViewById(R.id.btnImportData);
         
         // Load and set dark mode switch state
         loadDarkModeState();
@@ -62,7 +86,8 @@ public class SettingsFragment extends Fragment {
              switchDarkMode.setChecked(!switchDarkMode.isChecked());
         });
 
-        DatabaseHelper.User user = dataManager.getCurrentUser();
+        // The saved session has the current username; MainActivity has already checked it at startup
+        DatabaseHelper.User user = dataManager.getSessionUser();
         if (user != null) {
             tvUsername.setText("@" + user.username);
             tvUserInitial.setText(user.username.substring(0, 1).toUpperCase());
@@ -78,20 +103,90 @@ public class SettingsFragment extends Fragment {
             showEditProfileDialog();
         });
 
+        btnExportData.setOnClickListener(v -> {
+            new AlertDialog.Builder(requireContext())
+                .setTitle("Export Data")
+                .setItems(new String[]{"CSV", "JSON lines"}, (dialog, which) -> {
+                    if (which == 0) {
+                        exportCsvLauncher.launch("expenses" + ExpenseExporter.Format.CSV.extension);
+                    } else {
+                        exportJsonLinesLauncher.launch("expenses" + ExpenseExporter.Format.JSON_LINES.extension);
+                    }
+                })
+                .setNegativeButton("Cancel", null)
+                .show();
+        });
+
+        btnImportData.setOnClickListener(v -> {
+            importLauncher.launch(new String[]{"text/csv", "text/comma-separated-values", "text/plain"});
+        });
+
         btnClearData.setOnClickListener(v -> {
             new AlertDialog.Builder(requireContext())
                 .setTitle("Clear Data")
                 .setMessage("Clear all expenses? This cannot be undone.")
                 .setPositiveButton("Clear", (dialog, which) -> {
-                    if (dataManager.clearExpenses()) {
-                        Toast.makeText(requireContext(), "All expenses cleared", Toast.LENGTH_SHORT).show();
-                    }
+                    // A large history takes a while to delete; not cancelled with the view, like export
+                    btnClearData.setEnabled(false);
+                    dataManager.clearExpensesAsync(cleared -> {
+                        btnClearData.setEnabled(true);
+                        if (getContext() == null) return;
+                        if (cleared) {
+                            Toast.makeText(getContext(), "All expenses cleared", Toast.LENGTH_SHORT).show();
+                        } else {
+                            Toast.makeText(getContext(), "Clear failed", Toast.LENGTH_SHORT).show();
+                        }
+                    });
                 })
                 .setNegativeButton("Cancel", null)
                 .show();
         });
     }
 
+    private void exportExpenses(Uri uri, ExpenseExporter.Format format) {
+        if (uri == null) return; // Picker dismissed
+
+        // Not cancelled with the view: leaving the screen should not cut the file short
+        dataManager.exportExpensesAsync(uri, format, count -> {
+            if (getContext() == null) return;
+            if (count >= 0) {
+                Toast.makeText(getContext(), "Exported " + count + " expenses", Toast.LENGTH_SHORT).show();
+            } else {
+                Toast.makeText(getContext(), "Export failed", Toast.LENGTH_SHORT).show();
+            }
+        });
+    }
+
+    private void importExpenses(Uri uri) {
+        if (uri == null) return; // Picker dismissed
+
+        Toast.makeText(requireContext(), "Importing expenses...", Toast.LENGTH_SHORT).show();
+        // Not cancelled with the view: batches already committed would be kept but the rest dropped
+        dataManager.importExpensesAsync(uri, result -> {
+            if (getContext() == null) return;
+            StringBuilder message = new StringBuilder();
+            message.append("Imported ").append(result.imported).append(" expenses.");
+            if (result.failure != null) {
+                message.append("\n\nImport stopped: ").append(result.failure);
+            }
+            if (result.rejected > 0) {
+                message.append("\n\nSkipped ").append(result.rejected).append(" invalid rows:");
+                int shown = Math.min(result.errors.size(), IMPORT_ERRORS_SHOWN);
+                for (int i = 0; i < shown; i++) {
+                    message.append("\n").append(result.errors.get(i));
+                }
+                if (result.rejected > shown) {
+                    message.append("\n...");
+                }
+            }
+            new AlertDialog.Builder(getContext())
+                .setTitle("Import Data")
+                .setMessage(message)
+                .setPositiveButton("OK", null)
+                .show();
+        });
+    }
+
     private void loadDarkModeState() {
         // Read from SharedPreferences to get the saved preference
         int savedMode = prefs.getInt(KEY_DARK_MODE, AppCompatDelegate.MODE_NIGHT_FOLLOW_SYSTEM);
@@ -125,7 +220,7 @@ public class SettingsFragment extends Fragment {
     }
     
     private void showEditProfileDialog() {
-        DatabaseHelper.User user = dataManager.getCurrentUser();
+        DatabaseHelper.User user = dataManager.getSessionUser();
         if (user == null) {
             Toast.makeText(requireContext(), "User not found", Toast.LENGTH_SHORT).show();
             return;
@@ -179,9 +274,22 @@ public class SettingsFragment extends Fragment {
                 return;
             }
 
-            // Update username if changed
-            if (usernameChanged) {
-                if (!dataManager.updateUsername(newUsername)) {
+            if (!usernameChanged && !passwordChanged) {
+                Toast.makeText(requireContext(), "No changes made", Toast.LENGTH_SHORT).show();
+                dialog.dismiss();
+                return;
+            }
+
+            // Updates run in the background and the dialog stays open until they are done
+            btnSave.setEnabled(false);
+            if (!usernameChanged) {
+                updatePassword(dialog, btnSave, tvError, false, currentPassword, newPassword);
+                return;
+            }
+            dataManager.updateUsernameAsync(newUsername, updated -> {
+                if (getContext() == null) return;
+                if (!updated) {
+                    btnSave.setEnabled(true);
                     tvError.setText("Username already exists or update failed");
                     tvError.setVisibility(View.VISIBLE);
                     return;
@@ -189,29 +297,37 @@ public class SettingsFragment extends Fragment {
                 // Update UI
                 tvUsername.setText("@" + newUsername);
                 tvUserInitial.setText(newUsername.substring(0, 1).toUpperCase());
-                Toast.makeText(requireContext(), "Username updated successfully", Toast.LENGTH_SHORT).show();
-            }
-
-            // Update password if changed
-            if (passwordChanged) {
-                if (!dataManager.updatePassword(currentPassword, newPassword)) {
-                    tvError.setText("Current password is incorrect or update failed");
-                    tvError.setVisibility(View.VISIBLE);
-                    return;
+                Toast.makeText(getContext(), "Username updated successfully", Toast.LENGTH_SHORT).show();
+                if (passwordChanged) {
+                    updatePassword(dialog, btnSave, tvError, true, currentPassword, newPassword);
+                } else {
+                    dialog.dismiss();
                 }
-                Toast.makeText(requireContext(), "Password updated successfully", Toast.LENGTH_SHORT).show();
-            }
+            });
+        });
 
-            if (!usernameChanged && !passwordChanged) {
-                Toast.makeText(requireContext(), "No changes made", Toast.LENGTH_SHORT).show();
-            } else if (usernameChanged && passwordChanged) {
-                Toast.makeText(requireContext(), "Profile updated successfully", Toast.LENGTH_SHORT).show();
-            }
+        dialog.show();
+    }
 
+    /**
+     * Second step of saving the profile; checking and hashing passwords is slow by design.
+     */
+    private void updatePassword(AlertDialog dialog, MaterialButton btnSave, TextView tvError, boolean usernameChanged,
+                                String currentPassword, String newPassword) {
+        dataManager.updatePasswordAsync(currentPassword, newPassword, updated -> {
+            btnSave.setEnabled(true);
+            if (getContext() == null) return;
+            if (!updated) {
+                tvError.setText("Current password is incorrect or update failed");
+                tvError.setVisibility(View.VISIBLE);
+                return;
+            }
+            Toast.makeText(getContext(), "Password updated successfully", Toast.LENGTH_SHORT).show();
+            if (usernameChanged) {
+                Toast.makeText(getContext(), "Profile updated successfully", Toast.LENGTH_SHORT).show();
+            }
             dialog.dismiss();
         });
-
-        dialog.show();
     }
 
     @Override
@@ -228,8 +344,8 @@ public class SettingsFragment extends Fragment {
         // Update switch state when fragment resumes (in case dark mode was changed elsewhere)
         loadDarkModeState();
         
-        // Refresh user info in case it was updated
-        DatabaseHelper.User user = dataManager.getCurrentUser();
+        // Refresh user info in case it was updated; the saved session has the current username
+        DatabaseHelper.User user = dataManager.getSessionUser();
         if (user != null) {
             tvUsername.setText("@" + user.username);
             tvUserInitial.setText(user.username.substring(0, 1).toUpperCase());
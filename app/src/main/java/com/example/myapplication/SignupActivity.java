@@ -15,6 +15,7 @@ public class SignupActivity extends AppCompatActivity {
     private TextView tvError;
     private MaterialButton btnSignup;
     private DataManager dataManager;
+    private DataManager.Request signupRequest;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -52,12 +53,24 @@ public class SignupActivity extends AppCompatActivity {
             return;
         }
 
-        DataManager.SignupResult result = dataManager.signup(username, password, pet);
-        if (result.success) {
-            startActivity(new Intent(this, MainActivity.class));
-            finish();
-        } else {
-            showError(result.error);
+        btnSignup.setEnabled(false);
+        tvError.setVisibility(View.GONE);
+        signupRequest = dataManager.signupAsync(username, password, pet, result -> {
+            btnSignup.setEnabled(true);
+            if (result.success) {
+                startActivity(new Intent(this, MainActivity.class));
+                finish();
+            } else {
+                showError(result.error);
+            }
+        });
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        if (signupRequest != null) {
+            signupRequest.cancel();
         }
     }
 
@@ -0,0 +1,77 @@
+package com.example.myapplication;
+
+import android.os.SystemClock;
+import android.util.Log;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * StartupTrace records when each phase of a cold start is reached, in milliseconds since the process
+ * was started, and logs a summary once the home list is on screen.
+ *
+ * Only the first mark of each phase counts, so an activity recreated by a theme change does not
+ * overwrite it, and marks after finish() are ignored. Filter logcat by the "StartupTrace" tag to
+ * follow cold-start time across builds. All methods are thread-safe.
+ */
+public final class StartupTrace {
+    // The phases in the order they normally happen; the database ones run in the background, so they
+    // may land before or after the first frame
+    public static final String ACTIVITY_CREATED = "activity_created";
+    public static final String SESSION_RESTORED = "session_restored";
+    public static final String FIRST_FRAME = "first_frame";
+    public static final String DATABASE_OPEN = "database_open";
+    public static final String SESSION_VALIDATED = "session_validated";
+    public static final String CACHE_WARM = "cache_warm";
+    public static final String HOME_LIST_SHOWN = "home_list_shown";
+
+    private static final Map<String, Long> marks = new LinkedHashMap<>();
+    private static boolean finished;
+
+    private StartupTrace() {
+    }
+
+    /**
+     * Records that a phase was reached now, unless it was already recorded.
+     */
+    public static synchronized void mark(String phase) {
+        if (finished || marks.containsKey(phase)) {
+            return;
+        }
+        long millis = SystemClock.elapsedRealtime() - android.os.Process.getStartElapsedRealtime();
+        marks.put(phase, millis);
+        Log.d("StartupTrace", phase + " at " + millis + " ms");
+    }
+
+    /**
+     * Returns when a phase was reached, in milliseconds since process start, or -1 if it was not.
+     */
+    public static synchronized long getMillis(String phase) {
+        Long millis = marks.get(phase);
+        return millis != null ? millis : -1;
+    }
+
+    /**
+     * Returns every recorded phase with its time, in the order they were reached.
+     */
+    public static synchronized Map<String, Long> getMarks() {
+        return new LinkedHashMap<>(marks);
+    }
+
+    /**
+     * Ends the trace and logs all phases on one line.
+     *
+     * @return true the first time it is called, so the caller can report the app as fully drawn once
+     */
+    public static synchronized boolean finish() {
+        if (finished) {
+            return false;
+        }
+        finished = true;
+        StringBuilder summary = new StringBuilder("Cold start:");
+        for (Map.Entry<String, Long> mark : marks.entrySet()) {
+            summary.append(' ').append(mark.getKey()).append('=').append(mark.getValue()).append("ms");
+        }
+        Log.d("StartupTrace", summary.toString());
+        return true;
+    }
+}
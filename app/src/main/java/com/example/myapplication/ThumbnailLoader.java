@@ -0,0 +1,335 @@
+package com.example.myapplication;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.util.LruCache;
+import androidx.annotation.VisibleForTesting;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * ThumbnailLoader decodes small thumbnails of receipt images off the main thread.
+ *
+ * Images are decoded with a power-of-two inSampleSize, so a 12 MP photo is never held in memory at
+ * full size just to fill a 48dp slot. Decoded thumbnails are kept in a memory LRU bounded in bytes,
+ * and written as small JPEGs to a bounded directory in the app cache, so after a restart a row costs
+ * one small file read instead of opening and decoding the original photo.
+ *
+ * Loads return a DataManager.Request; view holders cancel it when they are rebound or recycled, so
+ * a fast fling does not decode images for rows that have already scrolled away. Images that could
+ * not be read are remembered for a while, so rebinding their rows does not retry them every time.
+ */
+public final class ThumbnailLoader {
+    private static ThumbnailLoader instance;
+
+    private static final int DECODE_THREADS = 2;
+    private static final int JPEG_QUALITY = 85;
+    // Share of the heap the memory cache may use, and an upper bound for devices with large heaps
+    private static final int MEMORY_CACHE_HEAP_FRACTION = 16;
+    private static final int MAX_MEMORY_CACHE_BYTES = 16 * 1024 * 1024;
+    private static final long DISK_CACHE_BYTES = 20L * 1024 * 1024;
+    private static final String DISK_CACHE_DIR = "thumbnails";
+    private static final int FAILED_KEYS = 32;
+
+    private final Context context;
+    private final File diskDir;
+    private final LruCache<String, Bitmap> memoryCache;
+    private final LruCache<String, Boolean> failedKeys = new LruCache<>(FAILED_KEYS);
+    private final Executor decodeExecutor;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    // Bytes currently in diskDir, or -1 until it has been measured on the decode thread
+    private long diskBytes = -1;
+
+    private final AtomicInteger memoryHits = new AtomicInteger();
+    private final AtomicInteger diskHits = new AtomicInteger();
+    private final AtomicInteger decodes = new AtomicInteger();
+    private final AtomicInteger failures = new AtomicInteger();
+
+    private ThumbnailLoader(Context context) {
+        this(context, new File(context.getCacheDir(), DISK_CACHE_DIR), newDecodeExecutor());
+    }
+
+    /**
+     * Creates a loader with its own disk cache directory and decode executor, so tests can run
+     * decodes when they choose.
+     */
+    @VisibleForTesting
+    ThumbnailLoader(Context context, File diskDir, Executor decodeExecutor) {
+        this.context = context;
+        this.diskDir = diskDir;
+        this.decodeExecutor = decodeExecutor;
+        int memoryBytes = (int) Math.min(Runtime.getRuntime().maxMemory() / MEMORY_CACHE_HEAP_FRACTION, MAX_MEMORY_CACHE_BYTES);
+        this.memoryCache = new LruCache<String, Bitmap>(memoryBytes) {
+            @Override
+            protected int sizeOf(String key, Bitmap bitmap) {
+                return bitmap.getByteCount();
+            }
+        };
+    }
+
+    private static Executor newDecodeExecutor() {
+        // Decoding at background priority keeps it from competing with the main thread while scrolling
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(DECODE_THREADS, DECODE_THREADS, 30, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), runnable -> new Thread(() -> {
+                    Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                    runnable.run();
+                }, "ThumbnailLoader-decode"));
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    public static synchronized ThumbnailLoader getInstance(Context context) {
+        if (instance == null) {
+            instance = new ThumbnailLoader(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    /**
+     * Loads a thumbnail of an image at least sizePx wide and high.
+     * A thumbnail already in memory, or null for an image that recently failed to load, is delivered
+     * before this method returns, so rebinding a visible row does not flicker; otherwise the result
+     * is delivered later on the main thread.
+     *
+     * @param uri      Content URI of the image
+     * @param sizePx   Size of the view the thumbnail fills, in pixels
+     * @param callback Receives the thumbnail, or null if the image cannot be read
+     * @return Request to cancel when the target view is rebound or recycled
+     */
+    public DataManager.Request load(String uri, int sizePx, DataManager.Callback<Bitmap> callback) {
+        DataManager.Request request = new DataManager.Request();
+        // A plain string on the bind path; the disk file name is hashed on the decode thread
+        String key = uri + "@" + sizePx;
+        Bitmap cached = memoryCache.get(key);
+        if (cached != null) {
+            memoryHits.incrementAndGet();
+            callback.onResult(cached);
+            return request;
+        }
+        if (failedKeys.get(key) != null) {
+            callback.onResult(null);
+            return request;
+        }
+
+        decodeExecutor.execute(() -> {
+            if (request.isCancelled()) return;
+            Bitmap bitmap = memoryCache.get(key);
+            if (bitmap != null) {
+                memoryHits.incrementAndGet();
+            } else {
+                String fileName = fileName(uri, sizePx);
+                bitmap = loadFromDisk(fileName);
+                if (bitmap == null) {
+                    bitmap = decode(uri, sizePx);
+                    if (bitmap != null) {
+                        saveToDisk(fileName, bitmap);
+                    }
+                }
+                if (bitmap != null) {
+                    memoryCache.put(key, bitmap);
+                } else {
+                    failedKeys.put(key, Boolean.TRUE);
+                }
+            }
+            Bitmap result = bitmap;
+            mainHandler.post(() -> {
+                if (!request.isCancelled()) {
+                    callback.onResult(result);
+                }
+            });
+        });
+        return request;
+    }
+
+    /**
+     * Drops every thumbnail held in memory and forgets which images failed; the disk cache is kept.
+     */
+    public void clearMemoryCache() {
+        memoryCache.evictAll();
+        failedKeys.evictAll();
+    }
+
+    public int getMemoryHitCount() {
+        return memoryHits.get();
+    }
+
+    public int getDiskHitCount() {
+        return diskHits.get();
+    }
+
+    /**
+     * Returns how many thumbnails had to be decoded from the original image.
+     */
+    public int getDecodeCount() {
+        return decodes.get();
+    }
+
+    public int getFailureCount() {
+        return failures.get();
+    }
+
+    /**
+     * Returns the share of loads served from the memory or disk cache, from 0 to 1.
+     */
+    public float getHitRate() {
+        int hits = memoryHits.get() + diskHits.get();
+        int total = hits + decodes.get() + failures.get();
+        return total > 0 ? (float) hits / total : 0f;
+    }
+
+    private Bitmap decode(String uri, int sizePx) {
+        try {
+            Uri parsed = Uri.parse(uri);
+            BitmapFactory.Options options = new BitmapFactory.Options();
+            options.inJustDecodeBounds = true;
+            try (InputStream in = context.getContentResolver().openInputStream(parsed)) {
+                BitmapFactory.decodeStream(in, null, options);
+            }
+            if (options.outWidth <= 0 || options.outHeight <= 0) {
+                failures.incrementAndGet();
+                return null;
+            }
+
+            options.inJustDecodeBounds = false;
+            options.inSampleSize = sampleSize(options.outWidth, options.outHeight, sizePx);
+            // Thumbnails are small and opaque, so half the bytes per pixel is not visible
+            options.inPreferredConfig = Bitmap.Config.RGB_565;
+            Bitmap bitmap;
+            try (InputStream in = context.getContentResolver().openInputStream(parsed)) {
+                bitmap = BitmapFactory.decodeStream(in, null, options);
+            }
+            if (bitmap == null) {
+                failures.incrementAndGet();
+                return null;
+            }
+            decodes.incrementAndGet();
+            return bitmap;
+        } catch (IOException | SecurityException e) {
+            // The image was deleted or the permission to read it was lost
+            android.util.Log.d("ThumbnailLoader", "Cannot decode " + uri + ": " + e.getMessage());
+            failures.incrementAndGet();
+            return null;
+        }
+    }
+
+    /**
+     * Returns the largest power of two that keeps both sides of the decoded image at least sizePx.
+     */
+    private static int sampleSize(int width, int height, int sizePx) {
+        int sampleSize = 1;
+        while (width / (sampleSize * 2) >= sizePx && height / (sampleSize * 2) >= sizePx) {
+            sampleSize *= 2;
+        }
+        return sampleSize;
+    }
+
+    private Bitmap loadFromDisk(String fileName) {
+        File file = new File(diskDir, fileName);
+        if (!file.isFile()) {
+            return null;
+        }
+        Bitmap bitmap = BitmapFactory.decodeFile(file.getPath());
+        if (bitmap == null) {
+            file.delete();
+            return null;
+        }
+        // Marks the file as recently used for trimDisk()
+        file.setLastModified(System.currentTimeMillis());
+        diskHits.incrementAndGet();
+        return bitmap;
+    }
+
+    private synchronized void saveToDisk(String fileName, Bitmap bitmap) {
+        if (!diskDir.isDirectory() && !diskDir.mkdirs()) {
+            return;
+        }
+        File file = new File(diskDir, fileName);
+        // Written under a temporary name so a reader never sees a partial file
+        File temp = new File(diskDir, fileName + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(temp)) {
+            bitmap.compress(Bitmap.CompressFormat.JPEG, JPEG_QUALITY, out);
+        } catch (IOException e) {
+            android.util.Log.d("ThumbnailLoader", "Cannot write thumbnail: " + e.getMessage());
+            temp.delete();
+            return;
+        }
+        if (!temp.renameTo(file)) {
+            temp.delete();
+            return;
+        }
+        if (diskBytes < 0) {
+            diskBytes = directorySize();
+        } else {
+            diskBytes += file.length();
+        }
+        if (diskBytes > DISK_CACHE_BYTES) {
+            trimDisk();
+        }
+    }
+
+    /**
+     * Deletes the least recently used thumbnails until the directory is at three quarters of its budget.
+     */
+    private void trimDisk() {
+        File[] files = diskDir.listFiles();
+        if (files == null) return;
+        Arrays.sort(files, (a, b) -> Long.compare(a.lastModified(), b.lastModified()));
+        long target = DISK_CACHE_BYTES * 3 / 4;
+        long size = directorySize();
+        for (File file : files) {
+            if (size <= target) break;
+            long length = file.length();
+            if (file.delete()) {
+                size -= length;
+            }
+        }
+        diskBytes = size;
+    }
+
+    private long directorySize() {
+        File[] files = diskDir.listFiles();
+        long size = 0;
+        if (files != null) {
+            for (File file : files) {
+                size += file.length();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Returns a file name for a thumbnail: a hash of the image URI and the requested size.
+     */
+    private static String fileName(String uri, int sizePx) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            byte[] hash = digest.digest((uri + "#" + sizePx).getBytes(StandardCharsets.UTF_8));
+            StringBuilder name = new StringBuilder(hash.length * 2);
+            for (byte b : hash) {
+                name.append(Character.forDigit((b >> 4) & 0xF, 16));
+                name.append(Character.forDigit(b & 0xF, 16));
+            }
+            return name.toString();
+        } catch (NoSuchAlgorithmException e) {
+            // Every Android runtime provides SHA-1
+            throw new IllegalStateException(e);
+        }
+    }
+}
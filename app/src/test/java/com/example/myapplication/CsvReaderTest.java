@@ -0,0 +1,159 @@
+package com.example.myapplication;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local tests for CsvReader.
+ */
+public class CsvReaderTest {
+
+    @Test
+    public void readsPlainRecords() throws IOException {
+        CsvReader reader = reader("a,b,c\n1,2,3\n");
+        List<String> fields = new ArrayList<>();
+
+        assertTrue(reader.next(fields));
+        assertEquals(Arrays.asList("a", "b", "c"), fields);
+        assertTrue(reader.next(fields));
+        assertEquals(Arrays.asList("1", "2", "3"), fields);
+        assertFalse(reader.next(fields));
+        assertTrue(fields.isEmpty());
+    }
+
+    @Test
+    public void skipsByteOrderMark() throws IOException {
+        CsvReader reader = reader("\uFEFFDate,Amount\r\n");
+        List<String> fields = new ArrayList<>();
+
+        assertTrue(reader.next(fields));
+        assertEquals(Arrays.asList("Date", "Amount"), fields);
+    }
+
+    @Test
+    public void keepsByteOrderMarkCharacterAfterTheStart() throws IOException {
+        CsvReader reader = reader("a\n\uFEFFb\n");
+        List<String> fields = new ArrayList<>();
+
+        assertTrue(reader.next(fields));
+        assertTrue(reader.next(fields));
+        assertEquals(Arrays.asList("\uFEFFb"), fields);
+    }
+
+    @Test
+    public void acceptsCrLfLfAndCrLineEndings() throws IOException {
+        CsvReader reader = reader("a\r\nb\nc\rd");
+        List<String> fields = new ArrayList<>();
+
+        for (String expected : new String[]{"a", "b", "c", "d"}) {
+            assertTrue(reader.next(fields));
+            assertEquals(Arrays.asList(expected), fields);
+        }
+        assertFalse(reader.next(fields));
+    }
+
+    @Test
+    public void keepsCommasAndLineBreaksInsideQuotes() throws IOException {
+        CsvReader reader = reader("\"x, y\",\"line1\r\nline2\",\"lf\nonly\"\r\nnext\r\n");
+        List<String> fields = new ArrayList<>();
+
+        assertTrue(reader.next(fields));
+        assertEquals(Arrays.asList("x, y", "line1\r\nline2", "lf\nonly"), fields);
+        assertTrue(reader.next(fields));
+        assertEquals(Arrays.asList("next"), fields);
+        assertFalse(reader.next(fields));
+    }
+
+    @Test
+    public void unescapesDoubledQuotes() throws IOException {
+        CsvReader reader = reader("\"say \"\"hi\"\"\",\"\"\"\",\"\"\n");
+        List<String> fields = new ArrayList<>();
+
+        assertTrue(reader.next(fields));
+        assertEquals(Arrays.asList("say \"hi\"", "\"", ""), fields);
+    }
+
+    @Test
+    public void keepsEmptyFields() throws IOException {
+        CsvReader reader = reader(",a,,\n");
+        List<String> fields = new ArrayList<>();
+
+        assertTrue(reader.next(fields));
+        assertEquals(Arrays.asList("", "a", "", ""), fields);
+    }
+
+    @Test
+    public void toleratesStrayQuotes() throws IOException {
+        CsvReader reader = reader("5\" screen,\"quoted\"tail\n");
+        List<String> fields = new ArrayList<>();
+
+        assertTrue(reader.next(fields));
+        assertEquals(Arrays.asList("5\" screen", "quotedtail"), fields);
+    }
+
+    @Test
+    public void unterminatedQuoteFails_namingItsLine() throws IOException {
+        CsvReader reader = reader("a\nb\n\"open\nstill open\n");
+        List<String> fields = new ArrayList<>();
+        assertTrue(reader.next(fields));
+        assertTrue(reader.next(fields));
+
+        IOException e = assertThrows(IOException.class, () -> reader.next(fields));
+        assertTrue(e.getMessage(), e.getMessage().contains("line 3"));
+    }
+
+    @Test
+    public void reportsTheLineEachRecordStartsOn() throws IOException {
+        CsvReader reader = reader("h1,h2\r\n" +
+                "\"multi\r\nline\",x\r\n" +
+                "\"three\nline\nfield\",y\n" +
+                "\"cr\ronly\",z\r" +
+                "last,w");
+        List<String> fields = new ArrayList<>();
+
+        int[] expectedLines = {1, 2, 4, 7, 9};
+        for (int expected : expectedLines) {
+            assertTrue(reader.next(fields));
+            assertEquals(expected, reader.getLine());
+        }
+        assertFalse(reader.next(fields));
+    }
+
+    @Test
+    public void readsRecordsSpanningBufferRefills() throws IOException {
+        // Hands out one char per read, so every quote, CR and LF pair crosses a refill
+        Reader trickle = new StringReader("\"a\"\"b\",\"c\r\nd\"\r\ne\r\n") {
+            @Override
+            public int read(char[] buffer, int offset, int length) throws IOException {
+                return super.read(buffer, offset, Math.min(length, 1));
+            }
+        };
+        CsvReader reader = new CsvReader(trickle);
+        List<String> fields = new ArrayList<>();
+
+        assertTrue(reader.next(fields));
+        assertEquals(Arrays.asList("a\"b", "c\r\nd"), fields);
+        assertTrue(reader.next(fields));
+        assertEquals(Arrays.asList("e"), fields);
+        assertEquals(3, reader.getLine());
+        assertFalse(reader.next(fields));
+    }
+
+    @Test
+    public void emptyInputHasNoRecords() throws IOException {
+        assertFalse(reader("").next(new ArrayList<>()));
+        assertFalse(reader("\uFEFF").next(new ArrayList<>()));
+    }
+
+    private static CsvReader reader(String text) {
+        return new CsvReader(new StringReader(text));
+    }
+}
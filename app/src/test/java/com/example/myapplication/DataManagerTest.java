@@ -0,0 +1,300 @@
+package com.example.myapplication;
+
+import android.content.SharedPreferences;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local tests for the async API of DataManager. Its executors are replaced by queues the test runs
+ * by hand, so each step of a request (background work, then delivery) happens when the test says.
+ */
+public class DataManagerTest {
+    private QueuedExecutor io;
+    private QueuedExecutor main;
+    private DataManager dataManager;
+
+    @Before
+    public void setUp() {
+        io = new QueuedExecutor();
+        main = new QueuedExecutor();
+        // No user is logged in and there is no database; the calls below must not need one
+        dataManager = new DataManager(null, new MemoryPreferences(), null, io, main);
+    }
+
+    @Test
+    public void runsWorkOnIoExecutor_andDeliversOnMainExecutor() {
+        List<Integer> delivered = new ArrayList<>();
+        int[] runs = {0};
+
+        dataManager.runAsync(() -> ++runs[0], delivered::add);
+
+        assertEquals(0, runs[0]);
+        io.runAll();
+        assertEquals(1, runs[0]);
+        assertTrue("Delivery waits for the main executor", delivered.isEmpty());
+        main.runAll();
+        assertEquals(Arrays.asList(1), delivered);
+    }
+
+    @Test
+    public void cancelBeforeWorkStarts_skipsWorkAndCallback() {
+        List<Integer> delivered = new ArrayList<>();
+        int[] runs = {0};
+
+        DataManager.Request request = dataManager.runAsync(() -> ++runs[0], delivered::add);
+        request.cancel();
+        io.runAll();
+        main.runAll();
+
+        assertTrue(request.isCancelled());
+        assertEquals(0, runs[0]);
+        assertTrue(delivered.isEmpty());
+        assertEquals(0, main.executed);
+    }
+
+    @Test
+    public void cancelAfterWorkFinished_dropsTheResult() {
+        List<Integer> delivered = new ArrayList<>();
+
+        DataManager.Request request = dataManager.runAsync(() -> 7, delivered::add);
+        io.runAll();
+        // As when a fragment's view is destroyed while the result is already posted
+        request.cancel();
+        main.runAll();
+
+        assertTrue(delivered.isEmpty());
+    }
+
+    @Test
+    public void failedWork_reachesOnError_andLaterRequestsStillRun() {
+        List<Integer> delivered = new ArrayList<>();
+        List<Throwable> errors = new ArrayList<>();
+
+        dataManager.<Integer>runAsync(() -> {
+            throw new IllegalStateException("database is locked");
+        }, delivered::add, errors::add);
+        dataManager.runAsync(() -> 2, delivered::add, errors::add);
+        io.runAll();
+        main.runAll();
+
+        assertEquals(Arrays.asList(2), delivered);
+        assertEquals(1, errors.size());
+        assertTrue(errors.get(0) instanceof IllegalStateException);
+        assertEquals("database is locked", errors.get(0).getMessage());
+    }
+
+    @Test
+    public void cancelledFailure_isNotDelivered() {
+        List<Throwable> errors = new ArrayList<>();
+
+        DataManager.Request request = dataManager.<Integer>runAsync(() -> {
+            throw new IllegalStateException("database is locked");
+        }, result -> fail("No result expected"), errors::add);
+        io.runAll();
+        request.cancel();
+        main.runAll();
+
+        assertTrue(errors.isEmpty());
+    }
+
+    @Test
+    public void startUpFailure_logsOutAndStillDelivers() {
+        MemoryPreferences prefs = new MemoryPreferences();
+        prefs.edit().putInt("userId", 7).putString("username", "alice").apply();
+        // Without a database helper opening the database throws, as a failed migration would
+        DataManager manager = new DataManager(null, prefs, null, io, main);
+        List<Boolean> delivered = new ArrayList<>();
+
+        manager.startUpAsync(delivered::add);
+        io.runAll();
+        main.runAll();
+
+        assertEquals(Arrays.asList(false), delivered);
+        assertNull("The session is ended so login does not send the user straight back",
+                manager.getSessionUser());
+    }
+
+    @Test
+    public void deliversResultsInSubmissionOrder() {
+        List<Integer> delivered = new ArrayList<>();
+
+        for (int i = 0; i < 5; i++) {
+            int value = i;
+            dataManager.runAsync(() -> value, delivered::add);
+        }
+        io.runAll();
+        main.runAll();
+
+        assertEquals(Arrays.asList(0, 1, 2, 3, 4), delivered);
+    }
+
+    @Test
+    public void loggedOutCalls_returnEmptyResultsThroughTheCallback() {
+        List<Object> delivered = new ArrayList<>();
+
+        dataManager.getExpensesAsync("date_desc", delivered::add);
+        dataManager.getTotalSpentCentsAsync(delivered::add);
+        dataManager.searchExpensesAsync("lunch", 10, delivered::add);
+        dataManager.getCategoriesAsync(delivered::add);
+        io.runAll();
+        main.runAll();
+
+        assertEquals(4, delivered.size());
+        assertEquals(new ArrayList<>(), delivered.get(0));
+        assertEquals(0L, delivered.get(1));
+        assertEquals(new ArrayList<>(), delivered.get(2));
+        assertEquals(Arrays.asList("Food", "Transport", "Shopping", "Bills", "Entertainment", "Others"), delivered.get(3));
+    }
+
+    /**
+     * Holds submitted tasks until runAll(), including tasks submitted while running.
+     */
+    private static final class QueuedExecutor implements Executor {
+        private final Queue<Runnable> tasks = new ArrayDeque<>();
+        int executed;
+
+        @Override
+        public void execute(Runnable task) {
+            tasks.add(task);
+        }
+
+        void runAll() {
+            Runnable task;
+            while ((task = tasks.poll()) != null) {
+                executed++;
+                task.run();
+            }
+        }
+    }
+
+    /**
+     * SharedPreferences kept in a map; edits apply immediately.
+     */
+    private static final class MemoryPreferences implements SharedPreferences, SharedPreferences.Editor {
+        private final Map<String, Object> values = new HashMap<>();
+
+        @Override
+        public Map<String, ?> getAll() {
+            return new HashMap<>(values);
+        }
+
+        @Override
+        public String getString(String key, String defValue) {
+            return values.containsKey(key) ? (String) values.get(key) : defValue;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public Set<String> getStringSet(String key, Set<String> defValues) {
+            return values.containsKey(key) ? (Set<String>) values.get(key) : defValues;
+        }
+
+        @Override
+        public int getInt(String key, int defValue) {
+            return values.containsKey(key) ? (Integer) values.get(key) : defValue;
+        }
+
+        @Override
+        public long getLong(String key, long defValue) {
+            return values.containsKey(key) ? (Long) values.get(key) : defValue;
+        }
+
+        @Override
+        public float getFloat(String key, float defValue) {
+            return values.containsKey(key) ? (Float) values.get(key) : defValue;
+        }
+
+        @Override
+        public boolean getBoolean(String key, boolean defValue) {
+            return values.containsKey(key) ? (Boolean) values.get(key) : defValue;
+        }
+
+        @Override
+        public boolean contains(String key) {
+            return values.containsKey(key);
+        }
+
+        @Override
+        public Editor edit() {
+            return this;
+        }
+
+        @Override
+        public void registerOnSharedPreferenceChangeListener(OnSharedPreferenceChangeListener listener) {
+        }
+
+        @Override
+        public void unregisterOnSharedPreferenceChangeListener(OnSharedPreferenceChangeListener listener) {
+        }
+
+        @Override
+        public Editor putString(String key, String value) {
+            values.put(key, value);
+            return this;
+        }
+
+        @Override
+        public Editor putStringSet(String key, Set<String> values) {
+            this.values.put(key, values);
+            return this;
+        }
+
+        @Override
+        public Editor putInt(String key, int value) {
+            values.put(key, value);
+            return this;
+        }
+
+        @Override
+        public Editor putLong(String key, long value) {
+            values.put(key, value);
+            return this;
+        }
+
+        @Override
+        public Editor putFloat(String key, float value) {
+            values.put(key, value);
+            return this;
+        }
+
+        @Override
+        public Editor putBoolean(String key, boolean value) {
+            values.put(key, value);
+            return this;
+        }
+
+        @Override
+        public Editor remove(String key) {
+            values.remove(key);
+            return this;
+        }
+
+        @Override
+        public Editor clear() {
+            values.clear();
+            return this;
+        }
+
+        @Override
+        public boolean commit() {
+            return true;
+        }
+
+        @Override
+        public void apply() {
+        }
+    }
+}
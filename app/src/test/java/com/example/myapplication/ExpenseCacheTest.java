@@ -0,0 +1,234 @@
+package com.example.myapplication;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local tests for how ExpenseCache counts requests, which loads it accepts, which users it evicts,
+ * and that its write-through updates keep every sorted view in the order DatabaseHelper reads.
+ */
+public class ExpenseCacheTest {
+    private static final int USER = 1;
+    private static final String[] SORT_TYPES = {ExpenseCache.SORT_ID_DESC, "date_desc", "date_asc", "amount_desc",
+            "amount_asc", "category_asc", "category_desc"};
+    // "Food" and "food" are equal under NOCASE, so their order falls to the category id
+    private static final String[] CATEGORIES = {"Food", "Transport", "food", "Bills", "Café", "others"};
+    private static final long[] SEEDS = {1, 42, 20240101};
+    private static final int STEPS = 400;
+    private static final int PAGE_SIZE = 7;
+
+    private CategoryDictionary dictionary;
+    private ExpenseCache cache;
+
+    @Before
+    public void setUp() {
+        dictionary = new CategoryDictionary();
+        for (int i = 0; i < CATEGORIES.length; i++) {
+            dictionary.put(i + 1, CATEGORIES[i]);
+        }
+        cache = new ExpenseCache(ExpenseCache.DEFAULT_BUDGET_BYTES, dictionary);
+    }
+
+    @Test
+    public void isCachedCountsOnce_containsDoesNotCount() {
+        assertFalse(cache.isCached(1));
+        assertFalse(cache.contains(1));
+        cache.put(1, expenses(3), cache.version());
+        assertTrue(cache.contains(1));
+        assertTrue(cache.isCached(1));
+        assertNotNull(cache.get(1, ExpenseCache.SORT_ID_DESC));
+
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+    }
+
+    @Test
+    public void loadThatRacedWithAWrite_isDiscarded() {
+        long version = cache.version();
+        cache.onDeleted(1, 42);
+
+        cache.put(1, expenses(3), version);
+
+        assertFalse(cache.contains(1));
+    }
+
+    @Test
+    public void historyOverBudget_isNotCached() {
+        cache.setBudgetBytes(1024);
+        assertFalse(cache.mayHold(1000));
+
+        cache.put(1, expenses(1000), cache.version());
+
+        assertFalse(cache.contains(1));
+        assertEquals(0, cache.getUsedBytes());
+    }
+
+    @Test
+    public void overBudget_evictsLeastRecentlyUsedUser() {
+        for (int userId = 1; userId <= 3; userId++) {
+            cache.put(userId, expenses(100), cache.version());
+        }
+        long bytesPerUser = cache.getUsedBytes() / 3;
+        assertNotNull(cache.get(1, "date_desc")); // User 2 is now the least recently used
+
+        cache.setBudgetBytes(2 * bytesPerUser);
+
+        assertTrue(cache.contains(1));
+        assertFalse(cache.contains(2));
+        assertTrue(cache.contains(3));
+        assertEquals(2 * bytesPerUser, cache.getUsedBytes());
+
+        // A new load never evicts itself, only the least recently used of the others
+        cache.put(4, expenses(100), cache.version());
+        assertTrue(cache.contains(1));
+        assertFalse(cache.contains(3));
+        assertTrue(cache.contains(4));
+    }
+
+    /**
+     * Applies random adds, updates that change the category, date or amount, deletes and clears
+     * through the write-through methods, and after every step compares each sorted view and a
+     * page-by-page walk with a fresh sort of what the database would hold.
+     */
+    @Test
+    public void randomWrites_keepEveryViewInDatabaseOrder() {
+        for (long seed : SEEDS) {
+            setUp();
+            Random random = new Random(seed);
+            Map<Integer, DataManager.Expense> stored = new HashMap<>();
+            int nextId = 1;
+            for (; nextId <= 40; nextId++) {
+                stored.put(nextId, randomExpense(random, nextId));
+            }
+            cache.put(USER, sorted(stored, ExpenseCache.SORT_ID_DESC), cache.version());
+            for (String sortType : SORT_TYPES) {
+                cache.get(USER, sortType); // Builds every view, so each is updated in place from here on
+            }
+
+            for (int step = 0; step < STEPS; step++) {
+                String label = "seed " + seed + ", step " + step;
+                int operation = random.nextInt(20);
+                if (operation < 7 || stored.isEmpty()) {
+                    DataManager.Expense added = randomExpense(random, nextId++);
+                    stored.put(added.id, added);
+                    cache.onSaved(USER, added);
+                } else if (operation < 15) {
+                    DataManager.Expense updated = randomExpense(random, randomId(random, stored));
+                    stored.put(updated.id, updated);
+                    cache.onSaved(USER, updated);
+                } else if (operation < 19) {
+                    int id = randomId(random, stored);
+                    stored.remove(id);
+                    cache.onDeleted(USER, id);
+                } else {
+                    stored.clear();
+                    cache.onCleared(USER);
+                }
+                assertSameOrder(label, stored);
+            }
+        }
+    }
+
+    private void assertSameOrder(String label, Map<Integer, DataManager.Expense> stored) {
+        for (String sortType : SORT_TYPES) {
+            List<Integer> expected = ids(sorted(stored, sortType));
+            assertEquals(label + ", " + sortType, expected, ids(cache.get(USER, sortType)));
+            if (ExpenseCache.SORT_ID_DESC.equals(sortType)) {
+                continue; // Not a keyset order
+            }
+            List<DataManager.Expense> walked = new ArrayList<>();
+            DataManager.Expense after = null;
+            List<DataManager.Expense> page;
+            while (!(page = cache.getPage(USER, sortType, after, PAGE_SIZE)).isEmpty()) {
+                walked.addAll(page);
+                after = page.get(page.size() - 1);
+            }
+            assertEquals(label + ", pages of " + sortType, expected, ids(walked));
+        }
+    }
+
+    private static int randomId(Random random, Map<Integer, DataManager.Expense> stored) {
+        List<Integer> ids = new ArrayList<>(stored.keySet());
+        return ids.get(random.nextInt(ids.size()));
+    }
+
+    /**
+     * Returns an expense with few distinct dates and amounts, so sorts often fall to their tie-breaks.
+     */
+    private static DataManager.Expense randomExpense(Random random, int id) {
+        int dateDay = 19700 + random.nextInt(20);
+        return new DataManager.Expense(id, CATEGORIES[random.nextInt(CATEGORIES.length)], 100 * (1 + random.nextInt(10)),
+                "note " + id, "", "", dateDay);
+    }
+
+    /**
+     * Sorts the stored expenses by the ORDER BY DatabaseHelper uses for the sort type, written out
+     * independently of ExpenseCache's comparators.
+     */
+    private List<DataManager.Expense> sorted(Map<Integer, DataManager.Expense> stored, String sortType) {
+        Comparator<DataManager.Expense> byId = Comparator.comparingInt(e -> e.id);
+        Comparator<DataManager.Expense> order;
+        switch (sortType) {
+            case "date_asc":
+            case "date_desc":
+                order = Comparator.<DataManager.Expense>comparingInt(e -> e.dateDay).thenComparing(byId);
+                break;
+            case "amount_asc":
+            case "amount_desc":
+                order = Comparator.<DataManager.Expense>comparingLong(e -> e.amountCents).thenComparing(byId);
+                break;
+            case "category_asc":
+            case "category_desc":
+                order = Comparator.<DataManager.Expense, String>comparing(e -> noCase(e.category))
+                        .thenComparingInt(e -> dictionary.idOf(e.category))
+                        .thenComparing(byId);
+                break;
+            default:
+                order = byId;
+                break;
+        }
+        if (sortType.endsWith("_desc")) {
+            order = order.reversed();
+        }
+        List<DataManager.Expense> expenses = new ArrayList<>(stored.values());
+        Collections.sort(expenses, order);
+        return expenses;
+    }
+
+    /**
+     * Folds ASCII letters only, like SQLite's NOCASE collation.
+     */
+    private static String noCase(String value) {
+        StringBuilder folded = new StringBuilder(value.length());
+        for (char c : value.toCharArray()) {
+            folded.append(c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c);
+        }
+        return folded.toString();
+    }
+
+    private static List<Integer> ids(List<DataManager.Expense> expenses) {
+        List<Integer> ids = new ArrayList<>(expenses.size());
+        for (DataManager.Expense expense : expenses) {
+            ids.add(expense.id);
+        }
+        return ids;
+    }
+
+    private static List<DataManager.Expense> expenses(int count) {
+        List<DataManager.Expense> expenses = new ArrayList<>();
+        for (int id = count; id > 0; id--) {
+            expenses.add(new DataManager.Expense(id, "Food", 100 * id, "note " + id, "January 1, 2024", "", 19723));
+        }
+        return expenses;
+    }
+}
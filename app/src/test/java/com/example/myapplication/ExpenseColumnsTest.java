@@ -0,0 +1,137 @@
+package com.example.myapplication;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local tests checking that the totals ExpenseColumns computes equal the same totals summed
+ * directly over the source expenses.
+ */
+public class ExpenseColumnsTest {
+    private static final String[] CATEGORIES = {"Food", "Transport", "Bills", "Café ☕", "Others"};
+    private static final int FIRST_DAY = 19000;
+    private static final int DAYS = 400;
+
+    private CategoryDictionary dictionary;
+
+    @Before
+    public void setUp() {
+        dictionary = new CategoryDictionary();
+        // Ids are primary keys, so they need not start at 0 or be contiguous
+        for (int i = 0; i < CATEGORIES.length; i++) {
+            dictionary.put(2 + i * 3, CATEGORIES[i]);
+        }
+    }
+
+    @Test
+    public void totalsMatchTheSourceList() {
+        Random random = new Random(42);
+        List<DataManager.Expense> expenses = randomExpenses(random, 5_000, CATEGORIES);
+        ExpenseColumns columns = ExpenseColumns.of(expenses, dictionary);
+
+        assertEquals(expenses.size(), columns.size());
+        assertEquals(total(expenses, Integer.MIN_VALUE, Integer.MAX_VALUE), columns.totalCents());
+        assertEquals(categoryTotals(expenses, Integer.MIN_VALUE, Integer.MAX_VALUE), asMap(columns.categoryTotals()));
+        for (int i = 0; i < 50; i++) {
+            int from = FIRST_DAY + random.nextInt(DAYS);
+            int to = from + random.nextInt(DAYS / 4);
+            assertEquals(total(expenses, from, to), columns.totalCents(from, to));
+            assertEquals(categoryTotals(expenses, from, to), asMap(columns.categoryTotals(from, to)));
+        }
+    }
+
+    @Test
+    public void categoryTotals_areOrderedByName() {
+        List<DataManager.Expense> expenses = randomExpenses(new Random(1), 200, CATEGORIES);
+
+        List<String> names = new ArrayList<>();
+        for (DataManager.CategoryTotal total : ExpenseColumns.of(expenses, dictionary).categoryTotals()) {
+            names.add(total.category);
+        }
+
+        assertEquals(Arrays.asList("Bills", "Café ☕", "Food", "Others", "Transport"), names);
+    }
+
+    @Test
+    public void categoriesMissingFromTheDictionary_areStillTotaled() {
+        String[] categories = {"Food", "Unknown", "Also unknown"};
+        List<DataManager.Expense> expenses = randomExpenses(new Random(7), 1_000, categories);
+
+        ExpenseColumns columns = ExpenseColumns.of(expenses, dictionary);
+
+        assertEquals(total(expenses, Integer.MIN_VALUE, Integer.MAX_VALUE), columns.totalCents());
+        assertEquals(categoryTotals(expenses, Integer.MIN_VALUE, Integer.MAX_VALUE), asMap(columns.categoryTotals()));
+    }
+
+    @Test
+    public void snapshotKeepsItsNames_whenTheDictionaryChanges() {
+        List<DataManager.Expense> expenses = randomExpenses(new Random(3), 100, CATEGORIES);
+        ExpenseColumns columns = ExpenseColumns.of(expenses, dictionary);
+
+        dictionary.clear();
+        dictionary.put(0, "Renamed");
+
+        assertEquals(categoryTotals(expenses, Integer.MIN_VALUE, Integer.MAX_VALUE), asMap(columns.categoryTotals()));
+    }
+
+    @Test
+    public void emptyList_hasNoTotals() {
+        ExpenseColumns columns = ExpenseColumns.of(new ArrayList<>(), dictionary);
+
+        assertEquals(0, columns.size());
+        assertEquals(0, columns.totalCents());
+        assertTrue(columns.categoryTotals().isEmpty());
+    }
+
+    static List<DataManager.Expense> randomExpenses(Random random, int count, String[] categories) {
+        List<DataManager.Expense> expenses = new ArrayList<>(count);
+        for (int id = count; id > 0; id--) {
+            expenses.add(new DataManager.Expense(id, categories[random.nextInt(categories.length)],
+                    1 + random.nextInt(100_000), "note", "", "", FIRST_DAY + random.nextInt(DAYS)));
+        }
+        return expenses;
+    }
+
+    private static long total(List<DataManager.Expense> expenses, int fromDay, int toDay) {
+        long total = 0;
+        for (DataManager.Expense expense : expenses) {
+            if (expense.dateDay >= fromDay && expense.dateDay <= toDay) {
+                total += expense.amountCents;
+            }
+        }
+        return total;
+    }
+
+    private static Map<String, String> categoryTotals(List<DataManager.Expense> expenses, int fromDay, int toDay) {
+        Map<String, long[]> sums = new TreeMap<>();
+        for (DataManager.Expense expense : expenses) {
+            if (expense.dateDay >= fromDay && expense.dateDay <= toDay) {
+                long[] sum = sums.computeIfAbsent(expense.category, category -> new long[2]);
+                sum[0] += expense.amountCents;
+                sum[1]++;
+            }
+        }
+        Map<String, String> totals = new TreeMap<>();
+        for (Map.Entry<String, long[]> entry : sums.entrySet()) {
+            totals.put(entry.getKey(), entry.getValue()[0] + " in " + entry.getValue()[1]);
+        }
+        return totals;
+    }
+
+    private static Map<String, String> asMap(List<DataManager.CategoryTotal> totals) {
+        Map<String, String> map = new TreeMap<>();
+        for (DataManager.CategoryTotal total : totals) {
+            assertNull("Duplicate category " + total.category, map.put(total.category, total.totalCents + " in " + total.count));
+        }
+        return map;
+    }
+}
@@ -0,0 +1,53 @@
+package com.example.myapplication;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Locale;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local tests for turning stored expense dates into epoch days.
+ */
+public class ExpenseDatesTest {
+    private Locale defaultLocale;
+
+    @Before
+    public void setUp() {
+        defaultLocale = Locale.getDefault();
+        Locale.setDefault(Locale.US);
+    }
+
+    @After
+    public void tearDown() {
+        Locale.setDefault(defaultLocale);
+    }
+
+    @Test
+    public void toEpochDay_readsEveryKnownFormat() {
+        int leapDay = ExpenseDates.epochDay(2024, 1, 29);
+        assertEquals(leapDay, ExpenseDates.toEpochDay("February 29, 2024"));
+        assertEquals(leapDay, ExpenseDates.toEpochDay("Feb 29, 2024"));
+        assertEquals(leapDay, ExpenseDates.toEpochDay("2024-02-29"));
+        assertEquals(leapDay, ExpenseDates.toEpochDay("02/29/2024"));
+    }
+
+    @Test
+    public void toEpochDay_emptyAndTodayAreToday() {
+        int today = ExpenseDates.today();
+        assertEquals(today, ExpenseDates.toEpochDay(null));
+        assertEquals(today, ExpenseDates.toEpochDay(""));
+        assertEquals(today, ExpenseDates.toEpochDay("Today"));
+    }
+
+    @Test
+    public void toEpochDay_unknownFormatIsUnknownDay_notToday() {
+        assertEquals(ExpenseDates.UNKNOWN_DAY, ExpenseDates.toEpochDay("next Tuesday"));
+        assertEquals(ExpenseDates.UNKNOWN_DAY, ExpenseDates.toEpochDay("today"));
+        assertEquals(ExpenseDates.UNKNOWN_DAY, ExpenseDates.toEpochDay("31.01.2024"));
+        // Newest first puts it after every real expense
+        assertTrue(ExpenseDates.UNKNOWN_DAY < ExpenseDates.toEpochDay("January 1, 2000"));
+    }
+}
@@ -0,0 +1,201 @@
+package com.example.myapplication;
+
+import org.json.JSONObject;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local tests for ExpenseExporter. The million-row tests run under the small heap set in
+ * testOptions (app/build.gradle.kts), so an exporter that kept rows around would fail them.
+ */
+public class ExpenseExporterTest {
+    private static final int ROWS = 1_000_000;
+    private static final int BUFFER_BYTES = 64 * 1024;
+
+    @Test
+    public void csv_streamsMillionRowsWithFixedState() throws IOException {
+        streamMillionRows(ExpenseExporter.Format.CSV, 1);
+    }
+
+    @Test
+    public void jsonLines_streamsMillionRowsWithFixedState() throws IOException {
+        streamMillionRows(ExpenseExporter.Format.JSON_LINES, 0);
+    }
+
+    private void streamMillionRows(ExpenseExporter.Format format, int headerLines) throws IOException {
+        CountingChannel channel = new CountingChannel();
+        ExpenseExporter exporter = new ExpenseExporter(channel, format);
+        exporter.write(syntheticExpense(0));
+        int lineCapacity = exporter.getLineCapacity();
+
+        for (int i = 1; i < ROWS; i++) {
+            exporter.write(syntheticExpense(i));
+        }
+
+        assertEquals(ROWS, exporter.finish());
+        assertEquals(ROWS + headerLines, channel.lines);
+        assertEquals(BUFFER_BYTES, exporter.getBufferCapacity());
+        // Every synthetic row is shorter than the builder's first capacity, so it must never have grown
+        assertEquals(lineCapacity, exporter.getLineCapacity());
+        assertTrue("Writes must be buffered", channel.largestWrite <= BUFFER_BYTES);
+        assertTrue("Most writes should fill the buffer", channel.writes <= channel.bytes / BUFFER_BYTES + 1);
+    }
+
+    @Test
+    public void csv_quotesFieldsThatNeedIt_andReadsBack() throws IOException {
+        String[] notes = {
+                "plain",
+                "comma, inside",
+                "say \"hi\"",
+                "crlf\r\ninside",
+                "lf\ninside",
+                "cr\ronly",
+                "\"",
+                "",
+                "🍔 and é",
+        };
+        List<DataManager.Expense> expenses = new ArrayList<>();
+        for (int i = 0; i < notes.length; i++) {
+            expenses.add(new DataManager.Expense(i + 1, "Food, Drinks", 1250 + i, notes[i], "January 5, 2024", "", 0));
+        }
+
+        CsvReader reader = new CsvReader(new InputStreamReader(
+                new ByteArrayInputStream(export(expenses, ExpenseExporter.Format.CSV)), StandardCharsets.UTF_8));
+        List<String> fields = new ArrayList<>();
+        assertTrue(reader.next(fields));
+        assertEquals("id", fields.get(0));
+        assertEquals("image_uri", fields.get(5));
+        for (DataManager.Expense expense : expenses) {
+            assertTrue(reader.next(fields));
+            assertEquals(6, fields.size());
+            assertEquals(String.valueOf(expense.id), fields.get(0));
+            assertEquals(expense.date, fields.get(1));
+            assertEquals(expense.category, fields.get(2));
+            assertEquals(Money.formatPlain(expense.amountCents), fields.get(3));
+            assertEquals(expense.note, fields.get(4));
+            assertEquals("", fields.get(5));
+        }
+        assertFalse(reader.next(fields));
+    }
+
+    @Test
+    public void csv_leavesPlainFieldsUnquoted() throws IOException {
+        List<DataManager.Expense> expenses = new ArrayList<>();
+        expenses.add(new DataManager.Expense(7, "Food", -305, "lunch", "March 1, 2024", "content://receipts/7", 0));
+
+        String text = new String(export(expenses, ExpenseExporter.Format.CSV), StandardCharsets.UTF_8);
+
+        assertEquals("id,date,category,amount,note,image_uri\r\n" +
+                "7,\"March 1, 2024\",Food,-3.05,lunch,content://receipts/7\r\n", text);
+    }
+
+    @Test
+    public void jsonLines_escapesStrings_andReadsBack() throws Exception {
+        String[] notes = {
+                "plain",
+                "quote \" inside",
+                "back\\slash",
+                "new\nline",
+                "carriage\rreturn",
+                "tab\there",
+                "control \u0001 and \u001f",
+                "🍔 and é",
+                "",
+        };
+        List<DataManager.Expense> expenses = new ArrayList<>();
+        for (int i = 0; i < notes.length; i++) {
+            expenses.add(new DataManager.Expense(i + 1, "Cat \"" + i + "\"", 100L * i + 5, notes[i], "May 9, 2024", "", 0));
+        }
+
+        String text = new String(export(expenses, ExpenseExporter.Format.JSON_LINES), StandardCharsets.UTF_8);
+        String[] lines = text.split("\n", -1);
+
+        // One object per line, and the last line ends with a newline
+        assertEquals(expenses.size() + 1, lines.length);
+        assertEquals("", lines[expenses.size()]);
+        for (int i = 0; i < expenses.size(); i++) {
+            DataManager.Expense expense = expenses.get(i);
+            JSONObject object = new JSONObject(lines[i]);
+            assertEquals(expense.id, object.getInt("id"));
+            assertEquals(expense.date, object.getString("date"));
+            assertEquals(expense.category, object.getString("category"));
+            assertEquals(expense.amountCents, Math.round(object.getDouble("amount") * 100));
+            assertEquals(expense.note, object.getString("note"));
+            assertEquals("", object.getString("image_uri"));
+        }
+    }
+
+    @Test
+    public void jsonLines_writesAmountAsExactDecimal() throws IOException {
+        List<DataManager.Expense> expenses = new ArrayList<>();
+        expenses.add(new DataManager.Expense(1, "Food", 1050, "x", "May 9, 2024", "", 0));
+
+        String text = new String(export(expenses, ExpenseExporter.Format.JSON_LINES), StandardCharsets.UTF_8);
+
+        assertTrue(text, text.contains("\"amount\":10.50,"));
+    }
+
+    private static byte[] export(List<DataManager.Expense> expenses, ExpenseExporter.Format format) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ExpenseExporter exporter = new ExpenseExporter(Channels.newChannel(out), format);
+        for (DataManager.Expense expense : expenses) {
+            exporter.write(expense);
+        }
+        assertEquals(expenses.size(), exporter.finish());
+        return out.toByteArray();
+    }
+
+    /**
+     * Generates expense i on the fly, so the test itself holds no rows.
+     */
+    private static DataManager.Expense syntheticExpense(int i) {
+        return new DataManager.Expense(i, i % 7 == 0 ? "Bills" : "Food", 100L + i % 100_000,
+                i % 3 == 0 ? "lunch, with \"friends\"" : "note " + i, "June " + (1 + i % 28) + ", 2024", "", 0);
+    }
+
+    /**
+     * Discards what is written, counting bytes, lines and write calls.
+     */
+    private static final class CountingChannel implements WritableByteChannel {
+        long bytes;
+        long lines;
+        long writes;
+        int largestWrite;
+
+        @Override
+        public int write(ByteBuffer source) {
+            int length = source.remaining();
+            for (int i = source.position(); i < source.limit(); i++) {
+                if (source.get(i) == '\n') {
+                    lines++;
+                }
+            }
+            source.position(source.limit());
+            bytes += length;
+            writes++;
+            largestWrite = Math.max(largestWrite, length);
+            return length;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
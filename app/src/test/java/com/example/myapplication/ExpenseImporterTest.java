@@ -0,0 +1,286 @@
+package com.example.myapplication;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.Date;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local tests for ExpenseImporter, including a 500k-row parse checked for correctness. Its speed is
+ * measured by ImportBenchmarkTest on a device, where a slow shared machine cannot fail the build.
+ */
+public class ExpenseImporterTest {
+    private static final int BENCHMARK_ROWS = 500_000;
+
+    @Test
+    public void readsBankExportHeaderAliases() throws IOException {
+        DataManager.ImportResult result = new DataManager.ImportResult();
+        ExpenseImporter importer = importer("Transaction Date,Description,Amount\n" +
+                "2024-03-01,Coffee shop,\"$1,234.50\"\n", result);
+
+        DataManager.Expense expense = importer.next();
+
+        assertNotNull(expense);
+        assertEquals(123450, expense.amountCents);
+        assertEquals("Coffee shop", expense.note);
+        assertEquals("Others", expense.category);
+        assertEquals(displayDate("2024-03-01"), expense.date);
+        assertNull(importer.next());
+        assertEquals(0, result.rejected);
+    }
+
+    @Test
+    public void matchesHeadersIgnoringCaseAndSpaces() throws IOException {
+        DataManager.ImportResult result = new DataManager.ImportResult();
+        ExpenseImporter importer = importer(" POSTED DATE , Memo ,VALUE, Category \n" +
+                "03/02/2024,Bus,2.75,Transport\n", result);
+
+        DataManager.Expense expense = importer.next();
+
+        assertNotNull(expense);
+        assertEquals(275, expense.amountCents);
+        assertEquals("Bus", expense.note);
+        assertEquals("Transport", expense.category);
+        assertEquals(displayDate("2024-03-02"), expense.date);
+    }
+
+    @Test
+    public void readsTheAppsOwnExport() throws IOException {
+        DataManager.ImportResult result = new DataManager.ImportResult();
+        ExpenseImporter importer = importer("id,date,category,amount,note,image_uri\r\n" +
+                "7,\"March 1, 2024\",Food,3.05,\"lunch, with \"\"friends\"\"\",\r\n", result);
+
+        DataManager.Expense expense = importer.next();
+
+        assertNotNull(expense);
+        assertEquals("Food", expense.category);
+        assertEquals(305, expense.amountCents);
+        assertEquals("lunch, with \"friends\"", expense.note);
+        assertEquals("", expense.imageUri);
+    }
+
+    @Test
+    public void fillsInMissingCategoryAndNote() throws IOException {
+        ExpenseImporter importer = importer("date,amount\n2024-01-01,5\n", new DataManager.ImportResult());
+
+        DataManager.Expense expense = importer.next();
+
+        assertEquals("Others", expense.category);
+        assertEquals("No note", expense.note);
+    }
+
+    @Test
+    public void headerWithoutDateOrAmountFails() {
+        assertThrows(IOException.class, () -> importer("description,amount\n", new DataManager.ImportResult()));
+        assertThrows(IOException.class, () -> importer("date,description\n", new DataManager.ImportResult()));
+        assertThrows(IOException.class, () -> importer("", new DataManager.ImportResult()));
+    }
+
+    @Test
+    public void countsBadRowsAndCarriesOn() throws IOException {
+        DataManager.ImportResult result = new DataManager.ImportResult();
+        ExpenseImporter importer = importer("date,amount,note\n" +
+                "2024-01-01,1.00,ok 1\n" +
+                "2024-01-02,abc,bad amount\n" +
+                "2024-01-03,,missing amount\n" +
+                ",4.00,missing date\n" +
+                "someday,5.00,bad date\n" +
+                "2024-01-06,-6.00,credit\n" +
+                "2024-01-07,0.00,zero\n" +
+                "\n" +
+                ",,\n" +
+                "2024-01-08,8.00,\"ok\n2\"\n" +
+                "2024-01-09,9.9.9,two points\n" +
+                "2024-01-10,10.00,ok 3\n", result);
+
+        assertEquals("ok 1", importer.next().note);
+        assertEquals("ok\n2", importer.next().note);
+        assertEquals("ok 3", importer.next().note);
+        assertNull(importer.next());
+
+        // Blank records are skipped without counting as errors
+        assertEquals(7, result.rejected);
+        assertEquals(7, result.errors.size());
+        assertTrue(result.errors.get(0), result.errors.get(0).startsWith("Line 3: invalid amount"));
+        assertTrue(result.errors.get(1), result.errors.get(1).startsWith("Line 4: missing amount"));
+        assertTrue(result.errors.get(2), result.errors.get(2).startsWith("Line 5: missing date"));
+        assertTrue(result.errors.get(3), result.errors.get(3).startsWith("Line 6: unrecognized date"));
+        assertTrue(result.errors.get(4), result.errors.get(4).startsWith("Line 7: amount must be positive"));
+        assertTrue(result.errors.get(5), result.errors.get(5).startsWith("Line 8: amount must be positive"));
+        // The quoted note above spans two lines
+        assertTrue(result.errors.get(6), result.errors.get(6).startsWith("Line 13: invalid amount"));
+    }
+
+    @Test
+    public void negativeDebitExport_importsSpendingAndRejectsCredits() throws IOException {
+        DataManager.ImportResult result = new DataManager.ImportResult();
+        ExpenseImporter importer = importer("Date,Description,Amount\n" +
+                "2024-01-01,Salary,2500.00\n" +
+                "2024-01-02,Coffee shop,-3.50\n" +
+                "2024-01-03,Grocer,\"-$1,204.10\"\n" +
+                "2024-01-04,Refund,12.00\n" +
+                "2024-01-05,Bus,-2.75\n", result);
+
+        assertEquals(350, importer.next().amountCents);
+        assertEquals(120410, importer.next().amountCents);
+        assertEquals(275, importer.next().amountCents);
+        assertNull(importer.next());
+
+        assertEquals(2, result.rejected);
+        assertTrue(result.errors.get(0), result.errors.get(0).startsWith("Line 2: amount must be negative"));
+        assertTrue(result.errors.get(1), result.errors.get(1).startsWith("Line 5: amount must be negative"));
+    }
+
+    @Test
+    public void signIsTakenFromTheStartOfTheFile_andKeptAfterIt() throws IOException {
+        StringBuilder csv = new StringBuilder("date,amount\n");
+        for (int i = 0; i < ExpenseImporter.SIGN_SAMPLE_ROWS; i++) {
+            csv.append("2024-01-01,-1.00\n");
+        }
+        // Past the sample, a run of credits does not change what counts as spending
+        for (int i = 0; i < ExpenseImporter.SIGN_SAMPLE_ROWS * 2; i++) {
+            csv.append("2024-01-02,5.00\n");
+        }
+        DataManager.ImportResult result = new DataManager.ImportResult();
+        ExpenseImporter importer = importer(csv.toString(), result);
+
+        int imported = 0;
+        DataManager.Expense expense;
+        while ((expense = importer.next()) != null) {
+            assertEquals(100, expense.amountCents);
+            imported++;
+        }
+        assertEquals(ExpenseImporter.SIGN_SAMPLE_ROWS, imported);
+        assertEquals(ExpenseImporter.SIGN_SAMPLE_ROWS * 2, result.rejected);
+    }
+
+    @Test
+    public void debitColumn_skipsDepositsWithoutReportingThem() throws IOException {
+        DataManager.ImportResult result = new DataManager.ImportResult();
+        ExpenseImporter importer = importer("Posting Date,Details,Withdrawals,Deposits\n" +
+                "2024-02-01,Rent,950.00,\n" +
+                "2024-02-02,Paycheck,,2500.00\n" +
+                "2024-02-03,Pharmacy,12.30,\n", result);
+
+        assertEquals("Rent", importer.next().note);
+        DataManager.Expense expense = importer.next();
+        assertEquals("Pharmacy", expense.note);
+        assertEquals(1230, expense.amountCents);
+        assertNull(importer.next());
+        assertEquals(0, result.rejected);
+
+        // Debits listed as negative numbers are read the same way
+        importer = importer("Date,Debit,Credit\n2024-02-01,-950.00,\n2024-02-02,,2500.00\n", result);
+        assertEquals(95000, importer.next().amountCents);
+        assertNull(importer.next());
+        assertEquals(0, result.rejected);
+    }
+
+    @Test
+    public void reportsOnlyTheFirstErrors_butCountsAll() throws IOException {
+        StringBuilder csv = new StringBuilder("date,amount\n");
+        int bad = ExpenseImporter.MAX_REPORTED_ERRORS + 50;
+        for (int i = 0; i < bad; i++) {
+            csv.append("2024-01-01,x\n");
+        }
+        csv.append("2024-01-01,1\n");
+        DataManager.ImportResult result = new DataManager.ImportResult();
+        ExpenseImporter importer = importer(csv.toString(), result);
+
+        assertNotNull(importer.next());
+        assertNull(importer.next());
+        assertEquals(bad, result.rejected);
+        assertEquals(ExpenseImporter.MAX_REPORTED_ERRORS, result.errors.size());
+    }
+
+    @Test
+    public void parsesFiveHundredThousandRows() throws IOException {
+        DataManager.ImportResult result = new DataManager.ImportResult();
+        ExpenseImporter importer = new ExpenseImporter(new CsvReader(new SyntheticBankExport(BENCHMARK_ROWS)), result);
+
+        int rows = 0;
+        long totalCents = 0;
+        DataManager.Expense expense;
+        while ((expense = importer.next()) != null) {
+            rows++;
+            totalCents += expense.amountCents;
+        }
+
+        assertEquals(BENCHMARK_ROWS, rows);
+        assertEquals(0, result.rejected);
+        assertEquals(SyntheticBankExport.totalCents(BENCHMARK_ROWS), totalCents);
+    }
+
+    private static ExpenseImporter importer(String csv, DataManager.ImportResult result) throws IOException {
+        return new ExpenseImporter(new CsvReader(new StringReader(csv)), result);
+    }
+
+    private static String displayDate(String isoDate) {
+        Date date = ExpenseDates.parse(isoDate);
+        assertNotNull(date);
+        return ExpenseDates.format(date);
+    }
+
+    /**
+     * A bank-style CSV export of the given number of rows, generated as it is read so the benchmark
+     * holds neither the file nor its rows in memory. Dates run in order, a few rows per day.
+     */
+    static final class SyntheticBankExport extends Reader {
+        private final int rows;
+        private final StringBuilder pending = new StringBuilder("Posted Date,Description,Amount,Category\r\n");
+        private int position;
+        private int row;
+
+        SyntheticBankExport(int rows) {
+            this.rows = rows;
+        }
+
+        static long amountCents(int row) {
+            return 100 + (row * 37L) % 50_000;
+        }
+
+        static long totalCents(int rows) {
+            long total = 0;
+            for (int i = 0; i < rows; i++) {
+                total += amountCents(i);
+            }
+            return total;
+        }
+
+        @Override
+        public int read(char[] buffer, int offset, int length) {
+            if (position == pending.length()) {
+                if (row == rows) {
+                    return -1;
+                }
+                pending.setLength(0);
+                position = 0;
+                int day = row / 4;
+                pending.append(String.format(java.util.Locale.ROOT, "%02d/%02d/%04d",
+                        1 + (day / 28) % 12, 1 + day % 28, 2000 + day / 336));
+                pending.append(',');
+                if (row % 5 == 0) {
+                    pending.append("\"Grocer, Main St\"");
+                } else {
+                    pending.append("Card purchase ").append(row);
+                }
+                pending.append(",\"$");
+                Money.appendPlain(pending, amountCents(row));
+                pending.append("\",").append(row % 3 == 0 ? "Food" : "Shopping").append("\r\n");
+                row++;
+            }
+            int count = Math.min(length, pending.length() - position);
+            pending.getChars(position, position + count, buffer, offset);
+            position += count;
+            return count;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package com.example.myapplication;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Locale;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local tests for parsing and formatting amounts in cents.
+ */
+public class MoneyTest {
+    private Locale defaultLocale;
+
+    @Before
+    public void setUp() {
+        defaultLocale = Locale.getDefault();
+        Locale.setDefault(Locale.US);
+    }
+
+    @After
+    public void tearDown() {
+        Locale.setDefault(defaultLocale);
+    }
+
+    @Test
+    public void parse_roundsHalfUpToCents() {
+        assertEquals(1200, Money.parse("12"));
+        assertEquals(1250, Money.parse("12.5"));
+        assertEquals(1235, Money.parse("12.345"));
+        assertEquals(1234, Money.parse("12.3449"));
+        assertEquals(1, Money.parse("0.005"));
+        assertEquals(0, Money.parse("0.004"));
+        assertEquals(310, Money.parse(" 3.10 "));
+    }
+
+    @Test
+    public void parse_negativesRoundAwayFromZero() {
+        assertEquals(-305, Money.parse("-3.05"));
+        assertEquals(-251, Money.parse("-2.505"));
+        assertEquals(0, Money.parse("-0"));
+    }
+
+    @Test
+    public void parse_acceptsTheWholeLongRange() {
+        assertEquals(Long.MAX_VALUE, Money.parse("92233720368547758.07"));
+        assertEquals(Long.MIN_VALUE, Money.parse("-92233720368547758.08"));
+    }
+
+    @Test
+    public void parse_rejectsOverflowAndNonNumbers() {
+        assertThrows(NumberFormatException.class, () -> Money.parse("92233720368547758.08"));
+        assertThrows(NumberFormatException.class, () -> Money.parse("-92233720368547758.09"));
+        assertThrows(NumberFormatException.class, () -> Money.parse("1e30"));
+        assertThrows(NumberFormatException.class, () -> Money.parse(""));
+        assertThrows(NumberFormatException.class, () -> Money.parse("abc"));
+        assertThrows(NumberFormatException.class, () -> Money.parse("1,50"));
+        assertThrows(NumberFormatException.class, () -> Money.parse("$1.50"));
+    }
+
+    @Test
+    public void format_padsCentsAndKeepsTheSign() {
+        assertEquals("0.00", Money.format(0));
+        assertEquals("0.05", Money.format(5));
+        assertEquals("12.50", Money.format(1250));
+        assertEquals("-3.05", Money.format(-305));
+        assertEquals("-0.01", Money.format(-1));
+        assertEquals("92233720368547758.07", Money.format(Long.MAX_VALUE));
+        assertEquals("-92233720368547758.08", Money.format(Long.MIN_VALUE));
+    }
+
+    @Test
+    public void formatCurrency_putsTheSignBeforeTheDollar() {
+        assertEquals("$12.50", Money.formatCurrency(1250));
+        assertEquals("-$3.00", Money.formatCurrency(-300));
+        assertEquals("-$92233720368547758.08", Money.formatCurrency(Long.MIN_VALUE));
+    }
+
+    @Test
+    public void format_followsTheDefaultLocaleSeparator() {
+        assertEquals("12.50", Money.format(1250));
+        Locale.setDefault(Locale.GERMANY);
+        assertEquals("12,50", Money.format(1250));
+        assertEquals("-$3,05", Money.formatCurrency(-305));
+        Locale.setDefault(Locale.US);
+        assertEquals("12.50", Money.format(1250));
+    }
+
+    @Test
+    public void plainFormat_ignoresTheLocale_andParsesBack() {
+        Locale.setDefault(Locale.GERMANY);
+        long[] amounts = {0, 1, 99, 100, 1250, -305, Long.MAX_VALUE, Long.MIN_VALUE};
+        for (long cents : amounts) {
+            String text = Money.formatPlain(cents);
+            assertEquals(text, Money.appendPlain(new StringBuilder(), cents).toString());
+            assertEquals(text, cents, Money.parse(text));
+        }
+        assertEquals("Total: 12.50", Money.appendPlain(new StringBuilder("Total: "), 1250).toString());
+    }
+
+    @Test
+    public void centsSumExactly_whereDoublesDrift() {
+        double dollars = 0;
+        long cents = 0;
+        for (int i = 0; i < 1_000_000; i++) {
+            dollars += 0.1;
+            cents += Money.parse("0.1");
+        }
+        assertTrue("Expected summing doubles to drift, got " + dollars, dollars != 100_000.0);
+        assertEquals(10_000_000, cents);
+        assertEquals("100000.00", Money.formatPlain(cents));
+    }
+}